@@ -0,0 +1,47 @@
+package com.alibaba.jvm.sandbox.api.annotation;
+
+import com.alibaba.jvm.sandbox.api.ProcessControlException;
+import com.alibaba.jvm.sandbox.api.listener.EventListener;
+import com.alibaba.jvm.sandbox.api.listener.ext.AdviceListener;
+
+import java.lang.annotation.*;
+
+/**
+ * 声明{@link EventListener}为异步监听器
+ * <p>
+ * 默认情况下{@link EventListener#onEvent(com.alibaba.jvm.sandbox.api.event.Event)}在应用线程上同步执行，
+ * 监听器中的IO(打日志、输出到Printer)会直接叠加到应用的响应时间上。
+ * 拥有此标注的{@link EventListener}在应用线程上只会把事件的快照写入一个预先分配好的有界环形缓冲区，
+ * 再由沙箱的派发线程成批回调监听器：
+ * <ul>
+ * <li>缓冲区满时事件直接被丢弃并计数，不会阻塞应用线程，丢弃数量可以通过{@code EventMonitor#getAsyncEventInfo()}查看</li>
+ * <li>监听器不能再通过{@link ProcessControlException}改变方法的执行流程，抛出的{@link ProcessControlException}将被忽略</li>
+ * <li>事件中的{@code target}、{@code argumentArray}、返回值等对象只是引用的快照，回调时这些对象可能已经被应用修改</li>
+ * <li>只有一个派发线程(默认)时同一个监听器的事件保持触发顺序，但不再与应用线程处于同一个线程中</li>
+ * </ul>
+ * {@link AdviceListener}依赖线程上下文拼装调用栈，标注在{@link AdviceListener}上时按{@link #byProcess()}的方式派发
+ *
+ * @since {@code sandbox-api:1.0.15}
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+public @interface Asynchronous {
+
+    /**
+     * 是否按调用过程整体派发
+     * <p>
+     * 同一个线程上从顶层BEFORE到对应的RETURN/THROWS之间的所有事件在应用线程上先被复制为快照，
+     * 顶层调用结束时作为一个整体写入缓冲区，再由同一个派发线程按触发顺序依次回调，
+     * 监听器因此可以像在应用线程上一样依赖线程上下文拼装调用过程，与派发线程的数量无关。
+     * 代价是应用线程需要为每个事件分配一个快照；一次调用过程中的事件数量超过缓冲区容量时整个调用过程被丢弃
+     * </p>
+     * <p>
+     * 调用过程靠RETURN和THROWS事件判断结束，监听器没有同时订阅这两种事件时此选项不生效，仍然逐个事件派发
+     * </p>
+     *
+     * @return TRUE:按调用过程整体派发；FALSE：逐个事件派发
+     */
+    boolean byProcess() default false;
+
+}
@@ -0,0 +1,50 @@
+package com.alibaba.jvm.sandbox.api.annotation;
+
+import com.alibaba.jvm.sandbox.api.event.BeforeEvent;
+import com.alibaba.jvm.sandbox.api.event.ReturnEvent;
+import com.alibaba.jvm.sandbox.api.listener.EventListener;
+
+import java.lang.annotation.*;
+
+/**
+ * 声明{@link EventListener}所需要的事件负载
+ * <p>
+ * 默认情况下容器会在每次方法调用时把方法参数装箱成数组、把基本类型的返回值装箱后传递给监听器，
+ * 对于只关心调用次数、耗时的监听器来说这些都是多余的开销。
+ * 拥有此标注的{@link EventListener}只会拿到声明过的负载，未声明的负载将不会在目标方法中被构造：
+ * <ul>
+ * <li>未声明{@link #argument()}：{@link BeforeEvent#argumentArray}为null，也不能通过{@link BeforeEvent#changeParameter(int, Object)}修改参数</li>
+ * <li>未声明{@link #target()}：{@link BeforeEvent#target}为null</li>
+ * <li>未声明{@link #returnValue()}：{@link ReturnEvent#object}为null</li>
+ * </ul>
+ * 同一个方法上有多个监听器时，取所有监听器声明的并集
+ *
+ * @since {@code sandbox-api:1.0.15}
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+public @interface EventPayload {
+
+    /**
+     * 是否需要方法参数
+     *
+     * @return TRUE:需要；FALSE：不需要
+     */
+    boolean argument() default false;
+
+    /**
+     * 是否需要调用对象
+     *
+     * @return TRUE:需要；FALSE：不需要
+     */
+    boolean target() default false;
+
+    /**
+     * 是否需要方法返回值
+     *
+     * @return TRUE:需要；FALSE：不需要
+     */
+    boolean returnValue() default false;
+
+}
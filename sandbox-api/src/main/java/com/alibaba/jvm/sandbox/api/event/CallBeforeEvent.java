@@ -27,6 +27,13 @@ public class CallBeforeEvent extends InvokeEvent {
      */
     public final String desc;
 
+    /**
+     * 调用点
+     *
+     * @since {@code sandbox-api:1.0.15}
+     */
+    public final CallSite callSite;
+
     /**
      * 构造调用事件
      *
@@ -43,11 +50,26 @@ public class CallBeforeEvent extends InvokeEvent {
                            final String owner,
                            final String name,
                            final String desc) {
+        this(processId, invokeId, new CallSite(0, lineNumber, owner, name, desc));
+    }
+
+    /**
+     * 构造调用事件
+     *
+     * @param processId 调用过程ID
+     * @param invokeId  调用ID
+     * @param callSite  调用点
+     * @since {@code sandbox-api:1.0.15}
+     */
+    public CallBeforeEvent(final int processId,
+                           final int invokeId,
+                           final CallSite callSite) {
         super(processId, invokeId, Type.CALL_BEFORE);
-        this.lineNumber = lineNumber;
-        this.owner = owner;
-        this.name = name;
-        this.desc = desc;
+        this.lineNumber = callSite.lineNumber;
+        this.owner = callSite.owner;
+        this.name = callSite.name;
+        this.desc = callSite.desc;
+        this.callSite = callSite;
     }
 
 }
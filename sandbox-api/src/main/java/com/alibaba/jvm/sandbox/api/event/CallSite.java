@@ -0,0 +1,65 @@
+package com.alibaba.jvm.sandbox.api.event;
+
+/**
+ * 方法调用点
+ * <p>
+ * 描述被观察方法内部的一次方法调用(调用了哪个类的哪个方法)，
+ * 调用点在代码织入时注册一次，之后每次调用都复用同一个对象，不需要重复构造字符串
+ * </p>
+ *
+ * @since {@code sandbox-api:1.0.15}
+ */
+public class CallSite {
+
+    /**
+     * 调用点ID
+     */
+    public final int id;
+
+    /**
+     * 代码行号
+     */
+    public final int lineNumber;
+
+    /**
+     * 调用类名(Java类名，例如：java.lang.String)
+     */
+    public final String owner;
+
+    /**
+     * 调用方法名
+     */
+    public final String name;
+
+    /**
+     * 调用方法描述
+     */
+    public final String desc;
+
+    /**
+     * 构造方法调用点
+     *
+     * @param id         调用点ID
+     * @param lineNumber 代码行号
+     * @param owner      调用类名(Java类名)
+     * @param name       调用方法名
+     * @param desc       调用方法描述
+     */
+    public CallSite(final int id,
+                    final int lineNumber,
+                    final String owner,
+                    final String name,
+                    final String desc) {
+        this.id = id;
+        this.lineNumber = lineNumber;
+        this.owner = owner;
+        this.name = name;
+        this.desc = desc;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s#%s%s:%d", owner, name, desc, lineNumber);
+    }
+
+}
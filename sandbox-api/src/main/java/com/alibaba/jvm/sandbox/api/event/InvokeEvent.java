@@ -17,6 +17,24 @@ public abstract class InvokeEvent extends Event {
      */
     public final int invokeId;
 
+    /**
+     * 64位调用过程ID
+     * <p>
+     * 沙箱启用64位调用ID(invoke.id.64bit=true)时，调用过程ID不会溢出回绕，{@link #processId}为该值的低32位；
+     * 未启用时与{@link #processId}相等
+     * </p>
+     */
+    public final long longProcessId;
+
+    /**
+     * 64位调用ID
+     * <p>
+     * 沙箱启用64位调用ID(invoke.id.64bit=true)时，调用ID不会溢出回绕，{@link #invokeId}为该值的低32位；
+     * 未启用时与{@link #invokeId}相等
+     * </p>
+     */
+    public final long longInvokeId;
+
     /**
      * 构造调用事件
      *
@@ -28,6 +46,8 @@ public abstract class InvokeEvent extends Event {
         super(type);
         this.processId = processId;
         this.invokeId = invokeId;
+        this.longProcessId = processId;
+        this.longInvokeId = invokeId;
     }
 
 }
@@ -0,0 +1,42 @@
+package com.alibaba.jvm.sandbox.api.filter;
+
+import com.alibaba.jvm.sandbox.api.util.GaStringUtils;
+
+/**
+ * 类锚点过滤器
+ * <p>
+ * 过滤器实现此接口，表示{@link #doClassFilter(int, String, String, String[], String[])}和
+ * {@link #doMethodFilter(int, String, String[], String[], String[])}只可能对锚定在指定父类、接口或注解上的类同时返回true。
+ * 容器检索已加载类时会用这些锚点从继承关系和注解的反向索引中挑选候选类，检索耗时只和候选类的数量有关
+ * </p>
+ * <p>
+ * 每个锚点都是必要条件：返回的模版数组中任一模版满足即可，返回null表示不以此锚定；
+ * 模版语法同{@link GaStringUtils#matching(String, String)}
+ * </p>
+ *
+ * @since {@code sandbox-api:1.0.15}
+ */
+public interface ClassAnchorFilter extends ClassNamePatternFilter {
+
+    /**
+     * 获取父类型锚点
+     *
+     * @return 类自身、父类或所实现的接口(含间接继承)之一必须符合的类名模版
+     */
+    String[] getSuperTypePatterns();
+
+    /**
+     * 获取类注解锚点
+     *
+     * @return 类自身或其父类型上标注的注解之一必须符合的注解类名模版
+     */
+    String[] getAnnotationTypePatterns();
+
+    /**
+     * 获取行为注解锚点
+     *
+     * @return 类所声明的行为上标注的注解之一必须符合的注解类名模版
+     */
+    String[] getBehaviorAnnotationTypePatterns();
+
+}
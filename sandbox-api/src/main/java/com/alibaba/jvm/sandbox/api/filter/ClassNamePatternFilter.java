@@ -0,0 +1,25 @@
+package com.alibaba.jvm.sandbox.api.filter;
+
+import com.alibaba.jvm.sandbox.api.util.GaStringUtils;
+
+/**
+ * 类名模版过滤器
+ * <p>
+ * 过滤器实现此接口，表示{@link #doClassFilter(int, String, String, String[], String[])}
+ * 只可能对类名符合{@link #getClassNamePatterns()}中任一模版的类返回true。
+ * 容器会用这些模版建立类名索引，在解析类结构之前就跳过不可能匹配的类
+ * </p>
+ *
+ * @since {@code sandbox-api:1.0.15}
+ */
+public interface ClassNamePatternFilter extends Filter {
+
+    /**
+     * 获取类名匹配模版
+     *
+     * @return 类名通配符模版数组，语法同{@link GaStringUtils#matching(String, String)}；
+     * 返回null表示无法仅凭类名判断，容器不会为此过滤器建立索引
+     */
+    String[] getClassNamePatterns();
+
+}
@@ -45,48 +45,12 @@ public interface ExtFilter extends Filter {
         public static ExtFilter make(final Filter filter,
                                      final boolean isIncludeSubClasses,
                                      final boolean isIncludeBootstrap) {
-            return new ExtFilter() {
-
-                @Override
-                public boolean isIncludeSubClasses() {
-                    return isIncludeSubClasses;
-                }
-
-                @Override
-                public boolean isIncludeBootstrap() {
-                    return isIncludeBootstrap;
-                }
-
-                @Override
-                public boolean doClassFilter(final int access,
-                                             final String javaClassName,
-                                             final String superClassTypeJavaClassName,
-                                             final String[] interfaceTypeJavaClassNameArray,
-                                             final String[] annotationTypeJavaClassNameArray) {
-                    return filter.doClassFilter(
-                            access,
-                            javaClassName,
-                            superClassTypeJavaClassName,
-                            interfaceTypeJavaClassNameArray,
-                            annotationTypeJavaClassNameArray
-                    );
-                }
-
-                @Override
-                public boolean doMethodFilter(final int access,
-                                              final String javaMethodName,
-                                              final String[] parameterTypeJavaClassNameArray,
-                                              final String[] throwsTypeJavaClassNameArray,
-                                              final String[] annotationTypeJavaClassNameArray) {
-                    return filter.doMethodFilter(
-                            access,
-                            javaMethodName,
-                            parameterTypeJavaClassNameArray,
-                            throwsTypeJavaClassNameArray,
-                            annotationTypeJavaClassNameArray
-                    );
-                }
-            };
+            if (filter instanceof ClassAnchorFilter) {
+                return new ClassAnchorExtFilterImpl((ClassAnchorFilter) filter, isIncludeSubClasses, isIncludeBootstrap);
+            }
+            return filter instanceof ClassNamePatternFilter
+                    ? new ClassNamePatternExtFilterImpl((ClassNamePatternFilter) filter, isIncludeSubClasses, isIncludeBootstrap)
+                    : new ExtFilterImpl(filter, isIncludeSubClasses, isIncludeBootstrap);
         }
 
         /**
@@ -106,6 +70,117 @@ public interface ExtFilter extends Filter {
                     );
         }
 
+        /**
+         * 增强过滤器实现，代理到原生过滤器
+         */
+        private static class ExtFilterImpl implements ExtFilter {
+
+            private final Filter filter;
+            private final boolean isIncludeSubClasses;
+            private final boolean isIncludeBootstrap;
+
+            ExtFilterImpl(final Filter filter,
+                          final boolean isIncludeSubClasses,
+                          final boolean isIncludeBootstrap) {
+                this.filter = filter;
+                this.isIncludeSubClasses = isIncludeSubClasses;
+                this.isIncludeBootstrap = isIncludeBootstrap;
+            }
+
+            @Override
+            public boolean isIncludeSubClasses() {
+                return isIncludeSubClasses;
+            }
+
+            @Override
+            public boolean isIncludeBootstrap() {
+                return isIncludeBootstrap;
+            }
+
+            @Override
+            public boolean doClassFilter(final int access,
+                                         final String javaClassName,
+                                         final String superClassTypeJavaClassName,
+                                         final String[] interfaceTypeJavaClassNameArray,
+                                         final String[] annotationTypeJavaClassNameArray) {
+                return filter.doClassFilter(
+                        access,
+                        javaClassName,
+                        superClassTypeJavaClassName,
+                        interfaceTypeJavaClassNameArray,
+                        annotationTypeJavaClassNameArray
+                );
+            }
+
+            @Override
+            public boolean doMethodFilter(final int access,
+                                          final String javaMethodName,
+                                          final String[] parameterTypeJavaClassNameArray,
+                                          final String[] throwsTypeJavaClassNameArray,
+                                          final String[] annotationTypeJavaClassNameArray) {
+                return filter.doMethodFilter(
+                        access,
+                        javaMethodName,
+                        parameterTypeJavaClassNameArray,
+                        throwsTypeJavaClassNameArray,
+                        annotationTypeJavaClassNameArray
+                );
+            }
+
+        }
+
+        /**
+         * 保留原生过滤器类名模版的增强过滤器
+         */
+        private static class ClassNamePatternExtFilterImpl extends ExtFilterImpl implements ClassNamePatternFilter {
+
+            private final ClassNamePatternFilter filter;
+
+            ClassNamePatternExtFilterImpl(final ClassNamePatternFilter filter,
+                                          final boolean isIncludeSubClasses,
+                                          final boolean isIncludeBootstrap) {
+                super(filter, isIncludeSubClasses, isIncludeBootstrap);
+                this.filter = filter;
+            }
+
+            @Override
+            public String[] getClassNamePatterns() {
+                return filter.getClassNamePatterns();
+            }
+
+        }
+
+        /**
+         * 保留原生过滤器类锚点的增强过滤器
+         */
+        private static class ClassAnchorExtFilterImpl extends ClassNamePatternExtFilterImpl implements ClassAnchorFilter {
+
+            private final ClassAnchorFilter filter;
+
+            ClassAnchorExtFilterImpl(final ClassAnchorFilter filter,
+                                     final boolean isIncludeSubClasses,
+                                     final boolean isIncludeBootstrap) {
+                super(filter, isIncludeSubClasses, isIncludeBootstrap);
+                this.filter = filter;
+            }
+
+            @Override
+            public String[] getSuperTypePatterns() {
+                return filter.getSuperTypePatterns();
+            }
+
+            @Override
+            public String[] getAnnotationTypePatterns() {
+                return filter.getAnnotationTypePatterns();
+            }
+
+            @Override
+            public String[] getBehaviorAnnotationTypePatterns() {
+                return filter.getBehaviorAnnotationTypePatterns();
+            }
+
+        }
+
     }
 
 }
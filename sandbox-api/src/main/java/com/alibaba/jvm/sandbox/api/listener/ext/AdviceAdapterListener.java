@@ -1,10 +1,10 @@
 package com.alibaba.jvm.sandbox.api.listener.ext;
 
+import com.alibaba.jvm.sandbox.api.annotation.Asynchronous;
 import com.alibaba.jvm.sandbox.api.event.*;
 import com.alibaba.jvm.sandbox.api.listener.EventListener;
 import com.alibaba.jvm.sandbox.api.util.BehaviorDescriptor;
 import com.alibaba.jvm.sandbox.api.util.CacheGet;
-import com.alibaba.jvm.sandbox.api.util.GaStringUtils;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
@@ -24,6 +24,34 @@ class AdviceAdapterListener implements EventListener {
         this.adviceListener = adviceListener;
     }
 
+    /**
+     * 构造通知监听器
+     * <p>
+     * 拥有{@link Asynchronous}标注的{@link AdviceListener}需要按调用过程整体派发，
+     * 派发线程才能在自己的线程上下文中拼装出与应用线程相同的调用栈
+     * </p>
+     *
+     * @param adviceListener 通知监听器
+     * @return 事件监听器
+     */
+    static AdviceAdapterListener of(final AdviceListener adviceListener) {
+        return adviceListener.getClass().isAnnotationPresent(Asynchronous.class)
+                ? new AsyncAdviceAdapterListener(adviceListener)
+                : new AdviceAdapterListener(adviceListener);
+    }
+
+    /**
+     * 异步通知监听器
+     */
+    @Asynchronous(byProcess = true)
+    private static class AsyncAdviceAdapterListener extends AdviceAdapterListener {
+
+        AsyncAdviceAdapterListener(final AdviceListener adviceListener) {
+            super(adviceListener);
+        }
+
+    }
+
     private final ThreadLocal<OpStack> opStackRef = new ThreadLocal<OpStack>() {
         @Override
         protected OpStack initialValue() {
@@ -100,19 +128,15 @@ class AdviceAdapterListener implements EventListener {
                 if (null == wrapAdvice) {
                     return;
                 }
-                final CallTarget target;
-                wrapAdvice.attach(target = new CallTarget(
-                        cbEvent.lineNumber,
-                        toJavaClassName(cbEvent.owner),
-                        cbEvent.name,
-                        cbEvent.desc
-                ));
+                // 调用点在织入时已经登记好，直接复用，不需要每次构造调用目标
+                final CallSite target;
+                wrapAdvice.attach(target = cbEvent.callSite);
                 adviceListener.beforeCall(
                         wrapAdvice.advice,
-                        target.callLineNum,
-                        target.callJavaClassName,
-                        target.callJavaMethodName,
-                        target.callJavaMethodDesc
+                        target.lineNumber,
+                        target.owner,
+                        target.name,
+                        target.desc
                 );
                 break;
             }
@@ -124,17 +148,17 @@ class AdviceAdapterListener implements EventListener {
                 if (null == wrapAdvice) {
                     return;
                 }
-                final CallTarget target = wrapAdvice.attachment();
+                final CallSite target = wrapAdvice.attachment();
                 if (null == target) {
                     // 这里做一个容灾保护，防止在callBefore()中发生什么异常导致beforeCall()之前失败
                     return;
                 }
                 adviceListener.afterCallReturning(
                         wrapAdvice.advice,
-                        target.callLineNum,
-                        target.callJavaClassName,
-                        target.callJavaMethodName,
-                        target.callJavaMethodDesc
+                        target.lineNumber,
+                        target.owner,
+                        target.name,
+                        target.desc
                 );
                 break;
             }
@@ -146,17 +170,17 @@ class AdviceAdapterListener implements EventListener {
                 if (null == wrapAdvice) {
                     return;
                 }
-                final CallTarget target = wrapAdvice.attachment();
+                final CallSite target = wrapAdvice.attachment();
                 if (null == target) {
                     // 这里做一个容灾保护，防止在callBefore()中发生什么异常导致beforeCall()之前失败
                     return;
                 }
                 adviceListener.afterCallThrowing(
                         wrapAdvice.advice,
-                        target.callLineNum,
-                        target.callJavaClassName,
-                        target.callJavaMethodName,
-                        target.callJavaMethodDesc,
+                        target.lineNumber,
+                        target.owner,
+                        target.name,
+                        target.desc,
                         ctEvent.throwException
                 );
                 break;
@@ -226,15 +250,6 @@ class AdviceAdapterListener implements EventListener {
 
     }
 
-    // change internalClassName to javaClassName
-    private String toJavaClassName(final String internalClassName) {
-        if (GaStringUtils.isEmpty(internalClassName)) {
-            return internalClassName;
-        } else {
-            return internalClassName.replaceAll("/", ".");
-        }
-    }
-
     // 提取ClassLoader，从BeforeEvent中获取到的ClassLoader
     private ClassLoader toClassLoader(ClassLoader loader) {
         return null == loader
@@ -309,24 +324,6 @@ class AdviceAdapterListener implements EventListener {
         }
     };
 
-    /**
-     * CALL目标对象
-     */
-    private class CallTarget {
-
-        final int callLineNum;
-        final String callJavaClassName;
-        final String callJavaMethodName;
-        final String callJavaMethodDesc;
-
-        CallTarget(int callLineNum, String callJavaClassName, String callJavaMethodName, String callJavaMethodDesc) {
-            this.callLineNum = callLineNum;
-            this.callJavaClassName = callJavaClassName;
-            this.callJavaMethodName = callJavaMethodName;
-            this.callJavaMethodDesc = callJavaMethodDesc;
-        }
-    }
-
     /**
      * 通知内部封装，主要是要封装掉attachment
      */
@@ -2,6 +2,7 @@ package com.alibaba.jvm.sandbox.api.listener.ext;
 
 import com.alibaba.jvm.sandbox.api.event.Event;
 import com.alibaba.jvm.sandbox.api.filter.AccessFlags;
+import com.alibaba.jvm.sandbox.api.filter.ClassAnchorFilter;
 import com.alibaba.jvm.sandbox.api.filter.ExtFilter;
 import com.alibaba.jvm.sandbox.api.filter.Filter;
 import com.alibaba.jvm.sandbox.api.listener.EventListener;
@@ -11,6 +12,7 @@ import com.alibaba.jvm.sandbox.api.util.GaArrayUtils;
 import com.alibaba.jvm.sandbox.api.util.GaStringUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -250,6 +252,19 @@ public class EventWatchBuilder {
          */
         IBuildingForWatching withLine();
 
+        /**
+         * 采样观察
+         * <p>
+         * 每个线程在每个方法上每{@code interval}次调用只观察一次，没有被采中的调用不会触发任何事件，
+         * BEFORE/RETURN/THROWS总是成对出现
+         * </p>
+         *
+         * @param interval 采样间隔，小于等于1时不采样
+         * @return IBuildingForWatching
+         * @since {@code sandbox-api:1.0.15}
+         */
+        IBuildingForWatching withSampling(int interval);
+
         /**
          * 使用通知监听器观察
          *
@@ -267,6 +282,17 @@ public class EventWatchBuilder {
          */
         EventWatcher onWatch(EventListener eventListener, Event.Type... eventTypeArray);
 
+        /**
+         * 观察行覆盖
+         * <p>
+         * 不派发任何事件，只统计每个代码行的命中次数，通过{@link ModuleEventWatcher#getLineCoverages(int)}查询
+         * </p>
+         *
+         * @return EventWatcher
+         * @since {@code sandbox-api:1.0.15}
+         */
+        EventWatcher onWatchLineCoverage();
+
     }
 
     /**
@@ -530,12 +556,12 @@ public class EventWatchBuilder {
 
         @Override
         public EventWatcher onWatch(final AdviceListener adviceListener) {
-            return build(new AdviceAdapterListener(adviceListener), null, BEFORE, RETURN, THROWS);
+            return build(AdviceAdapterListener.of(adviceListener), null, 0, BEFORE, RETURN, THROWS);
         }
 
         @Override
         public EventWatcher onWatch(EventListener eventListener, Event.Type... eventTypeArray) {
-            return build(eventListener, null, eventTypeArray);
+            return build(eventListener, null, 0, eventTypeArray);
         }
 
     }
@@ -544,6 +570,7 @@ public class EventWatchBuilder {
 
         private final Set<Event.Type> eventTypeSet = new HashSet<Event.Type>();
         private final List<Progress> progresses = new ArrayList<Progress>();
+        private int sampling = 0;
 
         @Override
         public IBuildingForWatching withProgress(Progress progress) {
@@ -553,6 +580,12 @@ public class EventWatchBuilder {
             return this;
         }
 
+        @Override
+        public IBuildingForWatching withSampling(final int interval) {
+            this.sampling = interval;
+            return this;
+        }
+
         @Override
         public IBuildingForWatching withCall() {
             eventTypeSet.add(CALL_BEFORE);
@@ -573,15 +606,21 @@ public class EventWatchBuilder {
             eventTypeSet.add(RETURN);
             eventTypeSet.add(THROWS);
             return build(
-                    new AdviceAdapterListener(adviceListener),
+                    AdviceAdapterListener.of(adviceListener),
                     toProgressGroup(progresses),
+                    sampling,
                     eventTypeSet.toArray(new Event.Type[0])
             );
         }
 
         @Override
         public EventWatcher onWatch(EventListener eventListener, Event.Type... eventTypeArray) {
-            return build(eventListener, toProgressGroup(progresses), eventTypeArray);
+            return build(eventListener, toProgressGroup(progresses), sampling, eventTypeArray);
+        }
+
+        @Override
+        public EventWatcher onWatchLineCoverage() {
+            return toEventWatcher(moduleEventWatcher.watchLineCoverage(toEventWatchCondition(), toProgressGroup(progresses)));
         }
 
     }
@@ -597,7 +636,57 @@ public class EventWatchBuilder {
         for (final BuildingForClass bfClass : bfClasses) {
 
             // 类匹配下的filter生成
-            final Filter filter = new Filter() {
+            final Filter filter = new ClassAnchorFilter() {
+
+                /**
+                 * 类名只可能匹配上类匹配模版
+                 * @return 类名匹配模版
+                 */
+                @Override
+                public String[] getClassNamePatterns() {
+                    return new String[]{bfClass.pattern};
+                }
+
+                /**
+                 * 类必须实现了所要求的接口；匹配子类时类自身或某个父类型必须匹配上类匹配模版
+                 * @return 父类型匹配模版
+                 */
+                @Override
+                public String[] getSuperTypePatterns() {
+                    final String[] interfacePatterns = bfClass.hasInterfaceTypes.toAnchorPatterns();
+                    if (null != interfacePatterns) {
+                        return interfacePatterns;
+                    }
+                    return bfClass.isIncludeSubClasses
+                            ? new String[]{bfClass.pattern}
+                            : null;
+                }
+
+                /**
+                 * 类必须标注了所要求的注解
+                 * @return 类注解匹配模版
+                 */
+                @Override
+                public String[] getAnnotationTypePatterns() {
+                    return bfClass.hasAnnotationTypes.toAnchorPatterns();
+                }
+
+                /**
+                 * 所有行为匹配器都要求注解时，类必须声明了标注这些注解之一的行为
+                 * @return 行为注解匹配模版
+                 */
+                @Override
+                public String[] getBehaviorAnnotationTypePatterns() {
+                    final List<String> patterns = new ArrayList<String>();
+                    for (final BuildingForBehavior bfBehavior : bfClass.bfBehaviors) {
+                        final String[] behaviorPatterns = bfBehavior.hasAnnotationTypes.toAnchorPatterns();
+                        if (null == behaviorPatterns) {
+                            return null;
+                        }
+                        patterns.addAll(Arrays.asList(behaviorPatterns));
+                    }
+                    return patterns.toArray(new String[0]);
+                }
 
                 /**
                  * 是否有匹配类
@@ -686,16 +775,17 @@ public class EventWatchBuilder {
 
     private EventWatcher build(final EventListener listener,
                                final Progress progress,
+                               final int sampling,
                                final Event.Type... eventTypes) {
 
         // 生成watchId先
-        final int watchId = moduleEventWatcher.watch(
-                toEventWatchCondition(),
-                listener,
-                progress,
-                eventTypes
-        );
+        final int watchId = sampling > 1
+                ? moduleEventWatcher.watch(toEventWatchCondition(), listener, progress, sampling, eventTypes)
+                : moduleEventWatcher.watch(toEventWatchCondition(), listener, progress, eventTypes);
+        return toEventWatcher(watchId);
+    }
 
+    private EventWatcher toEventWatcher(final int watchId) {
         return new EventWatcher() {
 
             final List<Progress> progresses = new ArrayList<Progress>();
@@ -812,6 +902,27 @@ public class EventWatchBuilder {
             return false;
         }
 
+        /*
+         * 模式匹配Has的必要条件
+         * 任一匹配组通过即可，每组通过时组内第一个匹配模式必然匹配上，所以取每组的第一个匹配模式；
+         * 模式匹配组为空、或者存在空的匹配组时构不成必要条件，返回null
+         */
+        String[] toAnchorPatterns() {
+            if (groups.isEmpty()) {
+                return null;
+            }
+            final String[] patterns = new String[groups.size()];
+            for (int index = 0; index < patterns.length; index++) {
+                final String[] patternArray = groups.get(index).patternArray;
+                if (patternArray.length == 0
+                        || null == patternArray[0]) {
+                    return null;
+                }
+                patterns[index] = patternArray[0];
+            }
+            return patterns;
+        }
+
     }
 
     /**
@@ -2,6 +2,8 @@ package com.alibaba.jvm.sandbox.api.resource;
 
 import com.alibaba.jvm.sandbox.api.event.Event;
 
+import java.util.List;
+
 /**
  * 事件监控器
  *
@@ -57,4 +59,226 @@ public interface EventMonitor {
      */
     EventPoolInfo getEventPoolInfo();
 
+    /**
+     * 异步事件派发信息
+     *
+     * @since {@code sandbox-api:1.0.15}
+     */
+    interface AsyncEventInfo {
+
+        /**
+         * 获取环形缓冲区容量
+         *
+         * @return 环形缓冲区容量
+         */
+        int getCapacity();
+
+        /**
+         * 获取缓冲区中等待派发的事件数量
+         *
+         * @return 等待派发的事件数量
+         */
+        int getNumPending();
+
+        /**
+         * 获取已派发的事件总数量
+         *
+         * @return 已派发的事件总数量
+         */
+        long getNumDelivered();
+
+        /**
+         * 获取被丢弃的事件总数量
+         * 缓冲区已满，或者监听器冻结时还未派发的事件都会被丢弃
+         *
+         * @return 被丢弃的事件总数量
+         */
+        long getNumDropped();
+
+    }
+
+    /**
+     * 获取异步事件派发信息
+     *
+     * @return 异步事件派发信息
+     * @since {@code sandbox-api:1.0.15}
+     */
+    AsyncEventInfo getAsyncEventInfo();
+
+    /**
+     * 类结构缓存信息
+     *
+     * @since {@code sandbox-api:1.0.15}
+     */
+    interface ClassStructureCacheInfo {
+
+        /**
+         * 获取缓存容量
+         *
+         * @return 缓存容量，为0表示不缓存
+         */
+        int getCapacity();
+
+        /**
+         * 获取当前缓存的类结构数量
+         *
+         * @return 当前缓存的类结构数量
+         */
+        int getSize();
+
+        /**
+         * 获取命中次数
+         *
+         * @return 命中次数
+         */
+        long getHitCount();
+
+        /**
+         * 获取未命中次数
+         *
+         * @return 未命中次数
+         */
+        long getMissCount();
+
+        /**
+         * 获取因超过容量而被淘汰的次数
+         *
+         * @return 淘汰次数
+         */
+        long getEvictionCount();
+
+    }
+
+    /**
+     * 获取类结构缓存信息
+     *
+     * @return 类结构缓存信息
+     * @since {@code sandbox-api:1.0.15}
+     */
+    ClassStructureCacheInfo getClassStructureCacheInfo();
+
+    /**
+     * 监听器信息
+     *
+     * @since {@code sandbox-api:1.0.15}
+     */
+    interface ListenerInfo {
+
+        /**
+         * 获取监听器所属的模块ID
+         *
+         * @return 模块ID
+         */
+        String getModuleId();
+
+        /**
+         * 获取监听器所属的观察ID
+         *
+         * @return 观察ID
+         */
+        int getWatchId();
+
+        /**
+         * 获取监听器ID
+         *
+         * @return 监听器ID
+         */
+        int getListenerId();
+
+        /**
+         * 获取监听器类名
+         *
+         * @return 监听器类名
+         */
+        String getListenerClassName();
+
+        /**
+         * 监听器是否已熔断
+         * <p>
+         * 沙箱启用监听器熔断(listener.breaker.enable=true)后，监听器在一个统计窗口内异常过多或平均耗时过长时会被熔断，
+         * 熔断后织入代码不再回调该监听器，直到重新激活模块或者到达恢复探测时间
+         * </p>
+         *
+         * @return TRUE:已熔断
+         */
+        boolean isTripped();
+
+        /**
+         * 获取监听器熔断次数
+         *
+         * @return 熔断次数
+         */
+        int getTripCount();
+
+        /**
+         * 获取最近一次熔断的原因
+         *
+         * @return 熔断原因，从未熔断时返回null
+         */
+        String getTripReason();
+
+        /**
+         * 获取监听器处理过的指定类型事件数量
+         * <p>
+         * 以下统计均需要沙箱启用监听器统计(listener.statistic.enable=true，默认启用)，
+         * 统计从监听器激活时开始，每个线程各自累计、读取时汇总，为近似值
+         * </p>
+         *
+         * @param type 事件类型
+         * @return 事件数量
+         */
+        long getEventCount(Event.Type type);
+
+        /**
+         * 获取监听器处理过的事件总数量
+         *
+         * @return 事件总数量
+         */
+        long getEventCount();
+
+        /**
+         * 获取监听器处理事件的累计耗时(纳秒)，即监听器占用的应用线程时间
+         *
+         * @return 累计耗时
+         */
+        long getCostNanos();
+
+        /**
+         * 获取监听器单次处理事件的最大耗时(纳秒)
+         *
+         * @return 最大耗时
+         */
+        long getMaxCostNanos();
+
+        /**
+         * 获取监听器处理事件时抛出异常的次数
+         *
+         * @return 异常次数
+         */
+        long getErrorCount();
+
+        /**
+         * 获取监听器通过{@link com.alibaba.jvm.sandbox.api.ProcessControlException}立即返回的次数
+         *
+         * @return 立即返回的次数
+         */
+        long getReturnImmediatelyCount();
+
+        /**
+         * 获取监听器通过{@link com.alibaba.jvm.sandbox.api.ProcessControlException}立即抛出异常的次数
+         *
+         * @return 立即抛出异常的次数
+         */
+        long getThrowsImmediatelyCount();
+
+    }
+
+    /**
+     * 列出所有处于激活状态的监听器信息
+     *
+     * @return 监听器信息集合
+     * @since {@code sandbox-api:1.0.15}
+     */
+    List<ListenerInfo> listListenerInfo();
+
 }
@@ -5,6 +5,9 @@ import com.alibaba.jvm.sandbox.api.filter.Filter;
 import com.alibaba.jvm.sandbox.api.listener.EventListener;
 import com.alibaba.jvm.sandbox.api.listener.ext.EventWatchCondition;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * 事件观察者
  *
@@ -50,6 +53,52 @@ public interface ModuleEventWatcher {
      */
     int watch(EventWatchCondition condition, EventListener listener, Progress progress, Event.Type... eventType);
 
+    /**
+     * 观察事件(采样)
+     * <p>
+     * 采样判断会被直接编织进目标方法，没有被采中的调用不会穿越到容器中，也不会触发任何事件(包括RETURN/THROWS)，
+     * 适合在热点方法上长期开启观察，开销只与采样率有关
+     * </p>
+     *
+     * @param condition 事件观察条件，只有符合条件的类/方法才会被观察
+     * @param listener  事件监听器
+     *                  观察到的事件将会告知此事件监听器
+     * @param progress  观察渲染进度报告
+     * @param sampling  采样间隔，每个线程在每个方法上每{@code sampling}次调用观察一次，小于等于1时不采样
+     * @param eventType 观察事件类型
+     * @return {@code watchId}，本次观察的唯一编号，{@code watcherId}对象将会是整个操作的唯一KEY，后续删除观察事件的时候也需要通过同一个{@code watcherId}来完成
+     * @since {@code sandbox-api:1.0.15}
+     */
+    int watch(EventWatchCondition condition, EventListener listener, Progress progress, int sampling, Event.Type... eventType);
+
+    /**
+     * 观察行覆盖
+     * <p>
+     * 和{@link Event.Type#LINE}事件不同，行覆盖不会为每一行代码穿越到容器中派发事件，
+     * 织入代码只在进入方法时取出一次该方法的计数数组，之后每执行一行只做一次数组自增，适合在生产流量上长期开启，
+     * 用于发现从未被执行过的代码和热点代码行
+     * </p>
+     * <p>
+     * 计数不加锁，并发执行同一行时可能会少计，只适合做统计分析；行覆盖不受模块冻结/激活的影响，直到{@link #delete(int)}为止
+     * </p>
+     *
+     * @param condition 观察条件，只有符合条件的类/方法才会被统计行覆盖
+     * @param progress  观察渲染进度报告
+     * @return {@code watchId}，本次观察的唯一编号，后续查询行覆盖和删除观察都需要通过同一个{@code watchId}来完成
+     * @since {@code sandbox-api:1.0.15}
+     */
+    int watchLineCoverage(EventWatchCondition condition, Progress progress);
+
+    /**
+     * 获取行覆盖
+     *
+     * @param watchId {@code watchId}观察唯一编号
+     *                在{@link #watchLineCoverage(EventWatchCondition, Progress)}方法返回值获得
+     * @return 所有被观察方法的行覆盖，观察不存在时返回空集合
+     * @since {@code sandbox-api:1.0.15}
+     */
+    List<LineCoverage> getLineCoverages(int watchId);
+
     /**
      * 删除观察事件
      *
@@ -180,4 +229,44 @@ public interface ModuleEventWatcher {
 
     }
 
+
+    /**
+     * 方法行覆盖
+     *
+     * @since {@code sandbox-api:1.0.15}
+     */
+    class LineCoverage {
+
+        /**
+         * 类名称
+         */
+        public final String javaClassName;
+
+        /**
+         * 方法名称
+         */
+        public final String javaMethodName;
+
+        /**
+         * 方法签名
+         */
+        public final String javaMethodDesc;
+
+        /**
+         * 行号命中次数，按行号排序，从未执行过的行命中次数为0
+         */
+        public final Map<Integer/*LINE_NUMBER*/, Integer/*HITS*/> lineHits;
+
+        public LineCoverage(final String javaClassName,
+                            final String javaMethodName,
+                            final String javaMethodDesc,
+                            final Map<Integer, Integer> lineHits) {
+            this.javaClassName = javaClassName;
+            this.javaMethodName = javaMethodName;
+            this.javaMethodDesc = javaMethodDesc;
+            this.lineHits = lineHits;
+        }
+
+    }
+
 }
@@ -50,6 +50,45 @@ public class CoreConfigure {
 
     private static final String KEY_UNSAFE_ENABLE = "unsafe.enable";
 
+    // ------------------------------------- 自调用屏障配置 -------------------------------------
+    private static final String KEY_SELF_CALL_BARRIER = "self.call.barrier";
+    private static final String VAL_SELF_CALL_BARRIER_SYNCHRONIZED = "synchronized";
+
+    // ------------------------------------- 调用ID配置 -------------------------------------
+    private static final String KEY_INVOKE_ID_64BIT = "invoke.id.64bit";
+    private static final String KEY_INVOKE_ID_BLOCK_SIZE = "invoke.id.block.size";
+    private static final int DEFAULT_VAL_INVOKE_ID_BLOCK_SIZE = 256;
+
+    // ------------------------------------- 异步事件配置 -------------------------------------
+    private static final String KEY_EVENT_ASYNC_BUFFER_SIZE = "event.async.buffer.size";
+    private static final int DEFAULT_VAL_EVENT_ASYNC_BUFFER_SIZE = 8192;
+    private static final String KEY_EVENT_ASYNC_WORKERS = "event.async.workers";
+    private static final int DEFAULT_VAL_EVENT_ASYNC_WORKERS = 1;
+    private static final String KEY_EVENT_ASYNC_BATCH_SIZE = "event.async.batch.size";
+    private static final int DEFAULT_VAL_EVENT_ASYNC_BATCH_SIZE = 64;
+
+    // ------------------------------------- 监听器熔断配置 -------------------------------------
+    private static final String KEY_LISTENER_BREAKER_ENABLE = "listener.breaker.enable";
+    private static final String KEY_LISTENER_BREAKER_WINDOW_MS = "listener.breaker.window.ms";
+    private static final long DEFAULT_VAL_LISTENER_BREAKER_WINDOW_MS = 10000L;
+    private static final String KEY_LISTENER_BREAKER_ERROR_THRESHOLD = "listener.breaker.error.threshold";
+    private static final int DEFAULT_VAL_LISTENER_BREAKER_ERROR_THRESHOLD = 100;
+    private static final String KEY_LISTENER_BREAKER_SLOW_THRESHOLD_US = "listener.breaker.slow.threshold.us";
+    private static final long DEFAULT_VAL_LISTENER_BREAKER_SLOW_THRESHOLD_US = 0L;
+    private static final String KEY_LISTENER_BREAKER_PROBE_MS = "listener.breaker.probe.ms";
+    private static final long DEFAULT_VAL_LISTENER_BREAKER_PROBE_MS = 60000L;
+
+    // ------------------------------------- 监听器统计配置 -------------------------------------
+    private static final String KEY_LISTENER_STATISTIC_ENABLE = "listener.statistic.enable";
+
+    // ------------------------------------- 类结构缓存配置 -------------------------------------
+    private static final String KEY_CLASS_STRUCTURE_CACHE_SIZE = "class.structure.cache.size";
+    public static final int DEFAULT_VAL_CLASS_STRUCTURE_CACHE_SIZE = 2048;
+
+    // ------------------------------------- 已加载类检索配置 -------------------------------------
+    private static final String KEY_LOADED_CLASS_MATCH_PARALLELISM = "loaded.class.match.parallelism";
+    private static final String KEY_LOADED_CLASS_INDEX_ENABLE = "loaded.class.index.enable";
+
     // 受保护key数组，在保护key范围之内，如果前端已经传递过参数了，只能认前端，后端无法修改
     private static final String[] PROTECT_KEY_ARRAY = {KEY_NAMESPACE, KEY_SANDBOX_HOME, KEY_LAUNCH_MODE, KEY_SERVER_IP, KEY_SERVER_PORT};
 
@@ -291,6 +330,197 @@ public class CoreConfigure {
         return BooleanUtils.toBoolean(featureMap.get(KEY_UNSAFE_ENABLE));
     }
 
+    /**
+     * 是否使用线程独占标记实现的自调用屏障
+     * <p>
+     * 默认使用线程独占标记实现(thread-local)，配置为{@code synchronized}时退回到原有的加锁实现
+     * </p>
+     *
+     * @return self.call.barrier != synchronized
+     */
+    public boolean isThreadLocalSelfCallBarrier() {
+        return !StringUtils.equalsIgnoreCase(
+                featureMap.get(KEY_SELF_CALL_BARRIER),
+                VAL_SELF_CALL_BARRIER_SYNCHRONIZED
+        );
+    }
+
+    /**
+     * 是否启用64位调用ID
+     * <p>
+     * 启用后调用过程ID和调用ID以{@code long}生成，通过{@code InvokeEvent#longProcessId}和{@code InvokeEvent#longInvokeId}获取，
+     * 不会发生溢出回绕；未启用时保持原有的32位调用ID
+     * </p>
+     *
+     * @return invoke.id.64bit
+     */
+    public boolean isInvokeId64Bit() {
+        return BooleanUtils.toBoolean(featureMap.get(KEY_INVOKE_ID_64BIT));
+    }
+
+    /**
+     * 获取每个线程一次预留的调用ID区间大小
+     *
+     * @return invoke.id.block.size
+     */
+    public int getInvokeIdBlockSize() {
+        return NumberUtils.toInt(
+                featureMap.get(KEY_INVOKE_ID_BLOCK_SIZE),
+                DEFAULT_VAL_INVOKE_ID_BLOCK_SIZE
+        );
+    }
+
+    /**
+     * 获取异步事件环形缓冲区容量，实际容量会向上取整为2的幂
+     *
+     * @return event.async.buffer.size
+     */
+    public int getEventAsyncBufferSize() {
+        return NumberUtils.toInt(
+                featureMap.get(KEY_EVENT_ASYNC_BUFFER_SIZE),
+                DEFAULT_VAL_EVENT_ASYNC_BUFFER_SIZE
+        );
+    }
+
+    /**
+     * 获取异步事件派发线程数量
+     * <p>
+     * 只有一个派发线程时同一个监听器的事件保持触发顺序
+     * </p>
+     *
+     * @return event.async.workers
+     */
+    public int getEventAsyncWorkers() {
+        return NumberUtils.toInt(
+                featureMap.get(KEY_EVENT_ASYNC_WORKERS),
+                DEFAULT_VAL_EVENT_ASYNC_WORKERS
+        );
+    }
+
+    /**
+     * 获取派发线程每批从缓冲区中取出的最大事件数量
+     *
+     * @return event.async.batch.size
+     */
+    public int getEventAsyncBatchSize() {
+        return NumberUtils.toInt(
+                featureMap.get(KEY_EVENT_ASYNC_BATCH_SIZE),
+                DEFAULT_VAL_EVENT_ASYNC_BATCH_SIZE
+        );
+    }
+
+    /**
+     * 是否启用监听器熔断
+     *
+     * @return listener.breaker.enable
+     */
+    public boolean isListenerBreakerEnable() {
+        return BooleanUtils.toBoolean(featureMap.get(KEY_LISTENER_BREAKER_ENABLE));
+    }
+
+    /**
+     * 获取监听器熔断的统计窗口(毫秒)
+     *
+     * @return listener.breaker.window.ms
+     */
+    public long getListenerBreakerWindowMs() {
+        return NumberUtils.toLong(
+                featureMap.get(KEY_LISTENER_BREAKER_WINDOW_MS),
+                DEFAULT_VAL_LISTENER_BREAKER_WINDOW_MS
+        );
+    }
+
+    /**
+     * 获取一个统计窗口内触发熔断的异常次数，小于等于0时不按异常熔断
+     *
+     * @return listener.breaker.error.threshold
+     */
+    public int getListenerBreakerErrorThreshold() {
+        return NumberUtils.toInt(
+                featureMap.get(KEY_LISTENER_BREAKER_ERROR_THRESHOLD),
+                DEFAULT_VAL_LISTENER_BREAKER_ERROR_THRESHOLD
+        );
+    }
+
+    /**
+     * 获取一个统计窗口内触发熔断的平均耗时(微秒)，小于等于0时不统计耗时
+     *
+     * @return listener.breaker.slow.threshold.us
+     */
+    public long getListenerBreakerSlowThresholdUs() {
+        return NumberUtils.toLong(
+                featureMap.get(KEY_LISTENER_BREAKER_SLOW_THRESHOLD_US),
+                DEFAULT_VAL_LISTENER_BREAKER_SLOW_THRESHOLD_US
+        );
+    }
+
+    /**
+     * 获取熔断后自动恢复探测的间隔(毫秒)，小于等于0时不自动恢复
+     * 连续熔断时间隔加倍
+     *
+     * @return listener.breaker.probe.ms
+     */
+    public long getListenerBreakerProbeMs() {
+        return NumberUtils.toLong(
+                featureMap.get(KEY_LISTENER_BREAKER_PROBE_MS),
+                DEFAULT_VAL_LISTENER_BREAKER_PROBE_MS
+        );
+    }
+
+    /**
+     * 是否启用监听器开销统计，默认启用
+     *
+     * @return listener.statistic.enable != false
+     */
+    public boolean isListenerStatisticEnable() {
+        return !StringUtils.equalsIgnoreCase(
+                featureMap.get(KEY_LISTENER_STATISTIC_ENABLE),
+                "false"
+        );
+    }
+
+    /**
+     * 获取类结构缓存的容量，小于等于0时不缓存
+     *
+     * @return class.structure.cache.size
+     */
+    public int getClassStructureCacheSize() {
+        return NumberUtils.toInt(
+                featureMap.get(KEY_CLASS_STRUCTURE_CACHE_SIZE),
+                DEFAULT_VAL_CLASS_STRUCTURE_CACHE_SIZE
+        );
+    }
+
+    /**
+     * 获取检索已加载类时的并行线程数
+     * <p>
+     * 未配置或小于等于0时取CPU核数的1/4(至少为1)，避免检索时抢占应用的CPU；为1时在当前线程中顺序检索
+     * </p>
+     *
+     * @return loaded.class.match.parallelism
+     */
+    public int getLoadedClassMatchParallelism() {
+        final int parallelism = NumberUtils.toInt(featureMap.get(KEY_LOADED_CLASS_MATCH_PARALLELISM), 0);
+        return parallelism > 0
+                ? parallelism
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+    }
+
+    /**
+     * 是否启用已加载类索引，默认启用
+     * <p>
+     * 启用后检索已加载类时按类名、父类型和注解从索引中挑选可能匹配的类，不再遍历JVM中所有已加载的类
+     * </p>
+     *
+     * @return loaded.class.index.enable != false
+     */
+    public boolean isLoadedClassIndexEnable() {
+        return !StringUtils.equalsIgnoreCase(
+                featureMap.get(KEY_LOADED_CLASS_INDEX_ENABLE),
+                "false"
+        );
+    }
+
     /**
      * 获取沙箱安装目录
      *
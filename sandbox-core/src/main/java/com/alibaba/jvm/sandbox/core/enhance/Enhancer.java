@@ -1,7 +1,9 @@
 package com.alibaba.jvm.sandbox.core.enhance;
 
 import com.alibaba.jvm.sandbox.api.event.Event;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.JoinPoint;
 
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -26,4 +28,31 @@ public interface Enhancer {
                            int listenerId,
                            Event.Type[] eventTypeArray);
 
+    /**
+     * 转换为增强后的字节码数组
+     * 每个行为只织入一个调用点，由调用点决定织入的监听器ID和事件类型
+     *
+     * @param loader           目标类加载器
+     * @param srcByteCodeArray 源字节码数组
+     * @param joinPoints       需要被增强的行为签名与调用点映射
+     * @return 增强后的字节码数组
+     */
+    byte[] toByteCodeArray(ClassLoader loader,
+                           byte[] srcByteCodeArray,
+                           Map<String/*BehaviorStructure#getSignCode()*/, JoinPoint> joinPoints);
+
+    /**
+     * 转换为统计行覆盖的字节码数组
+     *
+     * @param loader           目标类加载器
+     * @param srcByteCodeArray 源字节码数组
+     * @param signCodes        需要统计行覆盖的行为签名
+     * @param listenerId       行覆盖所属的监听器ID
+     * @return 增强后的字节码数组
+     */
+    byte[] toLineCoverageByteCodeArray(ClassLoader loader,
+                                       byte[] srcByteCodeArray,
+                                       Set<String> signCodes,
+                                       int listenerId);
+
 }
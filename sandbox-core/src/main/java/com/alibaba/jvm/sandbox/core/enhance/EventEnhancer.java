@@ -1,8 +1,9 @@
 package com.alibaba.jvm.sandbox.core.enhance;
 
 import com.alibaba.jvm.sandbox.api.event.Event;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.JoinPoint;
 import com.alibaba.jvm.sandbox.core.enhance.weaver.asm.EventWeaver;
-import com.alibaba.jvm.sandbox.core.util.ObjectIDs;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.asm.LineCoverageWeaver;
 import com.alibaba.jvm.sandbox.core.util.SpyUtils;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
@@ -10,6 +11,8 @@ import org.objectweb.asm.Opcodes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 import static com.alibaba.jvm.sandbox.core.util.SandboxStringUtils.toInternalClassName;
@@ -81,19 +84,17 @@ public class EventEnhancer implements Enhancer {
      */
     private byte[] weavingEvent(final ClassLoader targetClassLoader,
                                 final byte[] sourceByteCodeArray,
-                                final Set<String> signCodes,
-                                final int listenerId,
-                                final Event.Type[] eventTypeArray) {
+                                final Map<String, JoinPoint> joinPoints) {
         final ClassReader cr = new ClassReader(sourceByteCodeArray);
         final ClassWriter cw = createClassWriter(targetClassLoader, cr);
-        final int targetClassLoaderObjectID = ObjectIDs.instance.identity(targetClassLoader);
         cr.accept(
                 new EventWeaver(
-                        Opcodes.ASM6, cw, listenerId,
-                        targetClassLoaderObjectID,
+                        Opcodes.ASM6, cw,
+                        targetClassLoader,
                         cr.getClassName(),
-                        signCodes,
-                        eventTypeArray
+                        joinPoints,
+                        SpyUtils.isListenerGuardSupported(),
+                        SpyUtils.isSiteIdSupported()
                 ),
                 EXPAND_FRAMES
         );
@@ -134,6 +135,18 @@ public class EventEnhancer implements Enhancer {
                                   final Set<String> signCodes,
                                   final int listenerId,
                                   final Event.Type[] eventTypeArray) {
+        final JoinPoint joinPoint = new JoinPoint(listenerId, eventTypeArray);
+        final Map<String, JoinPoint> joinPoints = new HashMap<String, JoinPoint>();
+        for (final String signCode : signCodes) {
+            joinPoints.put(signCode, joinPoint);
+        }
+        return toByteCodeArray(targetClassLoader, byteCodeArray, joinPoints);
+    }
+
+    @Override
+    public byte[] toByteCodeArray(final ClassLoader targetClassLoader,
+                                  final byte[] byteCodeArray,
+                                  final Map<String, JoinPoint> joinPoints) {
         // 如果定义间谍类失败了,则后续不需要增强
         try {
             SpyUtils.init();
@@ -144,7 +157,31 @@ public class EventEnhancer implements Enhancer {
         }
 
         // 返回增强后字节码
-        return weavingEvent(targetClassLoader, byteCodeArray, signCodes, listenerId, eventTypeArray);
+        return weavingEvent(targetClassLoader, byteCodeArray, joinPoints);
+    }
+
+    @Override
+    public byte[] toLineCoverageByteCodeArray(final ClassLoader targetClassLoader,
+                                              final byte[] byteCodeArray,
+                                              final Set<String> signCodes,
+                                              final int listenerId) {
+        if (!SpyUtils.isLineCoverageSupported()) {
+            logger.warn("line-coverage is not supported by Spy in BootstrapClassLoader, ignore enhance.");
+            return byteCodeArray;
+        }
+        final ClassReader cr = new ClassReader(byteCodeArray);
+        final ClassWriter cw = createClassWriter(targetClassLoader, cr);
+        cr.accept(
+                new LineCoverageWeaver(
+                        Opcodes.ASM6, cw,
+                        targetClassLoader,
+                        cr.getClassName(),
+                        signCodes,
+                        listenerId
+                ),
+                EXPAND_FRAMES
+        );
+        return cw.toByteArray();
     }
 
 }
@@ -0,0 +1,509 @@
+package com.alibaba.jvm.sandbox.core.enhance.weaver;
+
+import com.alibaba.jvm.sandbox.api.event.*;
+import com.alibaba.jvm.sandbox.core.util.EventPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步事件派发器
+ * <p>
+ * 应用线程只把事件的字段复制到预先分配好的有界环形缓冲区的槽位中，不分配对象、不加锁、也不会阻塞，
+ * 缓冲区满时事件直接被丢弃并计数；
+ * 派发线程成批地从缓冲区中取出事件，在派发线程上从事件池借出事件对象并回调监听器
+ * </p>
+ * <p>
+ * 缓冲区是一个多生产者多消费者的有界队列：每个槽位带有一个序号，生产者和消费者各自通过CAS推进位置，
+ * 槽位序号决定槽位当前能否被写入或读取；
+ * 一个槽位也可以保存一次完整调用过程的事件快照，派发线程取出后按顺序逐个回调
+ * </p>
+ * <p>
+ * 派发线程在第一个异步监听器激活时启动，在最后一个异步监听器冻结后取完缓冲区中残留的事件后退出；
+ * 缓冲区为空时派发线程休眠，直到应用线程把缓冲区从空写为非空时唤醒
+ * </p>
+ */
+class AsyncEventDispatcher {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final EventPool eventPool;
+    private final Slot[] slots;
+    private final int capacity;
+    private final int mask;
+    private final int workerNum;
+    private final int batchSize;
+
+    // 生产者位置
+    private final AtomicLong tail = new AtomicLong();
+
+    // 消费者位置
+    private final AtomicLong head = new AtomicLong();
+
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    // 处于激活状态的异步监听器数量
+    private int activeListenerCount = 0;
+
+    // 派发线程序列
+    private int workerSequence = 0;
+
+    // 正在运行的派发线程，应用线程唤醒派发线程时读取
+    private volatile Worker[] workers;
+
+    AsyncEventDispatcher(final EventPool eventPool,
+                         final int bufferSize,
+                         final int workerNum,
+                         final int batchSize) {
+        this.eventPool = eventPool;
+        this.capacity = toCapacity(bufferSize);
+        this.mask = capacity - 1;
+        this.workerNum = Math.max(1, workerNum);
+        this.batchSize = Math.max(1, batchSize);
+        this.slots = new Slot[capacity];
+        for (int index = 0; index < capacity; index++) {
+            slots[index] = new Slot(index);
+        }
+        logger.info("init async-event dispatcher[capacity={};workers={};batch-size={};]",
+                capacity,
+                this.workerNum,
+                this.batchSize
+        );
+    }
+
+    // 容量向上取整为2的幂，下标计算只需要一次位与
+    private static int toCapacity(final int bufferSize) {
+        int capacity = 2;
+        while (capacity < bufferSize
+                && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * 写入事件，缓冲区已满时直接返回
+     *
+     * @param listener 异步监听器
+     * @param event    事件，方法返回后事件对象可以被归还到事件池
+     * @return TRUE:写入成功；FALSE：缓冲区已满
+     */
+    boolean offer(final AsyncEventListener listener,
+                  final Event event) {
+        final long position = claim();
+        if (position < 0) {
+            return false;
+        }
+        slots[(int) (position & mask)].write(listener, event);
+        publish(position);
+        return true;
+    }
+
+    /**
+     * 写入一次完整调用过程的事件快照，缓冲区已满时直接返回
+     *
+     * @param listener  异步监听器
+     * @param snapshots 按触发顺序排列的事件快照
+     * @return TRUE:写入成功；FALSE：缓冲区已满
+     */
+    boolean offer(final AsyncEventListener listener,
+                  final List<EventSnapshot> snapshots) {
+        final long position = claim();
+        if (position < 0) {
+            return false;
+        }
+        slots[(int) (position & mask)].write(listener, snapshots);
+        publish(position);
+        return true;
+    }
+
+    // 抢占一个可写的槽位，缓冲区已满时返回-1
+    private long claim() {
+        long position = tail.get();
+        while (true) {
+            final long difference = slots[(int) (position & mask)].sequence - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return -1;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    // 发布槽位，缓冲区由空变为非空时唤醒正在休眠的派发线程
+    // 这里必须是volatile写：与派发线程"先声明休眠再检查缓冲区"配对，保证两边至少有一方能看到对方
+    private void publish(final long position) {
+        slots[(int) (position & mask)].sequence = position + 1;
+        if (position == head.get()) {
+            final Worker[] workers = this.workers;
+            if (null != workers) {
+                for (final Worker worker : workers) {
+                    if (worker.isParking) {
+                        LockSupport.unpark(worker);
+                    }
+                }
+            }
+        }
+    }
+
+    // 从缓冲区中取出一个槽位的内容放到批次的指定下标，缓冲区为空时返回FALSE
+    private boolean poll(final AsyncEventListener[] listeners,
+                         final Event[] events,
+                         final List<EventSnapshot>[] processes,
+                         final int index) {
+        long position = head.get();
+        Slot slot;
+        while (true) {
+            slot = slots[(int) (position & mask)];
+            final long difference = slot.sequence - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = head.get();
+            }
+        }
+        listeners[index] = slot.listener;
+        if (null == slot.snapshots) {
+            events[index] = slot.toEvent(eventPool);
+        } else {
+            processes[index] = slot.snapshots;
+        }
+        slot.clear();
+        Slot.SEQUENCE_UPDATER.lazySet(slot, position + capacity);
+        return true;
+    }
+
+    // 缓冲区中是否有可读取的槽位
+    private boolean isReadable() {
+        final long position = head.get();
+        return slots[(int) (position & mask)].sequence != position;
+    }
+
+    /**
+     * 丢弃计数
+     *
+     * @param count 被丢弃的事件数量
+     */
+    void dropped(final int count) {
+        droppedCount.addAndGet(count);
+    }
+
+    /**
+     * 异步监听器激活，必要时启动派发线程
+     */
+    synchronized void acquire() {
+        if (activeListenerCount++ > 0) {
+            return;
+        }
+        final Worker[] workers = new Worker[workerNum];
+        for (int index = 0; index < workerNum; index++) {
+            final Worker worker = new Worker("sandbox-async-event-dispatcher-" + (++workerSequence));
+            worker.start();
+            workers[index] = worker;
+        }
+        this.workers = workers;
+        logger.info("async-event dispatcher started, workers={};", workerNum);
+    }
+
+    /**
+     * 异步监听器冻结，没有激活的异步监听器时通知派发线程退出
+     */
+    synchronized void release() {
+        if (activeListenerCount <= 0
+                || --activeListenerCount > 0) {
+            return;
+        }
+        for (final Worker worker : workers) {
+            worker.isRunning = false;
+            LockSupport.unpark(worker);
+        }
+        workers = null;
+        logger.info("async-event dispatcher stopping, pending={};", getNumPending());
+    }
+
+    /**
+     * 获取缓冲区容量
+     *
+     * @return 缓冲区容量
+     */
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 获取缓冲区中等待派发的事件数量(近似值)
+     *
+     * @return 等待派发的事件数量
+     */
+    int getNumPending() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    /**
+     * 获取已派发的事件数量
+     *
+     * @return 已派发的事件数量
+     */
+    long getNumDelivered() {
+        return deliveredCount.get();
+    }
+
+    /**
+     * 获取被丢弃的事件数量
+     *
+     * @return 被丢弃的事件数量
+     */
+    long getNumDropped() {
+        return droppedCount.get();
+    }
+
+    /**
+     * 派发线程
+     */
+    private class Worker extends Thread {
+
+        private volatile boolean isRunning = true;
+
+        // 派发线程准备休眠或正在休眠
+        private volatile boolean isParking = false;
+
+        Worker(final String name) {
+            super(name);
+            setDaemon(true);
+            setContextClassLoader(AsyncEventDispatcher.class.getClassLoader());
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void run() {
+            final AsyncEventListener[] listeners = new AsyncEventListener[batchSize];
+            final Event[] events = new Event[batchSize];
+            final List<EventSnapshot>[] processes = new List[batchSize];
+            while (true) {
+
+                // 成批取出事件
+                int size = 0;
+                while (size < batchSize
+                        && poll(listeners, events, processes, size)) {
+                    size++;
+                }
+
+                // 缓冲区为空：已经停止则退出，否则休眠到应用线程写入事件时唤醒
+                // 先声明休眠再检查一次缓冲区，避免在检查和休眠之间错过应用线程的唤醒
+                if (size == 0) {
+                    if (!isRunning) {
+                        break;
+                    }
+                    isParking = true;
+                    if (!isReadable()) {
+                        LockSupport.park(this);
+                    }
+                    isParking = false;
+                    continue;
+                }
+
+                long delivered = 0;
+                for (int index = 0; index < size; index++) {
+                    try {
+                        if (null == processes[index]) {
+                            if (deliver(listeners[index], events[index])) {
+                                delivered++;
+                            }
+                        } else {
+                            for (final EventSnapshot snapshot : processes[index]) {
+                                if (deliver(listeners[index], snapshot.toEvent(eventPool))) {
+                                    delivered++;
+                                }
+                            }
+                        }
+                    } finally {
+                        listeners[index] = null;
+                        events[index] = null;
+                        processes[index] = null;
+                    }
+                }
+                deliveredCount.addAndGet(delivered);
+
+            }
+            logger.info("{} exited.", getName());
+        }
+
+        // 回调监听器后归还事件
+        private boolean deliver(final AsyncEventListener listener,
+                                final Event event) {
+            try {
+                return listener.deliver(event);
+            } finally {
+                eventPool.returnEvent(event);
+            }
+        }
+
+    }
+
+    /**
+     * 事件快照，只保存重建事件所需要的字段
+     */
+    static class EventSnapshot {
+
+        private Event.Type type;
+        private long processId;
+        private long invokeId;
+        private ClassLoader javaClassLoader;
+        private String javaClassName;
+        private String javaMethodName;
+        private String javaMethodDesc;
+        private Object target;
+        private Object[] argumentArray;
+        private Object object;
+        private Throwable throwable;
+        private int lineNumber;
+        private CallSite callSite;
+        private String throwException;
+
+        void write(final Event event) {
+            this.type = event.type;
+            if (event instanceof InvokeEvent) {
+                final InvokeEvent invokeEvent = (InvokeEvent) event;
+                this.processId = invokeEvent.longProcessId;
+                this.invokeId = invokeEvent.longInvokeId;
+            }
+            switch (event.type) {
+                case BEFORE: {
+                    final BeforeEvent beforeEvent = (BeforeEvent) event;
+                    this.javaClassLoader = beforeEvent.javaClassLoader;
+                    this.javaClassName = beforeEvent.javaClassName;
+                    this.javaMethodName = beforeEvent.javaMethodName;
+                    this.javaMethodDesc = beforeEvent.javaMethodDesc;
+                    this.target = beforeEvent.target;
+                    this.argumentArray = beforeEvent.argumentArray;
+                    break;
+                }
+                case RETURN:
+                case IMMEDIATELY_RETURN: {
+                    this.object = ((ReturnEvent) event).object;
+                    break;
+                }
+                case THROWS:
+                case IMMEDIATELY_THROWS: {
+                    this.throwable = ((ThrowsEvent) event).throwable;
+                    break;
+                }
+                case LINE: {
+                    this.lineNumber = ((LineEvent) event).lineNumber;
+                    break;
+                }
+                case CALL_BEFORE: {
+                    this.callSite = ((CallBeforeEvent) event).callSite;
+                    break;
+                }
+                case CALL_THROWS: {
+                    this.throwException = ((CallThrowsEvent) event).throwException;
+                    break;
+                }
+                case CALL_RETURN:
+                default:
+            }
+        }
+
+        Event toEvent(final EventPool eventPool) {
+            switch (type) {
+                case BEFORE:
+                    return eventPool.borrowBeforeEvent(
+                            processId, invokeId,
+                            javaClassLoader, javaClassName, javaMethodName, javaMethodDesc,
+                            target, argumentArray
+                    );
+                case RETURN:
+                    return eventPool.borrowReturnEvent(processId, invokeId, object);
+                case IMMEDIATELY_RETURN:
+                    return eventPool.borrowImmediatelyReturnEvent(processId, invokeId, object);
+                case THROWS:
+                    return eventPool.borrowThrowsEvent(processId, invokeId, throwable);
+                case IMMEDIATELY_THROWS:
+                    return eventPool.borrowImmediatelyThrowsEvent(processId, invokeId, throwable);
+                case LINE:
+                    return eventPool.borrowLineEvent(processId, invokeId, lineNumber);
+                case CALL_BEFORE:
+                    return eventPool.borrowCallBeforeEvent(processId, invokeId, callSite);
+                case CALL_RETURN:
+                    return eventPool.borrowCallReturnEvent(processId, invokeId);
+                case CALL_THROWS:
+                default:
+                    return eventPool.borrowCallThrowsEvent(processId, invokeId, throwException);
+            }
+        }
+
+        // 释放对应用对象的引用
+        void clear() {
+            type = null;
+            javaClassLoader = null;
+            javaClassName = null;
+            javaMethodName = null;
+            javaMethodDesc = null;
+            target = null;
+            argumentArray = null;
+            object = null;
+            throwable = null;
+            callSite = null;
+            throwException = null;
+        }
+
+    }
+
+    /**
+     * 缓冲区槽位，保存一个事件的快照或一次调用过程的事件快照
+     */
+    private static class Slot extends EventSnapshot {
+
+        private static final AtomicLongFieldUpdater<Slot> SEQUENCE_UPDATER
+                = AtomicLongFieldUpdater.newUpdater(Slot.class, "sequence");
+
+        // 槽位序号：等于生产者位置时可写，等于生产者位置+1时可读
+        private volatile long sequence;
+
+        private AsyncEventListener listener;
+
+        // 按调用过程整体派发时的事件快照，逐个事件派发时为null
+        private List<EventSnapshot> snapshots;
+
+        Slot(final long sequence) {
+            this.sequence = sequence;
+        }
+
+        void write(final AsyncEventListener listener,
+                   final Event event) {
+            this.listener = listener;
+            write(event);
+        }
+
+        void write(final AsyncEventListener listener,
+                   final List<EventSnapshot> snapshots) {
+            this.listener = listener;
+            this.snapshots = snapshots;
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            listener = null;
+            snapshots = null;
+        }
+
+    }
+
+}
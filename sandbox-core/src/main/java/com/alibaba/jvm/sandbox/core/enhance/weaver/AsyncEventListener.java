@@ -0,0 +1,202 @@
+package com.alibaba.jvm.sandbox.core.enhance.weaver;
+
+import com.alibaba.jvm.sandbox.api.ProcessControlException;
+import com.alibaba.jvm.sandbox.api.annotation.Asynchronous;
+import com.alibaba.jvm.sandbox.api.event.Event;
+import com.alibaba.jvm.sandbox.api.listener.EventListener;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.AsyncEventDispatcher.EventSnapshot;
+import org.apache.commons.lang3.ArrayUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步事件监听器
+ * <p>
+ * 拥有{@link Asynchronous}标注的监听器会被包装成异步监听器：
+ * 应用线程上只把事件写入{@link AsyncEventDispatcher}的环形缓冲区，由派发线程回调被包装的监听器；
+ * {@link Asynchronous#byProcess()}时事件先记录在应用线程的调用过程中，顶层调用结束时整体写入缓冲区；
+ * 调用过程靠RETURN/THROWS判断结束，监听器没有同时订阅这两种事件时退化为逐个事件派发，避免调用过程永远不结束
+ * </p>
+ */
+class AsyncEventListener implements EventListener {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final int listenerId;
+    private final EventListener listener;
+    private final AsyncEventDispatcher dispatcher;
+
+    // 是否按调用过程整体派发
+    private final boolean isByProcess;
+
+    // 当前线程正在记录的调用过程
+    private final ThreadLocal<ProcessRecord> processRecordRef = new ThreadLocal<ProcessRecord>() {
+        @Override
+        protected ProcessRecord initialValue() {
+            return new ProcessRecord();
+        }
+    };
+
+    // 因缓冲区已满或监听器已冻结而被丢弃的事件数量
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    // 监听器冻结后，缓冲区中残留的事件不再派发
+    private volatile boolean isActive = true;
+
+    AsyncEventListener(final int listenerId,
+                       final EventListener listener,
+                       final Event.Type[] eventTypeArray,
+                       final AsyncEventDispatcher dispatcher) {
+        this.listenerId = listenerId;
+        this.listener = listener;
+        this.dispatcher = dispatcher;
+        this.isByProcess = isByProcess(listenerId, listener, eventTypeArray);
+    }
+
+    // 只有同时订阅了RETURN和THROWS，才能知道每一次调用在哪里结束
+    private boolean isByProcess(final int listenerId,
+                                final EventListener listener,
+                                final Event.Type[] eventTypeArray) {
+        if (!listener.getClass().getAnnotation(Asynchronous.class).byProcess()) {
+            return false;
+        }
+        if (ArrayUtils.contains(eventTypeArray, Event.Type.RETURN)
+                && ArrayUtils.contains(eventTypeArray, Event.Type.THROWS)) {
+            return true;
+        }
+        logger.warn("asynchronous listener without RETURN and THROWS can not be delivered by process, deliver events one by one. listener-id={};event-types={};listener={};",
+                listenerId, Arrays.toString(eventTypeArray), listener
+        );
+        return false;
+    }
+
+    @Override
+    public void onEvent(final Event event) {
+        if (isByProcess) {
+            record(event);
+        } else if (!dispatcher.offer(this, event)) {
+            dropped(1);
+        }
+    }
+
+    // 把事件记录到当前线程的调用过程中，顶层调用结束时整体写入缓冲区
+    private void record(final Event event) {
+        final ProcessRecord record = processRecordRef.get();
+        if (!record.append(event)) {
+            return;
+        }
+        processRecordRef.remove();
+        if (record.isOverflow) {
+            dropped(record.count);
+        } else if (!dispatcher.offer(this, record.snapshots)) {
+            dropped(record.count);
+        }
+    }
+
+    /**
+     * 在派发线程上回调被包装的监听器
+     *
+     * @param event 事件
+     * @return TRUE:已派发；FALSE：监听器已冻结，事件被丢弃
+     */
+    boolean deliver(final Event event) {
+        if (!isActive) {
+            dropped(1);
+            return false;
+        }
+        try {
+            listener.onEvent(event);
+        } catch (ProcessControlException pce) {
+            logger.warn("asynchronous listener can not change process, ignored. listener-id={};type={};state={};",
+                    listenerId, event.type, pce.getState()
+            );
+        } catch (Throwable cause) {
+            logger.warn("occur error on asynchronous event-listener, listener-id={};type={};",
+                    listenerId, event.type, cause
+            );
+        }
+        return true;
+    }
+
+    // 丢弃计数，每当丢弃数量越过2的幂时输出一次日志，避免丢弃时刷屏
+    private void dropped(final int num) {
+        final long count = droppedCount.addAndGet(num);
+        dispatcher.dropped(num);
+        if (Long.highestOneBit(count) != Long.highestOneBit(count - num)) {
+            logger.warn("asynchronous listener dropped {} events. listener-id={};listener={};",
+                    count, listenerId, listener
+            );
+        }
+    }
+
+    /**
+     * 冻结监听器
+     */
+    void frozen() {
+        isActive = false;
+    }
+
+    /**
+     * 获取被丢弃的事件数量
+     *
+     * @return 被丢弃的事件数量
+     */
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * 一个线程上正在记录的调用过程
+     */
+    private class ProcessRecord {
+
+        private final List<EventSnapshot> snapshots = new ArrayList<EventSnapshot>();
+
+        // 调用过程中的事件数量
+        private int count;
+
+        // 尚未结束的调用深度
+        private int deep;
+
+        // 事件数量超过了缓冲区容量，整个调用过程将被丢弃
+        private boolean isOverflow;
+
+        /**
+         * 记录事件
+         *
+         * @param event 事件
+         * @return TRUE:顶层调用已结束；FALSE：调用过程还在继续
+         */
+        boolean append(final Event event) {
+            if (++count > dispatcher.getCapacity()) {
+                isOverflow = true;
+                snapshots.clear();
+            }
+            if (!isOverflow) {
+                final EventSnapshot snapshot = new EventSnapshot();
+                snapshot.write(event);
+                snapshots.add(snapshot);
+            }
+            switch (event.type) {
+                case BEFORE:
+                    deep++;
+                    break;
+                case RETURN:
+                case THROWS:
+                case IMMEDIATELY_RETURN:
+                case IMMEDIATELY_THROWS:
+                    deep--;
+                    break;
+                default:
+            }
+            return deep <= 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.alibaba.jvm.sandbox.core.enhance.weaver;
+
+import com.alibaba.jvm.sandbox.api.event.CallSite;
+
+/**
+ * 方法调用点登记表
+ * <p>
+ * 代码织入时把每个调用点(行号、调用类名、方法名、方法描述)登记为一个int型的调用点ID，
+ * 织入代码只需要传递调用点ID，事件处理时再按ID取回调用点，避免每次调用都传递和处理字符串
+ * </p>
+ * <p>
+ * 调用点按织入的监听器登记，观察被删除时随之释放，见{@link SiteTable}
+ * </p>
+ */
+public class CallSites {
+
+    public static final CallSites instance = new CallSites();
+
+    private final SiteTable<CallSite> callSiteTable = new SiteTable<CallSite>();
+
+    private CallSites() {
+
+    }
+
+    /**
+     * 登记调用点
+     *
+     * @param listenerId 织入的监听器ID(多个监听器融合时为融合后的调用点ID)
+     * @param lineNumber 代码行号
+     * @param owner      调用类名(Java类名)
+     * @param name       调用方法名
+     * @param desc       调用方法描述
+     * @return 调用点ID
+     */
+    public int register(final int listenerId,
+                        final int lineNumber,
+                        final String owner,
+                        final String name,
+                        final String desc) {
+        return callSiteTable.register(
+                listenerId,
+                lineNumber + ":" + owner + "#" + name + desc,
+                new SiteTable.SiteFactory<CallSite>() {
+                    @Override
+                    public CallSite newSite(final int callSiteId) {
+                        return new CallSite(callSiteId, lineNumber, owner, name, desc);
+                    }
+                }
+        );
+    }
+
+    /**
+     * 释放监听器登记过的所有调用点
+     *
+     * @param listenerId 织入的监听器ID(多个监听器融合时为融合后的调用点ID)
+     * @return 释放的调用点数量
+     */
+    public int release(final int listenerId) {
+        return callSiteTable.release(listenerId);
+    }
+
+    /**
+     * 获取调用点
+     *
+     * @param callSiteId 调用点ID
+     * @return 调用点，不存在或已释放则返回null
+     */
+    public CallSite get(final int callSiteId) {
+        return callSiteTable.get(callSiteId);
+    }
+
+    /**
+     * 获取登记中的调用点数量
+     *
+     * @return 登记中的调用点数量
+     */
+    public int size() {
+        return callSiteTable.size();
+    }
+
+}
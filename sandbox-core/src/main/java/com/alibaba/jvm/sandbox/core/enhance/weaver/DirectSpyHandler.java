@@ -0,0 +1,102 @@
+package com.alibaba.jvm.sandbox.core.enhance.weaver;
+
+import java.com.alibaba.jvm.sandbox.spy.Spy;
+
+/**
+ * 直接调用的间谍处理器
+ * <p>
+ * {@link Spy}通过接口直接回调到{@link EventListenerHandlers}，
+ * 代替原有{@code Method.invoke()}的反射派发，不再有参数装箱和参数数组的分配
+ * </p>
+ */
+public class DirectSpyHandler implements Spy.SpyHandler {
+
+    @Override
+    public Object handleOnBefore(final int listenerId,
+                                 final int targetClassLoaderObjectID,
+                                 final Class<?> spyRetClassInTargetClassLoader,
+                                 final String javaClassName,
+                                 final String javaMethodName,
+                                 final String javaMethodDesc,
+                                 final Object target,
+                                 final Object[] argumentArray) throws Throwable {
+        return EventListenerHandlers.onBefore(
+                listenerId,
+                targetClassLoaderObjectID,
+                spyRetClassInTargetClassLoader,
+                javaClassName,
+                javaMethodName,
+                javaMethodDesc,
+                target,
+                argumentArray
+        );
+    }
+
+    @Override
+    public Object handleOnBefore(final int listenerId,
+                                 final int methodSiteId,
+                                 final Class<?> spyRetClassInTargetClassLoader,
+                                 final Object target,
+                                 final Object[] argumentArray) throws Throwable {
+        return EventListenerHandlers.onBefore(
+                listenerId,
+                methodSiteId,
+                spyRetClassInTargetClassLoader,
+                target,
+                argumentArray
+        );
+    }
+
+    @Override
+    public Object handleOnReturn(final int listenerId,
+                                 final Class<?> spyRetClassInTargetClassLoader,
+                                 final Object object) throws Throwable {
+        return EventListenerHandlers.onReturn(listenerId, spyRetClassInTargetClassLoader, object);
+    }
+
+    @Override
+    public Object handleOnThrows(final int listenerId,
+                                 final Class<?> spyRetClassInTargetClassLoader,
+                                 final Throwable throwable) throws Throwable {
+        return EventListenerHandlers.onThrows(listenerId, spyRetClassInTargetClassLoader, throwable);
+    }
+
+    @Override
+    public void handleOnLine(final int listenerId,
+                             final int lineNumber) throws Throwable {
+        EventListenerHandlers.onLine(listenerId, lineNumber);
+    }
+
+    @Override
+    public void handleOnCallBefore(final int listenerId,
+                                   final int lineNumber,
+                                   final String owner,
+                                   final String name,
+                                   final String desc) throws Throwable {
+        EventListenerHandlers.onCallBefore(listenerId, lineNumber, owner, name, desc);
+    }
+
+    @Override
+    public void handleOnCallReturn(final int listenerId) throws Throwable {
+        EventListenerHandlers.onCallReturn(listenerId);
+    }
+
+    @Override
+    public void handleOnCallThrows(final int listenerId,
+                                   final String throwException) throws Throwable {
+        EventListenerHandlers.onCallThrows(listenerId, throwException);
+    }
+
+    @Override
+    public void handleOnCallBefore(final int listenerId,
+                                   final int callSiteId) throws Throwable {
+        EventListenerHandlers.onCallBefore(listenerId, callSiteId);
+    }
+
+    @Override
+    public void handleOnCallThrows(final int listenerId,
+                                   final Throwable throwable) throws Throwable {
+        EventListenerHandlers.onCallThrows(listenerId, throwable);
+    }
+
+}
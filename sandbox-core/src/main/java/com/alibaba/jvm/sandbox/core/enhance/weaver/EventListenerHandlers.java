@@ -1,27 +1,37 @@
 package com.alibaba.jvm.sandbox.core.enhance.weaver;
 
 import com.alibaba.jvm.sandbox.api.ProcessControlException;
+import com.alibaba.jvm.sandbox.api.annotation.Asynchronous;
 import com.alibaba.jvm.sandbox.api.event.BeforeEvent;
+import com.alibaba.jvm.sandbox.api.event.CallSite;
 import com.alibaba.jvm.sandbox.api.event.Event;
 import com.alibaba.jvm.sandbox.api.event.ReturnEvent;
 import com.alibaba.jvm.sandbox.api.event.ThrowsEvent;
 import com.alibaba.jvm.sandbox.api.listener.EventListener;
 import com.alibaba.jvm.sandbox.core.enhance.annotation.Interrupted;
+import com.alibaba.jvm.sandbox.core.CoreConfigure;
 import com.alibaba.jvm.sandbox.core.util.EventPool;
+import com.alibaba.jvm.sandbox.core.util.InvokeIdGenerator;
 import com.alibaba.jvm.sandbox.core.util.ObjectIDs;
 import com.alibaba.jvm.sandbox.core.util.Sequencer;
-import com.alibaba.jvm.sandbox.core.util.collection.GaStack;
-import com.alibaba.jvm.sandbox.core.util.collection.ThreadUnsafeGaStack;
+import com.alibaba.jvm.sandbox.core.util.SpyUtils;
+import com.alibaba.jvm.sandbox.core.util.collection.GaLongStack;
+import com.alibaba.jvm.sandbox.core.util.collection.ThreadUnsafeGaLongStack;
+import org.apache.commons.lang3.ArrayUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.com.alibaba.jvm.sandbox.spy.Spy;
-import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
-import java.util.WeakHashMap;
-import java.util.concurrent.ConcurrentHashMap;
-
-import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.unCaughtGetClassDeclaredJavaMethod;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 事件处理
@@ -32,16 +42,73 @@ public class EventListenerHandlers {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
+    /**
+     * 一个融合调用点最多容纳的监听器数量
+     */
+    public static final int MAX_JOIN_POINT_LISTENERS = 64;
+
     // 调用序列生成器
-    private final Sequencer invokeIdSequencer = new Sequencer(1000);
+    private final InvokeIdGenerator invokeIdGenerator = createInvokeIdGenerator();
+
+    // 监听器ID序列生成器，从1开始，回收池中没有可复用的ID时才分配新的ID
+    private final Sequencer listenerIdSequencer = new Sequencer(1);
+
+    // 已回收的监听器ID(包括融合调用点ID)，按回收的先后顺序复用
+    private final Set<Integer> recycledListenerIds = new LinkedHashSet<Integer>();
 
-    // 全局处理器ID:处理器映射集合
-    private final Map<Integer/*LISTENER_ID*/, EventListenerWrap> globalEventListenerMap
-            = new ConcurrentHashMap<Integer, EventListenerWrap>();
+    // 全局处理器ID:处理器映射集合，以监听器ID作为下标
+    // 采用写时复制：active()/frozen()发布新的快照，事件处理路径上只需一次volatile读和一次数组下标访问
+    private volatile EventListenerWrap[] globalEventListenerWraps = new EventListenerWrap[16];
+
+    // 融合调用点:以调用点ID作为下标，与监听器ID共用同一个ID空间
+    private volatile JoinPointGroup[] joinPointGroups = new JoinPointGroup[16];
+
+    // 融合调用点ID映射，用于复用相同监听器组合的调用点ID，避免每次重新渲染都分配新的ID
+    private final Map<String/*LISTENER_IDS*/, Integer/*JOIN_POINT_ID*/> joinPointIdMapping
+            = new HashMap<String, Integer>();
 
     // 事件对象池
     private final EventPool eventPool = new EventPool();
 
+    // 异步事件派发器
+    private final AsyncEventDispatcher asyncEventDispatcher = createAsyncEventDispatcher();
+
+    // 熔断恢复探测线程，第一次熔断时才创建，空闲时线程自动退出
+    private ScheduledThreadPoolExecutor listenerBreakerProbeExecutor;
+
+    private InvokeIdGenerator createInvokeIdGenerator() {
+        final CoreConfigure cfg = CoreConfigure.getInstance();
+        logger.info("init invoke-id generator[64bit={};block-size={};]",
+                cfg.isInvokeId64Bit(),
+                cfg.getInvokeIdBlockSize()
+        );
+        return new InvokeIdGenerator(1000, cfg.getInvokeIdBlockSize(), cfg.isInvokeId64Bit());
+    }
+
+    // 熔断配置在监听器激活时读取，未启用熔断时返回null
+    private static ListenerBreaker createListenerBreaker() {
+        final CoreConfigure cfg = CoreConfigure.getInstance();
+        if (!cfg.isListenerBreakerEnable()) {
+            return null;
+        }
+        return new ListenerBreaker(
+                cfg.getListenerBreakerErrorThreshold(),
+                TimeUnit.MICROSECONDS.toNanos(cfg.getListenerBreakerSlowThresholdUs()),
+                TimeUnit.MILLISECONDS.toNanos(Math.max(1, cfg.getListenerBreakerWindowMs())),
+                cfg.getListenerBreakerProbeMs()
+        );
+    }
+
+    private AsyncEventDispatcher createAsyncEventDispatcher() {
+        final CoreConfigure cfg = CoreConfigure.getInstance();
+        return new AsyncEventDispatcher(
+                eventPool,
+                cfg.getEventAsyncBufferSize(),
+                cfg.getEventAsyncWorkers(),
+                cfg.getEventAsyncBatchSize()
+        );
+    }
+
     /**
      * 获取事件对象池
      *
@@ -51,6 +118,91 @@ public class EventListenerHandlers {
         return eventPool;
     }
 
+    /**
+     * 获取监听器熔断器
+     *
+     * @param listenerId 监听器ID
+     * @return 熔断器，监听器不存在或未启用熔断时返回null
+     */
+    public ListenerBreaker getListenerBreaker(final int listenerId) {
+        final EventListenerWrap wrap = getEventListenerWrap(listenerId);
+        return null == wrap
+                ? null
+                : wrap.breaker;
+    }
+
+    /**
+     * 获取监听器开销统计
+     *
+     * @param listenerId 监听器ID
+     * @return 开销统计，监听器不存在或未启用统计时返回null
+     */
+    public ListenerStatistic getListenerStatistic(final int listenerId) {
+        final EventListenerWrap wrap = getEventListenerWrap(listenerId);
+        return null == wrap
+                ? null
+                : wrap.statistic;
+    }
+
+    /**
+     * 获取异步事件派发器的容量
+     *
+     * @return 环形缓冲区容量
+     */
+    public int getAsyncEventCapacity() {
+        return asyncEventDispatcher.getCapacity();
+    }
+
+    /**
+     * 获取等待异步派发的事件数量
+     *
+     * @return 等待派发的事件数量
+     */
+    public int getAsyncEventNumPending() {
+        return asyncEventDispatcher.getNumPending();
+    }
+
+    /**
+     * 获取已异步派发的事件数量
+     *
+     * @return 已派发的事件数量
+     */
+    public long getAsyncEventNumDelivered() {
+        return asyncEventDispatcher.getNumDelivered();
+    }
+
+    /**
+     * 获取异步派发时被丢弃的事件数量
+     *
+     * @return 被丢弃的事件数量
+     */
+    public long getAsyncEventNumDropped() {
+        return asyncEventDispatcher.getNumDropped();
+    }
+
+    /**
+     * 分配一个新的监听器ID
+     * <p>
+     * 监听器ID会被直接织入到目标类的字节码中，并作为{@link #globalEventListenerWraps}、
+     * Spy中监听器开关和每个线程采样计数器的下标使用，所以这里分配的是一个紧凑的整数。
+     * </p>
+     * <p>
+     * 只有织入代码已经被全部清除的ID才会被{@link #release(int)}回收，回收的ID按先后顺序优先复用，
+     * 这些以ID为下标的数组只随同时存活的监听器数量增长，而不随历史上创建过的观察数量增长
+     * </p>
+     *
+     * @return 监听器ID
+     */
+    public synchronized int allocateListenerId() {
+        final Iterator<Integer> recycledIt = recycledListenerIds.iterator();
+        if (recycledIt.hasNext()) {
+            final int listenerId = recycledIt.next();
+            recycledIt.remove();
+            return listenerId;
+        }
+        return listenerIdSequencer.next();
+    }
+
     /**
      * 注册事件处理器
      *
@@ -58,12 +210,32 @@ public class EventListenerHandlers {
      * @param listener       事件监听器
      * @param eventTypeArray 监听事件集合
      */
-    public void active(final int listenerId,
-                       final EventListener listener,
-                       final Event.Type[] eventTypeArray) {
-        final EventListenerWrap wrap = new EventListenerWrap(listener, eventTypeArray);
-        globalEventListenerMap.put(listenerId, wrap);
-        logger.info("active listener success. listener-id={};listener={};", listenerId, listener);
+    public synchronized void active(final int listenerId,
+                                    final EventListener listener,
+                                    final Event.Type[] eventTypeArray) {
+        if (listenerId < 0) {
+            throw new IllegalArgumentException("illegal listener-id=" + listenerId);
+        }
+        final EventListenerWrap wrap = new EventListenerWrap(listenerId, listener, eventTypeArray);
+        final EventListenerWrap[] current = globalEventListenerWraps;
+        final EventListenerWrap existed = getEventListenerWrap(current, listenerId);
+        final EventListenerWrap[] snapshot;
+        if (listenerId < current.length) {
+            snapshot = current.clone();
+        } else {
+            // 容量不足时按两倍扩容，至少能容纳当前监听器ID
+            snapshot = new EventListenerWrap[Math.max(current.length << 1, listenerId + 1)];
+            System.arraycopy(current, 0, snapshot, 0, current.length);
+        }
+        snapshot[listenerId] = wrap;
+        globalEventListenerWraps = snapshot;
+        refreshListenerGuard(listenerId);
+        if (null != existed) {
+            existed.frozen();
+        }
+        wrap.active();
+        logger.info("active listener success. listener-id={};listener={};asynchronous={};",
+                listenerId, listener, null != wrap.asyncEventListener);
     }
 
     /**
@@ -71,15 +243,232 @@ public class EventListenerHandlers {
      *
      * @param listenerId 事件处理器ID
      */
-    public void frozen(int listenerId) {
-        final EventListenerWrap wrap = globalEventListenerMap.remove(listenerId);
+    public synchronized void frozen(int listenerId) {
+        final EventListenerWrap[] current = globalEventListenerWraps;
+        final EventListenerWrap wrap = getEventListenerWrap(current, listenerId);
         if (null == wrap) {
             return;
         }
 
+        final EventListenerWrap[] snapshot = current.clone();
+        snapshot[listenerId] = null;
+        globalEventListenerWraps = snapshot;
+        refreshListenerGuard(listenerId);
+        wrap.frozen();
+
         logger.info("frozen listener success. listener-id={};listener={};", listenerId, wrap.listener);
     }
 
+    /**
+     * 获取多个监听器融合后的调用点ID
+     * <p>
+     * 只有一个监听器时调用点ID即监听器ID；
+     * 多个监听器时分配一个新的调用点ID，事件将按监听器ID数组的顺序派发，相同的监听器组合总是得到相同的调用点ID
+     * </p>
+     *
+     * @param listenerIds    按注册顺序排列的监听器ID数组，最多{@link #MAX_JOIN_POINT_LISTENERS}个
+     * @param eventTypeArray 所有监听器事件类型的并集，用于判断调用点是否只织入了BEFORE
+     * @return 调用点ID
+     */
+    public synchronized int joinPoint(final int[] listenerIds,
+                                      final Event.Type[] eventTypeArray) {
+        if (null == listenerIds
+                || listenerIds.length == 0
+                || listenerIds.length > MAX_JOIN_POINT_LISTENERS) {
+            throw new IllegalArgumentException("illegal join-point listener-ids=" + Arrays.toString(listenerIds));
+        }
+        if (listenerIds.length == 1) {
+            return listenerIds[0];
+        }
+
+        final String key = Arrays.toString(listenerIds);
+        final Integer existedJoinPointId = joinPointIdMapping.get(key);
+        if (null != existedJoinPointId) {
+            return existedJoinPointId;
+        }
+
+        final int joinPointId = allocateListenerId();
+        final JoinPointGroup[] current = joinPointGroups;
+        final JoinPointGroup[] snapshot = new JoinPointGroup[Math.max(current.length, joinPointId + 1)];
+        System.arraycopy(current, 0, snapshot, 0, current.length);
+        snapshot[joinPointId] = new JoinPointGroup(listenerIds.clone(), JoinPoint.isBeforeOnly(eventTypeArray));
+        joinPointGroups = snapshot;
+        joinPointIdMapping.put(key, joinPointId);
+        refreshJoinPointGuard(joinPointId, snapshot[joinPointId]);
+        logger.info("join-point created. join-point-id={};listener-ids={};", joinPointId, key);
+        return joinPointId;
+    }
+
+    /**
+     * 释放监听器织入时登记的调用点和被观察方法
+     * <p>
+     * 监听器的观察被删除、织入代码被清除之后调用；包含该监听器的融合调用点所登记的一并释放，
+     * 融合调用点的织入代码只会出现在该监听器命中的方法上，此时也已经被清除，
+     * 所以融合调用点本身连同它的ID映射和开关也一并移除，不会随着观察的反复增删而堆积
+     * </p>
+     * <p>
+     * 监听器ID和这些融合调用点ID随后被回收复用
+     * </p>
+     *
+     * @param listenerId 监听器ID
+     */
+    public void release(final int listenerId) {
+        release(listenerId, true);
+    }
+
+    /**
+     * 释放监听器织入时登记的调用点和被观察方法
+     * <p>
+     * 有类没能重新形变时织入代码可能还有残留，此时不能回收ID，否则残留的织入代码会派发到复用该ID的新监听器上；
+     * 监听器仍处于激活状态时同样不回收
+     * </p>
+     *
+     * @param listenerId  监听器ID
+     * @param isRecycleId 是否回收监听器ID和融合调用点ID
+     */
+    public synchronized void release(final int listenerId,
+                                     final boolean isRecycleId) {
+        int released = releaseSites(listenerId);
+        final JoinPointGroup[] current = joinPointGroups;
+        JoinPointGroup[] snapshot = current;
+        int releasedJoinPoints = 0;
+        for (int joinPointId = 0; joinPointId < current.length; joinPointId++) {
+            final JoinPointGroup group = current[joinPointId];
+            if (null == group
+                    || !ArrayUtils.contains(group.listenerIds, listenerId)) {
+                continue;
+            }
+            released += releaseSites(joinPointId);
+            if (snapshot == current) {
+                snapshot = current.clone();
+            }
+            snapshot[joinPointId] = null;
+            joinPointIdMapping.remove(Arrays.toString(group.listenerIds));
+            SpyUtils.setListenerEnable(joinPointId, false);
+            if (isRecycleId) {
+                recycledListenerIds.add(joinPointId);
+            }
+            releasedJoinPoints++;
+        }
+        joinPointGroups = snapshot;
+        SpyUtils.setListenerEnable(listenerId, isListenerEnable(listenerId));
+        final boolean isRecycled = isRecycleId
+                && listenerId > 0
+                && null == getEventListenerWrap(listenerId)
+                && recycledListenerIds.add(listenerId);
+        logger.info("release listener sites success. listener-id={};released={};released-join-points={};recycled={};",
+                listenerId, released, releasedJoinPoints, isRecycled);
+    }
+
+    private static int releaseSites(final int listenerId) {
+        return CallSites.instance.release(listenerId)
+                + MethodSites.instance.release(listenerId);
+    }
+
+    /*
+     * 刷新监听器开关
+     * 织入代码在进入方法时检查开关，监听器本身以及包含该监听器的融合调用点都需要刷新
+     */
+    private void refreshListenerGuard(final int listenerId) {
+        SpyUtils.setListenerEnable(listenerId, isListenerEnable(listenerId));
+        final JoinPointGroup[] groups = joinPointGroups;
+        for (int joinPointId = 0; joinPointId < groups.length; joinPointId++) {
+            final JoinPointGroup group = groups[joinPointId];
+            if (null != group
+                    && ArrayUtils.contains(group.listenerIds, listenerId)) {
+                refreshJoinPointGuard(joinPointId, group);
+            }
+        }
+    }
+
+    // 监听器处于激活状态且没有熔断时开启
+    private boolean isListenerEnable(final int listenerId) {
+        final EventListenerWrap wrap = getEventListenerWrap(listenerId);
+        return null != wrap && !wrap.isTripped();
+    }
+
+    /*
+     * 监听器熔断：关闭监听器开关，并按熔断次数加倍的间隔安排恢复探测
+     * 熔断发生在应用线程上，这里只做开关刷新和任务提交
+     */
+    private synchronized void tripped(final int listenerId,
+                                      final EventListenerWrap wrap) {
+        if (wrap != getEventListenerWrap(listenerId)) {
+            return;
+        }
+        refreshListenerGuard(listenerId);
+        logger.warn("listener was tripped, listener-id={};reason={};trip-count={};listener={};",
+                listenerId, wrap.breaker.getTripReason(), wrap.breaker.getTripCount(), wrap.listener);
+        final long probeMs = wrap.breaker.getProbeMs();
+        if (probeMs <= 0) {
+            return;
+        }
+        if (null == listenerBreakerProbeExecutor) {
+            listenerBreakerProbeExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "sandbox-listener-breaker-probe");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            listenerBreakerProbeExecutor.setKeepAliveTime(1, TimeUnit.MINUTES);
+            listenerBreakerProbeExecutor.allowCoreThreadTimeOut(true);
+        }
+        final long delayMs = probeMs << Math.min(wrap.breaker.getTripCount() - 1, 4);
+        listenerBreakerProbeExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                probe(listenerId, wrap);
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    // 熔断恢复探测：监听器没有被重新激活或冻结时恢复开关，再次熔断时重新安排探测
+    private synchronized void probe(final int listenerId,
+                                    final EventListenerWrap wrap) {
+        if (wrap != getEventListenerWrap(listenerId)
+                || !wrap.breaker.reset()) {
+            return;
+        }
+        refreshListenerGuard(listenerId);
+        logger.info("listener was re-probed after tripped, listener-id={};listener={};", listenerId, wrap.listener);
+    }
+
+    // 融合调用点中只要有一个监听器处于激活状态，调用点就需要开启
+    private void refreshJoinPointGuard(final int joinPointId,
+                                       final JoinPointGroup group) {
+        boolean isEnable = false;
+        for (final int listenerId : group.listenerIds) {
+            if (isListenerEnable(listenerId)) {
+                isEnable = true;
+                break;
+            }
+        }
+        SpyUtils.setListenerEnable(joinPointId, isEnable);
+    }
+
+    // 获取融合调用点，不是融合调用点则返回null
+    private JoinPointGroup getJoinPointGroup(final int joinPointId) {
+        final JoinPointGroup[] groups = joinPointGroups;
+        return joinPointId >= 0 && joinPointId < groups.length
+                ? groups[joinPointId]
+                : null;
+    }
+
+    // 从快照中获取事件处理器，不存在则返回null
+    private static EventListenerWrap getEventListenerWrap(final EventListenerWrap[] wraps,
+                                                          final int listenerId) {
+        return listenerId >= 0 && listenerId < wraps.length
+                ? wraps[listenerId]
+                : null;
+    }
+
+    // 获取事件处理器，不存在则返回null
+    private EventListenerWrap getEventListenerWrap(final int listenerId) {
+        return getEventListenerWrap(globalEventListenerWraps, listenerId);
+    }
+
     /**
      * 调用出发事件处理&调用执行流程控制
      *
@@ -92,16 +481,36 @@ public class EventListenerHandlers {
      * @throws Throwable 当出现未知异常时,且事件处理器为中断流程事件时抛出
      */
     private Spy.Ret handleEvent(final int listenerId,
-                                final int processId,
-                                final int invokeId,
+                                final long processId,
+                                final long invokeId,
                                 final Event event,
                                 final EventListenerWrap wrap) throws Throwable {
         final EventListener listener = wrap.listener;
 
+        // 已熔断的监听器不再处理事件，开关关闭之前已经进入方法的调用会走到这里
+        if (wrap.isTripped()) {
+            return Spy.Ret.newInstanceForNone();
+        }
+
+        final ListenerBreaker breaker = wrap.breaker;
+        final ListenerStatistic.Counter counter = null == wrap.statistic
+                ? null
+                : wrap.statistic.counter();
+        final boolean isTiming = null != counter
+                || (null != breaker && breaker.isTiming());
+        final long beginNanos = isTiming
+                ? System.nanoTime()
+                : 0;
+
+        // 只统计监听器自身的处理耗时，流程变更后替换事件的处理会单独统计
+        long costNanos = 0;
+        boolean isError = false;
+
         try {
 
             // 调用事件处理
             listener.onEvent(event);
+            costNanos = toCostNanos(isTiming, beginNanos);
             if (logger.isDebugEnabled()) {
                 logger.debug("listener onEvent success, listener-id={};process-id={};invoke-id={};type={}",
                         listenerId, processId, invokeId, event.type
@@ -113,7 +522,11 @@ public class EventListenerHandlers {
         // 代码执行流程变更
         catch (ProcessControlException pce) {
 
+            costNanos = toCostNanos(isTiming, beginNanos);
             final ProcessControlException.State state = pce.getState();
+            if (null != counter) {
+                counter.recordProcessControl(state);
+            }
             logger.debug("listener onEvent change process, listener-id={};process-id={};invoke-id={};type={};state={};",
                     listenerId, processId, invokeId, event.type, state
             );
@@ -199,36 +612,60 @@ public class EventListenerHandlers {
         // BEFORE处理异常,打日志,并通知下游不需要进行处理
         catch (Throwable throwable) {
 
+            costNanos = toCostNanos(isTiming, beginNanos);
+            isError = true;
+
+            // 同一个监听器的异常只在次数达到2的幂时输出堆栈，避免出错的监听器引发日志风暴
+            final long errorCount = wrap.errorCount.incrementAndGet();
+            final boolean isLogStack = Long.bitCount(errorCount) == 1;
+
             // 如果当前事件处理器是可中断的事件处理器,则对外抛出UnCaughtException
             // 中断当前方法
             if (isInterruptEventHandler(listener.getClass())) {
-                logger.warn("occur error on event-listener, invoke will be interrupted. listener-id={};process-id={};invoke-id={};type={};",
-                        listenerId, processId, invokeId, event.type, throwable
-                );
+                if (isLogStack) {
+                    logger.warn("occur error on event-listener, invoke will be interrupted. listener-id={};process-id={};invoke-id={};type={};error-count={};",
+                            listenerId, processId, invokeId, event.type, errorCount, throwable
+                    );
+                }
                 throw throwable;
             }
 
             // 普通事件处理器则可以打个日志后,直接放行
-            else {
-                logger.warn("occur error on event-listener, listener-id={};process-id={};invoke-id={};type={};",
-                        listenerId, processId, invokeId, event.type, throwable
+            else if (isLogStack) {
+                logger.warn("occur error on event-listener, listener-id={};process-id={};invoke-id={};type={};error-count={};",
+                        listenerId, processId, invokeId, event.type, errorCount, throwable
                 );
             }
         }
 
+        // 开销统计和熔断统计
+        finally {
+            if (null != counter) {
+                counter.record(event.type, costNanos, isError);
+            }
+            if (null != breaker
+                    && (isError || breaker.isTiming())
+                    && breaker.record(beginNanos + costNanos, costNanos, isError)) {
+                tripped(listenerId, wrap);
+            }
+        }
+
         // 默认返回不进行任何流程变更
         return Spy.Ret.newInstanceForNone();
     }
 
+    private static long toCostNanos(final boolean isTiming,
+                                    final long beginNanos) {
+        return isTiming
+                ? System.nanoTime() - beginNanos
+                : 0;
+    }
+
     private boolean isInterruptEventHandler(final Class<? extends EventListener> listenerClass) {
         return listenerClass.isAnnotationPresent(Interrupted.class);
     }
 
 
-    private final WeakHashMap<Class, Method> spyNewInstanceForNoneMethodCache = new WeakHashMap<Class, Method>();
-    private final WeakHashMap<Class, Method> spyNewInstanceForReturnMethodCache = new WeakHashMap<Class, Method>();
-    private final WeakHashMap<Class, Method> spyNewInstanceForThrowsMethodCache = new WeakHashMap<Class, Method>();
-
     // 转换当前的Spy.Ret到目标类所在ClassLoader的Spy.Ret
     private Object toSpyRetInTargetClassLoader(final Spy.Ret ret, final Class<?> spyRetClassInTargetClassLoader) throws Throwable {
 
@@ -239,50 +676,12 @@ public class EventListenerHandlers {
         }
 
         // 如果当前Spy.Ret和目标ClassLoader中的Spy.Ret不一致，说明他们来自不同的ClassLoader空间
-        // 此时就需要性能比较高昂的转换了，这里稍微加了几个MethodCache做了性能缓冲，尽量减少性能开销
-        // 但此时我觉得必要性可能不大，后续考虑可以直接优化掉这个几个MethodCache
-        switch (ret.state) {
-            case Spy.Ret.RET_STATE_NONE: {
-
-                final Method method;
-                if (spyNewInstanceForNoneMethodCache.containsKey(spyRetClassInTargetClassLoader)) {
-                    method = spyNewInstanceForNoneMethodCache.get(spyRetClassInTargetClassLoader);
-                } else {
-                    method = unCaughtGetClassDeclaredJavaMethod(spyRetClassInTargetClassLoader, "newInstanceForNone");
-                    spyNewInstanceForNoneMethodCache.put(spyRetClassInTargetClassLoader, method);
-                }
-                return method.invoke(null);
-            }
-
-            case Spy.Ret.RET_STATE_RETURN: {
-                final Method method;
-                if (spyNewInstanceForReturnMethodCache.containsKey(spyRetClassInTargetClassLoader)) {
-                    method = spyNewInstanceForReturnMethodCache.get(spyRetClassInTargetClassLoader);
-                } else {
-                    method = unCaughtGetClassDeclaredJavaMethod(spyRetClassInTargetClassLoader, "newInstanceForReturn", Object.class);
-                    spyNewInstanceForReturnMethodCache.put(spyRetClassInTargetClassLoader, method);
-                }
-                return method.invoke(null, ret.respond);
-            }
-
-            case Spy.Ret.RET_STATE_THROWS: {
-                final Method method;
-                if (spyNewInstanceForThrowsMethodCache.containsKey(spyRetClassInTargetClassLoader)) {
-                    method = spyNewInstanceForThrowsMethodCache.get(spyRetClassInTargetClassLoader);
-                } else {
-                    method = unCaughtGetClassDeclaredJavaMethod(spyRetClassInTargetClassLoader, "newInstanceForThrows", Throwable.class);
-                    spyNewInstanceForThrowsMethodCache.put(spyRetClassInTargetClassLoader, method);
-                }
-                return method.invoke(null, (Throwable) ret.respond);
-            }
-
-            default: {
-                throw new IllegalStateException("illegal Spy.Ret.state=" + ret.state);
-            }
-        }
+        // 此时通过按类缓存的工厂完成转换
+        return SpyRetFactory.get(spyRetClassInTargetClassLoader).toSpyRet(ret);
     }
 
     private Spy.Ret handleOnBefore(final int listenerId,
+                                   final EventListenerWrap wrap,
                                    final ClassLoader javaClassLoader,
                                    final String javaClassName,
                                    final String javaMethodName,
@@ -290,23 +689,33 @@ public class EventListenerHandlers {
                                    final Object target,
                                    final Object[] argumentArray) throws Throwable {
 
-        // 获取事件处理器
-        final EventListenerWrap wrap = globalEventListenerMap.get(listenerId);
-
-        // 如果尚未注册,则直接返回,不做任何处理
-        if (null == wrap) {
-            logger.debug("listener was not active yet, ignore this process. id={};", listenerId);
-            return Spy.Ret.newInstanceForNone();
+        // 调用ID
+        final long invokeId = invokeIdGenerator.next();
+
+        // 只织入了BEFORE的监听器不会有RETURN/THROWS来出栈，所以不能压栈，每次调用都是一个独立的调用过程
+        if (wrap.isBeforeOnly) {
+            final BeforeEvent event = eventPool.borrowBeforeEvent(
+                    invokeId,
+                    invokeId,
+                    javaClassLoader,
+                    javaClassName,
+                    javaMethodName,
+                    javaMethodDesc,
+                    target,
+                    argumentArray
+            );
+            try {
+                return handleEvent(listenerId, invokeId, invokeId, event, wrap);
+            } finally {
+                eventPool.returnEvent(event);
+            }
         }
 
         // 获取调用跟踪信息
-        final GaStack<Integer> stack = wrap.processStackRef.get();
-
-        // 调用ID
-        final int invokeId = invokeIdSequencer.next();
+        final GaLongStack stack = wrap.processStackRef.get();
 
         // 调用过程ID
-        final int processId = stack.isEmpty()
+        final long processId = stack.isEmpty()
                 ? invokeId
                 : stack.peekLast();
 
@@ -326,26 +735,154 @@ public class EventListenerHandlers {
                 target,
                 argumentArray
         );
+        final Spy.Ret ret;
         try {
-            return handleEvent(listenerId, processId, invokeId, event, wrap);
+            ret = handleEvent(listenerId, processId, invokeId, event, wrap);
         } finally {
             eventPool.returnEvent(event);
         }
+
+        // BEFORE中立即返回，织入代码直接返回，不会再经过RETURN的处理，所以需要在这里出栈
+        // 立即抛出异常则会经过THROWS的处理完成出栈
+        if (ret.state == Spy.Ret.RET_STATE_RETURN
+                && !stack.isEmpty()) {
+            stack.pop();
+        }
+        return ret;
     }
 
-    private Spy.Ret handleOnEnd(final int listenerId,
-                                final Object object,
-                                final boolean isReturn) throws Throwable {
+    private Spy.Ret handleOnBefore(final int listenerId,
+                                   final ClassLoader javaClassLoader,
+                                   final String javaClassName,
+                                   final String javaMethodName,
+                                   final String javaMethodDesc,
+                                   final Object target,
+                                   final Object[] argumentArray) throws Throwable {
 
-        final EventListenerWrap wrap = globalEventListenerMap.get(listenerId);
+        // 融合调用点，需要派发给多个监听器
+        final JoinPointGroup group = getJoinPointGroup(listenerId);
+        if (null != group) {
+            return handleOnBefore(
+                    group,
+                    javaClassLoader,
+                    javaClassName,
+                    javaMethodName,
+                    javaMethodDesc,
+                    target,
+                    argumentArray
+            );
+        }
+
+        // 获取事件处理器
+        final EventListenerWrap wrap = getEventListenerWrap(listenerId);
 
         // 如果尚未注册,则直接返回,不做任何处理
         if (null == wrap) {
-            logger.debug("listener-id={} was not active yet, ignore this process.", listenerId);
+            logger.debug("listener was not active yet, ignore this process. id={};", listenerId);
+            return Spy.Ret.newInstanceForNone();
+        }
+
+        return handleOnBefore(
+                listenerId,
+                wrap,
+                javaClassLoader,
+                javaClassName,
+                javaMethodName,
+                javaMethodDesc,
+                target,
+                argumentArray
+        );
+    }
+
+    /*
+     * 融合调用点的BEFORE处理
+     * 融合调用点的语义和按注册顺序逐层嵌套织入完全一致：先注册的监听器在外层
+     * 1. BEFORE按注册顺序派发，某个监听器改变了流程之后，内层的监听器不再收到事件
+     * 2. 立即返回时，已经进入的外层监听器由内向外依次收到RETURN事件
+     * 3. 立即抛出异常时，记录已经进入的监听器，由织入的异常处理代码派发THROWS事件
+     */
+    private Spy.Ret handleOnBefore(final JoinPointGroup group,
+                                   final ClassLoader javaClassLoader,
+                                   final String javaClassName,
+                                   final String javaMethodName,
+                                   final String javaMethodDesc,
+                                   final Object target,
+                                   final Object[] argumentArray) throws Throwable {
+        final int[] listenerIds = group.listenerIds;
+
+        // 只织入了BEFORE的融合调用点不会有RETURN/THROWS，不需要记录进入过的监听器
+        if (group.isBeforeOnly) {
+            for (final int listenerId : listenerIds) {
+                final EventListenerWrap wrap = getEventListenerWrap(listenerId);
+                if (null == wrap) {
+                    continue;
+                }
+                final Spy.Ret ret = handleOnBefore(
+                        listenerId,
+                        wrap,
+                        javaClassLoader,
+                        javaClassName,
+                        javaMethodName,
+                        javaMethodDesc,
+                        target,
+                        argumentArray
+                );
+                if (ret.state != Spy.Ret.RET_STATE_NONE) {
+                    return ret;
+                }
+            }
             return Spy.Ret.newInstanceForNone();
         }
 
-        final GaStack<Integer> stack = wrap.processStackRef.get();
+        final GaLongStack enteredStack = group.enteredStackRef.get();
+        long entered = 0L;
+        for (int index = 0; index < listenerIds.length; index++) {
+            final int listenerId = listenerIds[index];
+            final EventListenerWrap wrap = getEventListenerWrap(listenerId);
+            if (null == wrap) {
+                continue;
+            }
+
+            entered |= 1L << index;
+            final Spy.Ret ret;
+            try {
+                ret = handleOnBefore(
+                        listenerId,
+                        wrap,
+                        javaClassLoader,
+                        javaClassName,
+                        javaMethodName,
+                        javaMethodDesc,
+                        target,
+                        argumentArray
+                );
+            } catch (Throwable cause) {
+                enteredStack.push(entered);
+                throw cause;
+            }
+
+            switch (ret.state) {
+                case Spy.Ret.RET_STATE_RETURN: {
+                    return handleOnEnd(group, entered & ~(1L << index), ret, ret.respond, true, true);
+                }
+                case Spy.Ret.RET_STATE_THROWS: {
+                    enteredStack.push(entered);
+                    return ret;
+                }
+                default:
+            }
+        }
+
+        enteredStack.push(entered);
+        return Spy.Ret.newInstanceForNone();
+    }
+
+    private Spy.Ret handleOnEnd(final int listenerId,
+                                final EventListenerWrap wrap,
+                                final Object object,
+                                final boolean isReturn) throws Throwable {
+
+        final GaLongStack stack = wrap.processStackRef.get();
 
         // 如果当前调用过程信息堆栈是空的,说明
         // 1. BEFORE/RETURN错位
@@ -355,8 +892,8 @@ public class EventListenerHandlers {
             return Spy.Ret.newInstanceForNone();
         }
 
-        final int processId = stack.peekLast();
-        final int invokeId = stack.pop();
+        final long processId = stack.peekLast();
+        final long invokeId = stack.pop();
 
         final Event event = isReturn
                 ? eventPool.borrowReturnEvent(processId, invokeId, object)
@@ -370,6 +907,81 @@ public class EventListenerHandlers {
 
     }
 
+    private Spy.Ret handleOnEnd(final int listenerId,
+                                final Object object,
+                                final boolean isReturn) throws Throwable {
+
+        // 融合调用点，需要派发给多个监听器
+        final JoinPointGroup group = getJoinPointGroup(listenerId);
+        if (null != group) {
+            final GaLongStack enteredStack = group.enteredStackRef.get();
+            if (enteredStack.isEmpty()) {
+                return Spy.Ret.newInstanceForNone();
+            }
+            return handleOnEnd(group, enteredStack.pop(), Spy.Ret.newInstanceForNone(), object, isReturn, isReturn);
+        }
+
+        final EventListenerWrap wrap = getEventListenerWrap(listenerId);
+
+        // 如果尚未注册,则直接返回,不做任何处理
+        if (null == wrap) {
+            logger.debug("listener-id={} was not active yet, ignore this process.", listenerId);
+            return Spy.Ret.newInstanceForNone();
+        }
+
+        return handleOnEnd(listenerId, wrap, object, isReturn);
+    }
+
+    /*
+     * 融合调用点的RETURN/THROWS处理
+     * 由内向外依次派发给已经进入的监听器，内层监听器改变的返回值或异常将传递给外层监听器
+     * 派发前已经发生的流程变更由result带入，外层监听器没有变更流程时保持该结果
+     *
+     * isInTryBlock为true时说明织入代码处于方法自身的try块中(BEFORE/RETURN)，
+     * 此时若最终结果是抛出异常，织入的异常处理代码还会再次回调THROWS，
+     * 所以需要压入一个空的进入标记，让这次回调不再重复派发
+     */
+    private Spy.Ret handleOnEnd(final JoinPointGroup group,
+                                final long entered,
+                                final Spy.Ret changed,
+                                final Object object,
+                                final boolean isReturn,
+                                final boolean isInTryBlock) {
+        final int[] listenerIds = group.listenerIds;
+        Spy.Ret result = changed;
+        Object current = object;
+        boolean isCurrentReturn = isReturn;
+        for (int index = listenerIds.length - 1; index >= 0; index--) {
+            if ((entered & (1L << index)) == 0) {
+                continue;
+            }
+            final int listenerId = listenerIds[index];
+            final EventListenerWrap wrap = getEventListenerWrap(listenerId);
+            if (null == wrap) {
+                continue;
+            }
+
+            Spy.Ret ret;
+            try {
+                ret = handleOnEnd(listenerId, wrap, current, isCurrentReturn);
+            } catch (Throwable cause) {
+                ret = Spy.Ret.newInstanceForThrows(cause);
+            }
+
+            if (ret.state != Spy.Ret.RET_STATE_NONE) {
+                result = ret;
+                current = ret.respond;
+                isCurrentReturn = ret.state == Spy.Ret.RET_STATE_RETURN;
+            }
+        }
+
+        if (isInTryBlock
+                && result.state == Spy.Ret.RET_STATE_THROWS) {
+            group.enteredStackRef.get().push(0L);
+        }
+        return result;
+    }
+
 
     private Object handleOnBeforeWithTargetClassLoaderSpyRet(final int listenerId,
                                                              final ClassLoader javaClassLoader,
@@ -407,21 +1019,29 @@ public class EventListenerHandlers {
 
     private void handleOnLine(final int listenerId,
                               final int lineNumber) throws Throwable {
-        final EventListenerWrap wrap = globalEventListenerMap.get(listenerId);
+        final JoinPointGroup group = getJoinPointGroup(listenerId);
+        if (null != group) {
+            for (final int groupListenerId : group.listenerIds) {
+                handleOnLine(groupListenerId, lineNumber);
+            }
+            return;
+        }
+
+        final EventListenerWrap wrap = getEventListenerWrap(listenerId);
         if (null == wrap) {
             logger.debug("listener-id={} was not active yet, ignore this process.", listenerId);
             return;
         }
 
-        final GaStack<Integer> stack = wrap.processStackRef.get();
+        final GaLongStack stack = wrap.processStackRef.get();
 
         // 如果当前调用过程信息堆栈是空的,说明BEFORE/LINE错位
         // 处理方式是直接返回,不做任何事件的处理和代码流程的改变
         if (stack.isEmpty()) {
             return;
         }
-        final int processId = stack.peekLast();
-        final int invokeId = stack.peek();
+        final long processId = stack.peekLast();
+        final long invokeId = stack.peek();
 
         final Event event = eventPool.borrowLineEvent(processId, invokeId, lineNumber);
         try {
@@ -433,17 +1053,22 @@ public class EventListenerHandlers {
     }
 
     private void handleOnCallBefore(final int listenerId,
-                                    final int lineNumber,
-                                    final String owner,
-                                    final String name,
-                                    final String desc) throws Throwable {
-        final EventListenerWrap wrap = globalEventListenerMap.get(listenerId);
+                                    final CallSite callSite) throws Throwable {
+        final JoinPointGroup group = getJoinPointGroup(listenerId);
+        if (null != group) {
+            for (final int groupListenerId : group.listenerIds) {
+                handleOnCallBefore(groupListenerId, callSite);
+            }
+            return;
+        }
+
+        final EventListenerWrap wrap = getEventListenerWrap(listenerId);
         if (null == wrap) {
             logger.debug("listener-id={} was not active yet, ignore this process.", listenerId);
             return;
         }
 
-        final GaStack<Integer> stack = wrap.processStackRef.get();
+        final GaLongStack stack = wrap.processStackRef.get();
 
 
         // 如果当前调用过程信息堆栈是空的,有两种情况
@@ -455,10 +1080,10 @@ public class EventListenerHandlers {
             return;
         }
 
-        final int processId = stack.peekLast();
-        final int invokeId = stack.peek();
+        final long processId = stack.peekLast();
+        final long invokeId = stack.peek();
 
-        final Event event = eventPool.borrowCallBeforeEvent(processId, invokeId, lineNumber, owner, name, desc);
+        final Event event = eventPool.borrowCallBeforeEvent(processId, invokeId, callSite);
         try {
             handleEvent(listenerId, processId, invokeId, event, wrap);
         } finally {
@@ -469,19 +1094,27 @@ public class EventListenerHandlers {
 
     private void handleOnCallReturn(final int listenerId) throws Throwable {
 
-        final EventListenerWrap wrap = globalEventListenerMap.get(listenerId);
+        final JoinPointGroup group = getJoinPointGroup(listenerId);
+        if (null != group) {
+            for (final int groupListenerId : group.listenerIds) {
+                handleOnCallReturn(groupListenerId);
+            }
+            return;
+        }
+
+        final EventListenerWrap wrap = getEventListenerWrap(listenerId);
         if (null == wrap) {
             logger.debug("listener-id={} was not active yet, ignore this process.", listenerId);
             return;
         }
 
-        final GaStack<Integer> stack = wrap.processStackRef.get();
+        final GaLongStack stack = wrap.processStackRef.get();
         if (stack.isEmpty()) {
             return;
         }
 
-        final int processId = stack.peekLast();
-        final int invokeId = stack.peek();
+        final long processId = stack.peekLast();
+        final long invokeId = stack.peek();
 
         final Event event = eventPool.borrowCallReturnEvent(processId, invokeId);
         try {
@@ -494,19 +1127,27 @@ public class EventListenerHandlers {
 
     private void handleOnCallThrows(final int listenerId,
                                     final String throwException) throws Throwable {
-        final EventListenerWrap wrap = globalEventListenerMap.get(listenerId);
+        final JoinPointGroup group = getJoinPointGroup(listenerId);
+        if (null != group) {
+            for (final int groupListenerId : group.listenerIds) {
+                handleOnCallThrows(groupListenerId, throwException);
+            }
+            return;
+        }
+
+        final EventListenerWrap wrap = getEventListenerWrap(listenerId);
         if (null == wrap) {
             logger.debug("listener-id={} was not active yet, ignore this process.", listenerId);
             return;
         }
 
-        final GaStack<Integer> stack = wrap.processStackRef.get();
+        final GaLongStack stack = wrap.processStackRef.get();
         if (stack.isEmpty()) {
             return;
         }
 
-        final int processId = stack.peekLast();
-        final int invokeId = stack.peek();
+        final long processId = stack.peekLast();
+        final long invokeId = stack.peek();
 
         final Event event = eventPool.borrowCallThrowsEvent(processId, invokeId, throwException);
         try {
@@ -516,22 +1157,98 @@ public class EventListenerHandlers {
         }
     }
 
+    /**
+     * 融合调用点
+     * 同一个方法被多个观察命中时，只织入一个调用点，由调用点ID映射到按注册顺序排列的监听器ID数组
+     */
+    private static final class JoinPointGroup {
+
+        private final int[] listenerIds;
+
+        // 是否只织入了BEFORE
+        private final boolean isBeforeOnly;
+
+        // 每次调用进入过的监听器(按下标的位标记)，用于RETURN/THROWS时只派发给进入过的监听器
+        private final ThreadLocal<GaLongStack> enteredStackRef = new ThreadLocal<GaLongStack>() {
+            @Override
+            protected GaLongStack initialValue() {
+                return new ThreadUnsafeGaLongStack();
+            }
+        };
+
+        private JoinPointGroup(final int[] listenerIds,
+                               final boolean isBeforeOnly) {
+            this.listenerIds = listenerIds;
+            this.isBeforeOnly = isBeforeOnly;
+        }
+    }
+
     /**
      * 事件处理器封装
      */
     private final class EventListenerWrap {
 
         private final EventListener listener;
-        private final ThreadLocal<GaStack<Integer>> processStackRef = new ThreadLocal<GaStack<Integer>>() {
+
+        // 拥有@Asynchronous标注时的异步监听器，否则为null
+        private final AsyncEventListener asyncEventListener;
+
+        // 熔断器，未启用熔断时为null
+        private final ListenerBreaker breaker;
+
+        // 监听器开销统计，未启用统计时为null
+        private final ListenerStatistic statistic;
+
+        // 监听器处理事件时出现异常的次数
+        private final AtomicLong errorCount = new AtomicLong();
+
+        // 是否只订阅了BEFORE，此时监听器所在的方法只织入了BEFORE
+        private final boolean isBeforeOnly;
+
+        private final ThreadLocal<GaLongStack/*INVOKE_ID*/> processStackRef = new ThreadLocal<GaLongStack>() {
             @Override
-            protected GaStack<Integer/*INVOKE_ID*/> initialValue() {
-                return new ThreadUnsafeGaStack<Integer>();
+            protected GaLongStack initialValue() {
+                return new ThreadUnsafeGaLongStack();
             }
         };
 
-        private EventListenerWrap(final EventListener listener,
+        private EventListenerWrap(final int listenerId,
+                                  final EventListener listener,
                                   final Event.Type[] eventTypeArray) {
-            this.listener = new SeparateImmediatelyEventListener(eventTypeArray, listener, eventPool);
+            this.asyncEventListener = listener.getClass().isAnnotationPresent(Asynchronous.class)
+                    ? new AsyncEventListener(listenerId, listener, eventTypeArray, asyncEventDispatcher)
+                    : null;
+            this.listener = new SeparateImmediatelyEventListener(
+                    eventTypeArray,
+                    null == asyncEventListener ? listener : asyncEventListener,
+                    eventPool
+            );
+            this.isBeforeOnly = JoinPoint.isBeforeOnly(eventTypeArray);
+            this.breaker = createListenerBreaker();
+            this.statistic = CoreConfigure.getInstance().isListenerStatisticEnable()
+                    ? new ListenerStatistic()
+                    : null;
+        }
+
+        private boolean isTripped() {
+            return null != breaker && breaker.isTripped();
+        }
+
+        // 异步监听器激活时需要启动派发线程
+        private void active() {
+            if (null != asyncEventListener) {
+                asyncEventDispatcher.acquire();
+            }
+        }
+
+        // 异步监听器冻结后缓冲区中残留的事件不再派发，没有异步监听器时派发线程退出
+        private void frozen() {
+            if (null != asyncEventListener) {
+                asyncEventListener.frozen();
+                asyncEventDispatcher.release();
+                logger.info("frozen asynchronous listener, dropped={};listener={};",
+                        asyncEventListener.getDroppedCount(), listener);
+            }
         }
     }
 
@@ -565,6 +1282,27 @@ public class EventListenerHandlers {
         );
     }
 
+    public static Object onBefore(final int listenerId,
+                                  final int methodSiteId,
+                                  final Class<?> spyRetClassInTargetClassLoader,
+                                  final Object target,
+                                  final Object[] argumentArray) throws Throwable {
+        final MethodSites.MethodSite methodSite = MethodSites.instance.get(methodSiteId);
+        if (null == methodSite) {
+            return singleton.toSpyRetInTargetClassLoader(Spy.Ret.newInstanceForNone(), spyRetClassInTargetClassLoader);
+        }
+        return singleton.handleOnBeforeWithTargetClassLoaderSpyRet(
+                listenerId,
+                methodSite.getJavaClassLoader(),
+                spyRetClassInTargetClassLoader,
+                methodSite.javaClassName,
+                methodSite.javaMethodName,
+                methodSite.javaMethodDesc,
+                target,
+                argumentArray
+        );
+    }
+
     public static Object onReturn(final int listenerId,
                                   final Class<?> spyRetClassInTargetClassLoader,
                                   final Object object) throws Throwable {
@@ -582,6 +1320,7 @@ public class EventListenerHandlers {
         singleton.handleOnLine(listenerId, lineNumber);
     }
 
+    // 兼容BootstrapClassLoader中不支持调用点ID的旧版本Spy：每次事件都需要传递字符串并构造调用点
     public static void onCallBefore(final int listenerId,
                                     final int lineNumber,
                                     final String owner,
@@ -589,13 +1328,18 @@ public class EventListenerHandlers {
                                     final String desc) throws Throwable {
         singleton.handleOnCallBefore(
                 listenerId,
-                lineNumber,
-                owner,
-                name,
-                desc
+                new CallSite(0, lineNumber, owner, name, desc)
         );
     }
 
+    public static void onCallBefore(final int listenerId,
+                                    final int callSiteId) throws Throwable {
+        final CallSite callSite = CallSites.instance.get(callSiteId);
+        if (null != callSite) {
+            singleton.handleOnCallBefore(listenerId, callSite);
+        }
+    }
+
     public static void onCallReturn(final int listenerId) throws Throwable {
         singleton.handleOnCallReturn(listenerId);
     }
@@ -605,5 +1349,11 @@ public class EventListenerHandlers {
         singleton.handleOnCallThrows(listenerId, throwException);
     }
 
+    // Class.getName()在首次调用之后由Class缓存，这里不会每次都分配字符串
+    public static void onCallThrows(final int listenerId,
+                                    final Throwable throwable) throws Throwable {
+        singleton.handleOnCallThrows(listenerId, throwable.getClass().getName());
+    }
+
 
 }
@@ -0,0 +1,175 @@
+package com.alibaba.jvm.sandbox.core.enhance.weaver;
+
+import com.alibaba.jvm.sandbox.api.annotation.EventPayload;
+import com.alibaba.jvm.sandbox.api.event.Event;
+import com.alibaba.jvm.sandbox.api.listener.EventListener;
+
+/**
+ * 方法调用点
+ * 描述一个方法需要织入的调用点ID，以及需要织入的事件类型和事件负载
+ */
+public class JoinPoint {
+
+    /**
+     * 负载：方法参数
+     */
+    public static final int PAYLOAD_ARGUMENT = 1;
+
+    /**
+     * 负载：调用对象
+     */
+    public static final int PAYLOAD_TARGET = 1 << 1;
+
+    /**
+     * 负载：方法返回值
+     */
+    public static final int PAYLOAD_RETURN_VALUE = 1 << 2;
+
+    /**
+     * 负载：全部
+     */
+    public static final int PAYLOAD_ALL = PAYLOAD_ARGUMENT | PAYLOAD_TARGET | PAYLOAD_RETURN_VALUE;
+
+    private final int listenerId;
+    private final Event.Type[] eventTypeArray;
+    private final int payloads;
+    private final int sampling;
+
+    /**
+     * 构造方法调用点
+     *
+     * @param listenerId     织入的监听器ID(多个监听器融合时为融合后的调用点ID)
+     * @param eventTypeArray 需要织入的事件类型(多个监听器融合时为所有监听器事件类型的并集)
+     */
+    public JoinPoint(final int listenerId,
+                     final Event.Type[] eventTypeArray) {
+        this(listenerId, eventTypeArray, PAYLOAD_ALL);
+    }
+
+    /**
+     * 构造方法调用点
+     *
+     * @param listenerId     织入的监听器ID(多个监听器融合时为融合后的调用点ID)
+     * @param eventTypeArray 需要织入的事件类型(多个监听器融合时为所有监听器事件类型的并集)
+     * @param payloads       需要构造的事件负载(多个监听器融合时为所有监听器事件负载的并集)
+     */
+    public JoinPoint(final int listenerId,
+                     final Event.Type[] eventTypeArray,
+                     final int payloads) {
+        this(listenerId, eventTypeArray, payloads, 0);
+    }
+
+    /**
+     * 构造方法调用点
+     *
+     * @param listenerId     织入的监听器ID(多个监听器融合时为融合后的调用点ID)
+     * @param eventTypeArray 需要织入的事件类型(多个监听器融合时为所有监听器事件类型的并集)
+     * @param payloads       需要构造的事件负载(多个监听器融合时为所有监听器事件负载的并集)
+     * @param sampling       采样间隔，小于等于1时不采样(只有采样间隔相同的监听器才会融合)
+     */
+    public JoinPoint(final int listenerId,
+                     final Event.Type[] eventTypeArray,
+                     final int payloads,
+                     final int sampling) {
+        this.listenerId = listenerId;
+        this.eventTypeArray = eventTypeArray;
+        this.payloads = payloads;
+        this.sampling = sampling;
+    }
+
+    public int getListenerId() {
+        return listenerId;
+    }
+
+    public Event.Type[] getEventTypeArray() {
+        return eventTypeArray;
+    }
+
+    public int getPayloads() {
+        return payloads;
+    }
+
+    public int getSampling() {
+        return sampling;
+    }
+
+    /**
+     * 是否需要采样
+     *
+     * @return TRUE:采样；FALSE：每次调用都需要观察
+     */
+    public boolean isSampling() {
+        return sampling > 1;
+    }
+
+    /**
+     * 是否需要构造某种事件负载
+     *
+     * @param payload 事件负载
+     * @return TRUE:需要；FALSE：不需要
+     */
+    public boolean isPayload(final int payload) {
+        return (payloads & payload) != 0;
+    }
+
+    /**
+     * 是否只需要织入BEFORE
+     *
+     * @return TRUE:只织入BEFORE；FALSE：需要织入完整的BEFORE/RETURN/THROWS
+     * @see #isBeforeOnly(Event.Type[])
+     */
+    public boolean isBeforeOnly() {
+        return isBeforeOnly(eventTypeArray);
+    }
+
+    /**
+     * 判断订阅的事件是否只需要织入BEFORE
+     * <p>
+     * 只订阅了BEFORE(以及由BEFORE直接触发的IMMEDIATELY_RETURN)时，RETURN/THROWS回调、异常处理块和对应的流程控制都是多余的，
+     * 此时调用过程不会压栈，也就不需要RETURN/THROWS来出栈
+     * </p>
+     *
+     * @param eventTypeArray 订阅的事件类型
+     * @return TRUE:只织入BEFORE；FALSE：需要织入完整的BEFORE/RETURN/THROWS
+     */
+    public static boolean isBeforeOnly(final Event.Type[] eventTypeArray) {
+        boolean hasBefore = false;
+        for (final Event.Type type : eventTypeArray) {
+            switch (type) {
+                case BEFORE:
+                    hasBefore = true;
+                    break;
+                case IMMEDIATELY_RETURN:
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return hasBefore;
+    }
+
+    /**
+     * 获取监听器所声明的事件负载
+     *
+     * @param listener 事件监听器
+     * @return 监听器没有通过{@link EventPayload}声明时需要全部负载
+     */
+    public static int toPayloads(final EventListener listener) {
+        final EventPayload eventPayload = listener.getClass().getAnnotation(EventPayload.class);
+        if (null == eventPayload) {
+            return PAYLOAD_ALL;
+        }
+        int payloads = 0;
+        if (eventPayload.argument()) {
+            payloads |= PAYLOAD_ARGUMENT;
+        }
+        if (eventPayload.target()) {
+            payloads |= PAYLOAD_TARGET;
+        }
+        if (eventPayload.returnValue()) {
+            payloads |= PAYLOAD_RETURN_VALUE;
+        }
+        return payloads;
+    }
+
+}
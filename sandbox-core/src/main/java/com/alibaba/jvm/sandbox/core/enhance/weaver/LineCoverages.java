@@ -0,0 +1,183 @@
+package com.alibaba.jvm.sandbox.core.enhance.weaver;
+
+import com.alibaba.jvm.sandbox.api.resource.ModuleEventWatcher;
+import com.alibaba.jvm.sandbox.core.util.ObjectIDs;
+
+import java.com.alibaba.jvm.sandbox.spy.Spy;
+import java.util.*;
+
+/**
+ * 行覆盖登记表
+ * <p>
+ * 代码织入时把每个被统计的方法登记为一个行覆盖ID，并给方法中的每个代码行分配计数数组中的下标，
+ * 方法织入完成后分配计数数组并发布到{@link Spy}中，织入代码通过行覆盖ID取回计数数组
+ * </p>
+ * <p>
+ * 相同监听器在相同ClassLoader中的相同方法总是得到相同的行覆盖ID和行号下标，重新织入时计数会被保留
+ * </p>
+ */
+public class LineCoverages {
+
+    public static final LineCoverages instance = new LineCoverages();
+
+    // 行覆盖ID序列，从1开始
+    private int lineCoverageIdSequence = 1;
+
+    // 行覆盖:以行覆盖ID为KEY
+    private final Map<Integer/*LINE_COVERAGE_ID*/, LineCoverage> lineCoverages
+            = new LinkedHashMap<Integer, LineCoverage>();
+
+    // 行覆盖ID映射，用于复用相同方法的行覆盖ID
+    private final Map<String/*LINE_COVERAGE_KEY*/, Integer/*LINE_COVERAGE_ID*/> lineCoverageIdMapping
+            = new HashMap<String, Integer>();
+
+    private LineCoverages() {
+
+    }
+
+    /**
+     * 登记被统计的方法
+     *
+     * @param listenerId      监听器ID
+     * @param javaClassLoader 方法所在类的ClassLoader
+     * @param javaClassName   类名称
+     * @param javaMethodName  方法名称
+     * @param javaMethodDesc  方法签名
+     * @return 行覆盖ID
+     */
+    public synchronized int register(final int listenerId,
+                                     final ClassLoader javaClassLoader,
+                                     final String javaClassName,
+                                     final String javaMethodName,
+                                     final String javaMethodDesc) {
+        final String key = listenerId + ":" + ObjectIDs.instance.identity(javaClassLoader)
+                + ":" + javaClassName + "#" + javaMethodName + javaMethodDesc;
+        final Integer existedLineCoverageId = lineCoverageIdMapping.get(key);
+        if (null != existedLineCoverageId) {
+            return existedLineCoverageId;
+        }
+        final int lineCoverageId = lineCoverageIdSequence++;
+        lineCoverages.put(lineCoverageId, new LineCoverage(key, listenerId, javaClassName, javaMethodName, javaMethodDesc));
+        lineCoverageIdMapping.put(key, lineCoverageId);
+        return lineCoverageId;
+    }
+
+    /**
+     * 获取代码行在计数数组中的下标，代码行第一次出现时分配新的下标
+     *
+     * @param lineCoverageId 行覆盖ID
+     * @param lineNumber     代码行号
+     * @return 计数数组下标
+     */
+    public synchronized int slot(final int lineCoverageId,
+                                 final int lineNumber) {
+        final Map<Integer, Integer> lineSlots = lineCoverages.get(lineCoverageId).lineSlots;
+        final Integer existedSlot = lineSlots.get(lineNumber);
+        if (null != existedSlot) {
+            return existedSlot;
+        }
+        final int slot = lineSlots.size();
+        lineSlots.put(lineNumber, slot);
+        return slot;
+    }
+
+    /**
+     * 方法织入完成，分配计数数组并发布到{@link Spy}中
+     * 重新织入时如果出现了新的代码行，则扩容计数数组并保留原有计数
+     *
+     * @param lineCoverageId 行覆盖ID
+     */
+    public synchronized void publish(final int lineCoverageId) {
+        final LineCoverage lineCoverage = lineCoverages.get(lineCoverageId);
+        final int[] current = lineCoverage.hits;
+        if (null != current
+                && current.length >= lineCoverage.lineSlots.size()) {
+            return;
+        }
+        final int[] hits = new int[lineCoverage.lineSlots.size()];
+        if (null != current) {
+            System.arraycopy(current, 0, hits, 0, current.length);
+        }
+        lineCoverage.hits = hits;
+        Spy.setLineHits(lineCoverageId, hits);
+    }
+
+    /**
+     * 列出监听器的所有行覆盖
+     *
+     * @param listenerId 监听器ID
+     * @return 行覆盖集合
+     */
+    public synchronized List<ModuleEventWatcher.LineCoverage> list(final int listenerId) {
+        final List<ModuleEventWatcher.LineCoverage> result = new ArrayList<ModuleEventWatcher.LineCoverage>();
+        for (final LineCoverage lineCoverage : lineCoverages.values()) {
+            if (lineCoverage.listenerId != listenerId
+                    || null == lineCoverage.hits) {
+                continue;
+            }
+            final Map<Integer, Integer> lineHits = new TreeMap<Integer, Integer>();
+            for (final Map.Entry<Integer, Integer> entry : lineCoverage.lineSlots.entrySet()) {
+                lineHits.put(entry.getKey(), lineCoverage.hits[entry.getValue()]);
+            }
+            result.add(new ModuleEventWatcher.LineCoverage(
+                    lineCoverage.javaClassName,
+                    lineCoverage.javaMethodName,
+                    lineCoverage.javaMethodDesc,
+                    lineHits
+            ));
+        }
+        return result;
+    }
+
+    /**
+     * 移除监听器的所有行覆盖，并从{@link Spy}中释放计数数组
+     *
+     * @param listenerId 监听器ID
+     */
+    public synchronized void remove(final int listenerId) {
+        final Iterator<Map.Entry<Integer, LineCoverage>> it = lineCoverages.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<Integer, LineCoverage> entry = it.next();
+            if (entry.getValue().listenerId != listenerId) {
+                continue;
+            }
+            if (null != entry.getValue().hits) {
+                Spy.setLineHits(entry.getKey(), null);
+            }
+            lineCoverageIdMapping.remove(entry.getValue().key);
+            it.remove();
+        }
+    }
+
+    /**
+     * 方法行覆盖
+     */
+    private static class LineCoverage {
+
+        private final String key;
+        private final int listenerId;
+        private final String javaClassName;
+        private final String javaMethodName;
+        private final String javaMethodDesc;
+
+        // 代码行号:计数数组下标
+        private final Map<Integer, Integer> lineSlots = new LinkedHashMap<Integer, Integer>();
+
+        // 计数数组，方法织入完成后才分配
+        private int[] hits;
+
+        LineCoverage(final String key,
+                     final int listenerId,
+                     final String javaClassName,
+                     final String javaMethodName,
+                     final String javaMethodDesc) {
+            this.key = key;
+            this.listenerId = listenerId;
+            this.javaClassName = javaClassName;
+            this.javaMethodName = javaMethodName;
+            this.javaMethodDesc = javaMethodDesc;
+        }
+
+    }
+
+}
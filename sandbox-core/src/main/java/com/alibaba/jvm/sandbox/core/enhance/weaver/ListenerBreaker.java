@@ -0,0 +1,186 @@
+package com.alibaba.jvm.sandbox.core.enhance.weaver;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 监听器熔断器
+ * <p>
+ * 按时间窗口统计监听器处理事件时的异常次数和耗时，满足以下任一条件时熔断：
+ * <ul>
+ * <li>一个窗口内的异常次数达到{@code listener.breaker.error.threshold}</li>
+ * <li>一个窗口内处理了足够多的事件，且平均耗时超过{@code listener.breaker.slow.threshold.us}</li>
+ * </ul>
+ * 熔断后监听器的开关被关闭，织入代码不再穿越到监听器中，监听器本身仍然处于激活状态；
+ * 重新激活监听器、或到达探测时间后自动恢复，恢复后重新开始统计
+ * </p>
+ */
+public class ListenerBreaker {
+
+    // 一个窗口内至少处理这么多事件才判断平均耗时，避免偶发的慢调用导致熔断
+    private static final int MIN_SLOW_SAMPLES = 100;
+
+    private final int errorThreshold;
+    private final long slowThresholdNanos;
+    private final long windowNanos;
+    private final long probeMs;
+
+    // 当前窗口的开始时间
+    private volatile long windowBeginNanos = System.nanoTime();
+
+    // 当前窗口的异常次数、事件数量和累计耗时
+    private final AtomicInteger windowErrors = new AtomicInteger();
+    private final AtomicInteger windowEvents = new AtomicInteger();
+    private final AtomicLong windowCostNanos = new AtomicLong();
+
+    private volatile boolean isTripped = false;
+    private volatile String tripReason;
+    private volatile int tripCount = 0;
+
+    ListenerBreaker(final int errorThreshold,
+                    final long slowThresholdNanos,
+                    final long windowNanos,
+                    final long probeMs) {
+        this.errorThreshold = errorThreshold;
+        this.slowThresholdNanos = slowThresholdNanos;
+        this.windowNanos = windowNanos;
+        this.probeMs = probeMs;
+    }
+
+    /**
+     * 是否需要统计耗时
+     *
+     * @return TRUE:配置了耗时阈值
+     */
+    boolean isTiming() {
+        return slowThresholdNanos > 0;
+    }
+
+    /**
+     * 记录一次事件处理
+     * <p>
+     * 不统计耗时时只需要在出现异常时记录
+     * </p>
+     *
+     * @param endNanos  事件处理结束时间，不统计耗时时为0
+     * @param costNanos 事件处理耗时，不统计耗时时为0
+     * @param isError   是否出现了异常
+     * @return TRUE:本次记录导致了熔断
+     */
+    boolean record(final long endNanos,
+                   final long costNanos,
+                   final boolean isError) {
+
+        if (isTripped) {
+            return false;
+        }
+
+        // 窗口到期，先判断上一个窗口的平均耗时再开启新的窗口
+        if (isTiming()) {
+            if (endNanos - windowBeginNanos >= windowNanos
+                    && rollWindow(endNanos)) {
+                return true;
+            }
+            windowEvents.incrementAndGet();
+            windowCostNanos.addAndGet(costNanos);
+        }
+
+        if (!isError
+                || errorThreshold <= 0) {
+            return false;
+        }
+
+        // 不统计耗时时窗口只由异常推进
+        if (!isTiming()) {
+            final long nowNanos = System.nanoTime();
+            if (nowNanos - windowBeginNanos >= windowNanos) {
+                rollWindow(nowNanos);
+            }
+        }
+
+        return windowErrors.incrementAndGet() >= errorThreshold
+                && trip(String.format("%d errors in %d ms", errorThreshold, windowNanos / 1000000));
+    }
+
+    // 开启新的窗口，返回上一个窗口是否因平均耗时超标而熔断
+    private synchronized boolean rollWindow(final long nowNanos) {
+        if (nowNanos - windowBeginNanos < windowNanos) {
+            return false;
+        }
+        final int events = windowEvents.getAndSet(0);
+        final long costNanos = windowCostNanos.getAndSet(0);
+        windowErrors.set(0);
+        windowBeginNanos = nowNanos;
+        if (isTiming()
+                && events >= MIN_SLOW_SAMPLES
+                && costNanos / events > slowThresholdNanos) {
+            return trip(String.format("average cost %d us over %d events", costNanos / events / 1000, events));
+        }
+        return false;
+    }
+
+    // 熔断，只有第一次熔断返回TRUE
+    private synchronized boolean trip(final String reason) {
+        if (isTripped) {
+            return false;
+        }
+        tripReason = reason;
+        tripCount++;
+        isTripped = true;
+        return true;
+    }
+
+    /**
+     * 恢复熔断，重新开始统计
+     *
+     * @return TRUE:恢复成功；FALSE：当前并未熔断
+     */
+    synchronized boolean reset() {
+        if (!isTripped) {
+            return false;
+        }
+        windowErrors.set(0);
+        windowEvents.set(0);
+        windowCostNanos.set(0);
+        windowBeginNanos = System.nanoTime();
+        isTripped = false;
+        return true;
+    }
+
+    /**
+     * 获取熔断后自动恢复探测的间隔，连续熔断时间隔加倍
+     *
+     * @return 探测间隔(毫秒)，小于等于0时不自动恢复
+     */
+    long getProbeMs() {
+        return probeMs;
+    }
+
+    /**
+     * 是否已熔断
+     *
+     * @return TRUE:已熔断
+     */
+    public boolean isTripped() {
+        return isTripped;
+    }
+
+    /**
+     * 获取最近一次熔断的原因
+     *
+     * @return 熔断原因，从未熔断时返回null
+     */
+    public String getTripReason() {
+        return tripReason;
+    }
+
+    /**
+     * 获取熔断次数
+     *
+     * @return 熔断次数
+     */
+    public int getTripCount() {
+        return tripCount;
+    }
+
+}
@@ -0,0 +1,196 @@
+package com.alibaba.jvm.sandbox.core.enhance.weaver;
+
+import com.alibaba.jvm.sandbox.api.ProcessControlException;
+import com.alibaba.jvm.sandbox.api.event.Event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 监听器开销统计
+ * <p>
+ * 每个线程各自持有一份计数器，事件处理路径上只访问当前线程的计数器，不需要任何同步；
+ * 读取时再汇总所有线程的计数器，汇总值为近似值。
+ * 线程结束后计数器仍然保留，以保证累计值不会变小，计数器随监听器冻结一起释放
+ * </p>
+ */
+public class ListenerStatistic {
+
+    private static final Event.Type[] EVENT_TYPES = Event.Type.values();
+
+    // 当前线程的计数器
+    private final ThreadLocal<Counter> counterRef = new ThreadLocal<Counter>() {
+        @Override
+        protected Counter initialValue() {
+            final Counter counter = new Counter();
+            synchronized (counters) {
+                counters.add(counter);
+            }
+            return counter;
+        }
+    };
+
+    // 所有线程的计数器，只用于汇总
+    private final List<Counter> counters = new ArrayList<Counter>();
+
+    /**
+     * 获取当前线程的计数器
+     *
+     * @return 当前线程的计数器
+     */
+    Counter counter() {
+        return counterRef.get();
+    }
+
+    /**
+     * 汇总所有线程的计数器
+     *
+     * @return 统计快照
+     */
+    public Snapshot snapshot() {
+        final Snapshot snapshot = new Snapshot();
+        synchronized (counters) {
+            for (final Counter counter : counters) {
+                for (int index = 0; index < EVENT_TYPES.length; index++) {
+                    snapshot.eventCounts[index] += counter.eventCounts[index];
+                }
+                snapshot.costNanos += counter.costNanos;
+                snapshot.maxCostNanos = Math.max(snapshot.maxCostNanos, counter.maxCostNanos);
+                snapshot.errorCount += counter.errorCount;
+                snapshot.returnImmediatelyCount += counter.returnImmediatelyCount;
+                snapshot.throwsImmediatelyCount += counter.throwsImmediatelyCount;
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * 单个线程的计数器，只会被所属线程修改
+     */
+    static class Counter {
+
+        private final long[] eventCounts = new long[EVENT_TYPES.length];
+        private long costNanos;
+        private long maxCostNanos;
+        private long errorCount;
+        private long returnImmediatelyCount;
+        private long throwsImmediatelyCount;
+
+        /**
+         * 记录一次事件处理
+         *
+         * @param type      事件类型
+         * @param costNanos 监听器处理事件的耗时
+         * @param isError   是否出现了异常
+         */
+        void record(final Event.Type type,
+                    final long costNanos,
+                    final boolean isError) {
+            eventCounts[type.ordinal()]++;
+            this.costNanos += costNanos;
+            if (costNanos > maxCostNanos) {
+                maxCostNanos = costNanos;
+            }
+            if (isError) {
+                errorCount++;
+            }
+        }
+
+        /**
+         * 记录一次流程变更
+         *
+         * @param state 流程变更状态
+         */
+        void recordProcessControl(final ProcessControlException.State state) {
+            if (state == ProcessControlException.State.RETURN_IMMEDIATELY) {
+                returnImmediatelyCount++;
+            } else if (state == ProcessControlException.State.THROWS_IMMEDIATELY) {
+                throwsImmediatelyCount++;
+            }
+        }
+
+    }
+
+    /**
+     * 统计快照
+     */
+    public static class Snapshot {
+
+        private final long[] eventCounts = new long[EVENT_TYPES.length];
+        private long costNanos;
+        private long maxCostNanos;
+        private long errorCount;
+        private long returnImmediatelyCount;
+        private long throwsImmediatelyCount;
+
+        /**
+         * 获取指定类型的事件数量
+         *
+         * @param type 事件类型
+         * @return 事件数量
+         */
+        public long getEventCount(final Event.Type type) {
+            return eventCounts[type.ordinal()];
+        }
+
+        /**
+         * 获取事件总数量
+         *
+         * @return 事件总数量
+         */
+        public long getEventCount() {
+            long total = 0;
+            for (final long eventCount : eventCounts) {
+                total += eventCount;
+            }
+            return total;
+        }
+
+        /**
+         * 获取累计耗时(纳秒)
+         *
+         * @return 累计耗时
+         */
+        public long getCostNanos() {
+            return costNanos;
+        }
+
+        /**
+         * 获取单次事件处理的最大耗时(纳秒)
+         *
+         * @return 最大耗时
+         */
+        public long getMaxCostNanos() {
+            return maxCostNanos;
+        }
+
+        /**
+         * 获取异常次数
+         *
+         * @return 异常次数
+         */
+        public long getErrorCount() {
+            return errorCount;
+        }
+
+        /**
+         * 获取立即返回的次数
+         *
+         * @return 立即返回的次数
+         */
+        public long getReturnImmediatelyCount() {
+            return returnImmediatelyCount;
+        }
+
+        /**
+         * 获取立即抛出异常的次数
+         *
+         * @return 立即抛出异常的次数
+         */
+        public long getThrowsImmediatelyCount() {
+            return throwsImmediatelyCount;
+        }
+
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.alibaba.jvm.sandbox.core.enhance.weaver;
+
+import com.alibaba.jvm.sandbox.core.util.ObjectIDs;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * 被观察方法登记表
+ * <p>
+ * 代码织入时把每个被观察的方法(ClassLoader、类名、方法名、方法描述)登记为一个int型的方法ID，
+ * 织入代码只需要传递方法ID，BEFORE事件处理时再按ID取回方法，
+ * 避免每次调用都传递字符串，也不用再通过{@link ObjectIDs}在读锁下查找ClassLoader
+ * </p>
+ * <p>
+ * 被观察方法按织入的监听器登记，观察被删除时随之释放，见{@link SiteTable}
+ * </p>
+ */
+public class MethodSites {
+
+    public static final MethodSites instance = new MethodSites();
+
+    private final SiteTable<MethodSite> methodSiteTable = new SiteTable<MethodSite>();
+
+    private MethodSites() {
+
+    }
+
+    /**
+     * 登记被观察方法
+     *
+     * @param listenerId      织入的监听器ID(多个监听器融合时为融合后的调用点ID)
+     * @param javaClassLoader 方法所在类的ClassLoader
+     * @param javaClassName   类名称
+     * @param javaMethodName  方法名称
+     * @param javaMethodDesc  方法签名
+     * @return 方法ID
+     */
+    public int register(final int listenerId,
+                        final ClassLoader javaClassLoader,
+                        final String javaClassName,
+                        final String javaMethodName,
+                        final String javaMethodDesc) {
+        return methodSiteTable.register(
+                listenerId,
+                ObjectIDs.instance.identity(javaClassLoader) + ":" + javaClassName + "#" + javaMethodName + javaMethodDesc,
+                new SiteTable.SiteFactory<MethodSite>() {
+                    @Override
+                    public MethodSite newSite(final int methodSiteId) {
+                        return new MethodSite(methodSiteId, javaClassLoader, javaClassName, javaMethodName, javaMethodDesc);
+                    }
+                }
+        );
+    }
+
+    /**
+     * 释放监听器登记过的所有被观察方法
+     *
+     * @param listenerId 织入的监听器ID(多个监听器融合时为融合后的调用点ID)
+     * @return 释放的被观察方法数量
+     */
+    public int release(final int listenerId) {
+        return methodSiteTable.release(listenerId);
+    }
+
+    /**
+     * 获取被观察方法
+     *
+     * @param methodSiteId 方法ID
+     * @return 被观察方法，不存在或已释放则返回null
+     */
+    public MethodSite get(final int methodSiteId) {
+        return methodSiteTable.get(methodSiteId);
+    }
+
+    /**
+     * 获取登记中的被观察方法数量
+     *
+     * @return 登记中的被观察方法数量
+     */
+    public int size() {
+        return methodSiteTable.size();
+    }
+
+    /**
+     * 被观察方法
+     */
+    public static class MethodSite {
+
+        /**
+         * 方法ID
+         */
+        public final int id;
+
+        // 登记表是全局的，不能因此阻止ClassLoader被回收
+        private final WeakReference<ClassLoader> javaClassLoaderRef;
+
+        /**
+         * 类名称
+         */
+        public final String javaClassName;
+
+        /**
+         * 方法名称
+         */
+        public final String javaMethodName;
+
+        /**
+         * 方法签名
+         */
+        public final String javaMethodDesc;
+
+        MethodSite(final int id,
+                   final ClassLoader javaClassLoader,
+                   final String javaClassName,
+                   final String javaMethodName,
+                   final String javaMethodDesc) {
+            this.id = id;
+            this.javaClassLoaderRef = new WeakReference<ClassLoader>(javaClassLoader);
+            this.javaClassName = javaClassName;
+            this.javaMethodName = javaMethodName;
+            this.javaMethodDesc = javaMethodDesc;
+        }
+
+        /**
+         * 获取方法所在类的ClassLoader
+         *
+         * @return ClassLoader，BootstrapClassLoader或已被回收时返回null
+         */
+        public ClassLoader getJavaClassLoader() {
+            return javaClassLoaderRef.get();
+        }
+
+    }
+
+}
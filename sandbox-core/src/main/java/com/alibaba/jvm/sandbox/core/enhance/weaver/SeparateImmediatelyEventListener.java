@@ -41,17 +41,26 @@ public class SeparateImmediatelyEventListener implements EventListener {
     public void onEvent(final Event event) throws Throwable {
 
         // 分离Immediately事件
+        // 只织入了BEFORE的方法上不会再回调RETURN/THROWS，残留的标记遇到不匹配的事件时需要被忽略
         final Event replaceEvent;
         final Step step = stepRef.get();
         switch (step) {
             case STEP_IMMEDIATELY_RETURN_EVENT: {
+                if (!(event instanceof ReturnEvent)) {
+                    replaceEvent = event;
+                    break;
+                }
                 final ReturnEvent returnEvent = (ReturnEvent) event;
-                replaceEvent = eventPool.borrowImmediatelyReturnEvent(returnEvent.processId, returnEvent.invokeId, returnEvent.object);
+                replaceEvent = eventPool.borrowImmediatelyReturnEvent(returnEvent.longProcessId, returnEvent.longInvokeId, returnEvent.object);
                 break;
             }
             case STEP_IMMEDIATELY_THROWS_EVENT: {
+                if (!(event instanceof ThrowsEvent)) {
+                    replaceEvent = event;
+                    break;
+                }
                 final ThrowsEvent throwsEvent = (ThrowsEvent) event;
-                replaceEvent = eventPool.borrowImmediatelyThrowsEvent(throwsEvent.processId, throwsEvent.invokeId, throwsEvent.throwable);
+                replaceEvent = eventPool.borrowImmediatelyThrowsEvent(throwsEvent.longProcessId, throwsEvent.longInvokeId, throwsEvent.throwable);
                 break;
             }
             case STEP_ORIGINAL_EVENT:
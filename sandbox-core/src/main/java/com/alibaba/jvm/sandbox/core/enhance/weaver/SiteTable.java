@@ -0,0 +1,137 @@
+package com.alibaba.jvm.sandbox.core.enhance.weaver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 织入点登记表
+ * <p>
+ * 织入时把织入点登记为int型的ID，织入代码只需要传递ID，事件处理时再按ID取回织入点；
+ * 按ID读取时只有一次volatile读和一次数组下标访问
+ * </p>
+ * <p>
+ * 织入点按织入的监听器ID(融合时为调用点ID)分组登记：同一个监听器的相同织入点总是得到相同的ID，重新织入不会让登记表增长；
+ * 监听器的织入代码被清除之后通过{@link #release(int)}释放整组织入点。
+ * 释放后的ID不会再分配，残留的织入代码只会取到null，而不会取到其他监听器的织入点
+ * </p>
+ *
+ * @param <S> 织入点类型
+ */
+class SiteTable<S> {
+
+    /**
+     * 织入点构造器
+     *
+     * @param <S> 织入点类型
+     */
+    interface SiteFactory<S> {
+
+        /**
+         * 构造织入点
+         *
+         * @param siteId 分配到的织入点ID
+         * @return 织入点
+         */
+        S newSite(int siteId);
+
+    }
+
+    // 织入点:以织入点ID作为下标，ID从1开始
+    private volatile Object[] sites = new Object[16];
+
+    // 织入点ID映射，用于复用相同织入点的ID
+    private final Map<String/*SITE_KEY*/, Integer/*SITE_ID*/> siteIdMapping
+            = new HashMap<String, Integer>();
+
+    // 监听器登记过的织入点，用于按监听器释放
+    private final Map<Integer/*LISTENER_ID*/, List<String/*SITE_KEY*/>> listenerSiteKeys
+            = new HashMap<Integer, List<String>>();
+
+    // 最后分配的织入点ID
+    private int siteIdSequence = 0;
+
+    /**
+     * 登记织入点
+     *
+     * @param listenerId 织入的监听器ID
+     * @param siteKey    织入点在监听器内的唯一标识
+     * @param factory    织入点构造器
+     * @return 织入点ID
+     */
+    synchronized int register(final int listenerId,
+                              final String siteKey,
+                              final SiteFactory<S> factory) {
+        final String key = listenerId + "@" + siteKey;
+        final Integer existedSiteId = siteIdMapping.get(key);
+        if (null != existedSiteId) {
+            return existedSiteId;
+        }
+
+        final int siteId = ++siteIdSequence;
+        Object[] current = sites;
+        if (siteId >= current.length) {
+            final Object[] expanded = new Object[current.length << 1];
+            System.arraycopy(current, 0, expanded, 0, current.length);
+            current = expanded;
+        }
+
+        // 新登记的下标此前不会被读取，所以可以直接写入，再通过volatile写发布出去
+        current[siteId] = factory.newSite(siteId);
+        sites = current;
+        siteIdMapping.put(key, siteId);
+        List<String> siteKeys = listenerSiteKeys.get(listenerId);
+        if (null == siteKeys) {
+            listenerSiteKeys.put(listenerId, siteKeys = new ArrayList<String>());
+        }
+        siteKeys.add(key);
+        return siteId;
+    }
+
+    /**
+     * 释放监听器登记过的所有织入点
+     *
+     * @param listenerId 织入的监听器ID
+     * @return 释放的织入点数量
+     */
+    synchronized int release(final int listenerId) {
+        final List<String> siteKeys = listenerSiteKeys.remove(listenerId);
+        if (null == siteKeys) {
+            return 0;
+        }
+        final Object[] current = sites;
+        for (final String key : siteKeys) {
+            final Integer siteId = siteIdMapping.remove(key);
+            if (null != siteId) {
+                current[siteId] = null;
+            }
+        }
+        sites = current;
+        return siteKeys.size();
+    }
+
+    /**
+     * 获取织入点
+     *
+     * @param siteId 织入点ID
+     * @return 织入点，不存在或已释放则返回null
+     */
+    @SuppressWarnings("unchecked")
+    S get(final int siteId) {
+        final Object[] current = sites;
+        return siteId > 0 && siteId < current.length
+                ? (S) current[siteId]
+                : null;
+    }
+
+    /**
+     * 获取登记中的织入点数量
+     *
+     * @return 登记中的织入点数量
+     */
+    synchronized int size() {
+        return siteIdMapping.size();
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.alibaba.jvm.sandbox.core.enhance.weaver;
+
+import java.com.alibaba.jvm.sandbox.spy.Spy;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.unCaughtGetClassDeclaredJavaMethod;
+
+/**
+ * 目标ClassLoader中的Spy.Ret构造工厂
+ * <p>
+ * 当目标类所见的Spy.Ret和沙箱的Spy.Ret来自不同的ClassLoader时，需要把处理结果转换为目标ClassLoader中的Spy.Ret。
+ * 每个Spy.Ret类只解析一次工厂方法并绑定到工厂上；
+ * 工厂按类缓存在写时复制的数组中，读取时只有一次volatile读和线性比较，没有锁也不会分配对象(Spy.Ret类的数量非常少)
+ * </p>
+ * <p>
+ * 没有流程变更(NONE)时直接返回缓存的常量；只有监听器改变了流程(立即返回或抛出异常)时，
+ * 才会通过{@link Method#invoke(Object, Object...)}构造一次目标ClassLoader中的Spy.Ret，这部分反射开销是保留的
+ * </p>
+ */
+class SpyRetFactory {
+
+    // 目标ClassLoader中Spy.Ret的NONE是一个常量，可以直接复用
+    private final Object none;
+    private final Method newInstanceForReturnMethod;
+    private final Method newInstanceForThrowsMethod;
+
+    private SpyRetFactory(final Class<?> spyRetClass) throws Throwable {
+        final Method newInstanceForNoneMethod = unCaughtGetClassDeclaredJavaMethod(spyRetClass, "newInstanceForNone");
+        this.newInstanceForReturnMethod = unCaughtGetClassDeclaredJavaMethod(spyRetClass, "newInstanceForReturn", Object.class);
+        this.newInstanceForThrowsMethod = unCaughtGetClassDeclaredJavaMethod(spyRetClass, "newInstanceForThrows", Throwable.class);
+        newInstanceForNoneMethod.setAccessible(true);
+        newInstanceForReturnMethod.setAccessible(true);
+        newInstanceForThrowsMethod.setAccessible(true);
+        this.none = invoke(newInstanceForNoneMethod);
+    }
+
+    private static Object invoke(final Method method, final Object... args) throws Throwable {
+        try {
+            return method.invoke(null, args);
+        } catch (InvocationTargetException cause) {
+            throw cause.getTargetException();
+        }
+    }
+
+    /**
+     * 转换为目标ClassLoader中的Spy.Ret
+     *
+     * @param ret 沙箱的Spy.Ret
+     * @return 目标ClassLoader中的Spy.Ret
+     * @throws Throwable 构造失败
+     */
+    Object toSpyRet(final Spy.Ret ret) throws Throwable {
+        switch (ret.state) {
+            case Spy.Ret.RET_STATE_NONE:
+                return none;
+            case Spy.Ret.RET_STATE_RETURN:
+                return invoke(newInstanceForReturnMethod, ret.respond);
+            case Spy.Ret.RET_STATE_THROWS:
+                return invoke(newInstanceForThrowsMethod, ret.respond);
+            default:
+                throw new IllegalStateException("illegal Spy.Ret.state=" + ret.state);
+        }
+    }
+
+
+    // ----------------------------------- 按类缓存 -----------------------------------
+
+    private static volatile Entry[] entries = new Entry[0];
+
+    /**
+     * 获取指定Spy.Ret类的工厂
+     *
+     * @param spyRetClass 目标ClassLoader中的Spy.Ret类
+     * @return Spy.Ret工厂
+     * @throws Throwable 解析工厂方法失败
+     */
+    static SpyRetFactory get(final Class<?> spyRetClass) throws Throwable {
+        for (final Entry entry : entries) {
+            if (entry.get() == spyRetClass) {
+                final SpyRetFactory factory = entry.factoryRef.get();
+                if (null != factory) {
+                    return factory;
+                }
+            }
+        }
+        return put(spyRetClass);
+    }
+
+    private static synchronized SpyRetFactory put(final Class<?> spyRetClass) throws Throwable {
+        final List<Entry> alive = new ArrayList<Entry>();
+        for (final Entry entry : entries) {
+            final Class<?> clazz = entry.get();
+            final SpyRetFactory factory = entry.factoryRef.get();
+            if (clazz == spyRetClass
+                    && null != factory) {
+                return factory;
+            }
+            // 顺带清理掉已经被卸载的类和已经被回收的工厂
+            if (null != clazz
+                    && null != factory) {
+                alive.add(entry);
+            }
+        }
+        final SpyRetFactory factory = new SpyRetFactory(spyRetClass);
+        alive.add(new Entry(spyRetClass, factory));
+        entries = alive.toArray(new Entry[alive.size()]);
+        return factory;
+    }
+
+    // 工厂持有目标类的方法，会强引用住目标类，缓存无论强引用还是软引用工厂，都会让目标ClassLoader无法及时卸载
+    // 所以这里类和工厂都只弱引用：缓存不会延长目标ClassLoader的生命周期，代价是每次GC之后需要重新解析一次工厂方法
+    private static class Entry extends WeakReference<Class<?>> {
+
+        private final WeakReference<SpyRetFactory> factoryRef;
+
+        Entry(final Class<?> spyRetClass, final SpyRetFactory factory) {
+            super(spyRetClass);
+            this.factoryRef = new WeakReference<SpyRetFactory>(factory);
+        }
+    }
+
+}
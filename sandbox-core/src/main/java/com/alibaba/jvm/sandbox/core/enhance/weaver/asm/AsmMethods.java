@@ -1,5 +1,6 @@
 package com.alibaba.jvm.sandbox.core.enhance.weaver.asm;
 
+import org.objectweb.asm.Type;
 import org.objectweb.asm.commons.Method;
 
 import java.com.alibaba.jvm.sandbox.spy.Spy;
@@ -34,6 +35,30 @@ public interface AsmMethods {
             Object[].class, int.class, int.class, String.class, String.class, String.class, Object.class
     );
 
+    /**
+     * asm method of {@link Spy#spyMethodOnBefore(Object[], int, int, Object)}
+     * <p>
+     * BootstrapClassLoader中的旧版本Spy没有这个方法，所以这里不能通过反射获取
+     * </p>
+     */
+    Method ASM_METHOD_Spy$spyMethodOnBeforeWithMethodSite = new Method(
+            "spyMethodOnBefore",
+            Type.getType(Spy.Ret.class),
+            new Type[]{Type.getType(Object[].class), Type.INT_TYPE, Type.INT_TYPE, Type.getType(Object.class)}
+    );
+
+    /**
+     * asm method of {@link Spy#getLineHits(int)}
+     * <p>
+     * BootstrapClassLoader中的旧版本Spy没有这个方法，所以这里不能通过反射获取
+     * </p>
+     */
+    Method ASM_METHOD_Spy$getLineHits = new Method(
+            "getLineHits",
+            Type.getType(int[].class),
+            new Type[]{Type.INT_TYPE}
+    );
+
     /**
      * asm method of {@link Spy#spyMethodOnReturn(Object, int)}
      */
@@ -68,6 +93,18 @@ public interface AsmMethods {
             int.class, String.class, String.class, String.class, int.class
     );
 
+    /**
+     * asm method of {@link Spy#spyMethodOnCallBefore(int, int)}
+     * <p>
+     * BootstrapClassLoader中的旧版本Spy没有这个方法，所以这里不能通过反射获取
+     * </p>
+     */
+    Method ASM_METHOD_Spy$spyMethodOnCallBeforeWithCallSite = new Method(
+            "spyMethodOnCallBefore",
+            Type.VOID_TYPE,
+            new Type[]{Type.INT_TYPE, Type.INT_TYPE}
+    );
+
     Method ASM_METHOD_Spy$spyMethodOnCallReturn = getAsmMethod(
             Spy.class,
             "spyMethodOnCallReturn",
@@ -80,6 +117,39 @@ public interface AsmMethods {
             String.class, int.class
     );
 
+    /**
+     * asm method of {@link Spy#spyMethodOnCallThrows(Throwable, int)}
+     * <p>
+     * BootstrapClassLoader中的旧版本Spy没有这个方法，所以这里不能通过反射获取
+     * </p>
+     */
+    Method ASM_METHOD_Spy$spyMethodOnCallThrowsWithThrowable = new Method(
+            "spyMethodOnCallThrows",
+            Type.VOID_TYPE,
+            new Type[]{Type.getType(Throwable.class), Type.INT_TYPE}
+    );
+
+    /**
+     * asm method of {@link Spy#isListenerEnable(int)}
+     * <p>
+     * BootstrapClassLoader中的旧版本Spy没有这个方法，所以这里不能通过反射获取
+     * </p>
+     */
+    Method ASM_METHOD_Spy$isListenerEnable = new Method(
+            "isListenerEnable",
+            Type.BOOLEAN_TYPE,
+            new Type[]{Type.INT_TYPE}
+    );
+
+    /**
+     * asm method of {@link Spy#isListenerSampled(int, int)}
+     */
+    Method ASM_METHOD_Spy$isListenerSampled = new Method(
+            "isListenerSampled",
+            Type.BOOLEAN_TYPE,
+            new Type[]{Type.INT_TYPE, Type.INT_TYPE}
+    );
+
     /**
      * asm method of {@link Class#forName(String)}
      */
@@ -14,6 +14,7 @@ public interface AsmTypes {
     Type ASM_TYPE_SPY = Type.getType(Spy.class);
     Type ASM_TYPE_OBJECT = Type.getType(Object.class);
     Type ASM_TYPE_INT = Type.getType(int.class);
+    Type ASM_TYPE_INT_ARRAY = Type.getType(int[].class);
     Type ASM_TYPE_SPY_RET = Type.getType(Spy.Ret.class);
     Type ASM_TYPE_THROWABLE = Type.getType(Throwable.class);
     Type ASM_TYPE_CLASS = Type.getType(Class.class);
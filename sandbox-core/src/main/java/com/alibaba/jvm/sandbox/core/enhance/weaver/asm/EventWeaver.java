@@ -1,7 +1,11 @@
 package com.alibaba.jvm.sandbox.core.enhance.weaver.asm;
 
 import com.alibaba.jvm.sandbox.api.event.Event;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.CallSites;
 import com.alibaba.jvm.sandbox.core.enhance.weaver.CodeLock;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.JoinPoint;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.MethodSites;
+import com.alibaba.jvm.sandbox.core.util.ObjectIDs;
 import org.objectweb.asm.*;
 import org.objectweb.asm.commons.AdviceAdapter;
 import org.objectweb.asm.commons.JSRInlinerAdapter;
@@ -11,7 +15,7 @@ import org.slf4j.LoggerFactory;
 import java.com.alibaba.jvm.sandbox.spy.Spy;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Set;
+import java.util.Map;
 
 import static com.alibaba.jvm.sandbox.core.util.SandboxStringUtils.toJavaClassName;
 import static org.apache.commons.lang3.ArrayUtils.contains;
@@ -62,50 +66,45 @@ public class EventWeaver extends ClassVisitor implements Opcodes, AsmTypes, AsmM
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
+    private final ClassLoader targetClassLoader;
     private final int targetClassLoaderObjectID;
-    private final int listenerId;
     private final String targetJavaClassName;
-    private final Set<String> signCodes;
-    private final Event.Type[] eventTypeArray;
-
-    // 是否支持LINE_EVENT
-    // LINE_EVENT需要对Class做特殊的增强，所以需要在这里做特殊的判断
-    private final boolean isLineEnable;
-
-    // 是否支持CALL_BEFORE/CALL_RETURN/CALL_THROWS事件
-    // CALL系列事件需要对Class做特殊的增强，所以需要在这里做特殊的判断
-    private final boolean hasCallThrows;
-    private final boolean hasCallBefore;
-    private final boolean hasCallReturn;
-    private final boolean isCallEnable;
+    private final Map<String/*BehaviorStructure#getSignCode()*/, JoinPoint> joinPoints;
+    private final boolean isGuardEnable;
+    private final boolean isSiteIdEnable;
 
     public EventWeaver(final int api,
                        final ClassVisitor cv,
-                       final int listenerId,
-                       final int targetClassLoaderObjectID,
+                       final ClassLoader targetClassLoader,
                        final String targetClassInternalName,
-                       final Set<String/*BehaviorStructure#getSignCode()*/> signCodes,
-                       final Event.Type[] eventTypeArray) {
+                       final Map<String/*BehaviorStructure#getSignCode()*/, JoinPoint> joinPoints,
+                       final boolean isGuardEnable,
+                       final boolean isSiteIdEnable) {
         super(api, cv);
-        this.targetClassLoaderObjectID = targetClassLoaderObjectID;
-        this.listenerId = listenerId;
+        this.targetClassLoader = targetClassLoader;
+        this.targetClassLoaderObjectID = ObjectIDs.instance.identity(targetClassLoader);
         this.targetJavaClassName = toJavaClassName(targetClassInternalName);
-        this.signCodes = signCodes;
-        this.eventTypeArray = eventTypeArray;
-
-        this.isLineEnable = contains(eventTypeArray, Event.Type.LINE);
-        this.hasCallBefore = contains(eventTypeArray, Event.Type.CALL_BEFORE);
-        this.hasCallReturn = contains(eventTypeArray, Event.Type.CALL_RETURN);
-        this.hasCallThrows = contains(eventTypeArray, Event.Type.CALL_THROWS);
-        this.isCallEnable = hasCallBefore || hasCallReturn || hasCallThrows;
-    }
-
-    private boolean isMatchedBehavior(final String signCode) {
-        return signCodes.contains(signCode);
+        this.joinPoints = joinPoints;
+        this.isGuardEnable = isGuardEnable;
+        this.isSiteIdEnable = isSiteIdEnable;
     }
 
     private String getBehaviorSignCode(final String name,
                                        final String desc) {
+        return toBehaviorSignCode(targetJavaClassName, name, desc);
+    }
+
+    /**
+     * 计算行为签名，和{@code BehaviorStructure#getSignCode()}保持一致
+     *
+     * @param javaClassName 类名称
+     * @param name          方法名称
+     * @param desc          方法描述
+     * @return 行为签名
+     */
+    static String toBehaviorSignCode(final String javaClassName,
+                                     final String name,
+                                     final String desc) {
         final Type methodType = Type.getMethodType(desc);
         final Collection<String> parameterClassNameArray = new ArrayList<String>();
         if (null != methodType.getArgumentTypes()) {
@@ -115,7 +114,7 @@ public class EventWeaver extends ClassVisitor implements Opcodes, AsmTypes, AsmM
         }
         final String signCode = String.format(
                 "%s#%s(%s)",
-                targetJavaClassName,
+                javaClassName,
                 name,
                 join(parameterClassNameArray, ",")
         );
@@ -128,14 +127,46 @@ public class EventWeaver extends ClassVisitor implements Opcodes, AsmTypes, AsmM
 
         final MethodVisitor mv = super.visitMethod(access, name, desc, signature, exceptions);
         final String signCode = getBehaviorSignCode(name, desc);
-        if (!isMatchedBehavior(signCode)) {
-            logger.debug("rewrite method listener[id:{}] {} was not matched.", listenerId, signCode);
+        final JoinPoint joinPoint = joinPoints.get(signCode);
+        if (null == joinPoint) {
+            logger.debug("rewrite method {} was not matched.", signCode);
             return mv;
         }
 
-        logger.info("rewrite method listener[id:{};event:{}] {} was matched. ;",
+        final int listenerId = joinPoint.getListenerId();
+        final Event.Type[] eventTypeArray = joinPoint.getEventTypeArray();
+
+        // 是否支持LINE_EVENT
+        // LINE_EVENT需要对Class做特殊的增强，所以需要在这里做特殊的判断
+        final boolean isLineEnable = contains(eventTypeArray, Event.Type.LINE);
+
+        // 是否支持CALL_BEFORE/CALL_RETURN/CALL_THROWS事件
+        // CALL系列事件需要对Class做特殊的增强，所以需要在这里做特殊的判断
+        final boolean hasCallBefore = contains(eventTypeArray, Event.Type.CALL_BEFORE);
+        final boolean hasCallReturn = contains(eventTypeArray, Event.Type.CALL_RETURN);
+        final boolean hasCallThrows = contains(eventTypeArray, Event.Type.CALL_THROWS);
+        final boolean isCallEnable = hasCallBefore || hasCallReturn || hasCallThrows;
+
+        // 只订阅了BEFORE时，不需要织入RETURN/THROWS的回调和包裹整个方法的异常处理块
+        final boolean isBeforeOnly = joinPoint.isBeforeOnly();
+
+        // 采样判断和监听器开关一起织入，没有被采中的调用跳过所有回调
+        final boolean isSampling = joinPoint.isSampling();
+        if (isSampling && !isGuardEnable) {
+            logger.warn("rewrite method {} sampling was ignored, Spy in BootstrapClassLoader is too old to support listener guard.", signCode);
+        }
+
+        // 监听器不需要的事件负载不必在目标方法中构造，省去参数数组的分配和返回值的装箱
+        final boolean isArgumentEnable = joinPoint.isPayload(JoinPoint.PAYLOAD_ARGUMENT);
+        final boolean isTargetEnable = joinPoint.isPayload(JoinPoint.PAYLOAD_TARGET);
+        final boolean isReturnValueEnable = joinPoint.isPayload(JoinPoint.PAYLOAD_RETURN_VALUE);
+
+        logger.info("rewrite method listener[id:{};event:{};payloads:{};before-only:{};sampling:{}] {} was matched. ;",
                 listenerId,
                 join(eventTypeArray, ","),
+                joinPoint.getPayloads(),
+                isBeforeOnly,
+                joinPoint.getSampling(),
                 signCode
         );
         return new ReWriteMethod(api, new JSRInlinerAdapter(mv, access, name, desc, signature, exceptions), access, name, desc) {
@@ -152,6 +183,29 @@ public class EventWeaver extends ClassVisitor implements Opcodes, AsmTypes, AsmM
             // 代码锁
             private final CodeLock codeLockForTracing = new CallAsmCodeLock(this);
 
+            // 监听器开关所在的局部变量
+            // 进入方法时读取一次开关，同一次调用中的所有回调都以此为准，保证BEFORE/RETURN/THROWS要么都执行，要么都跳过
+            private int guardLocal = -1;
+
+            /**
+             * 用监听器开关包裹回调代码，开关关闭时直接跳过，不构造参数也不穿越Spy
+             */
+            private CodeLock.Block guard(final CodeLock.Block block) {
+                if (!isGuardEnable) {
+                    return block;
+                }
+                return new CodeLock.Block() {
+                    @Override
+                    public void code() {
+                        final Label skipLabel = new Label();
+                        loadLocal(guardLocal);
+                        ifZCmp(EQ, skipLabel);
+                        block.code();
+                        mark(skipLabel);
+                    }
+                };
+            }
+
             /**
              * 流程控制
              */
@@ -189,26 +243,69 @@ public class EventWeaver extends ClassVisitor implements Opcodes, AsmTypes, AsmM
             protected void onMethodEnter() {
 
                 isMethodEnter = true;
+
+                // 读取监听器开关(以及采样结果)
+                if (isGuardEnable) {
+                    guardLocal = newLocal(Type.BOOLEAN_TYPE);
+                    codeLockForTracing.lock(new CodeLock.Block() {
+                        @Override
+                        public void code() {
+                            push(listenerId);
+                            if (isSampling) {
+                                push(joinPoint.getSampling());
+                                invokeStatic(ASM_TYPE_SPY, ASM_METHOD_Spy$isListenerSampled);
+                            } else {
+                                invokeStatic(ASM_TYPE_SPY, ASM_METHOD_Spy$isListenerEnable);
+                            }
+                            storeLocal(guardLocal);
+                        }
+                    });
+                }
+
                 mark(beginLabel);
 
-                codeLockForTracing.lock(new CodeLock.Block() {
+                codeLockForTracing.lock(guard(new CodeLock.Block() {
                     @Override
                     public void code() {
-                        loadArgArray();
-                        dup();
+                        if (isArgumentEnable) {
+                            loadArgArray();
+                            dup();
+                        } else {
+                            pushNull();
+                        }
                         push(listenerId);
-                        loadClassLoader();
-                        push(targetJavaClassName);
-                        push(name);
-                        push(desc);
-                        loadThisOrPushNullIfIsStatic();
-                        invokeStatic(ASM_TYPE_SPY, ASM_METHOD_Spy$spyMethodOnBefore);
-                        swap();
-                        storeArgArray();
-                        pop();
+
+                        // 被观察方法在织入时登记，运行时只需要传递方法ID
+                        if (isSiteIdEnable) {
+                            push(MethodSites.instance.register(listenerId, targetClassLoader, targetJavaClassName, name, desc));
+                            if (isTargetEnable) {
+                                loadThisOrPushNullIfIsStatic();
+                            } else {
+                                pushNull();
+                            }
+                            invokeStatic(ASM_TYPE_SPY, ASM_METHOD_Spy$spyMethodOnBeforeWithMethodSite);
+                        } else {
+                            loadClassLoader();
+                            push(targetJavaClassName);
+                            push(name);
+                            push(desc);
+                            if (isTargetEnable) {
+                                loadThisOrPushNullIfIsStatic();
+                            } else {
+                                pushNull();
+                            }
+                            invokeStatic(ASM_TYPE_SPY, ASM_METHOD_Spy$spyMethodOnBefore);
+                        }
+
+                        // 没有构造参数数组，监听器也就不可能修改参数，无需回写
+                        if (isArgumentEnable) {
+                            swap();
+                            storeArgArray();
+                            pop();
+                        }
                         processControl();
                     }
-                });
+                }));
             }
 
             /**
@@ -226,6 +323,13 @@ public class EventWeaver extends ClassVisitor implements Opcodes, AsmTypes, AsmM
              * @param opcode 操作吗
              */
             private void loadReturn(int opcode) {
+
+                // 监听器不需要返回值时不必复制和装箱
+                if (!isReturnValueEnable) {
+                    pushNull();
+                    return;
+                }
+
                 switch (opcode) {
 
                     case RETURN: {
@@ -256,8 +360,9 @@ public class EventWeaver extends ClassVisitor implements Opcodes, AsmTypes, AsmM
 
             @Override
             protected void onMethodExit(final int opcode) {
-                if (!isThrow(opcode)) {
-                    codeLockForTracing.lock(new CodeLock.Block() {
+                if (!isBeforeOnly
+                        && !isThrow(opcode)) {
+                    codeLockForTracing.lock(guard(new CodeLock.Block() {
                         @Override
                         public void code() {
                             loadReturn(opcode);
@@ -265,7 +370,7 @@ public class EventWeaver extends ClassVisitor implements Opcodes, AsmTypes, AsmM
                             invokeStatic(ASM_TYPE_SPY, ASM_METHOD_Spy$spyMethodOnReturn);
                             processControl();
                         }
-                    });
+                    }));
                 }
             }
 
@@ -278,10 +383,14 @@ public class EventWeaver extends ClassVisitor implements Opcodes, AsmTypes, AsmM
 
             @Override
             public void visitMaxs(int maxStack, int maxLocals) {
+                if (isBeforeOnly) {
+                    super.visitMaxs(maxStack, maxLocals);
+                    return;
+                }
                 mark(endLabel);
                 visitTryCatchBlock(beginLabel, endLabel, mark(), ASM_TYPE_THROWABLE.getInternalName());
 
-                codeLockForTracing.lock(new CodeLock.Block() {
+                codeLockForTracing.lock(guard(new CodeLock.Block() {
                     @Override
                     public void code() {
                         loadThrow();
@@ -289,7 +398,7 @@ public class EventWeaver extends ClassVisitor implements Opcodes, AsmTypes, AsmM
                         invokeStatic(ASM_TYPE_SPY, ASM_METHOD_Spy$spyMethodOnThrows);
                         processControl();
                     }
-                });
+                }));
 
                 throwException();
                 super.visitMaxs(maxStack, maxLocals);
@@ -301,14 +410,14 @@ public class EventWeaver extends ClassVisitor implements Opcodes, AsmTypes, AsmM
             @Override
             public void visitLineNumber(final int lineNumber, Label label) {
                 if (isMethodEnter && isLineEnable) {
-                    codeLockForTracing.lock(new CodeLock.Block() {
+                    codeLockForTracing.lock(guard(new CodeLock.Block() {
                         @Override
                         public void code() {
                             push(lineNumber);
                             push(listenerId);
                             invokeStatic(ASM_TYPE_SPY, ASM_METHOD_Spy$spyMethodOnLine);
                         }
-                    });
+                    }));
                 }
                 super.visitLineNumber(lineNumber, label);
                 this.tracingCurrentLineNumber = lineNumber;
@@ -336,9 +445,18 @@ public class EventWeaver extends ClassVisitor implements Opcodes, AsmTypes, AsmM
 
                 if (hasCallBefore) {
                     // 方法调用前通知
-                    codeLockForTracing.lock(new CodeLock.Block() {
+                    codeLockForTracing.lock(guard(new CodeLock.Block() {
                         @Override
                         public void code() {
+
+                            // 调用点在织入时登记，运行时只需要传递调用点ID
+                            if (isSiteIdEnable) {
+                                push(CallSites.instance.register(listenerId, tracingCurrentLineNumber, toJavaClassName(owner), name, desc));
+                                push(listenerId);
+                                invokeStatic(ASM_TYPE_SPY, ASM_METHOD_Spy$spyMethodOnCallBeforeWithCallSite);
+                                return;
+                            }
+
                             push(tracingCurrentLineNumber);
                             push(toJavaClassName(owner));
                             push(name);
@@ -346,20 +464,20 @@ public class EventWeaver extends ClassVisitor implements Opcodes, AsmTypes, AsmM
                             push(listenerId);
                             invokeStatic(ASM_TYPE_SPY, ASM_METHOD_Spy$spyMethodOnCallBefore);
                         }
-                    });
+                    }));
                 }
 
                 // 如果没有CALL_THROWS事件,其实是可以不用对方法调用进行try...catch
                 // 这样可以节省大量的字节码
                 if (!hasCallThrows) {
                     super.visitMethodInsn(opcode, owner, name, desc, itf);
-                    codeLockForTracing.lock(new CodeLock.Block() {
+                    codeLockForTracing.lock(guard(new CodeLock.Block() {
                         @Override
                         public void code() {
                             push(listenerId);
                             invokeStatic(ASM_TYPE_SPY, ASM_METHOD_Spy$spyMethodOnCallReturn);
                         }
-                    });
+                    }));
                     return;
                 }
 
@@ -378,13 +496,13 @@ public class EventWeaver extends ClassVisitor implements Opcodes, AsmTypes, AsmM
 
                 if (hasCallReturn) {
                     // 方法调用后通知
-                    codeLockForTracing.lock(new CodeLock.Block() {
+                    codeLockForTracing.lock(guard(new CodeLock.Block() {
                         @Override
                         public void code() {
                             push(listenerId);
                             invokeStatic(ASM_TYPE_SPY, ASM_METHOD_Spy$spyMethodOnCallReturn);
                         }
-                    });
+                    }));
                 }
                 goTo(tracingFinallyLabel);
 
@@ -393,16 +511,24 @@ public class EventWeaver extends ClassVisitor implements Opcodes, AsmTypes, AsmM
                 // {
 
                 catchException(tracingBeginLabel, tracingEndLabel, ASM_TYPE_THROWABLE);
-                codeLockForTracing.lock(new CodeLock.Block() {
+                codeLockForTracing.lock(guard(new CodeLock.Block() {
                     @Override
                     public void code() {
                         dup();
+
+                        // 直接传递异常对象，异常类名交给容器获取
+                        if (isSiteIdEnable) {
+                            push(listenerId);
+                            invokeStatic(ASM_TYPE_SPY, ASM_METHOD_Spy$spyMethodOnCallThrowsWithThrowable);
+                            return;
+                        }
+
                         invokeVirtual(ASM_TYPE_OBJECT, ASM_METHOD_Object$getClass);
                         invokeVirtual(ASM_TYPE_CLASS, ASM_METHOD_Class$getName);
                         push(listenerId);
                         invokeStatic(ASM_TYPE_SPY, ASM_METHOD_Spy$spyMethodOnCallThrows);
                     }
-                });
+                }));
 
                 throwException();
 
@@ -0,0 +1,120 @@
+package com.alibaba.jvm.sandbox.core.enhance.weaver.asm;
+
+import com.alibaba.jvm.sandbox.core.enhance.weaver.LineCoverages;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.JSRInlinerAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+
+import static com.alibaba.jvm.sandbox.core.enhance.weaver.asm.EventWeaver.toBehaviorSignCode;
+import static com.alibaba.jvm.sandbox.core.util.SandboxStringUtils.toJavaClassName;
+
+/**
+ * 行覆盖编织者
+ * <p>
+ * 进入方法时从Spy中取出一次该方法的行号命中计数数组，之后每执行一行只对数组中对应的下标自增，
+ * 不穿越Spy、不派发事件，也不会改变方法的执行流程
+ * </p>
+ */
+public class LineCoverageWeaver extends ClassVisitor implements Opcodes, AsmTypes, AsmMethods {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ClassLoader targetClassLoader;
+    private final String targetJavaClassName;
+    private final Set<String/*BehaviorStructure#getSignCode()*/> signCodes;
+    private final int listenerId;
+
+    public LineCoverageWeaver(final int api,
+                              final ClassVisitor cv,
+                              final ClassLoader targetClassLoader,
+                              final String targetClassInternalName,
+                              final Set<String/*BehaviorStructure#getSignCode()*/> signCodes,
+                              final int listenerId) {
+        super(api, cv);
+        this.targetClassLoader = targetClassLoader;
+        this.targetJavaClassName = toJavaClassName(targetClassInternalName);
+        this.signCodes = signCodes;
+        this.listenerId = listenerId;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(final int access, final String name, final String desc, final String signature, final String[] exceptions) {
+
+        final MethodVisitor mv = super.visitMethod(access, name, desc, signature, exceptions);
+        final String signCode = toBehaviorSignCode(targetJavaClassName, name, desc);
+        if (!signCodes.contains(signCode)) {
+            logger.debug("rewrite method {} was not matched.", signCode);
+            return mv;
+        }
+
+        final int lineCoverageId = LineCoverages.instance.register(listenerId, targetClassLoader, targetJavaClassName, name, desc);
+        logger.info("rewrite method line-coverage[id:{};listener:{}] {} was matched.", lineCoverageId, listenerId, signCode);
+        return new ReWriteMethod(api, new JSRInlinerAdapter(mv, access, name, desc, signature, exceptions), access, name, desc) {
+
+            // 构造函数中super()/this()之前不能使用局部变量，所以需要等到进入方法后才开始计数
+            private boolean isMethodEnter = false;
+
+            // 计数数组所在的局部变量
+            private int hitsLocal = -1;
+
+            // 进入方法前最后一次出现的行号
+            private int currentLineNumber = -1;
+
+            /**
+             * 代码行命中计数自增，计数数组没有发布(为null)时跳过
+             */
+            private void hit(final int lineNumber) {
+                final Label skipLabel = new Label();
+                loadLocal(hitsLocal);
+                ifNull(skipLabel);
+                loadLocal(hitsLocal);
+                push(LineCoverages.instance.slot(lineCoverageId, lineNumber));
+                dup2();
+                arrayLoad(Type.INT_TYPE);
+                push(1);
+                math(ADD, Type.INT_TYPE);
+                arrayStore(Type.INT_TYPE);
+                mark(skipLabel);
+            }
+
+            @Override
+            protected void onMethodEnter() {
+                isMethodEnter = true;
+                hitsLocal = newLocal(ASM_TYPE_INT_ARRAY);
+                push(lineCoverageId);
+                invokeStatic(ASM_TYPE_SPY, ASM_METHOD_Spy$getLineHits);
+                storeLocal(hitsLocal);
+
+                // 构造函数中super()/this()所在的行
+                if (currentLineNumber >= 0) {
+                    hit(currentLineNumber);
+                }
+            }
+
+            @Override
+            public void visitLineNumber(final int lineNumber, final Label label) {
+                super.visitLineNumber(lineNumber, label);
+                if (isMethodEnter) {
+                    hit(lineNumber);
+                } else {
+                    currentLineNumber = lineNumber;
+                }
+            }
+
+            @Override
+            public void visitEnd() {
+                super.visitEnd();
+                LineCoverages.instance.publish(lineCoverageId);
+            }
+
+        };
+    }
+
+}
@@ -213,7 +213,7 @@ public class DefaultCoreModuleManager implements CoreModuleManager {
 
             // EventMonitor注入
             else if (EventMonitor.class.isAssignableFrom(fieldType)) {
-                FieldUtils.writeField(resourceField, module, new DefaultEventMonitor(), true);
+                FieldUtils.writeField(resourceField, module, new DefaultEventMonitor(this), true);
             }
 
             // 其他情况需要输出日志警告
@@ -2,14 +2,29 @@ package com.alibaba.jvm.sandbox.core.manager.impl;
 
 import com.alibaba.jvm.sandbox.api.event.Event;
 import com.alibaba.jvm.sandbox.api.resource.EventMonitor;
+import com.alibaba.jvm.sandbox.core.domain.CoreModule;
 import com.alibaba.jvm.sandbox.core.enhance.weaver.EventListenerHandlers;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.ListenerBreaker;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.ListenerStatistic;
+import com.alibaba.jvm.sandbox.core.manager.CoreModuleManager;
 import com.alibaba.jvm.sandbox.core.util.EventPool;
+import com.alibaba.jvm.sandbox.core.util.matcher.structure.ClassStructureCache;
+import com.alibaba.jvm.sandbox.core.util.matcher.structure.ClassStructureFactory;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 事件监控器实现
  */
 class DefaultEventMonitor implements EventMonitor {
 
+    private final CoreModuleManager coreModuleManager;
+
+    DefaultEventMonitor(final CoreModuleManager coreModuleManager) {
+        this.coreModuleManager = coreModuleManager;
+    }
+
     @Override
     public EventPoolInfo getEventPoolInfo() {
 
@@ -38,4 +53,204 @@ class DefaultEventMonitor implements EventMonitor {
         };
     }
 
+    @Override
+    public AsyncEventInfo getAsyncEventInfo() {
+
+        final EventListenerHandlers handlers = EventListenerHandlers.getSingleton();
+
+        return new AsyncEventInfo() {
+            @Override
+            public int getCapacity() {
+                return handlers.getAsyncEventCapacity();
+            }
+
+            @Override
+            public int getNumPending() {
+                return handlers.getAsyncEventNumPending();
+            }
+
+            @Override
+            public long getNumDelivered() {
+                return handlers.getAsyncEventNumDelivered();
+            }
+
+            @Override
+            public long getNumDropped() {
+                return handlers.getAsyncEventNumDropped();
+            }
+        };
+    }
+
+    @Override
+    public ClassStructureCacheInfo getClassStructureCacheInfo() {
+
+        final ClassStructureCache cache = ClassStructureFactory.getClassStructureCache();
+
+        return new ClassStructureCacheInfo() {
+            @Override
+            public int getCapacity() {
+                return cache.getCapacity();
+            }
+
+            @Override
+            public int getSize() {
+                return cache.getSize();
+            }
+
+            @Override
+            public long getHitCount() {
+                return cache.getHitCount();
+            }
+
+            @Override
+            public long getMissCount() {
+                return cache.getMissCount();
+            }
+
+            @Override
+            public long getEvictionCount() {
+                return cache.getEvictionCount();
+            }
+        };
+    }
+
+    @Override
+    public List<ListenerInfo> listListenerInfo() {
+        final EventListenerHandlers handlers = EventListenerHandlers.getSingleton();
+        final List<ListenerInfo> listenerInfos = new ArrayList<ListenerInfo>();
+        for (final CoreModule coreModule : coreModuleManager.list()) {
+            if (!coreModule.isActivated()) {
+                continue;
+            }
+            for (final SandboxClassFileTransformer sandboxClassFileTransformer : coreModule.getSandboxClassFileTransformers()) {
+
+                // 行覆盖不派发事件，没有监听器
+                if (sandboxClassFileTransformer.isLineCoverage()) {
+                    continue;
+                }
+
+                final ListenerBreaker breaker = handlers.getListenerBreaker(sandboxClassFileTransformer.getListenerId());
+                final ListenerStatistic statistic = handlers.getListenerStatistic(sandboxClassFileTransformer.getListenerId());
+                listenerInfos.add(new ListenerInfoImpl(
+                        coreModule.getUniqueId(),
+                        sandboxClassFileTransformer.getWatchId(),
+                        sandboxClassFileTransformer.getListenerId(),
+                        sandboxClassFileTransformer.getEventListener().getClass().getName(),
+                        null != breaker && breaker.isTripped(),
+                        null == breaker ? 0 : breaker.getTripCount(),
+                        null == breaker ? null : breaker.getTripReason(),
+                        null == statistic ? EMPTY_STATISTIC : statistic.snapshot()
+                ));
+            }
+        }
+        return listenerInfos;
+    }
+
+    // 未启用统计时的空统计
+    private static final ListenerStatistic.Snapshot EMPTY_STATISTIC = new ListenerStatistic().snapshot();
+
+    /**
+     * 监听器信息快照
+     */
+    private static class ListenerInfoImpl implements ListenerInfo {
+
+        private final String moduleId;
+        private final int watchId;
+        private final int listenerId;
+        private final String listenerClassName;
+        private final boolean isTripped;
+        private final int tripCount;
+        private final String tripReason;
+        private final ListenerStatistic.Snapshot statistic;
+
+        ListenerInfoImpl(final String moduleId,
+                         final int watchId,
+                         final int listenerId,
+                         final String listenerClassName,
+                         final boolean isTripped,
+                         final int tripCount,
+                         final String tripReason,
+                         final ListenerStatistic.Snapshot statistic) {
+            this.moduleId = moduleId;
+            this.watchId = watchId;
+            this.listenerId = listenerId;
+            this.listenerClassName = listenerClassName;
+            this.isTripped = isTripped;
+            this.tripCount = tripCount;
+            this.tripReason = tripReason;
+            this.statistic = statistic;
+        }
+
+        @Override
+        public String getModuleId() {
+            return moduleId;
+        }
+
+        @Override
+        public int getWatchId() {
+            return watchId;
+        }
+
+        @Override
+        public int getListenerId() {
+            return listenerId;
+        }
+
+        @Override
+        public String getListenerClassName() {
+            return listenerClassName;
+        }
+
+        @Override
+        public boolean isTripped() {
+            return isTripped;
+        }
+
+        @Override
+        public int getTripCount() {
+            return tripCount;
+        }
+
+        @Override
+        public String getTripReason() {
+            return tripReason;
+        }
+
+        @Override
+        public long getEventCount(final Event.Type type) {
+            return statistic.getEventCount(type);
+        }
+
+        @Override
+        public long getEventCount() {
+            return statistic.getEventCount();
+        }
+
+        @Override
+        public long getCostNanos() {
+            return statistic.getCostNanos();
+        }
+
+        @Override
+        public long getMaxCostNanos() {
+            return statistic.getMaxCostNanos();
+        }
+
+        @Override
+        public long getErrorCount() {
+            return statistic.getErrorCount();
+        }
+
+        @Override
+        public long getReturnImmediatelyCount() {
+            return statistic.getReturnImmediatelyCount();
+        }
+
+        @Override
+        public long getThrowsImmediatelyCount() {
+            return statistic.getThrowsImmediatelyCount();
+        }
+
+    }
+
 }
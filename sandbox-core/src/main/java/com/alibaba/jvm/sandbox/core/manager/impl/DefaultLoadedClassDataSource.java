@@ -13,6 +13,8 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.instrument.Instrumentation;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.alibaba.jvm.sandbox.api.filter.ExtFilter.ExtFilterFactory.make;
 
@@ -27,10 +29,29 @@ public class DefaultLoadedClassDataSource implements CoreLoadedClassDataSource {
     private final Instrumentation inst;
     private final CoreConfigure cfg;
 
+    // 已加载类索引，未启用时为null，每次检索都遍历JVM中所有已加载的类
+    private final LoadedClassIndex loadedClassIndex;
+
     public DefaultLoadedClassDataSource(final Instrumentation inst,
                                         final CoreConfigure cfg) {
         this.inst = inst;
         this.cfg = cfg;
+        this.loadedClassIndex = cfg.isLoadedClassIndexEnable()
+                ? new LoadedClassIndex(inst)
+                : null;
+    }
+
+    /**
+     * 销毁已加载类数据源，释放已加载类索引和检索线程池
+     */
+    public synchronized void destroy() {
+        if (null != loadedClassIndex) {
+            loadedClassIndex.destroy();
+        }
+        if (null != matchExecutor) {
+            matchExecutor.shutdown();
+            matchExecutor = null;
+        }
     }
 
     @Override
@@ -78,19 +99,140 @@ public class DefaultLoadedClassDataSource implements CoreLoadedClassDataSource {
         return find(matcher, true);
     }
 
+    // 每个检索任务至少负责的类数量，类太少时并行得不偿失
+    private static final int MIN_CLASSES_PER_TASK = 2048;
+
+    // 检索线程池，第一次并行检索时创建，空闲后线程自动退出
+    private ThreadPoolExecutor matchExecutor;
+
+    private synchronized ThreadPoolExecutor getMatchExecutor() {
+        if (null == matchExecutor) {
+            final int parallelism = cfg.getLoadedClassMatchParallelism();
+            final AtomicInteger sequence = new AtomicInteger();
+            matchExecutor = new ThreadPoolExecutor(
+                    parallelism,
+                    parallelism,
+                    1, TimeUnit.MINUTES,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(final Runnable runnable) {
+                            final Thread thread = new Thread(runnable, "sandbox-loaded-class-matcher-" + sequence.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    }
+            );
+            matchExecutor.allowCoreThreadTimeOut(true);
+        }
+        return matchExecutor;
+    }
+
     private List<Class<?>> find(final Matcher matcher,
                                 final boolean isRemoveUnsupported) {
-        final List<Class<?>> classes = new ArrayList<Class<?>>();
         if (null == matcher) {
-            return classes;
+            return new ArrayList<Class<?>>();
+        }
+
+        // 从索引中挑选出可能匹配的类，未启用索引时取出jvm中当前加载的所有类
+        final Class<?>[] loaded = getCandidateClasses(matcher, isRemoveUnsupported);
+        final int parallelism = Math.min(
+                cfg.getLoadedClassMatchParallelism(),
+                (loaded.length + MIN_CLASSES_PER_TASK - 1) / MIN_CLASSES_PER_TASK
+        );
+
+        // 只需要一个线程时直接在当前线程中检索
+        if (parallelism <= 1) {
+            return find(matcher, isRemoveUnsupported, loaded, 0, loaded.length);
         }
 
-        // 取出jvm中当前加载的所有类的数组
-        final Iterator<Class<?>> itForLoaded = iteratorForLoadedClasses();
+        // 切分成若干段并行检索，按段的顺序合并结果，检索结果与顺序检索完全一致
+        final long beginMillis = System.currentTimeMillis();
+        final int taskNum = parallelism * 4;
+        final int taskSize = (loaded.length + taskNum - 1) / taskNum;
+        final ThreadPoolExecutor executor = getMatchExecutor();
+        final List<Future<List<Class<?>>>> futures = new ArrayList<Future<List<Class<?>>>>();
+        for (int from = 0; from < loaded.length; from += taskSize) {
+            final int begin = from;
+            final int end = Math.min(loaded.length, from + taskSize);
+            futures.add(executor.submit(new Callable<List<Class<?>>>() {
+                @Override
+                public List<Class<?>> call() {
+                    return find(matcher, isRemoveUnsupported, loaded, begin, end);
+                }
+            }));
+        }
+
+        final List<Class<?>> classes = new ArrayList<Class<?>>();
+        boolean isInterrupted = false;
+        for (int index = 0; index < futures.size(); index++) {
+            final Future<List<Class<?>>> future = futures.get(index);
+            List<Class<?>> segment = null;
+
+            // 被中断之前等待每一段的结果
+            if (!isInterrupted) {
+                try {
+                    segment = future.get();
+                } catch (InterruptedException cause) {
+                    // 不再等待：还没有完成的段全部取消，让出检索线程池
+                    isInterrupted = true;
+                    for (int remain = index; remain < futures.size(); remain++) {
+                        futures.get(remain).cancel(true);
+                    }
+                    logger.warn("match loaded classes in parallel was interrupted, unfinished segments will be matched in current thread.");
+                } catch (Throwable cause) {
+                    logger.warn("match loaded classes in parallel failed, will match in current thread. segment={};", index, cause);
+                }
+            }
+
+            // 被中断之后不再等待，只取已经完成的段的结果
+            if (isInterrupted
+                    && future.isDone()
+                    && !future.isCancelled()) {
+                try {
+                    segment = future.get();
+                } catch (Throwable cause) {
+                    logger.warn("match loaded classes in parallel failed, will match in current thread. segment={};", index, cause);
+                }
+            }
+
+            // 失败、被取消或者没有完成的段在当前线程中补上
+            if (null == segment) {
+                final int begin = index * taskSize;
+                segment = find(matcher, isRemoveUnsupported, loaded, begin, Math.min(loaded.length, begin + taskSize));
+            }
+            classes.addAll(segment);
+        }
+
+        // 检索结果是完整的，中断标记留给调用方处理
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+        logger.debug("match {} loaded classes by {} threads, found {} classes, cost {}ms.",
+                loaded.length, parallelism, classes.size(), System.currentTimeMillis() - beginMillis);
+        return classes;
+    }
+
+    private Class<?>[] getCandidateClasses(final Matcher matcher,
+                                           final boolean isRemoveUnsupported) {
+        if (null == loadedClassIndex) {
+            return inst.getAllLoadedClasses();
+        }
+        final List<Class<?>> candidates = loadedClassIndex.find(matcher, isRemoveUnsupported);
+        return candidates.toArray(new Class<?>[candidates.size()]);
+    }
+
+    // 检索已加载类数组中[begin,end)范围内的类
+    private List<Class<?>> find(final Matcher matcher,
+                                final boolean isRemoveUnsupported,
+                                final Class<?>[] loaded,
+                                final int begin,
+                                final int end) {
+        final List<Class<?>> classes = new ArrayList<Class<?>>();
 
         // 循环找出和matcher匹配的类，同时过滤掉jvm任务不可修改的类
-        while (itForLoaded.hasNext()) {
-            final Class<?> clazz = itForLoaded.next();
+        for (int index = begin; index < end; index++) {
+            final Class<?> clazz = loaded[index];
 
             // 过滤掉对于JVM认为不可修改的类
             if (isRemoveUnsupported && !inst.isModifiableClass(clazz)) {
@@ -101,16 +243,16 @@ public class DefaultLoadedClassDataSource implements CoreLoadedClassDataSource {
             try {
                 if (isRemoveUnsupported) {
                     // 检查当前class是否有类和类行为有不匹配的地方
-                    UnsupportedMatcher unsupportedMatcher = new UnsupportedMatcher(clazz.getClassLoader(), cfg.isEnableUnsafe());
-                    unsupportedMatcher.and(matcher);
-                    MatchingResult matchingResult = unsupportedMatcher.matching(ClassStructureFactory.createClassStructure(clazz));
+                    final MatchingResult matchingResult = new UnsupportedMatcher(clazz.getClassLoader(), cfg.isEnableUnsafe())
+                            .and(matcher)
+                            .matching(ClassStructureFactory.createClassStructure(clazz, loaded.length));
 
                     // 若通过检测，则加入结果集
                     if (matchingResult.isMatched()) {
                         classes.add(clazz);
                     }
                 } else {
-                    if (matcher.matching(ClassStructureFactory.createClassStructure(clazz)).isMatched()) {
+                    if (matcher.matching(ClassStructureFactory.createClassStructure(clazz, loaded.length)).isMatched()) {
                         classes.add(clazz);
                     }
                 }
@@ -8,6 +8,7 @@ import com.alibaba.jvm.sandbox.api.listener.ext.EventWatchCondition;
 import com.alibaba.jvm.sandbox.api.resource.ModuleEventWatcher;
 import com.alibaba.jvm.sandbox.core.domain.CoreModule;
 import com.alibaba.jvm.sandbox.core.enhance.weaver.EventListenerHandlers;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.LineCoverages;
 import com.alibaba.jvm.sandbox.core.manager.CoreLoadedClassDataSource;
 import com.alibaba.jvm.sandbox.core.manager.ModuleLifeCycleEventBus;
 import com.alibaba.jvm.sandbox.core.util.Sequencer;
@@ -77,17 +78,18 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher, ModuleLife
 
     /*
      * 形变观察所影响的类
+     * 返回是否所有的类都形变成功
      */
-    private void reTransformClasses(final int watchId,
-                                    final List<Class<?>> waitingReTransformClasses,
-                                    final Progress progress) {
+    private boolean reTransformClasses(final int watchId,
+                                       final List<Class<?>> waitingReTransformClasses,
+                                       final Progress progress) {
 
         // 需要形变总数
         final int total = waitingReTransformClasses.size();
 
         // 如果找不到需要被重新增强的类则直接返回
         if (CollectionUtils.isEmpty(waitingReTransformClasses)) {
-            return;
+            return true;
         }
 
         if (logger.isDebugEnabled()) {
@@ -113,8 +115,10 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher, ModuleLife
         // 只有两种情况需要进行逐个形变
         // 1. 需要进行形变进度报告,则只能一个个进行形变
         // 2. 批量形变失败,需要转换为单个形变,以观察具体是哪个形变失败
+        boolean isAllReTransformSuccess = batchReTransformSuccess;
         if (!batchReTransformSuccess
                 || null != progress) {
+            isAllReTransformSuccess = true;
             int index = 0;
             for (final Class<?> waitingReTransformClass : waitingReTransformClasses) {
                 index++;
@@ -143,6 +147,7 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher, ModuleLife
                             index - 1, total,
                             causeOfReTransform
                     );
+                    isAllReTransformSuccess = false;
                     if (null != progress) {
                         try {
                             progress.progressOnFailed(waitingReTransformClass, index, causeOfReTransform);
@@ -158,6 +163,7 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher, ModuleLife
             }//for
         }
 
+        return isAllReTransformSuccess;
     }
 
     @Override
@@ -172,7 +178,7 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher, ModuleLife
                      final EventListener listener,
                      final Progress progress,
                      final Event.Type... eventType) {
-        return watch(new ExtFilterMatcher(make(filter)), listener, progress, eventType);
+        return watch(new ExtFilterMatcher(make(filter)), listener, progress, 0, false, eventType);
     }
 
     /**
@@ -189,25 +195,61 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher, ModuleLife
                      final EventListener listener,
                      final Progress progress,
                      final Event.Type... eventType) {
-        return watch(toOrGroupMatcher(condition.getOrFilterArray()), listener, progress, eventType);
+        return watch(toOrGroupMatcher(condition.getOrFilterArray()), listener, progress, 0, false, eventType);
+    }
+
+    @Override
+    public int watch(final EventWatchCondition condition,
+                     final EventListener listener,
+                     final Progress progress,
+                     final int sampling,
+                     final Event.Type... eventType) {
+        return watch(toOrGroupMatcher(condition.getOrFilterArray()), listener, progress, sampling, false, eventType);
+    }
+
+    // 行覆盖不派发事件，占用监听器ID的只是一个空的监听器
+    private static final EventListener LINE_COVERAGE_LISTENER = new EventListener() {
+        @Override
+        public void onEvent(final Event event) throws Throwable {
+        }
+    };
+
+    @Override
+    public int watchLineCoverage(final EventWatchCondition condition,
+                                 final Progress progress) {
+        return watch(toOrGroupMatcher(condition.getOrFilterArray()), LINE_COVERAGE_LISTENER, progress, 0, true);
+    }
+
+    @Override
+    public List<LineCoverage> getLineCoverages(final int watchId) {
+        final List<LineCoverage> lineCoverages = new ArrayList<LineCoverage>();
+        for (final SandboxClassFileTransformer sandboxClassFileTransformer : coreModule.getSandboxClassFileTransformers()) {
+            if (watchId == sandboxClassFileTransformer.getWatchId()
+                    && sandboxClassFileTransformer.isLineCoverage()) {
+                lineCoverages.addAll(LineCoverages.instance.list(sandboxClassFileTransformer.getListenerId()));
+            }
+        }
+        return lineCoverages;
     }
 
     // 这里是用matcher重制过后的watch
     private int watch(final Matcher matcher,
                       final EventListener listener,
                       final Progress progress,
+                      final int sampling,
+                      final boolean isLineCoverage,
                       final Event.Type... eventType) {
         final int watchId = watchIdSequencer.next();
 
         // 给对应的模块追加ClassFileTransformer
         final SandboxClassFileTransformer sandClassFileTransformer = new SandboxClassFileTransformer(
-                watchId, coreModule.getUniqueId(), matcher, listener, isEnableUnsafe, eventType);
+                watchId, coreModule.getUniqueId(), matcher, listener, isEnableUnsafe, sampling, isLineCoverage, eventType);
 
         // 注册到CoreModule中
         coreModule.getSandboxClassFileTransformers().add(sandClassFileTransformer);
 
-        // 注册到JVM加载上ClassFileTransformer处理新增的类
-        inst.addTransformer(sandClassFileTransformer, true);
+        // 注册到全局ClassFileTransformer处理新增的类
+        GlobalSandboxClassFileTransformer.instance.register(inst, sandClassFileTransformer);
 
         // 查找需要渲染的类集合
         final List<Class<?>> waitingReTransformClasses = classDataSource.findForReTransform(matcher);
@@ -247,6 +289,7 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher, ModuleLife
                        final Progress progress) {
 
         final Set<Matcher> waitingRemoveMatcherSet = new LinkedHashSet<Matcher>();
+        final List<Integer> waitingReleaseListenerIds = new ArrayList<Integer>();
 
         // 找出待删除的SandboxClassFileTransformer
         final Iterator<SandboxClassFileTransformer> cftIt = coreModule.getSandboxClassFileTransformers().iterator();
@@ -259,8 +302,13 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher, ModuleLife
                 EventListenerHandlers.getSingleton()
                         .frozen(sandboxClassFileTransformer.getListenerId());
 
-                // 在JVM中移除掉命中的ClassFileTransformer
-                inst.removeTransformer(sandboxClassFileTransformer);
+                // 在全局ClassFileTransformer中移除掉命中的观察
+                GlobalSandboxClassFileTransformer.instance.unRegister(inst, sandboxClassFileTransformer);
+
+                // 释放行覆盖计数
+                if (sandboxClassFileTransformer.isLineCoverage()) {
+                    LineCoverages.instance.remove(sandboxClassFileTransformer.getListenerId());
+                }
 
                 // 计数
                 cCnt += sandboxClassFileTransformer.getAffectStatistic().cCnt();
@@ -268,6 +316,7 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher, ModuleLife
 
                 // 追加到待删除过滤器集合
                 waitingRemoveMatcherSet.add(sandboxClassFileTransformer.getMatcher());
+                waitingReleaseListenerIds.add(sandboxClassFileTransformer.getListenerId());
 
                 // 清除掉该SandboxClassFileTransformer
                 cftIt.remove();
@@ -283,11 +332,18 @@ public class DefaultModuleEventWatcher implements ModuleEventWatcher, ModuleLife
                 coreModule, waitingReTransformClasses.size());
 
         beginProgress(progress, waitingReTransformClasses.size());
+        boolean isAllReTransformSuccess = false;
         try {
             // 应用JVM
-            reTransformClasses(watcherId, waitingReTransformClasses, progress);
+            isAllReTransformSuccess = reTransformClasses(watcherId, waitingReTransformClasses, progress);
         } finally {
             finishProgress(progress, cCnt, mCnt);
+
+            // 织入代码已经清除，释放织入时登记的调用点和被观察方法
+            // 有类没能重新形变时织入代码可能还有残留，监听器ID不能回收
+            for (final int listenerId : waitingReleaseListenerIds) {
+                EventListenerHandlers.getSingleton().release(listenerId, isAllReTransformSuccess);
+            }
         }
     }
 
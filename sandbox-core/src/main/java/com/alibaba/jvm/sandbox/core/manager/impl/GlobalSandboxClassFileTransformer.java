@@ -0,0 +1,404 @@
+package com.alibaba.jvm.sandbox.core.manager.impl;
+
+import com.alibaba.jvm.sandbox.api.event.Event;
+import com.alibaba.jvm.sandbox.core.enhance.EventEnhancer;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.EventListenerHandlers;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.JoinPoint;
+import com.alibaba.jvm.sandbox.core.util.matcher.ClassNamePatternIndex;
+import com.alibaba.jvm.sandbox.core.util.matcher.MatchingResult;
+import com.alibaba.jvm.sandbox.core.util.matcher.structure.ClassStructure;
+import org.apache.commons.lang3.ArrayUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.security.ProtectionDomain;
+import java.util.*;
+
+import static com.alibaba.jvm.sandbox.core.util.matcher.structure.ClassStructureFactory.createClassStructure;
+
+/**
+ * 沙箱全局类形变器
+ * <p>
+ * 所有观察共用这一个形变器注册到JVM中，每个类在一轮形变中只解析一次类结构：
+ * 依次用每个观察的匹配器匹配同一个类结构，再把所有观察的监听器融合成调用点一次织入
+ * </p>
+ * <p>
+ * 同一个行为上融合的监听器超过上限、或者采样间隔不同时，后面的观察在前面织入的产物上再嵌套织入一层；
+ * 行覆盖不派发事件，最后在事件织入的产物上单独织入
+ * </p>
+ * <p>
+ * 所有观察的类名匹配模版被编译成{@link ClassNamePatternIndex}，
+ * 形变前只凭类名就能排除掉不可能匹配的观察，大多数类不需要解析类结构
+ * </p>
+ */
+class GlobalSandboxClassFileTransformer implements ClassFileTransformer {
+
+    static final GlobalSandboxClassFileTransformer instance = new GlobalSandboxClassFileTransformer();
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    // 按注册顺序排列的观察，只在注册和注销时修改
+    private SandboxClassFileTransformer[] sandboxClassFileTransformers = new SandboxClassFileTransformer[0];
+
+    // 观察的类名索引，写时复制
+    private volatile ClassNamePatternIndex<SandboxClassFileTransformer> classNamePatternIndex
+            = toClassNamePatternIndex(sandboxClassFileTransformers);
+
+    private GlobalSandboxClassFileTransformer() {
+
+    }
+
+    /**
+     * 注册观察，第一个观察注册时把全局形变器注册到JVM中
+     *
+     * @param inst                        inst
+     * @param sandboxClassFileTransformer 观察
+     */
+    synchronized void register(final Instrumentation inst,
+                               final SandboxClassFileTransformer sandboxClassFileTransformer) {
+        final SandboxClassFileTransformer[] current = sandboxClassFileTransformers;
+        sandboxClassFileTransformers = (SandboxClassFileTransformer[]) ArrayUtils.add(current, sandboxClassFileTransformer);
+        classNamePatternIndex = toClassNamePatternIndex(sandboxClassFileTransformers);
+        if (current.length == 0) {
+            inst.addTransformer(this, true);
+            logger.info("{} was added to instrumentation.", this);
+        }
+    }
+
+    /**
+     * 注销观察，最后一个观察注销时把全局形变器从JVM中移除
+     *
+     * @param inst                        inst
+     * @param sandboxClassFileTransformer 观察
+     */
+    synchronized void unRegister(final Instrumentation inst,
+                                 final SandboxClassFileTransformer sandboxClassFileTransformer) {
+        final SandboxClassFileTransformer[] current = sandboxClassFileTransformers;
+        if (!ArrayUtils.contains(current, sandboxClassFileTransformer)) {
+            return;
+        }
+        sandboxClassFileTransformers = (SandboxClassFileTransformer[]) ArrayUtils.removeElement(current, sandboxClassFileTransformer);
+        classNamePatternIndex = toClassNamePatternIndex(sandboxClassFileTransformers);
+        if (sandboxClassFileTransformers.length == 0) {
+            inst.removeTransformer(this);
+            logger.info("{} was removed from instrumentation.", this);
+        }
+    }
+
+    // 编译所有观察的类名匹配模版
+    private static ClassNamePatternIndex<SandboxClassFileTransformer> toClassNamePatternIndex(
+            final SandboxClassFileTransformer[] sandboxClassFileTransformers) {
+        final String[][] classNamePatternsArray = new String[sandboxClassFileTransformers.length][];
+        for (int index = 0; index < sandboxClassFileTransformers.length; index++) {
+            classNamePatternsArray[index] = sandboxClassFileTransformers[index].getMatcher().getClassNamePatterns();
+        }
+        return new ClassNamePatternIndex<SandboxClassFileTransformer>(sandboxClassFileTransformers, classNamePatternsArray);
+    }
+
+    @Override
+    public byte[] transform(final ClassLoader loader,
+                            final String internalClassName,
+                            final Class<?> classBeingRedefined,
+                            final ProtectionDomain protectionDomain,
+                            final byte[] srcByteCodeArray) {
+        // 只凭类名找出可能匹配上的观察，一个都没有时不需要解析类结构
+        return transform(loader, internalClassName, classBeingRedefined, srcByteCodeArray,
+                classNamePatternIndex.find(internalClassName));
+    }
+
+    /**
+     * 用指定的观察形变类
+     *
+     * @param loader                       类所在的ClassLoader
+     * @param internalClassName            类名
+     * @param classBeingRedefined          被重新定义的类，首次加载时为null
+     * @param srcByteCodeArray             原始字节码
+     * @param sandboxClassFileTransformers 按注册顺序排列的观察
+     * @return 形变后的字节码，没有任何改变时返回null
+     */
+    byte[] transform(final ClassLoader loader,
+                     final String internalClassName,
+                     final Class<?> classBeingRedefined,
+                     final byte[] srcByteCodeArray,
+                     final SandboxClassFileTransformer[] sandboxClassFileTransformers) {
+
+        if (sandboxClassFileTransformers.length == 0) {
+            return null;
+        }
+
+        try {
+
+            // 这里过滤掉Sandbox所需要的类，防止ClassCircularityError的发生
+            if (null != internalClassName
+                    && internalClassName.startsWith("com/alibaba/jvm/sandbox/")) {
+                return null;
+            }
+
+            // 这里过滤掉来自SandboxClassLoader的类，防止ClassCircularityError的发生
+            if (loader == GlobalSandboxClassFileTransformer.class.getClassLoader()) {
+                return null;
+            }
+
+            return _transform(
+                    loader,
+                    internalClassName,
+                    classBeingRedefined,
+                    srcByteCodeArray,
+                    sandboxClassFileTransformers
+            );
+
+        } catch (Throwable cause) {
+            logger.warn("sandbox transform class:{} in loader:{} failed, will ignore this transform.",
+                    internalClassName, loader,
+                    cause
+            );
+            return null;
+        }
+    }
+
+    // 获取当前类结构
+    private ClassStructure getClassStructure(final ClassLoader loader,
+                                             final Class<?> classBeingRedefined,
+                                             final byte[] srcByteCodeArray) {
+        return null == classBeingRedefined
+                ? createClassStructure(srcByteCodeArray, loader)
+                : createClassStructure(classBeingRedefined);
+    }
+
+    private byte[] _transform(final ClassLoader loader,
+                              final String internalClassName,
+                              final Class<?> classBeingRedefined,
+                              final byte[] srcByteCodeArray,
+                              final SandboxClassFileTransformer[] sandboxClassFileTransformers) {
+
+        // 所有观察共用同一个类结构，只有需要匹配时才解析
+        ClassStructure classStructure = null;
+
+        // 观察:匹配上的行为签名，按注册顺序排列
+        final Map<SandboxClassFileTransformer, Set<String>> matchedBehaviorSignCodes
+                = new LinkedHashMap<SandboxClassFileTransformer, Set<String>>();
+
+        for (final SandboxClassFileTransformer sandboxClassFileTransformer : sandboxClassFileTransformers) {
+
+            // 如果未开启unsafe开关，是不允许增强来自BootStrapClassLoader的类
+            if (!sandboxClassFileTransformer.isEnableUnsafe()
+                    && null == loader) {
+                continue;
+            }
+
+            if (null == classStructure) {
+                classStructure = getClassStructure(loader, classBeingRedefined, srcByteCodeArray);
+            }
+
+            try {
+                final MatchingResult matchingResult = sandboxClassFileTransformer.matching(loader, classStructure);
+                if (matchingResult.isMatched()) {
+                    matchedBehaviorSignCodes.put(sandboxClassFileTransformer, matchingResult.getBehaviorSignCodes());
+                }
+            } catch (Throwable cause) {
+                logger.warn("sandbox matching class:{} in loader:{} failed, module[id:{}] at watch[id:{}] will ignore this transform.",
+                        internalClassName, loader,
+                        sandboxClassFileTransformer.getUniqueId(), sandboxClassFileTransformer.getWatchId(),
+                        cause
+                );
+            }
+
+        }
+
+        // 如果一个行为都没匹配上也不用继续了
+        if (matchedBehaviorSignCodes.isEmpty()) {
+            logger.debug("transform ignore class:{}, no behaviors matched in loader:{}", internalClassName, loader);
+            return null;
+        }
+
+        final byte[] toByteCodeArray;
+        try {
+            toByteCodeArray = weaving(loader, srcByteCodeArray, matchedBehaviorSignCodes);
+        } catch (Throwable cause) {
+            logger.warn("transform class:{} failed, by watches:{} in loader:{};",
+                    internalClassName, toWatchIds(matchedBehaviorSignCodes.keySet()), loader, cause);
+            return null;
+        }
+
+        if (srcByteCodeArray == toByteCodeArray) {
+            logger.debug("transform ignore class:{}, nothing changed in loader:{}.", internalClassName, loader);
+            return null;
+        }
+
+        // statistic affect
+        for (final Map.Entry<SandboxClassFileTransformer, Set<String>> entry : matchedBehaviorSignCodes.entrySet()) {
+            entry.getKey().getAffectStatistic().statisticAffect(loader, internalClassName, entry.getValue());
+        }
+
+        logger.info("transform class:{} finished, by watches:{} in loader:{};",
+                internalClassName, toWatchIds(matchedBehaviorSignCodes.keySet()), loader);
+        return toByteCodeArray;
+    }
+
+    /*
+     * 织入所有匹配上的观察
+     * 事件观察的监听器按注册顺序融合到同一层调用点中，融合失败时在前一层的产物上再嵌套织入一层；
+     * 行覆盖最后单独织入
+     */
+    private byte[] weaving(final ClassLoader loader,
+                           final byte[] srcByteCodeArray,
+                           final Map<SandboxClassFileTransformer, Set<String>> matchedBehaviorSignCodes) {
+
+        byte[] byteCodeArray = srcByteCodeArray;
+        WeavingContext context = new WeavingContext();
+        for (final Map.Entry<SandboxClassFileTransformer, Set<String>> entry : matchedBehaviorSignCodes.entrySet()) {
+            final SandboxClassFileTransformer sandboxClassFileTransformer = entry.getKey();
+            if (sandboxClassFileTransformer.isLineCoverage()) {
+                continue;
+            }
+            if (!context.bind(entry.getValue(), sandboxClassFileTransformer)) {
+                byteCodeArray = context.weaving(loader, byteCodeArray);
+                context = new WeavingContext();
+                context.bind(entry.getValue(), sandboxClassFileTransformer);
+            }
+        }
+        byteCodeArray = context.weaving(loader, byteCodeArray);
+
+        // 行覆盖不派发事件，不参与监听器的融合
+        for (final Map.Entry<SandboxClassFileTransformer, Set<String>> entry : matchedBehaviorSignCodes.entrySet()) {
+            final SandboxClassFileTransformer sandboxClassFileTransformer = entry.getKey();
+            if (sandboxClassFileTransformer.isLineCoverage()) {
+                byteCodeArray = new EventEnhancer().toLineCoverageByteCodeArray(
+                        loader,
+                        byteCodeArray,
+                        entry.getValue(),
+                        sandboxClassFileTransformer.getListenerId()
+                );
+            }
+        }
+
+        return byteCodeArray;
+    }
+
+    private static String toWatchIds(final Collection<SandboxClassFileTransformer> sandboxClassFileTransformers) {
+        final StringBuilder watchIdSB = new StringBuilder();
+        for (final SandboxClassFileTransformer sandboxClassFileTransformer : sandboxClassFileTransformers) {
+            if (watchIdSB.length() > 0) {
+                watchIdSB.append(",");
+            }
+            watchIdSB.append(sandboxClassFileTransformer.getUniqueId())
+                    .append(":")
+                    .append(sandboxClassFileTransformer.getWatchId());
+        }
+        return watchIdSB.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "GlobalSandboxClassFileTransformer@" + Integer.toHexString(hashCode());
+    }
+
+
+    /**
+     * 织入上下文
+     * 记录一层织入中每个行为上按注册顺序融合的监听器
+     */
+    private static class WeavingContext {
+
+        // 行为签名:按注册顺序排列的监听器
+        private final Map<String, List<Binding>> bindings = new LinkedHashMap<String, List<Binding>>();
+
+        /*
+         * 绑定观察的监听器到行为上
+         * 如果某个行为上的监听器超过了融合上限、或者采样间隔不同则返回false，此时不会绑定任何行为
+         */
+        boolean bind(final Set<String> behaviorSignCodes,
+                     final SandboxClassFileTransformer sandboxClassFileTransformer) {
+            final int sampling = sandboxClassFileTransformer.getSampling();
+            for (final String signCode : behaviorSignCodes) {
+                final List<Binding> bindingList = bindings.get(signCode);
+                if (null == bindingList) {
+                    continue;
+                }
+                if (bindingList.size() >= EventListenerHandlers.MAX_JOIN_POINT_LISTENERS) {
+                    return false;
+                }
+                // 采样判断织入在调用点上，采样间隔不同的监听器不能融合
+                if (bindingList.get(0).sampling != sampling) {
+                    return false;
+                }
+            }
+            for (final String signCode : behaviorSignCodes) {
+                List<Binding> bindingList = bindings.get(signCode);
+                if (null == bindingList) {
+                    bindings.put(signCode, bindingList = new ArrayList<Binding>());
+                }
+                bindingList.add(new Binding(
+                        sandboxClassFileTransformer.getListenerId(),
+                        sandboxClassFileTransformer.getEventTypeArray(),
+                        sandboxClassFileTransformer.getPayloads(),
+                        sampling
+                ));
+            }
+            return true;
+        }
+
+        // 织入当前层的调用点，没有绑定任何行为时原样返回
+        byte[] weaving(final ClassLoader loader,
+                       final byte[] byteCodeArray) {
+            if (bindings.isEmpty()) {
+                return byteCodeArray;
+            }
+            return new EventEnhancer().toByteCodeArray(
+                    loader,
+                    byteCodeArray,
+                    toJoinPoints()
+            );
+        }
+
+        Map<String, JoinPoint> toJoinPoints() {
+            final Map<String, JoinPoint> joinPoints = new HashMap<String, JoinPoint>();
+            for (final Map.Entry<String, List<Binding>> entry : bindings.entrySet()) {
+                final List<Binding> bindingList = entry.getValue();
+                final int[] listenerIds = new int[bindingList.size()];
+                final Set<Event.Type> eventTypes = new LinkedHashSet<Event.Type>();
+                int payloads = 0;
+                for (int index = 0; index < listenerIds.length; index++) {
+                    final Binding binding = bindingList.get(index);
+                    listenerIds[index] = binding.listenerId;
+                    eventTypes.addAll(Arrays.asList(binding.eventTypeArray));
+                    payloads |= binding.payloads;
+                }
+                final Event.Type[] eventTypeArray = eventTypes.toArray(new Event.Type[eventTypes.size()]);
+                joinPoints.put(entry.getKey(), new JoinPoint(
+                        EventListenerHandlers.getSingleton().joinPoint(listenerIds, eventTypeArray),
+                        eventTypeArray,
+                        payloads,
+                        bindingList.get(0).sampling
+                ));
+            }
+            return joinPoints;
+        }
+
+    }
+
+    /**
+     * 行为与监听器的绑定
+     */
+    private static class Binding {
+
+        private final int listenerId;
+        private final Event.Type[] eventTypeArray;
+        private final int payloads;
+        private final int sampling;
+
+        Binding(final int listenerId,
+                final Event.Type[] eventTypeArray,
+                final int payloads,
+                final int sampling) {
+            this.listenerId = listenerId;
+            this.eventTypeArray = eventTypeArray;
+            this.payloads = payloads;
+            this.sampling = sampling;
+        }
+
+    }
+
+}
@@ -0,0 +1,542 @@
+package com.alibaba.jvm.sandbox.core.manager.impl;
+
+import com.alibaba.jvm.sandbox.api.util.GaStringUtils;
+import com.alibaba.jvm.sandbox.core.util.matcher.LoadedClassSelector;
+import com.alibaba.jvm.sandbox.core.util.matcher.Matcher;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.annotation.Annotation;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.security.ProtectionDomain;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 已加载类索引
+ * <p>
+ * 第一次检索时用{@link Instrumentation#getAllLoadedClasses()}建立索引，同时注册一个只记录类名的类形变器；
+ * 之后新加载的类在下一次检索时按ClassLoader用{@link Instrumentation#getInitiatedClasses(ClassLoader)}补进索引，
+ * 检索不再需要遍历JVM中所有已加载的类
+ * </p>
+ * <p>
+ * 索引按类名排序，精确类名和类名前缀的检索都是有序表操作；
+ * 同时维护父类型到直接子类型、注解到被标注类的反向索引，按父类、接口或注解锚定的检索只需要遍历候选类。
+ * 注解需要反射才能取得，注解的反向索引在第一次用到时才建立
+ * </p>
+ * <p>
+ * 索引只弱引用Class，类被卸载后对应的索引项自动清除
+ * </p>
+ */
+class LoadedClassIndex implements ClassFileTransformer, LoadedClassSelector {
+
+    // 待补进索引的类超过这个数量时不再记录，下一次检索时重建索引
+    private static final int MAX_PENDING_COUNT = 65536;
+
+    // 待补进的类连续这么多次检索都没有找到时丢弃，通常是类定义失败了
+    private static final int MAX_PENDING_MISSES = 2;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final Instrumentation inst;
+
+    // 新加载的类，由类加载线程写入，检索时取出
+    private final ConcurrentLinkedQueue<Pending> pendings = new ConcurrentLinkedQueue<Pending>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private volatile boolean isOverflow;
+
+    // 类名:同名的已加载类，以下字段都只在持有锁时访问
+    private final TreeMap<String, Entry[]> index = new TreeMap<String, Entry[]>();
+    private final ReferenceQueue<Class<?>> queue = new ReferenceQueue<Class<?>>();
+    private boolean isRegistered;
+    private boolean isBuilt;
+
+    // 父类型类名:直接继承或实现它的已加载类
+    private final Map<String, Set<Entry>> subTypeIndex = new HashMap<String, Set<Entry>>();
+
+    // 注解类名:标注了它的已加载类
+    private final TreeMap<String, Set<Entry>> annotationIndex = new TreeMap<String, Set<Entry>>();
+    private boolean isAnnotationIndexed;
+
+    // 注解类名:声明了标注它的行为的已加载类
+    private final TreeMap<String, Set<Entry>> behaviorAnnotationIndex = new TreeMap<String, Set<Entry>>();
+    private boolean isBehaviorAnnotationIndexed;
+
+    LoadedClassIndex(final Instrumentation inst) {
+        this.inst = inst;
+    }
+
+    @Override
+    public byte[] transform(final ClassLoader loader,
+                            final String internalClassName,
+                            final Class<?> classBeingRedefined,
+                            final ProtectionDomain protectionDomain,
+                            final byte[] srcByteCodeArray) {
+
+        // 只记录首次加载的类；来自SandboxClassLoader的类不记录，防止ClassCircularityError的发生
+        if (null != classBeingRedefined
+                || null == internalClassName
+                || isOverflow
+                || loader == LoadedClassIndex.class.getClassLoader()) {
+            return null;
+        }
+
+        if (pendingCount.incrementAndGet() > MAX_PENDING_COUNT) {
+            isOverflow = true;
+        } else {
+            pendings.offer(new Pending(loader, internalClassName));
+        }
+        return null;
+    }
+
+    /**
+     * 检索可能被匹配器匹配上的已加载类
+     *
+     * @param matcher          匹配器，用来从索引中挑选候选类
+     * @param isModifiableOnly 是否只返回JVM允许修改的类
+     * @return 候选类
+     */
+    synchronized List<Class<?>> find(final Matcher matcher,
+                                     final boolean isModifiableOnly) {
+        sync();
+        final List<Class<?>> classes = new ArrayList<Class<?>>();
+        final Set<Class<?>> candidates = matcher.select(this);
+
+        // 无法挑选时所有已加载类都是候选类
+        if (null == candidates) {
+            for (final Entry[] entries : index.values()) {
+                for (final Entry entry : entries) {
+                    final Class<?> clazz = entry.get();
+                    if (null != clazz
+                            && (!isModifiableOnly || entry.isModifiable)) {
+                        classes.add(clazz);
+                    }
+                }
+            }
+            return classes;
+        }
+
+        for (final Class<?> clazz : candidates) {
+            if (!isModifiableOnly || isModifiable(clazz)) {
+                classes.add(clazz);
+            }
+        }
+        return classes;
+    }
+
+    @Override
+    public synchronized Set<Class<?>> selectByClassNamePatterns(final String[] classNamePatterns) {
+        final Set<Class<?>> classes = new LinkedHashSet<Class<?>>();
+        for (final Entry[] entries : select(index, classNamePatterns)) {
+            collect(Arrays.asList(entries), classes);
+        }
+        return classes;
+    }
+
+    @Override
+    public synchronized Set<Class<?>> selectBySuperTypePatterns(final String[] superTypePatterns) {
+        return collectSubTypes(selectByClassNamePatterns(superTypePatterns));
+    }
+
+    /**
+     * 父类型上可被继承的注解对子类型同样有效，所以被标注的类连同其所有子类型都是候选类
+     */
+    @Override
+    public synchronized Set<Class<?>> selectByAnnotationTypePatterns(final String[] annotationTypePatterns) {
+        if (!isAnnotationIndexed) {
+            isAnnotationIndexed = true;
+            indexAll();
+        }
+        final Set<Class<?>> classes = new LinkedHashSet<Class<?>>();
+        for (final Set<Entry> entries : select(annotationIndex, annotationTypePatterns)) {
+            collect(entries, classes);
+        }
+        return collectSubTypes(classes);
+    }
+
+    @Override
+    public synchronized Set<Class<?>> selectByBehaviorAnnotationTypePatterns(final String[] annotationTypePatterns) {
+        if (!isBehaviorAnnotationIndexed) {
+            isBehaviorAnnotationIndexed = true;
+            indexAll();
+        }
+        final Set<Class<?>> classes = new LinkedHashSet<Class<?>>();
+        for (final Set<Entry> entries : select(behaviorAnnotationIndex, annotationTypePatterns)) {
+            collect(entries, classes);
+        }
+        return classes;
+    }
+
+    /**
+     * 销毁索引，从JVM中移除类形变器
+     */
+    synchronized void destroy() {
+        if (isRegistered) {
+            inst.removeTransformer(this);
+            isRegistered = false;
+            logger.info("{} was removed from instrumentation.", this);
+        }
+        clear();
+    }
+
+    private static boolean isLiteral(final String pattern) {
+        return !StringUtils.containsAny(pattern, '*', '?', '\\');
+    }
+
+    // 从按类名排序的索引中选出键符合任一模版的值
+    private static <V> List<V> select(final NavigableMap<String, V> sortedIndex,
+                                      final String[] patterns) {
+        final List<V> selected = new ArrayList<V>();
+        for (final String pattern : patterns) {
+            if (null == pattern) {
+                continue;
+            }
+
+            // 精确类名
+            if (isLiteral(pattern)) {
+                final V value = sortedIndex.get(pattern);
+                if (null != value) {
+                    selected.add(value);
+                }
+                continue;
+            }
+
+            // 类名前缀
+            final String prefix = StringUtils.stripEnd(pattern, "*");
+            if (prefix.length() < pattern.length()
+                    && isLiteral(prefix)) {
+                selected.addAll(sortedIndex.subMap(prefix, prefix + Character.MAX_VALUE).values());
+                continue;
+            }
+
+            // 其他通配符只能逐个匹配类名，但仍然不需要解析类结构
+            for (final Map.Entry<String, V> entry : sortedIndex.entrySet()) {
+                if (GaStringUtils.matching(entry.getKey(), pattern)) {
+                    selected.add(entry.getValue());
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static void collect(final Collection<Entry> entries,
+                                final Set<Class<?>> classes) {
+        for (final Entry entry : entries) {
+            final Class<?> clazz = entry.get();
+            if (null != clazz) {
+                classes.add(clazz);
+            }
+        }
+    }
+
+    // 沿着反向索引把所有直接和间接的子类型补进来，同名的类只展开一次
+    private Set<Class<?>> collectSubTypes(final Set<Class<?>> classes) {
+        final Set<String> expanded = new HashSet<String>();
+        final LinkedList<String> waiting = new LinkedList<String>();
+        for (final Class<?> clazz : classes) {
+            if (expanded.add(clazz.getName())) {
+                waiting.add(clazz.getName());
+            }
+        }
+        while (!waiting.isEmpty()) {
+            final Set<Entry> subTypes = subTypeIndex.get(waiting.removeFirst());
+            if (null == subTypes) {
+                continue;
+            }
+            for (final Entry entry : subTypes) {
+                final Class<?> clazz = entry.get();
+                if (null != clazz
+                        && classes.add(clazz)
+                        && expanded.add(entry.javaClassName)) {
+                    waiting.add(entry.javaClassName);
+                }
+            }
+        }
+        return classes;
+    }
+
+    private boolean isModifiable(final Class<?> clazz) {
+        final Entry[] entries = index.get(clazz.getName());
+        if (null != entries) {
+            for (final Entry entry : entries) {
+                if (entry.get() == clazz) {
+                    return entry.isModifiable;
+                }
+            }
+        }
+        return inst.isModifiableClass(clazz);
+    }
+
+    // 让索引跟上JVM中当前已加载的类
+    private void sync() {
+        if (!isRegistered) {
+            register();
+        }
+        if (!isBuilt || isOverflow) {
+            rebuild();
+        } else {
+            expunge();
+            merge();
+        }
+    }
+
+    private void register() {
+
+        // 提前加载记录时用到的类，避免在类形变器中触发这些类的加载
+        pendings.offer(new Pending(null, StringUtils.EMPTY));
+        pendings.clear();
+
+        inst.addTransformer(this, false);
+        isRegistered = true;
+        logger.info("{} was added to instrumentation.", this);
+    }
+
+    // 类形变器注册之后重建索引，之后加载的类不是在全量结果中就是在待补进的队列中
+    private void rebuild() {
+        final long beginMillis = System.currentTimeMillis();
+        clear();
+        for (final Class<?> clazz : inst.getAllLoadedClasses()) {
+            add(clazz);
+        }
+        isBuilt = true;
+        logger.debug("{} was rebuilt, cost {}ms.", this, System.currentTimeMillis() - beginMillis);
+    }
+
+    private void clear() {
+        pendings.clear();
+        pendingCount.set(0);
+        isOverflow = false;
+        index.clear();
+        subTypeIndex.clear();
+        annotationIndex.clear();
+        behaviorAnnotationIndex.clear();
+        while (null != queue.poll()) {
+            // drain
+        }
+        isBuilt = false;
+    }
+
+    // 把新加载的类补进索引，按ClassLoader分组后只取各自定义的类
+    private void merge() {
+        final Map<ClassLoader, Map<String, Pending>> pendingMapByLoader
+                = new IdentityHashMap<ClassLoader, Map<String, Pending>>();
+        Pending pending;
+        while (null != (pending = pendings.poll())) {
+            pendingCount.decrementAndGet();
+            final ClassLoader loader = pending.get();
+            if (null == loader && !pending.isBootstrap) {
+                continue;
+            }
+            Map<String, Pending> pendingMap = pendingMapByLoader.get(loader);
+            if (null == pendingMap) {
+                pendingMapByLoader.put(loader, pendingMap = new HashMap<String, Pending>());
+            }
+            pendingMap.put(pending.javaClassName(), pending);
+        }
+
+        for (final Map.Entry<ClassLoader, Map<String, Pending>> entry : pendingMapByLoader.entrySet()) {
+            final ClassLoader loader = entry.getKey();
+            final Map<String, Pending> pendingMap = entry.getValue();
+            for (final Class<?> clazz : inst.getInitiatedClasses(loader)) {
+                if (clazz.getClassLoader() == loader
+                        && null != pendingMap.remove(clazz.getName())) {
+                    add(clazz);
+                }
+            }
+
+            // 没有找到的类可能还在定义中，留到下一次检索
+            for (final Pending miss : pendingMap.values()) {
+                if (++miss.misses < MAX_PENDING_MISSES) {
+                    pendingCount.incrementAndGet();
+                    pendings.offer(miss);
+                }
+            }
+        }
+    }
+
+    private void add(final Class<?> clazz) {
+        final String javaClassName = clazz.getName();
+        final Entry[] entries = index.get(javaClassName);
+        if (null != entries) {
+            for (final Entry entry : entries) {
+                if (entry.get() == clazz) {
+                    return;
+                }
+            }
+        }
+        final Entry entry = new Entry(clazz, inst.isModifiableClass(clazz), queue);
+        index.put(javaClassName, (Entry[]) ArrayUtils.add(
+                null == entries ? new Entry[0] : entries,
+                entry
+        ));
+        put(subTypeIndex, entry.superTypeJavaClassNames, entry);
+        indexAnnotations(entry, clazz);
+    }
+
+    // 第一次按注解挑选时为已经在索引中的类补上注解
+    private void indexAll() {
+        for (final Entry[] entries : index.values()) {
+            for (final Entry entry : entries) {
+                final Class<?> clazz = entry.get();
+                if (null != clazz) {
+                    indexAnnotations(entry, clazz);
+                }
+            }
+        }
+    }
+
+    // 只为已经启用的注解索引取注解，取注解失败的类在匹配时也会因为同样的原因被剔除，所以不用索引
+    private void indexAnnotations(final Entry entry,
+                                  final Class<?> clazz) {
+        if (isAnnotationIndexed
+                && null == entry.annotationTypeJavaClassNames) {
+            try {
+                entry.annotationTypeJavaClassNames = toJavaClassNames(clazz.getDeclaredAnnotations());
+            } catch (Throwable cause) {
+                entry.annotationTypeJavaClassNames = new String[0];
+            }
+            put(annotationIndex, entry.annotationTypeJavaClassNames, entry);
+        }
+        if (isBehaviorAnnotationIndexed
+                && null == entry.behaviorAnnotationTypeJavaClassNames) {
+            try {
+                final Set<String> javaClassNames = new LinkedHashSet<String>();
+                for (final Constructor<?> constructor : clazz.getDeclaredConstructors()) {
+                    javaClassNames.addAll(Arrays.asList(toJavaClassNames(constructor.getDeclaredAnnotations())));
+                }
+                for (final Method method : clazz.getDeclaredMethods()) {
+                    javaClassNames.addAll(Arrays.asList(toJavaClassNames(method.getDeclaredAnnotations())));
+                }
+                entry.behaviorAnnotationTypeJavaClassNames = javaClassNames.toArray(new String[0]);
+            } catch (Throwable cause) {
+                entry.behaviorAnnotationTypeJavaClassNames = new String[0];
+            }
+            put(behaviorAnnotationIndex, entry.behaviorAnnotationTypeJavaClassNames, entry);
+        }
+    }
+
+    private static String[] toJavaClassNames(final Annotation[] annotations) {
+        final String[] javaClassNames = new String[annotations.length];
+        for (int index = 0; index < annotations.length; index++) {
+            javaClassNames[index] = annotations[index].annotationType().getName();
+        }
+        return javaClassNames;
+    }
+
+    private static void put(final Map<String, Set<Entry>> reverseIndex,
+                            final String[] javaClassNames,
+                            final Entry entry) {
+        for (final String javaClassName : javaClassNames) {
+            Set<Entry> entries = reverseIndex.get(javaClassName);
+            if (null == entries) {
+                reverseIndex.put(javaClassName, entries = new HashSet<Entry>());
+            }
+            entries.add(entry);
+        }
+    }
+
+    private static void remove(final Map<String, Set<Entry>> reverseIndex,
+                               final String[] javaClassNames,
+                               final Entry entry) {
+        if (null == javaClassNames) {
+            return;
+        }
+        for (final String javaClassName : javaClassNames) {
+            final Set<Entry> entries = reverseIndex.get(javaClassName);
+            if (null != entries
+                    && entries.remove(entry)
+                    && entries.isEmpty()) {
+                reverseIndex.remove(javaClassName);
+            }
+        }
+    }
+
+    // 清理已被卸载的类
+    private void expunge() {
+        Reference<? extends Class<?>> reference;
+        while (null != (reference = queue.poll())) {
+            final Entry entry = (Entry) reference;
+            remove(subTypeIndex, entry.superTypeJavaClassNames, entry);
+            remove(annotationIndex, entry.annotationTypeJavaClassNames, entry);
+            remove(behaviorAnnotationIndex, entry.behaviorAnnotationTypeJavaClassNames, entry);
+            final Entry[] entries = index.get(entry.javaClassName);
+            if (null == entries) {
+                continue;
+            }
+            final Entry[] remains = (Entry[]) ArrayUtils.removeElement(entries, entry);
+            if (remains.length == 0) {
+                index.remove(entry.javaClassName);
+            } else {
+                index.put(entry.javaClassName, remains);
+            }
+        }
+    }
+
+    /**
+     * 索引项，弱引用已加载类
+     * 记录下建立反向索引时用到的类名，类被卸载后据此清理反向索引
+     */
+    private static class Entry extends WeakReference<Class<?>> {
+
+        private final String javaClassName;
+        private final boolean isModifiable;
+        private final String[] superTypeJavaClassNames;
+
+        // 对应的注解索引启用之后才有值
+        private String[] annotationTypeJavaClassNames;
+        private String[] behaviorAnnotationTypeJavaClassNames;
+
+        Entry(final Class<?> clazz,
+              final boolean isModifiable,
+              final ReferenceQueue<Class<?>> queue) {
+            super(clazz, queue);
+            this.javaClassName = clazz.getName();
+            this.isModifiable = isModifiable;
+            this.superTypeJavaClassNames = getSuperTypeJavaClassNames(clazz);
+        }
+
+        private static String[] getSuperTypeJavaClassNames(final Class<?> clazz) {
+            final List<String> javaClassNames = new ArrayList<String>();
+            final Class<?> superClass = clazz.getSuperclass();
+            if (null != superClass) {
+                javaClassNames.add(superClass.getName());
+            }
+            for (final Class<?> interfaceClass : clazz.getInterfaces()) {
+                javaClassNames.add(interfaceClass.getName());
+            }
+            return javaClassNames.toArray(new String[0]);
+        }
+
+    }
+
+    /**
+     * 待补进索引的类，弱引用ClassLoader，BootstrapClassLoader用null表示
+     */
+    private static class Pending extends WeakReference<ClassLoader> {
+
+        private final boolean isBootstrap;
+        private final String internalClassName;
+        private int misses;
+
+        Pending(final ClassLoader loader,
+                final String internalClassName) {
+            super(loader);
+            this.isBootstrap = null == loader;
+            this.internalClassName = internalClassName;
+        }
+
+        String javaClassName() {
+            return internalClassName.replace('/', '.');
+        }
+
+    }
+
+}
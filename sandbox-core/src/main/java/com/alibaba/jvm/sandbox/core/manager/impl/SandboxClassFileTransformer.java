@@ -2,21 +2,15 @@ package com.alibaba.jvm.sandbox.core.manager.impl;
 
 import com.alibaba.jvm.sandbox.api.event.Event;
 import com.alibaba.jvm.sandbox.api.listener.EventListener;
-import com.alibaba.jvm.sandbox.core.enhance.EventEnhancer;
-import com.alibaba.jvm.sandbox.core.util.ObjectIDs;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.EventListenerHandlers;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.JoinPoint;
 import com.alibaba.jvm.sandbox.core.util.matcher.Matcher;
 import com.alibaba.jvm.sandbox.core.util.matcher.MatchingResult;
 import com.alibaba.jvm.sandbox.core.util.matcher.UnsupportedMatcher;
 import com.alibaba.jvm.sandbox.core.util.matcher.structure.ClassStructure;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.lang.instrument.ClassFileTransformer;
-import java.lang.instrument.IllegalClassFormatException;
 import java.security.ProtectionDomain;
-import java.util.Set;
-
-import static com.alibaba.jvm.sandbox.core.util.matcher.structure.ClassStructureFactory.createClassStructure;
 
 /**
  * 沙箱类形变器
@@ -24,138 +18,111 @@ import static com.alibaba.jvm.sandbox.core.util.matcher.structure.ClassStructure
  */
 public class SandboxClassFileTransformer implements ClassFileTransformer {
 
-    private final Logger logger = LoggerFactory.getLogger(getClass());
     private final int watchId;
     private final String uniqueId;
     private final Matcher matcher;
     private final EventListener eventListener;
     private final boolean isEnableUnsafe;
     private final Event.Type[] eventTypeArray;
+    private final int payloads;
+    private final int sampling;
+    private final boolean isLineCoverage;
 
     private final int listenerId;
     private final AffectStatistic affectStatistic = new AffectStatistic();
 
-    SandboxClassFileTransformer(final int watchId,
-                                final String uniqueId,
-                                final Matcher matcher,
-                                final EventListener eventListener,
-                                final boolean isEnableUnsafe,
-                                final Event.Type[] eventTypeArray) {
+    /**
+     * 构造观察，构造时为观察分配事件监听器ID
+     *
+     * @param watchId        观察ID
+     * @param uniqueId       模块唯一ID
+     * @param matcher        匹配器
+     * @param eventListener  事件监听器
+     * @param isEnableUnsafe 是否允许增强来自BootStrapClassLoader的类
+     * @param sampling       采样间隔
+     * @param isLineCoverage 是否为行覆盖观察
+     * @param eventTypeArray 监听事件类型数组
+     */
+    public SandboxClassFileTransformer(final int watchId,
+                                       final String uniqueId,
+                                       final Matcher matcher,
+                                       final EventListener eventListener,
+                                       final boolean isEnableUnsafe,
+                                       final int sampling,
+                                       final boolean isLineCoverage,
+                                       final Event.Type[] eventTypeArray) {
         this.watchId = watchId;
         this.uniqueId = uniqueId;
         this.matcher = matcher;
         this.eventListener = eventListener;
         this.isEnableUnsafe = isEnableUnsafe;
         this.eventTypeArray = eventTypeArray;
-        this.listenerId = ObjectIDs.instance.identity(eventListener);
-    }
-
-    // 获取当前类结构
-    private ClassStructure getClassStructure(final ClassLoader loader,
-                                             final Class<?> classBeingRedefined,
-                                             final byte[] srcByteCodeArray) {
-        return null == classBeingRedefined
-                ? createClassStructure(srcByteCodeArray, loader)
-                : createClassStructure(classBeingRedefined);
+        this.payloads = JoinPoint.toPayloads(eventListener);
+        this.sampling = sampling;
+        this.isLineCoverage = isLineCoverage;
+        this.listenerId = EventListenerHandlers.getSingleton().allocateListenerId();
     }
 
     /**
      * ClassFileTransformer接口的转换方法实现
-     * @param loader
-     * @param internalClassName
-     * @param classBeingRedefined
-     * @param protectionDomain
-     * @param srcByteCodeArray
-     * @return
-     * @throws IllegalClassFormatException
+     * <p>
+     * 只用当前观察形变类，沙箱实际注册到JVM中的是所有观察共用的{@link GlobalSandboxClassFileTransformer}
+     * </p>
      */
     @Override
     public byte[] transform(final ClassLoader loader,
                             final String internalClassName,
                             final Class<?> classBeingRedefined,
                             final ProtectionDomain protectionDomain,
-                            final byte[] srcByteCodeArray) throws IllegalClassFormatException {
-
-        try {
-
-            // 这里过滤掉Sandbox所需要的类，防止ClassCircularityError的发生
-            if (null != internalClassName
-                    && internalClassName.startsWith("com/alibaba/jvm/sandbox/")) {
-                return null;
-            }
-
-            // 这里过滤掉来自SandboxClassLoader的类，防止ClassCircularityError的发生
-            if (loader == SandboxClassFileTransformer.class.getClassLoader()) {
-                return null;
-            }
-
-            return _transform(
-                    loader,
-                    internalClassName,
-                    classBeingRedefined,
-                    protectionDomain,
-                    srcByteCodeArray
-            );
-
-
-        } catch (Throwable cause) {
-            logger.warn("sandbox transform class:{} in loader:{} failed, module[id:{}] at watch[id:{}] will ignore this transform.",
-                    internalClassName, loader,
-                    uniqueId, watchId,
-                    cause
-            );
-            return null;
-        }
+                            final byte[] srcByteCodeArray) {
+        return GlobalSandboxClassFileTransformer.instance.transform(
+                loader,
+                internalClassName,
+                classBeingRedefined,
+                srcByteCodeArray,
+                new SandboxClassFileTransformer[]{this}
+        );
     }
 
-    private byte[] _transform(final ClassLoader loader,
-                              final String internalClassName,
-                              final Class<?> classBeingRedefined,
-                              final ProtectionDomain protectionDomain,
-                              final byte[] srcByteCodeArray) throws IllegalClassFormatException {
-        // 如果未开启unsafe开关，是不允许增强来自BootStrapClassLoader的类
-        if (!isEnableUnsafe
-                && null == loader) {
-            logger.debug("transform ignore class:{}, class from bootstrap but unsafe.enable:false.", internalClassName);
-            return null;
-        }
-
-        // 获取当前类构造器
-        final ClassStructure classStructure = getClassStructure(loader, classBeingRedefined, srcByteCodeArray);
-        final MatchingResult matchingResult = new UnsupportedMatcher(loader, isEnableUnsafe).and(matcher).matching(classStructure);
-        final Set<String> behaviorSignCodes = matchingResult.getBehaviorSignCodes();
-
-        // 如果一个行为都没匹配上也不用继续了
-        if (!matchingResult.isMatched()) {
-            logger.debug("transform ignore class:{}, no behaviors matched in loader:{}", internalClassName, loader);
-            return null;
-        }
-
-        // 开始进行类匹配
-        try {
-            final byte[] toByteCodeArray = new EventEnhancer().toByteCodeArray(
-                    loader,
-                    srcByteCodeArray,
-                    behaviorSignCodes,
-                    listenerId,
-                    eventTypeArray
-            );
-            if (srcByteCodeArray == toByteCodeArray) {
-                logger.debug("transform ignore class:{}, nothing changed in loader:{}.", internalClassName, loader);
-                return null;
-            }
-
-            // statistic affect
-            affectStatistic.statisticAffect(loader, internalClassName, behaviorSignCodes);
-
-            logger.info("transform class:{} finished, by module[id:{}] in loader:{};", internalClassName, uniqueId, loader);
-            return toByteCodeArray;
-        } catch (Throwable cause) {
-            logger.warn("transform class:{} failed, by module[id={}] in loader:{};", internalClassName, uniqueId, loader, cause);
-            return null;
-        }
+    /**
+     * 用多个观察一起形变类
+     * <p>
+     * 与沙箱注册到JVM中的{@link GlobalSandboxClassFileTransformer}走同一个形变过程：
+     * 同一个行为上的监听器按观察的顺序融合，不能融合时嵌套织入
+     * </p>
+     *
+     * @param loader                       类所在的ClassLoader
+     * @param internalClassName            类名
+     * @param classBeingRedefined          被重新定义的类，首次加载时为null
+     * @param srcByteCodeArray             原始字节码
+     * @param sandboxClassFileTransformers 按注册顺序排列的观察
+     * @return 形变后的字节码，没有任何改变时返回null
+     */
+    public static byte[] transform(final ClassLoader loader,
+                                   final String internalClassName,
+                                   final Class<?> classBeingRedefined,
+                                   final byte[] srcByteCodeArray,
+                                   final SandboxClassFileTransformer[] sandboxClassFileTransformers) {
+        return GlobalSandboxClassFileTransformer.instance.transform(
+                loader,
+                internalClassName,
+                classBeingRedefined,
+                srcByteCodeArray,
+                sandboxClassFileTransformers
+        );
     }
 
+    /**
+     * 用当前观察的匹配器匹配类结构
+     *
+     * @param loader         类所在的ClassLoader
+     * @param classStructure 类结构
+     * @return 匹配结果
+     */
+    MatchingResult matching(final ClassLoader loader,
+                            final ClassStructure classStructure) {
+        return new UnsupportedMatcher(loader, isEnableUnsafe).and(matcher).matching(classStructure);
+    }
 
     /**
      * 获取观察ID
@@ -166,6 +133,42 @@ public class SandboxClassFileTransformer implements ClassFileTransformer {
         return watchId;
     }
 
+    /**
+     * 获取模块唯一ID
+     *
+     * @return 模块唯一ID
+     */
+    String getUniqueId() {
+        return uniqueId;
+    }
+
+    /**
+     * 是否允许增强来自BootStrapClassLoader的类
+     *
+     * @return TRUE:允许
+     */
+    boolean isEnableUnsafe() {
+        return isEnableUnsafe;
+    }
+
+    /**
+     * 获取监听器需要的调用点载荷
+     *
+     * @return 调用点载荷
+     */
+    int getPayloads() {
+        return payloads;
+    }
+
+    /**
+     * 获取采样间隔
+     *
+     * @return 采样间隔
+     */
+    int getSampling() {
+        return sampling;
+    }
+
     /**
      * 获取事件监听器
      *
@@ -180,10 +183,19 @@ public class SandboxClassFileTransformer implements ClassFileTransformer {
      *
      * @return 事件监听器ID
      */
-    int getListenerId() {
+    public int getListenerId() {
         return listenerId;
     }
 
+    /**
+     * 是否为行覆盖观察
+     *
+     * @return TRUE:行覆盖观察；FALSE：事件观察
+     */
+    boolean isLineCoverage() {
+        return isLineCoverage;
+    }
+
     /**
      * 获取本次匹配器
      *
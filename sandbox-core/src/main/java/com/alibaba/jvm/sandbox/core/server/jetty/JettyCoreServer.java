@@ -53,6 +53,9 @@ public class JettyCoreServer implements CoreServer {
     // 核心模块管理类实例
     private CoreModuleManager coreModuleManager;
 
+    // 已加载类数据源实例
+    private DefaultLoadedClassDataSource classDataSource;
+
     /**
      * 单例
      *
@@ -86,6 +89,12 @@ public class JettyCoreServer implements CoreServer {
                         logger.info("{} was stop.", JettyCoreServer.this);
 
                     }
+
+                    // 释放已加载类索引，防止JVM中残留的类形变器引用住SandboxClassLoader
+                    if (null != classDataSource) {
+                        classDataSource.destroy();
+                        classDataSource = null;
+                    }
                 }
             });
 
@@ -211,7 +220,7 @@ public class JettyCoreServer implements CoreServer {
         logger.info("init manager success. manager={}", moduleLifeCycleEventBus);
 
         // 已加载类数据源默认实现
-        final CoreLoadedClassDataSource classDataSource = new DefaultLoadedClassDataSource(inst, cfg);
+        classDataSource = new DefaultLoadedClassDataSource(inst, cfg);
         logger.info("init manager success. manager={}", classDataSource);
 
         // 初始化模块资源管理器
@@ -2,79 +2,109 @@ package com.alibaba.jvm.sandbox.core.util;
 
 import com.alibaba.jvm.sandbox.api.event.*;
 import com.alibaba.jvm.sandbox.core.CoreConfigure;
-import org.apache.commons.pool2.BaseKeyedPooledObjectFactory;
-import org.apache.commons.pool2.KeyedObjectPool;
-import org.apache.commons.pool2.PooledObject;
-import org.apache.commons.pool2.impl.DefaultPooledObject;
-import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
-import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import sun.misc.Unsafe;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import static com.alibaba.jvm.sandbox.core.util.UnsafeUtils.objectFieldOffset;
+import static com.alibaba.jvm.sandbox.core.util.UnsafeUtils.putInt;
+import static com.alibaba.jvm.sandbox.core.util.UnsafeUtils.putLong;
+import static com.alibaba.jvm.sandbox.core.util.UnsafeUtils.putObject;
+import static java.lang.System.arraycopy;
 
 /**
  * 事件对象池
+ * <p>
+ * 事件的处理在同一个线程中是严格嵌套的，所以每个线程按事件类型各自维护一个空闲事件栈，
+ * 借出和归还都只访问当前线程的数据，不需要任何同步。
+ * 每个线程、每种事件类型最多缓存{@code event.pool.max.idle.per.event}个空闲事件(即最多缓存的嵌套深度)，
+ * 超过这个深度的事件直接分配，归还时丢弃
+ * </p>
  *
  * @author luanjia@taobao.com
  */
 public class EventPool {
 
+    private static final Event.Type[] EVENT_TYPES = Event.Type.values();
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
-    private final KeyedObjectPool<Event.Type, Event> pool;
     private final boolean isEnable;
+    private final int maxIdlePerEvent;
 
-    public EventPool() {
-        this.pool = createEventPool();
-        this.isEnable = this.pool != null;
-    }
+    // 当前线程的事件缓存
+    private final ThreadLocal<EventCache> eventCacheRef = new ThreadLocal<EventCache>() {
+        @Override
+        protected EventCache initialValue() {
+            final EventCache eventCache = new EventCache();
+            synchronized (eventCacheMap) {
+                eventCacheMap.put(Thread.currentThread(), eventCache);
+            }
+            return eventCache;
+        }
+    };
+
+    // 所有线程的事件缓存，只用于统计；线程结束后对应的缓存随之释放
+    private final Map<Thread, EventCache> eventCacheMap = new WeakHashMap<Thread, EventCache>();
 
-    private KeyedObjectPool<Event.Type, Event> createEventPool() {
+    public EventPool() {
         final CoreConfigure cfg = CoreConfigure.getInstance();
-        if (cfg.isEventPoolEnable()) {
-            final GenericKeyedObjectPoolConfig poolConfig = new GenericKeyedObjectPoolConfig();
-            poolConfig.setMaxTotalPerKey(cfg.getEventPoolMaxTotalPerEvent());
-            poolConfig.setMinIdlePerKey(cfg.getEventPoolMinIdlePerEvent());
-            poolConfig.setMaxIdlePerKey(cfg.getEventPoolMaxIdlePerEvent());
-            poolConfig.setMaxTotal(cfg.getEventPoolMaxTotal());
-            logger.info("enable event-pool[per-key-idle-min={};per-key-idle-max={};per-key-max={};total={};]",
-                    cfg.getEventPoolMinIdlePerEvent(),
-                    cfg.getEventPoolMaxIdlePerEvent(),
-                    cfg.getEventPoolMaxTotalPerEvent(),
-                    cfg.getEventPoolMaxTotal()
-            );
-            return new GenericKeyedObjectPool<Event.Type, Event>(new EventFactory(), poolConfig);
+        this.isEnable = cfg.isEventPoolEnable();
+        this.maxIdlePerEvent = Math.max(0, cfg.getEventPoolMaxIdlePerEvent());
+        if (isEnable) {
+            logger.info("enable event-pool[per-thread-per-key-idle-max={};]", maxIdlePerEvent);
         } else {
             logger.info("disable event-pool.");
-            return null;
         }
     }
 
+    // 统计所有线程的事件缓存，统计值为近似值
+    private int sum(final boolean isActive, final Event.Type type) {
+        int sum = 0;
+        synchronized (eventCacheMap) {
+            for (final EventCache eventCache : eventCacheMap.values()) {
+                final int[] numArray = isActive
+                        ? eventCache.numActiveArray
+                        : eventCache.numIdleArray;
+                if (null == type) {
+                    for (final int num : numArray) {
+                        sum += num;
+                    }
+                } else {
+                    sum += numArray[type.ordinal()];
+                }
+            }
+        }
+        return sum;
+    }
+
     public int getNumActive() {
         return isEnable
-                ? pool.getNumActive()
+                ? sum(true, null)
                 : -1;
     }
 
     public int getNumActive(Event.Type type) {
         return isEnable
-                ? pool.getNumActive(type)
+                ? sum(true, type)
                 : -1;
     }
 
     public int getNumIdle() {
         return isEnable
-                ? pool.getNumIdle()
+                ? sum(false, null)
                 : -1;
     }
 
     public int getNumIdle(Event.Type type) {
         return isEnable
-                ? pool.getNumIdle(type)
+                ? sum(false, type)
                 : -1;
     }
 
-    public BeforeEvent borrowBeforeEvent(final int processId,
-                                         final int invokeId,
+    public BeforeEvent borrowBeforeEvent(final long processId,
+                                         final long invokeId,
                                          final ClassLoader javaClassLoader,
                                          final String javaClassName,
                                          final String javaMethodName,
@@ -82,155 +112,107 @@ public class EventPool {
                                          final Object target,
                                          final Object[] argumentArray) {
         if (isEnable) {
-            try {
-                final BeforeEvent event = (BeforeEvent) pool.borrowObject(Event.Type.BEFORE);
-                initBeforeEvent(
-                        event,
-                        processId, invokeId,
-                        javaClassLoader, javaClassName, javaMethodName, javaMethodDesc,
-                        target, argumentArray
-                );
-                return event;
-            } catch (Exception cause) {
-                logger.warn("EventPool borrow BeforeEvent[processId={};invokeId={};class={};method={};] failed.",
-                        processId, invokeId, javaClassName, javaMethodName, cause);
-            }
+            final BeforeEvent event = (BeforeEvent) eventCacheRef.get().borrow(Event.Type.BEFORE);
+            initBeforeEvent(
+                    event,
+                    processId, invokeId,
+                    javaClassLoader, javaClassName, javaMethodName, javaMethodDesc,
+                    target, argumentArray
+            );
+            return event;
         }
-        return new BeforeEvent(
-                processId, invokeId,
+        return initInvokeEvent(new BeforeEvent(
+                (int) processId, (int) invokeId,
                 javaClassLoader, javaClassName, javaMethodName, javaMethodDesc,
                 target, argumentArray
-        );
+        ), processId, invokeId);
     }
 
-    public ReturnEvent borrowReturnEvent(final int processId,
-                                         final int invokeId,
+    public ReturnEvent borrowReturnEvent(final long processId,
+                                         final long invokeId,
                                          final Object object) {
         if (isEnable) {
-            try {
-                final ReturnEvent event = (ReturnEvent) pool.borrowObject(Event.Type.RETURN);
-                initReturnEvent(event, processId, invokeId, object);
-                return event;
-            } catch (Exception cause) {
-                logger.warn("EventPool borrow ReturnEvent[processId={};invokeId={};] failed.",
-                        processId, invokeId, cause);
-            }
+            final ReturnEvent event = (ReturnEvent) eventCacheRef.get().borrow(Event.Type.RETURN);
+            initReturnEvent(event, processId, invokeId, object);
+            return event;
         }
-        return new ReturnEvent(processId, invokeId, object);
+        return initInvokeEvent(new ReturnEvent((int) processId, (int) invokeId, object), processId, invokeId);
     }
 
-    public ThrowsEvent borrowThrowsEvent(final int processId,
-                                         final int invokeId,
+    public ThrowsEvent borrowThrowsEvent(final long processId,
+                                         final long invokeId,
                                          final Throwable throwable) {
         if (isEnable) {
-            try {
-                final ThrowsEvent event = (ThrowsEvent) pool.borrowObject(Event.Type.THROWS);
-                initThrowsEvent(event, processId, invokeId, throwable);
-                return event;
-            } catch (Exception cause) {
-                logger.warn("EventPool borrow ThrowsEvent[processId={};invokeId={};] failed.",
-                        processId, invokeId, cause);
-            }
+            final ThrowsEvent event = (ThrowsEvent) eventCacheRef.get().borrow(Event.Type.THROWS);
+            initThrowsEvent(event, processId, invokeId, throwable);
+            return event;
         }
-        return new ThrowsEvent(processId, invokeId, throwable);
+        return initInvokeEvent(new ThrowsEvent((int) processId, (int) invokeId, throwable), processId, invokeId);
     }
 
-    public LineEvent borrowLineEvent(final int processId,
-                                     final int invokeId,
+    public LineEvent borrowLineEvent(final long processId,
+                                     final long invokeId,
                                      final int lineNumber) {
         if (isEnable) {
-            try {
-                final LineEvent event = (LineEvent) pool.borrowObject(Event.Type.LINE);
-                initLineEvent(event, processId, invokeId, lineNumber);
-                return event;
-            } catch (Exception cause) {
-                logger.warn("EventPool borrow LineEvent[processId={};invokeId={};] failed.",
-                        processId, invokeId, cause);
-            }
+            final LineEvent event = (LineEvent) eventCacheRef.get().borrow(Event.Type.LINE);
+            initLineEvent(event, processId, invokeId, lineNumber);
+            return event;
         }
-        return new LineEvent(processId, invokeId, lineNumber);
+        return initInvokeEvent(new LineEvent((int) processId, (int) invokeId, lineNumber), processId, invokeId);
     }
 
-    public ImmediatelyReturnEvent borrowImmediatelyReturnEvent(final int processId,
-                                                               final int invokeId,
+    public ImmediatelyReturnEvent borrowImmediatelyReturnEvent(final long processId,
+                                                               final long invokeId,
                                                                final Object object) {
         if (isEnable) {
-            try {
-                final ImmediatelyReturnEvent event = (ImmediatelyReturnEvent) pool.borrowObject(Event.Type.IMMEDIATELY_RETURN);
-                initReturnEvent(event, processId, invokeId, object);
-                return event;
-            } catch (Exception cause) {
-                logger.warn("EventPool borrow ImmediatelyReturnEvent[processId={};invokeId={};] failed.",
-                        processId, invokeId, cause);
-            }
+            final ImmediatelyReturnEvent event = (ImmediatelyReturnEvent) eventCacheRef.get().borrow(Event.Type.IMMEDIATELY_RETURN);
+            initReturnEvent(event, processId, invokeId, object);
+            return event;
         }
-        return new ImmediatelyReturnEvent(processId, invokeId, object);
+        return initInvokeEvent(new ImmediatelyReturnEvent((int) processId, (int) invokeId, object), processId, invokeId);
     }
 
-    public ImmediatelyThrowsEvent borrowImmediatelyThrowsEvent(final int processId,
-                                                               final int invokeId,
+    public ImmediatelyThrowsEvent borrowImmediatelyThrowsEvent(final long processId,
+                                                               final long invokeId,
                                                                final Throwable throwable) {
         if (isEnable) {
-            try {
-                final ImmediatelyThrowsEvent event = (ImmediatelyThrowsEvent) pool.borrowObject(Event.Type.IMMEDIATELY_THROWS);
-                initThrowsEvent(event, processId, invokeId, throwable);
-                return event;
-            } catch (Exception cause) {
-                logger.warn("EventPool borrow ImmediatelyThrowsEvent[processId={};invokeId={};] failed.",
-                        processId, invokeId, cause);
-            }
+            final ImmediatelyThrowsEvent event = (ImmediatelyThrowsEvent) eventCacheRef.get().borrow(Event.Type.IMMEDIATELY_THROWS);
+            initThrowsEvent(event, processId, invokeId, throwable);
+            return event;
         }
-        return new ImmediatelyThrowsEvent(processId, invokeId, throwable);
+        return initInvokeEvent(new ImmediatelyThrowsEvent((int) processId, (int) invokeId, throwable), processId, invokeId);
     }
 
-    public CallBeforeEvent borrowCallBeforeEvent(final int processId,
-                                                 final int invokeId,
-                                                 final int lineNumber,
-                                                 final String owner,
-                                                 final String name,
-                                                 final String desc) {
+    public CallBeforeEvent borrowCallBeforeEvent(final long processId,
+                                                 final long invokeId,
+                                                 final CallSite callSite) {
         if (isEnable) {
-            try {
-                final CallBeforeEvent event = (CallBeforeEvent) pool.borrowObject(Event.Type.CALL_BEFORE);
-                initCallBeforeEvent(event, processId, invokeId, lineNumber, owner, name, desc);
-                return event;
-            } catch (Exception cause) {
-                logger.warn("EventPool borrow CallBeforeEvent[processId={};invokeId={};] failed.",
-                        processId, invokeId, cause);
-            }
+            final CallBeforeEvent event = (CallBeforeEvent) eventCacheRef.get().borrow(Event.Type.CALL_BEFORE);
+            initCallBeforeEvent(event, processId, invokeId, callSite);
+            return event;
         }
-        return new CallBeforeEvent(processId, invokeId, lineNumber, owner, name, desc);
+        return initInvokeEvent(new CallBeforeEvent((int) processId, (int) invokeId, callSite), processId, invokeId);
     }
 
-    public CallReturnEvent borrowCallReturnEvent(final int processId,
-                                                 final int invokeId) {
+    public CallReturnEvent borrowCallReturnEvent(final long processId,
+                                                 final long invokeId) {
         if (isEnable) {
-            try {
-                final CallReturnEvent event = (CallReturnEvent) pool.borrowObject(Event.Type.CALL_RETURN);
-                initCallReturnEvent(event, processId, invokeId);
-                return event;
-            } catch (Exception cause) {
-                logger.warn("EventPool borrow CallReturnEvent[processId={};invokeId={};] failed.",
-                        processId, invokeId, cause);
-            }
+            final CallReturnEvent event = (CallReturnEvent) eventCacheRef.get().borrow(Event.Type.CALL_RETURN);
+            initCallReturnEvent(event, processId, invokeId);
+            return event;
         }
-        return new CallReturnEvent(processId, invokeId);
+        return initInvokeEvent(new CallReturnEvent((int) processId, (int) invokeId), processId, invokeId);
     }
 
-    public CallThrowsEvent borrowCallThrowsEvent(final int processId,
-                                                 final int invokeId,
+    public CallThrowsEvent borrowCallThrowsEvent(final long processId,
+                                                 final long invokeId,
                                                  final String throwException) {
         if (isEnable) {
-            try {
-                final CallThrowsEvent event = (CallThrowsEvent) pool.borrowObject(Event.Type.CALL_THROWS);
-                initCallThrowsEvent(event, processId, invokeId, throwException);
-                return event;
-            } catch (Exception cause) {
-                logger.warn("EventPool borrow CallThrowsEvent[processId={};invokeId={};] failed.",
-                        processId, invokeId, cause);
-            }
+            final CallThrowsEvent event = (CallThrowsEvent) eventCacheRef.get().borrow(Event.Type.CALL_THROWS);
+            initCallThrowsEvent(event, processId, invokeId, throwException);
+            return event;
         }
-        return new CallThrowsEvent(processId, invokeId, throwException);
+        return initInvokeEvent(new CallThrowsEvent((int) processId, (int) invokeId, throwException), processId, invokeId);
     }
 
 
@@ -241,21 +223,19 @@ public class EventPool {
      */
     public void returnEvent(Event event) {
         if (isEnable) {
-            try {
-                pool.returnObject(event.type, event);
-            } catch (Exception cause) {
-                logger.warn("EventPool return event={} failed.", event, cause);
-            }
+            eventCacheRef.get().release(event);
         }
     }
 
 
     private static final int ILLEGAL_PROCESS_ID = -1;
     private static final int ILLEGAL_INVOKE_ID = -1;
+    private static final CallSite ILLEGAL_CALL_SITE = new CallSite(0, -1, null, null, null);
 
-    private static final Unsafe unsafe;
     private static final long processIdFieldInInvokeEventOffset;
     private static final long invokeIdFieldInInvokeEventOffset;
+    private static final long longProcessIdFieldInInvokeEventOffset;
+    private static final long longInvokeIdFieldInInvokeEventOffset;
     private static final long javaClassLoaderFieldInBeforeEventOffset;
     private static final long javaClassNameFieldInBeforeEventOffset;
     private static final long javaMethodNameFieldInBeforeEventOffset;
@@ -270,165 +250,210 @@ public class EventPool {
     private static final long ownerFieldInCallBeforeEventOffset;
     private static final long nameFieldInCallBeforeEventOffset;
     private static final long descFieldInCallBeforeEventOffset;
+    private static final long callSiteFieldInCallBeforeEventOffset;
     private static final long throwExceptionFieldInCallThrowsEventOffset;
 
     static {
         try {
-            unsafe = UnsafeUtils.getUnsafe();
-            processIdFieldInInvokeEventOffset = unsafe.objectFieldOffset(InvokeEvent.class.getDeclaredField("processId"));
-            invokeIdFieldInInvokeEventOffset = unsafe.objectFieldOffset(InvokeEvent.class.getDeclaredField("invokeId"));
-            javaClassLoaderFieldInBeforeEventOffset = unsafe.objectFieldOffset(BeforeEvent.class.getDeclaredField("javaClassLoader"));
-            javaClassNameFieldInBeforeEventOffset = unsafe.objectFieldOffset(BeforeEvent.class.getDeclaredField("javaClassName"));
-            javaMethodNameFieldInBeforeEventOffset = unsafe.objectFieldOffset(BeforeEvent.class.getDeclaredField("javaMethodName"));
-            javaMethodDescFieldInBeforeEventOffset = unsafe.objectFieldOffset(BeforeEvent.class.getDeclaredField("javaMethodDesc"));
-            targetFieldInBeforeEventOffset = unsafe.objectFieldOffset(BeforeEvent.class.getDeclaredField("target"));
-            argumentArrayFieldInBeforeEventOffset = unsafe.objectFieldOffset(BeforeEvent.class.getDeclaredField("argumentArray"));
-            objectFieldInReturnEventOffset = unsafe.objectFieldOffset(ReturnEvent.class.getDeclaredField("object"));
-            throwableFieldInThrowsEventOffset = unsafe.objectFieldOffset(ThrowsEvent.class.getDeclaredField("throwable"));
-            lineNumberFieldInLineEventOffset = unsafe.objectFieldOffset(LineEvent.class.getDeclaredField("lineNumber"));
-
-            lineNumberFieldInCallBeforeEventOffset = unsafe.objectFieldOffset(CallBeforeEvent.class.getDeclaredField("lineNumber"));
-            ownerFieldInCallBeforeEventOffset = unsafe.objectFieldOffset(CallBeforeEvent.class.getDeclaredField("owner"));
-            nameFieldInCallBeforeEventOffset = unsafe.objectFieldOffset(CallBeforeEvent.class.getDeclaredField("name"));
-            descFieldInCallBeforeEventOffset = unsafe.objectFieldOffset(CallBeforeEvent.class.getDeclaredField("desc"));
-            throwExceptionFieldInCallThrowsEventOffset = unsafe.objectFieldOffset(CallThrowsEvent.class.getDeclaredField("throwException"));
+            processIdFieldInInvokeEventOffset = objectFieldOffset(InvokeEvent.class, "processId");
+            invokeIdFieldInInvokeEventOffset = objectFieldOffset(InvokeEvent.class, "invokeId");
+            longProcessIdFieldInInvokeEventOffset = objectFieldOffset(InvokeEvent.class, "longProcessId");
+            longInvokeIdFieldInInvokeEventOffset = objectFieldOffset(InvokeEvent.class, "longInvokeId");
+            javaClassLoaderFieldInBeforeEventOffset = objectFieldOffset(BeforeEvent.class, "javaClassLoader");
+            javaClassNameFieldInBeforeEventOffset = objectFieldOffset(BeforeEvent.class, "javaClassName");
+            javaMethodNameFieldInBeforeEventOffset = objectFieldOffset(BeforeEvent.class, "javaMethodName");
+            javaMethodDescFieldInBeforeEventOffset = objectFieldOffset(BeforeEvent.class, "javaMethodDesc");
+            targetFieldInBeforeEventOffset = objectFieldOffset(BeforeEvent.class, "target");
+            argumentArrayFieldInBeforeEventOffset = objectFieldOffset(BeforeEvent.class, "argumentArray");
+            objectFieldInReturnEventOffset = objectFieldOffset(ReturnEvent.class, "object");
+            throwableFieldInThrowsEventOffset = objectFieldOffset(ThrowsEvent.class, "throwable");
+            lineNumberFieldInLineEventOffset = objectFieldOffset(LineEvent.class, "lineNumber");
+
+            lineNumberFieldInCallBeforeEventOffset = objectFieldOffset(CallBeforeEvent.class, "lineNumber");
+            ownerFieldInCallBeforeEventOffset = objectFieldOffset(CallBeforeEvent.class, "owner");
+            nameFieldInCallBeforeEventOffset = objectFieldOffset(CallBeforeEvent.class, "name");
+            descFieldInCallBeforeEventOffset = objectFieldOffset(CallBeforeEvent.class, "desc");
+            callSiteFieldInCallBeforeEventOffset = objectFieldOffset(CallBeforeEvent.class, "callSite");
+            throwExceptionFieldInCallThrowsEventOffset = objectFieldOffset(CallThrowsEvent.class, "throwException");
         } catch (Exception e) {
             throw new Error(e);
         }
     }
 
 
+    // 同时设置32位和64位的调用ID，32位调用ID为64位调用ID的低32位
+    private static <E extends InvokeEvent> E initInvokeEvent(final E event,
+                                                             final long processId,
+                                                             final long invokeId) {
+        putInt(event, processIdFieldInInvokeEventOffset, (int) processId);
+        putInt(event, invokeIdFieldInInvokeEventOffset, (int) invokeId);
+        putLong(event, longProcessIdFieldInInvokeEventOffset, processId);
+        putLong(event, longInvokeIdFieldInInvokeEventOffset, invokeId);
+        return event;
+    }
+
     private static void initBeforeEvent(final BeforeEvent event,
-                                        final int processId,
-                                        final int invokeId,
+                                        final long processId,
+                                        final long invokeId,
                                         final ClassLoader javaClassLoader,
                                         final String javaClassName,
                                         final String javaMethodName,
                                         final String javaMethodDesc,
                                         final Object target,
                                         final Object[] argumentArray) {
-        unsafe.putInt(event, processIdFieldInInvokeEventOffset, processId);
-        unsafe.putInt(event, invokeIdFieldInInvokeEventOffset, invokeId);
-        unsafe.putObject(event, javaClassLoaderFieldInBeforeEventOffset, javaClassLoader);
-        unsafe.putObject(event, javaClassNameFieldInBeforeEventOffset, javaClassName);
-        unsafe.putObject(event, javaMethodNameFieldInBeforeEventOffset, javaMethodName);
-        unsafe.putObject(event, javaMethodDescFieldInBeforeEventOffset, javaMethodDesc);
-        unsafe.putObject(event, targetFieldInBeforeEventOffset, target);
-        unsafe.putObject(event, argumentArrayFieldInBeforeEventOffset, argumentArray);
+        initInvokeEvent(event, processId, invokeId);
+        putObject(event, javaClassLoaderFieldInBeforeEventOffset, javaClassLoader);
+        putObject(event, javaClassNameFieldInBeforeEventOffset, javaClassName);
+        putObject(event, javaMethodNameFieldInBeforeEventOffset, javaMethodName);
+        putObject(event, javaMethodDescFieldInBeforeEventOffset, javaMethodDesc);
+        putObject(event, targetFieldInBeforeEventOffset, target);
+        putObject(event, argumentArrayFieldInBeforeEventOffset, argumentArray);
     }
 
     private static void initReturnEvent(final ReturnEvent event,
-                                        final int processId,
-                                        final int invokeId,
+                                        final long processId,
+                                        final long invokeId,
                                         final Object returnObj) {
-        unsafe.putInt(event, processIdFieldInInvokeEventOffset, processId);
-        unsafe.putInt(event, invokeIdFieldInInvokeEventOffset, invokeId);
-        unsafe.putObject(event, objectFieldInReturnEventOffset, returnObj);
+        initInvokeEvent(event, processId, invokeId);
+        putObject(event, objectFieldInReturnEventOffset, returnObj);
     }
 
     private static void initThrowsEvent(final ThrowsEvent event,
-                                        final int processId,
-                                        final int invokeId,
+                                        final long processId,
+                                        final long invokeId,
                                         final Throwable throwable) {
-        unsafe.putInt(event, processIdFieldInInvokeEventOffset, processId);
-        unsafe.putInt(event, invokeIdFieldInInvokeEventOffset, invokeId);
-        unsafe.putObject(event, throwableFieldInThrowsEventOffset, throwable);
+        initInvokeEvent(event, processId, invokeId);
+        putObject(event, throwableFieldInThrowsEventOffset, throwable);
     }
 
     private static void initLineEvent(final LineEvent event,
-                                      final int processId,
-                                      final int invokeId,
+                                      final long processId,
+                                      final long invokeId,
                                       final int lineNumber) {
-        unsafe.putInt(event, processIdFieldInInvokeEventOffset, processId);
-        unsafe.putInt(event, invokeIdFieldInInvokeEventOffset, invokeId);
-        unsafe.putInt(event, lineNumberFieldInLineEventOffset, lineNumber);
+        initInvokeEvent(event, processId, invokeId);
+        putInt(event, lineNumberFieldInLineEventOffset, lineNumber);
     }
 
     private static void initCallBeforeEvent(final CallBeforeEvent event,
-                                            final int processId,
-                                            final int invokeId,
-                                            final int lineNumber,
-                                            final String owner,
-                                            final String name,
-                                            final String desc) {
-        unsafe.putInt(event, processIdFieldInInvokeEventOffset, processId);
-        unsafe.putInt(event, invokeIdFieldInInvokeEventOffset, invokeId);
-        unsafe.putInt(event, lineNumberFieldInCallBeforeEventOffset, lineNumber);
-        unsafe.putObject(event, ownerFieldInCallBeforeEventOffset, owner);
-        unsafe.putObject(event, nameFieldInCallBeforeEventOffset, name);
-        unsafe.putObject(event, descFieldInCallBeforeEventOffset, desc);
+                                            final long processId,
+                                            final long invokeId,
+                                            final CallSite callSite) {
+        initInvokeEvent(event, processId, invokeId);
+        putInt(event, lineNumberFieldInCallBeforeEventOffset, callSite.lineNumber);
+        putObject(event, ownerFieldInCallBeforeEventOffset, callSite.owner);
+        putObject(event, nameFieldInCallBeforeEventOffset, callSite.name);
+        putObject(event, descFieldInCallBeforeEventOffset, callSite.desc);
+        putObject(event, callSiteFieldInCallBeforeEventOffset, callSite);
     }
 
     private static void initCallReturnEvent(final CallReturnEvent event,
-                                            final int processId,
-                                            final int invokeId) {
-        unsafe.putInt(event, processIdFieldInInvokeEventOffset, processId);
-        unsafe.putInt(event, invokeIdFieldInInvokeEventOffset, invokeId);
+                                            final long processId,
+                                            final long invokeId) {
+        initInvokeEvent(event, processId, invokeId);
     }
 
     private static void initCallThrowsEvent(final CallThrowsEvent event,
-                                            final int processId,
-                                            final int invokeId,
+                                            final long processId,
+                                            final long invokeId,
                                             final String throwException) {
-        unsafe.putInt(event, processIdFieldInInvokeEventOffset, processId);
-        unsafe.putInt(event, invokeIdFieldInInvokeEventOffset, invokeId);
-        unsafe.putObject(event, throwExceptionFieldInCallThrowsEventOffset, throwException);
+        initInvokeEvent(event, processId, invokeId);
+        putObject(event, throwExceptionFieldInCallThrowsEventOffset, throwException);
     }
 
-    private static class EventFactory extends BaseKeyedPooledObjectFactory<Event.Type, Event> {
-
-        @Override
-        public Event create(Event.Type type) throws Exception {
-            switch (type) {
-                case BEFORE:
-                    return new BeforeEvent(ILLEGAL_PROCESS_ID, ILLEGAL_INVOKE_ID, null, null, null, null, null, null);
-                case THROWS:
-                    return new ThrowsEvent(ILLEGAL_PROCESS_ID, ILLEGAL_INVOKE_ID, null);
-                case RETURN:
-                    return new ReturnEvent(ILLEGAL_PROCESS_ID, ILLEGAL_INVOKE_ID, null);
-                case LINE:
-                    return new LineEvent(ILLEGAL_PROCESS_ID, ILLEGAL_INVOKE_ID, -1);
-                case IMMEDIATELY_RETURN:
-                    return new ImmediatelyReturnEvent(ILLEGAL_PROCESS_ID, ILLEGAL_INVOKE_ID, null);
-                case IMMEDIATELY_THROWS:
-                    return new ImmediatelyThrowsEvent(ILLEGAL_PROCESS_ID, ILLEGAL_INVOKE_ID, null);
-                case CALL_BEFORE:
-                    return new CallBeforeEvent(ILLEGAL_PROCESS_ID, ILLEGAL_INVOKE_ID, -1, null, null, null);
-                case CALL_RETURN:
-                    return new CallReturnEvent(ILLEGAL_PROCESS_ID, ILLEGAL_INVOKE_ID);
-                case CALL_THROWS:
-                    return new CallThrowsEvent(ILLEGAL_PROCESS_ID, ILLEGAL_INVOKE_ID, null);
+    /**
+     * 线程事件缓存
+     * <p>
+     * 只会被所属线程修改，其他线程仅在统计时读取
+     * </p>
+     */
+    private class EventCache {
+
+        // 按事件类型区分的空闲事件栈
+        private final Event[][] idleEventArrays = new Event[EVENT_TYPES.length][];
+        private final int[] numIdleArray = new int[EVENT_TYPES.length];
+        private final int[] numActiveArray = new int[EVENT_TYPES.length];
+
+        Event borrow(final Event.Type type) {
+            final int index = type.ordinal();
+            numActiveArray[index]++;
+            final int numIdle = numIdleArray[index];
+            if (numIdle > 0) {
+                final Event[] idleEventArray = idleEventArrays[index];
+                final Event event = idleEventArray[numIdle - 1];
+                idleEventArray[numIdle - 1] = null;
+                numIdleArray[index] = numIdle - 1;
+                return event;
             }
-            throw new IllegalStateException("illegal type=" + type);
+            return create(type);
         }
 
-        @Override
-        public PooledObject<Event> wrap(Event event) {
-            return new DefaultPooledObject<Event>(event);
-        }
+        void release(final Event event) {
+            final int index = event.type.ordinal();
+            numActiveArray[index]--;
+            passivate(event);
 
-        /*
-         * 这里主要是释放掉引用的大资源，比如入参、返回值、抛异常等
-         * 一些不大的资源其实可以保持引用，不会轻易触发GC
-         */
-        @Override
-        public void passivateObject(Event.Type key, PooledObject<Event> pooledObject) throws Exception {
-            final Event event = pooledObject.getObject();
-            switch (event.type) {
-                case BEFORE:
-                    unsafe.putObject(event, targetFieldInBeforeEventOffset, null);
-                    unsafe.putObject(event, argumentArrayFieldInBeforeEventOffset, null);
-                    break;
-                case IMMEDIATELY_THROWS:
-                case THROWS:
-                    unsafe.putObject(event, throwableFieldInThrowsEventOffset, null);
-                    break;
-                case IMMEDIATELY_RETURN:
-                case RETURN:
-                    unsafe.putObject(event, objectFieldInReturnEventOffset, null);
+            // 超过缓存深度的事件直接丢弃
+            final int numIdle = numIdleArray[index];
+            if (numIdle >= maxIdlePerEvent) {
+                return;
             }
+
+            Event[] idleEventArray = idleEventArrays[index];
+            if (null == idleEventArray) {
+                idleEventArray = idleEventArrays[index] = new Event[Math.min(8, maxIdlePerEvent)];
+            } else if (idleEventArray.length <= numIdle) {
+                final Event[] newIdleEventArray = new Event[Math.min(idleEventArray.length * 2, maxIdlePerEvent)];
+                arraycopy(idleEventArray, 0, newIdleEventArray, 0, idleEventArray.length);
+                idleEventArray = idleEventArrays[index] = newIdleEventArray;
+            }
+            idleEventArray[numIdle] = event;
+            numIdleArray[index] = numIdle + 1;
         }
 
     }
 
+    private static Event create(final Event.Type type) {
+        switch (type) {
+            case BEFORE:
+                return new BeforeEvent(ILLEGAL_PROCESS_ID, ILLEGAL_INVOKE_ID, null, null, null, null, null, null);
+            case THROWS:
+                return new ThrowsEvent(ILLEGAL_PROCESS_ID, ILLEGAL_INVOKE_ID, null);
+            case RETURN:
+                return new ReturnEvent(ILLEGAL_PROCESS_ID, ILLEGAL_INVOKE_ID, null);
+            case LINE:
+                return new LineEvent(ILLEGAL_PROCESS_ID, ILLEGAL_INVOKE_ID, -1);
+            case IMMEDIATELY_RETURN:
+                return new ImmediatelyReturnEvent(ILLEGAL_PROCESS_ID, ILLEGAL_INVOKE_ID, null);
+            case IMMEDIATELY_THROWS:
+                return new ImmediatelyThrowsEvent(ILLEGAL_PROCESS_ID, ILLEGAL_INVOKE_ID, null);
+            case CALL_BEFORE:
+                return new CallBeforeEvent(ILLEGAL_PROCESS_ID, ILLEGAL_INVOKE_ID, ILLEGAL_CALL_SITE);
+            case CALL_RETURN:
+                return new CallReturnEvent(ILLEGAL_PROCESS_ID, ILLEGAL_INVOKE_ID);
+            case CALL_THROWS:
+                return new CallThrowsEvent(ILLEGAL_PROCESS_ID, ILLEGAL_INVOKE_ID, null);
+        }
+        throw new IllegalStateException("illegal type=" + type);
+    }
+
+    /*
+     * 这里主要是释放掉引用的大资源，比如入参、返回值、抛异常等
+     * 一些不大的资源其实可以保持引用，不会轻易触发GC
+     */
+    private static void passivate(final Event event) {
+        switch (event.type) {
+            case BEFORE:
+                putObject(event, targetFieldInBeforeEventOffset, null);
+                putObject(event, argumentArrayFieldInBeforeEventOffset, null);
+                break;
+            case IMMEDIATELY_THROWS:
+            case THROWS:
+                putObject(event, throwableFieldInThrowsEventOffset, null);
+                break;
+            case IMMEDIATELY_RETURN:
+            case RETURN:
+                putObject(event, objectFieldInReturnEventOffset, null);
+        }
+    }
+
 }
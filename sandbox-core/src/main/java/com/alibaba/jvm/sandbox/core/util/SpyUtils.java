@@ -1,8 +1,13 @@
 package com.alibaba.jvm.sandbox.core.util;
 
+import com.alibaba.jvm.sandbox.core.CoreConfigure;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.DirectSpyHandler;
 import com.alibaba.jvm.sandbox.core.enhance.weaver.EventListenerHandlers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.com.alibaba.jvm.sandbox.spy.Spy;
+import java.lang.reflect.Method;
 
 import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.unCaughtGetClassDeclaredJavaMethod;
 
@@ -13,8 +18,110 @@ import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.unCaughtGetC
  */
 public class SpyUtils {
 
+    private static final Logger logger = LoggerFactory.getLogger(SpyUtils.class);
+
     private static final Initializer isSpyInit = new Initializer();
 
+    // BootstrapClassLoader中可能已经存在旧版本的Spy，只有新版本的Spy才提供监听器开关
+    private static final boolean isListenerGuardSupported = isListenerGuardSupported0();
+
+    private static boolean isListenerGuardSupported0() {
+        try {
+            Spy.class.getMethod("isListenerEnable", int.class);
+            Spy.class.getMethod("isListenerSampled", int.class, int.class);
+            Spy.class.getMethod("setListenerEnable", int.class, boolean.class);
+            return true;
+        } catch (NoSuchMethodException cause) {
+            logger.warn("Spy in BootstrapClassLoader is too old, listener guard will be disabled.");
+            return false;
+        }
+    }
+
+    // 只有新版本的Spy才支持通过方法ID回调BEFORE事件、通过调用点ID回调CALL事件，
+    // 且Spy的间谍处理器必须能够把ID交还给容器解析，在Spy初始化时确定
+    private static volatile boolean isSiteIdSupported = false;
+
+    private static boolean isSiteIdSupported0() {
+        try {
+            Spy.class.getMethod("spyMethodOnCallBefore", int.class, int.class);
+            Spy.class.getMethod("spyMethodOnCallThrows", Throwable.class, int.class);
+            Spy.class.getMethod("spyMethodOnBefore", Object[].class, int.class, int.class, Object.class);
+            return true;
+        } catch (NoSuchMethodException cause) {
+            logger.warn("Spy in BootstrapClassLoader is too old, method-site and call-site will be disabled.");
+            return false;
+        }
+    }
+
+    /**
+     * 当前Spy是否支持方法ID和调用点ID
+     * 在{@link #init()}之后才能确定，之前总是返回FALSE
+     *
+     * @return TRUE:支持，织入代码中只传递方法ID和调用点ID；FALSE：不支持，织入代码中需要传递方法和调用点的完整描述
+     */
+    public static boolean isSiteIdSupported() {
+        return isSiteIdSupported;
+    }
+
+    // 只有新版本的Spy才提供行号命中计数
+    private static final boolean isLineCoverageSupported = isLineCoverageSupported0();
+
+    private static boolean isLineCoverageSupported0() {
+        try {
+            Spy.class.getMethod("getLineHits", int.class);
+            Spy.class.getMethod("setLineHits", int.class, int[].class);
+            return true;
+        } catch (NoSuchMethodException cause) {
+            logger.warn("Spy in BootstrapClassLoader is too old, line-coverage will be disabled.");
+            return false;
+        }
+    }
+
+    /**
+     * 当前Spy是否支持行覆盖
+     *
+     * @return TRUE:支持，可以在织入代码中统计行号命中计数；FALSE：不支持
+     */
+    public static boolean isLineCoverageSupported() {
+        return isLineCoverageSupported;
+    }
+
+    /**
+     * 当前Spy是否支持监听器开关
+     *
+     * @return TRUE:支持，可以在织入代码中检查监听器开关；FALSE：不支持
+     */
+    public static boolean isListenerGuardSupported() {
+        return isListenerGuardSupported;
+    }
+
+    /**
+     * 设置监听器开关
+     *
+     * @param listenerId 监听器ID(或融合调用点ID)
+     * @param isEnable   TRUE:开启；FALSE：关闭
+     */
+    public static void setListenerEnable(final int listenerId,
+                                         final boolean isEnable) {
+        if (isListenerGuardSupported) {
+            Spy.setListenerEnable(listenerId, isEnable);
+        }
+    }
+
+    /*
+     * 根据配置选择自调用屏障的实现
+     */
+    private static void initSelfCallBarrier() {
+        final CoreConfigure cfg = CoreConfigure.getInstance();
+        if (null == cfg || cfg.isThreadLocalSelfCallBarrier()) {
+            Spy.initSelfCallBarrier(new Spy.ThreadLocalSelfCallBarrier());
+            logger.info("init Spy with thread-local self-call barrier.");
+        } else {
+            Spy.initSelfCallBarrier(new Spy.SynchronizedSelfCallBarrier());
+            logger.info("init Spy with synchronized self-call barrier.");
+        }
+    }
+
     /**
      * 初始化Spy类
      *
@@ -29,49 +136,119 @@ public class SpyUtils {
         isSpyInit.initProcess(new Initializer.Processor() {
             @Override
             public void process() throws Throwable {
+
+                // 优先使用直接调用的间谍处理器
+                try {
+                    Spy.init(new DirectSpyHandler());
+                    isSiteIdSupported = isSiteIdSupported0();
+                    initSelfCallBarrier();
+                    return;
+                } catch (LinkageError cause) {
+                    // BootstrapClassLoader中已经存在旧版本的Spy(不支持SpyHandler)，只能退回到反射调用
+                    logger.warn("init Spy with SpyHandler failed, fallback to reflect method.", cause);
+                }
+
+                // 反射调用同样可以把方法ID和调用点ID交还给容器解析
+                try {
+                    Spy.init(
+                            getOnBeforeMethod(),
+                            unCaughtGetClassDeclaredJavaMethod(EventListenerHandlers.class, "onBefore",
+                                    int.class,
+                                    int.class,
+                                    Class.class,
+                                    Object.class,
+                                    Object[].class
+                            ),
+                            getOnReturnMethod(),
+                            getOnThrowsMethod(),
+                            getOnLineMethod(),
+                            getOnCallBeforeMethod(),
+                            unCaughtGetClassDeclaredJavaMethod(EventListenerHandlers.class, "onCallBefore",
+                                    int.class,
+                                    int.class
+                            ),
+                            getOnCallReturnMethod(),
+                            getOnCallThrowsMethod()
+                    );
+                    isSiteIdSupported = isSiteIdSupported0();
+                    return;
+                } catch (LinkageError cause) {
+                    logger.warn("init Spy with site-id reflect method failed, fallback to reflect method.", cause);
+                }
+
+                // 旧版本的反射回调没有方法ID和调用点ID的入口，织入代码只能传递完整描述
                 Spy.init(
-                        unCaughtGetClassDeclaredJavaMethod(EventListenerHandlers.class, "onBefore",
-                                int.class,
-                                int.class,
-                                Class.class,
-                                String.class,
-                                String.class,
-                                String.class,
-                                Object.class,
-                                Object[].class
-                        ),
-                        unCaughtGetClassDeclaredJavaMethod(EventListenerHandlers.class, "onReturn",
-                                int.class,
-                                Class.class,
-                                Object.class
-                        ),
-                        unCaughtGetClassDeclaredJavaMethod(EventListenerHandlers.class, "onThrows",
-                                int.class,
-                                Class.class,
-                                Throwable.class
-                        ),
-                        unCaughtGetClassDeclaredJavaMethod(EventListenerHandlers.class, "onLine",
-                                int.class,
-                                int.class
-                        ),
-                        unCaughtGetClassDeclaredJavaMethod(EventListenerHandlers.class, "onCallBefore",
-                                int.class,
-                                int.class,
-                                String.class,
-                                String.class,
-                                String.class
-                        ),
-                        unCaughtGetClassDeclaredJavaMethod(EventListenerHandlers.class, "onCallReturn",
-                                int.class
-                        ),
-                        unCaughtGetClassDeclaredJavaMethod(EventListenerHandlers.class, "onCallThrows",
-                                int.class,
-                                String.class
-                        )
+                        getOnBeforeMethod(),
+                        getOnReturnMethod(),
+                        getOnThrowsMethod(),
+                        getOnLineMethod(),
+                        getOnCallBeforeMethod(),
+                        getOnCallReturnMethod(),
+                        getOnCallThrowsMethod()
                 );
+                isSiteIdSupported = false;
             }
         });
 
     }
 
+    private static Method getOnBeforeMethod() {
+        return unCaughtGetClassDeclaredJavaMethod(EventListenerHandlers.class, "onBefore",
+                int.class,
+                int.class,
+                Class.class,
+                String.class,
+                String.class,
+                String.class,
+                Object.class,
+                Object[].class
+        );
+    }
+
+    private static Method getOnReturnMethod() {
+        return unCaughtGetClassDeclaredJavaMethod(EventListenerHandlers.class, "onReturn",
+                int.class,
+                Class.class,
+                Object.class
+        );
+    }
+
+    private static Method getOnThrowsMethod() {
+        return unCaughtGetClassDeclaredJavaMethod(EventListenerHandlers.class, "onThrows",
+                int.class,
+                Class.class,
+                Throwable.class
+        );
+    }
+
+    private static Method getOnLineMethod() {
+        return unCaughtGetClassDeclaredJavaMethod(EventListenerHandlers.class, "onLine",
+                int.class,
+                int.class
+        );
+    }
+
+    private static Method getOnCallBeforeMethod() {
+        return unCaughtGetClassDeclaredJavaMethod(EventListenerHandlers.class, "onCallBefore",
+                int.class,
+                int.class,
+                String.class,
+                String.class,
+                String.class
+        );
+    }
+
+    private static Method getOnCallReturnMethod() {
+        return unCaughtGetClassDeclaredJavaMethod(EventListenerHandlers.class, "onCallReturn",
+                int.class
+        );
+    }
+
+    private static Method getOnCallThrowsMethod() {
+        return unCaughtGetClassDeclaredJavaMethod(EventListenerHandlers.class, "onCallThrows",
+                int.class,
+                String.class
+        );
+    }
+
 }
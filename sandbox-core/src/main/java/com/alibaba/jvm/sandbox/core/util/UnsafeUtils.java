@@ -6,14 +6,58 @@ import java.lang.reflect.Field;
 
 /**
  * Sum Jvm Unsafe
+ * <p>
+ * 沙箱对sun.misc.Unsafe的访问都收拢在这里，其他类只通过字段偏移量写入字段，不直接引用内部API
+ * </p>
  * Created by luanjia on 16/10/15.
  */
 public class UnsafeUtils {
 
+    private static final Unsafe unsafe;
+
+    static {
+        try {
+            unsafe = getUnsafe();
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+
     public static Unsafe getUnsafe() throws NoSuchFieldException, IllegalAccessException {
         final Field f = Unsafe.class.getDeclaredField("theUnsafe");
         f.setAccessible(true);
         return (Unsafe) f.get(null);
     }
 
+    /**
+     * 获取字段在对象中的偏移量
+     *
+     * @param clazz     声明字段的类
+     * @param fieldName 字段名
+     * @return 字段偏移量
+     * @throws NoSuchFieldException 字段不存在
+     */
+    public static long objectFieldOffset(final Class<?> clazz,
+                                         final String fieldName) throws NoSuchFieldException {
+        return unsafe.objectFieldOffset(clazz.getDeclaredField(fieldName));
+    }
+
+    public static void putInt(final Object object,
+                              final long offset,
+                              final int value) {
+        unsafe.putInt(object, offset, value);
+    }
+
+    public static void putLong(final Object object,
+                               final long offset,
+                               final long value) {
+        unsafe.putLong(object, offset, value);
+    }
+
+    public static void putObject(final Object object,
+                                 final long offset,
+                                 final Object value) {
+        unsafe.putObject(object, offset, value);
+    }
+
 }
@@ -0,0 +1,21 @@
+package com.alibaba.jvm.sandbox.core.util.collection;
+
+/**
+ * long型堆栈
+ * 与{@link GaStack}语义一致，但元素为原生long，压栈出栈时不会产生装箱对象
+ */
+public interface GaLongStack {
+
+    long pop();
+
+    void push(long e);
+
+    long peek();
+
+    boolean isEmpty();
+
+    boolean isLast();
+
+    long peekLast();
+
+}
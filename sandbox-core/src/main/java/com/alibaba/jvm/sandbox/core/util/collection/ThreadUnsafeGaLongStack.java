@@ -0,0 +1,83 @@
+package com.alibaba.jvm.sandbox.core.util.collection;
+
+import java.util.NoSuchElementException;
+
+import static java.lang.System.arraycopy;
+
+/**
+ * 线程不安全不固定栈深的long型堆栈实现
+ * 用于代替{@code ThreadUnsafeGaStack<Long>}，避免每次压栈都需要装箱分配一个Long对象
+ */
+public class ThreadUnsafeGaLongStack implements GaLongStack {
+
+    private final static int EMPTY_INDEX = -1;
+    private final static int DEFAULT_STACK_DEEP = 12;
+
+    private long[] elementArray;
+    private int current = EMPTY_INDEX;
+
+    public ThreadUnsafeGaLongStack() {
+        this(DEFAULT_STACK_DEEP);
+    }
+
+    public ThreadUnsafeGaLongStack(int stackSize) {
+        this.elementArray = new long[stackSize];
+    }
+
+    /**
+     * 自动扩容
+     * 当前堆栈最大深度不满足期望时会自动扩容(2倍扩容)
+     *
+     * @param expectDeep 期望堆栈深度
+     */
+    private void ensureCapacityInternal(int expectDeep) {
+        final int currentStackSize = elementArray.length;
+        if (currentStackSize <= expectDeep) {
+            final long[] newElementArray = new long[Math.max(currentStackSize * 2, expectDeep + 1)];
+            arraycopy(elementArray, 0, newElementArray, 0, currentStackSize);
+            this.elementArray = newElementArray;
+        }
+    }
+
+    private void checkForPopOrPeek() {
+        // stack is empty
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    @Override
+    public long pop() {
+        checkForPopOrPeek();
+        return elementArray[current--];
+    }
+
+    @Override
+    public void push(long e) {
+        ensureCapacityInternal(current + 1);
+        elementArray[++current] = e;
+    }
+
+    @Override
+    public long peek() {
+        checkForPopOrPeek();
+        return elementArray[current];
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return current == EMPTY_INDEX;
+    }
+
+    @Override
+    public boolean isLast() {
+        return current == 0;
+    }
+
+    @Override
+    public long peekLast() {
+        checkForPopOrPeek();
+        return elementArray[0];
+    }
+
+}
@@ -0,0 +1,202 @@
+package com.alibaba.jvm.sandbox.core.util.matcher;
+
+import com.alibaba.jvm.sandbox.api.util.GaStringUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.*;
+
+/**
+ * 类名模版索引
+ * <p>
+ * 把一组元素的类名匹配模版编译成索引，只凭内部类名(以'/'分隔)就能找出可能匹配上的元素，不需要解析类结构：
+ * <ul>
+ * <li>不含通配符的模版放入精确类名的哈希表</li>
+ * <li>只以'*'结尾的模版放入前缀树</li>
+ * <li>其余模版逐个做通配符匹配</li>
+ * <li>无法仅凭类名判断的元素(模版为null)总是被选中</li>
+ * </ul>
+ * 索引创建后不可修改，元素变化时需要重新创建
+ * </p>
+ *
+ * @param <T> 元素类型
+ */
+public class ClassNamePatternIndex<T> {
+
+    private final T[] elements;
+    private final T[] emptyElements;
+
+    // 无法仅凭类名判断的元素下标
+    private final int[] alwaysPositions;
+
+    // 精确类名:元素下标
+    private final Map<String, int[]> exactPositions = new HashMap<String, int[]>();
+
+    // 类名前缀树
+    private final Node root = new Node();
+
+    // 通配符模版及其元素下标
+    private final List<String> wildcardPatterns = new ArrayList<String>();
+    private final List<Integer> wildcardPositions = new ArrayList<Integer>();
+
+    /**
+     * 构造类名模版索引
+     *
+     * @param elements              元素数组，查找结果保持元素在数组中的顺序
+     * @param classNamePatternsArray 每个元素的类名通配符模版数组，为null表示无法仅凭类名判断
+     */
+    public ClassNamePatternIndex(final T[] elements,
+                                 final String[][] classNamePatternsArray) {
+        this.elements = elements;
+        this.emptyElements = Arrays.copyOf(elements, 0);
+        int[] alwaysPositions = new int[0];
+        for (int position = 0; position < elements.length; position++) {
+            final String[] classNamePatterns = classNamePatternsArray[position];
+            if (null == classNamePatterns) {
+                alwaysPositions = add(alwaysPositions, position);
+                continue;
+            }
+            for (final String classNamePattern : classNamePatterns) {
+                if (null != classNamePattern) {
+                    index(toInternalClassNamePattern(classNamePattern), position);
+                }
+            }
+        }
+        this.alwaysPositions = alwaysPositions;
+    }
+
+    // 类名模版中的'.'不是通配符，直接替换成内部类名的分隔符
+    private static String toInternalClassNamePattern(final String classNamePattern) {
+        return classNamePattern.replace('.', '/');
+    }
+
+    private static boolean isLiteral(final String pattern) {
+        return !StringUtils.containsAny(pattern, '*', '?', '\\');
+    }
+
+    private void index(final String pattern, final int position) {
+
+        // 精确类名
+        if (isLiteral(pattern)) {
+            exactPositions.put(pattern, add(exactPositions.get(pattern), position));
+            return;
+        }
+
+        // 类名前缀
+        final String prefix = StringUtils.stripEnd(pattern, "*");
+        if (prefix.length() < pattern.length()
+                && isLiteral(prefix)) {
+            Node node = root;
+            for (int index = 0; index < prefix.length(); index++) {
+                node = node.child(prefix.charAt(index));
+            }
+            node.positions = add(node.positions, position);
+            return;
+        }
+
+        // 其他通配符
+        wildcardPatterns.add(pattern);
+        wildcardPositions.add(position);
+    }
+
+    /**
+     * 查找可能匹配上类名的元素
+     *
+     * @param internalClassName 内部类名，为null时返回所有元素
+     * @return 可能匹配上的元素，保持元素原有的顺序；返回的数组不允许修改
+     */
+    public T[] find(final String internalClassName) {
+
+        if (null == internalClassName) {
+            return elements;
+        }
+
+        boolean[] hits = mark(null, alwaysPositions);
+        hits = mark(hits, exactPositions.get(internalClassName));
+
+        Node node = root;
+        hits = mark(hits, node.positions);
+        for (int index = 0; index < internalClassName.length() && null != node; index++) {
+            node = node.children.get(internalClassName.charAt(index));
+            if (null != node) {
+                hits = mark(hits, node.positions);
+            }
+        }
+
+        for (int index = 0; index < wildcardPatterns.size(); index++) {
+            final int position = wildcardPositions.get(index);
+            if ((null == hits || !hits[position])
+                    && GaStringUtils.matching(internalClassName, wildcardPatterns.get(index))) {
+                hits = mark(hits, new int[]{position});
+            }
+        }
+
+        return toElements(hits);
+    }
+
+    private boolean[] mark(final boolean[] hits, final int[] positions) {
+        if (null == positions
+                || positions.length == 0) {
+            return hits;
+        }
+        final boolean[] marked = null == hits
+                ? new boolean[elements.length]
+                : hits;
+        for (final int position : positions) {
+            marked[position] = true;
+        }
+        return marked;
+    }
+
+    private T[] toElements(final boolean[] hits) {
+        if (null == hits) {
+            return emptyElements;
+        }
+        int count = 0;
+        for (final boolean hit : hits) {
+            if (hit) {
+                count++;
+            }
+        }
+        if (count == elements.length) {
+            return elements;
+        }
+        final T[] found = Arrays.copyOf(elements, count);
+        int index = 0;
+        for (int position = 0; position < hits.length; position++) {
+            if (hits[position]) {
+                found[index++] = elements[position];
+            }
+        }
+        return found;
+    }
+
+    private static int[] add(final int[] positions, final int position) {
+        if (null == positions) {
+            return new int[]{position};
+        }
+        final int[] newPositions = Arrays.copyOf(positions, positions.length + 1);
+        newPositions[positions.length] = position;
+        return newPositions;
+    }
+
+    /**
+     * 前缀树节点
+     */
+    private static class Node {
+
+        private final Map<Character, Node> children = new HashMap<Character, Node>();
+
+        // 以当前节点为前缀的元素下标
+        private int[] positions;
+
+        Node child(final char c) {
+            Node child = children.get(c);
+            if (null == child) {
+                children.put(c, child = new Node());
+            }
+            return child;
+        }
+
+    }
+
+}
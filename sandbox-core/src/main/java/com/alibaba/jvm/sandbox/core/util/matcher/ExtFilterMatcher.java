@@ -1,6 +1,8 @@
 package com.alibaba.jvm.sandbox.core.util.matcher;
 
 import com.alibaba.jvm.sandbox.api.filter.AccessFlags;
+import com.alibaba.jvm.sandbox.api.filter.ClassAnchorFilter;
+import com.alibaba.jvm.sandbox.api.filter.ClassNamePatternFilter;
 import com.alibaba.jvm.sandbox.api.filter.ExtFilter;
 import com.alibaba.jvm.sandbox.api.filter.ExtFilter.ExtFilterFactory;
 import com.alibaba.jvm.sandbox.api.filter.Filter;
@@ -100,6 +102,71 @@ public class ExtFilterMatcher implements Matcher {
         return result;
     }
 
+    /**
+     * 匹配子类时类名无法说明任何问题，只有声明了类名模版的过滤器才能仅凭类名判断
+     */
+    @Override
+    public String[] getClassNamePatterns() {
+        if (extFilter.isIncludeSubClasses()
+                || !(extFilter instanceof ClassNamePatternFilter)) {
+            return null;
+        }
+        return ((ClassNamePatternFilter) extFilter).getClassNamePatterns();
+    }
+
+    /**
+     * 类名、父类型、类注解和行为注解的锚点都是必要条件，候选类取各个锚点挑选结果的交集
+     */
+    @Override
+    public Set<Class<?>> select(final LoadedClassSelector selector) {
+        Set<Class<?>> candidates = null;
+
+        final String[] classNamePatterns = getClassNamePatterns();
+        if (null != classNamePatterns) {
+            candidates = selector.selectByClassNamePatterns(classNamePatterns);
+        }
+
+        if (!(extFilter instanceof ClassAnchorFilter)) {
+            return candidates;
+        }
+        final ClassAnchorFilter classAnchorFilter = (ClassAnchorFilter) extFilter;
+
+        final String[] superTypePatterns = classAnchorFilter.getSuperTypePatterns();
+        if (null != superTypePatterns
+                && !isEmpty(candidates)) {
+            candidates = retain(candidates, selector.selectBySuperTypePatterns(superTypePatterns));
+        }
+
+        final String[] annotationTypePatterns = classAnchorFilter.getAnnotationTypePatterns();
+        if (null != annotationTypePatterns
+                && !isEmpty(candidates)) {
+            candidates = retain(candidates, selector.selectByAnnotationTypePatterns(annotationTypePatterns));
+        }
+
+        final String[] behaviorAnnotationTypePatterns = classAnchorFilter.getBehaviorAnnotationTypePatterns();
+        if (null != behaviorAnnotationTypePatterns
+                && !isEmpty(candidates)) {
+            candidates = retain(candidates, selector.selectByBehaviorAnnotationTypePatterns(behaviorAnnotationTypePatterns));
+        }
+
+        return candidates;
+    }
+
+    // 候选类已经为空时不需要再挑选
+    private static boolean isEmpty(final Set<Class<?>> candidates) {
+        return null != candidates
+                && candidates.isEmpty();
+    }
+
+    private static Set<Class<?>> retain(final Set<Class<?>> candidates,
+                                        final Set<Class<?>> selected) {
+        if (null == candidates) {
+            return selected;
+        }
+        candidates.retainAll(selected);
+        return candidates;
+    }
+
     /**
      * 转换为{@link AccessFlags}的Access体系
      *
@@ -3,7 +3,7 @@ package com.alibaba.jvm.sandbox.core.util.matcher;
 import com.alibaba.jvm.sandbox.core.util.matcher.structure.BehaviorStructure;
 import com.alibaba.jvm.sandbox.core.util.matcher.structure.ClassStructure;
 
-import java.util.LinkedHashSet;
+import java.util.*;
 
 public abstract class GroupMatcher implements Matcher {
 
@@ -32,6 +32,44 @@ public abstract class GroupMatcher implements Matcher {
             return result;
         }
 
+        /**
+         * 所有子匹配器类名模版的并集，任一子匹配器无法仅凭类名判断时整体都无法判断
+         */
+        @Override
+        public String[] getClassNamePatterns() {
+            final List<String> patterns = new ArrayList<String>();
+            if (null == matcherArray) {
+                return new String[0];
+            }
+            for (final Matcher subMatcher : matcherArray) {
+                final String[] subPatterns = subMatcher.getClassNamePatterns();
+                if (null == subPatterns) {
+                    return null;
+                }
+                patterns.addAll(Arrays.asList(subPatterns));
+            }
+            return patterns.toArray(new String[0]);
+        }
+
+        /**
+         * 所有子匹配器候选类的并集，任一子匹配器无法挑选时整体都无法挑选
+         */
+        @Override
+        public Set<Class<?>> select(final LoadedClassSelector selector) {
+            final Set<Class<?>> candidates = new LinkedHashSet<Class<?>>();
+            if (null == matcherArray) {
+                return candidates;
+            }
+            for (final Matcher subMatcher : matcherArray) {
+                final Set<Class<?>> subCandidates = subMatcher.select(selector);
+                if (null == subCandidates) {
+                    return null;
+                }
+                candidates.addAll(subCandidates);
+            }
+            return candidates;
+        }
+
     }
 
     public static final class And extends GroupMatcher {
@@ -76,6 +114,49 @@ public abstract class GroupMatcher implements Matcher {
             return result;
         }
 
+        /**
+         * 类必须被所有子匹配器匹配上，任取一个能仅凭类名判断的子匹配器即可
+         */
+        @Override
+        public String[] getClassNamePatterns() {
+            if (null == matcherArray) {
+                return new String[0];
+            }
+            for (final Matcher subMatcher : matcherArray) {
+                final String[] subPatterns = subMatcher.getClassNamePatterns();
+                if (null != subPatterns) {
+                    return subPatterns;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 所有能挑选的子匹配器候选类的交集
+         */
+        @Override
+        public Set<Class<?>> select(final LoadedClassSelector selector) {
+            if (null == matcherArray) {
+                return new LinkedHashSet<Class<?>>();
+            }
+            Set<Class<?>> candidates = null;
+            for (final Matcher subMatcher : matcherArray) {
+                final Set<Class<?>> subCandidates = subMatcher.select(selector);
+                if (null == subCandidates) {
+                    continue;
+                }
+                if (null == candidates) {
+                    candidates = subCandidates;
+                } else {
+                    candidates.retainAll(subCandidates);
+                }
+                if (candidates.isEmpty()) {
+                    break;
+                }
+            }
+            return candidates;
+        }
+
     }
 
 }
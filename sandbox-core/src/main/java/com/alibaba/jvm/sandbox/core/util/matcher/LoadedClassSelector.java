@@ -0,0 +1,46 @@
+package com.alibaba.jvm.sandbox.core.util.matcher;
+
+import java.util.Set;
+
+/**
+ * 已加载类挑选器
+ * <p>
+ * 从已加载类的索引中挑选出可能被匹配上的候选类，挑选只是必要条件，候选类仍需经过{@link Matcher}的匹配；
+ * 所有的模版语法同{@link com.alibaba.jvm.sandbox.api.util.GaStringUtils#matching(String, String)}
+ * </p>
+ */
+public interface LoadedClassSelector {
+
+    /**
+     * 挑选类名符合任一模版的类
+     *
+     * @param classNamePatterns 类名模版数组
+     * @return 候选类，允许修改
+     */
+    Set<Class<?>> selectByClassNamePatterns(String[] classNamePatterns);
+
+    /**
+     * 挑选自身、父类或所实现的接口(含间接继承)的类名符合任一模版的类
+     *
+     * @param superTypePatterns 父类型类名模版数组
+     * @return 候选类，允许修改
+     */
+    Set<Class<?>> selectBySuperTypePatterns(String[] superTypePatterns);
+
+    /**
+     * 挑选自身或父类型上标注的注解符合任一模版的类
+     *
+     * @param annotationTypePatterns 注解类名模版数组
+     * @return 候选类，允许修改
+     */
+    Set<Class<?>> selectByAnnotationTypePatterns(String[] annotationTypePatterns);
+
+    /**
+     * 挑选所声明的行为上标注的注解符合任一模版的类
+     *
+     * @param annotationTypePatterns 注解类名模版数组
+     * @return 候选类，允许修改
+     */
+    Set<Class<?>> selectByBehaviorAnnotationTypePatterns(String[] annotationTypePatterns);
+
+}
@@ -2,6 +2,8 @@ package com.alibaba.jvm.sandbox.core.util.matcher;
 
 import com.alibaba.jvm.sandbox.core.util.matcher.structure.ClassStructure;
 
+import java.util.Set;
+
 /**
  * 匹配器
  * <p>
@@ -20,4 +22,25 @@ public interface Matcher {
      */
     MatchingResult matching(ClassStructure classStructure);
 
+    /**
+     * 获取类名匹配模版
+     * <p>
+     * 只有类名符合其中任一模版的类才可能被匹配上，用于在解析类结构之前过滤类
+     * </p>
+     *
+     * @return 类名通配符模版数组；返回null表示无法仅凭类名判断
+     */
+    String[] getClassNamePatterns();
+
+    /**
+     * 从已加载类中挑选候选类
+     * <p>
+     * 只有候选类才可能被匹配上，用于检索已加载类时跳过不可能匹配的类
+     * </p>
+     *
+     * @param selector 已加载类挑选器
+     * @return 候选类，允许修改；返回null表示无法挑选，所有已加载类都是候选类
+     */
+    Set<Class<?>> select(LoadedClassSelector selector);
+
 }
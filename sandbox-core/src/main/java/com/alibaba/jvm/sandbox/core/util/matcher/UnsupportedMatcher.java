@@ -45,7 +45,19 @@ public class UnsupportedMatcher implements Matcher {
      * 因为多命名空间的原因，所以这里不能简单的用ClassLoader来进行判断
      */
     private boolean isJvmSandboxClass(final ClassStructure classStructure) {
-        return classStructure.getJavaClassName().startsWith("com.alibaba.jvm.sandbox.");
+        return classStructure.getJavaClassName().startsWith("com.alibaba.jvm.sandbox.")
+                || classStructure.getJavaClassName().startsWith("java.com.alibaba.jvm.sandbox.");
+    }
+
+    /*
+     * 是否是Spy自调用屏障所依赖的类
+     * 屏障在判断当前线程是否已经进入之前就要用到这些类，如果它们被增强了，会在屏障生效之前无限递归
+     */
+    private boolean isSelfCallBarrierClass(final ClassStructure classStructure) {
+        final String javaClassName = classStructure.getJavaClassName();
+        return javaClassName.startsWith("java.lang.ThreadLocal")
+                || "java.lang.ref.Reference".equals(javaClassName)
+                || "java.lang.ref.WeakReference".equals(javaClassName);
     }
 
     private Set<String> takeJavaClassNames(final Set<ClassStructure> classStructures) {
@@ -106,9 +118,10 @@ public class UnsupportedMatcher implements Matcher {
     public MatchingResult matching(final ClassStructure classStructure) {
         final MatchingResult result = new MatchingResult();
 
-        // 类匹配：jvm不可修改类、jvmsandbox本身类、自身有@Stealth隐形基因的类、父类中有@Stealth隐形基因的类都不在匹配范围内
+        // 类匹配：jvm不可修改类、jvmsandbox本身类、自调用屏障依赖的类、自身有@Stealth隐形基因的类、父类中有@Stealth隐形基因的类都不在匹配范围内
         if (isUnsupportedClass(classStructure)
                 || isJvmSandboxClass(classStructure)
+                || isSelfCallBarrierClass(classStructure)
                 || isFromStealthClassLoader()
                 || isStealthClass(classStructure)) {
             return result;
@@ -124,6 +137,16 @@ public class UnsupportedMatcher implements Matcher {
         return result;
     }
 
+    @Override
+    public String[] getClassNamePatterns() {
+        return null;
+    }
+
+    @Override
+    public Set<Class<?>> select(final LoadedClassSelector selector) {
+        return null;
+    }
+
 
     /**
      * 构造AND关系的组匹配
@@ -0,0 +1,292 @@
+package com.alibaba.jvm.sandbox.core.util.matcher.structure;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 类结构缓存
+ * <p>
+ * 以(ClassLoader,类名)为键缓存类结构，类形变和已加载类的检索共用同一份缓存，
+ * 匹配子类时整条继承链上的类结构只需要构造一次。
+ * </p>
+ * <p>
+ * 键对ClassLoader只持有弱引用，类结构本身也只弱引用ClassLoader和Class，
+ * 应用卸载后对应的缓存项随ClassLoader一起被回收
+ * </p>
+ * <p>
+ * 缓存按键的哈希分成多个段，每个段各自加锁、各自按最久未使用淘汰，
+ * 并行形变和并行检索时不会争抢同一把锁；淘汰只在段内进行，是近似的LRU
+ * </p>
+ */
+public class ClassStructureCache {
+
+    /**
+     * 类结构的构造方式，不同方式构造的类结构在细节上略有差异，分开缓存
+     */
+    public enum Kind {
+
+        /**
+         * 用ASM解析字节码构造
+         */
+        ASM,
+
+        /**
+         * 用JDK反射构造
+         */
+        JDK
+    }
+
+    // 最大分段数，必须是2的幂
+    private static final int MAX_SEGMENT_NUM = 16;
+
+    // 每个段至少能容纳的缓存项数量，容量较小时减少分段，避免段内容量过小导致淘汰过于随机
+    private static final int MIN_SEGMENT_CAPACITY = 64;
+
+    private final int capacity;
+
+    // ClassLoader被回收后，对应的键会被放入这个队列
+    private final ReferenceQueue<ClassLoader> queue = new ReferenceQueue<ClassLoader>();
+
+    private final Segment[] segments;
+    private final int segmentMask;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * 构造类结构缓存，沙箱内共用{@link ClassStructureFactory#getClassStructureCache()}这一份缓存
+     *
+     * @param capacity 缓存容量，为0时不缓存
+     */
+    public ClassStructureCache(final int capacity) {
+        this.capacity = Math.max(0, capacity);
+        int segmentNum = 1;
+        while (segmentNum < MAX_SEGMENT_NUM
+                && segmentNum * 2 * MIN_SEGMENT_CAPACITY <= this.capacity) {
+            segmentNum <<= 1;
+        }
+        this.segments = new Segment[segmentNum];
+        this.segmentMask = segmentNum - 1;
+        final int segmentCapacity = (this.capacity + segmentNum - 1) / segmentNum;
+        for (int index = 0; index < segmentNum; index++) {
+            segments[index] = new Segment(segmentCapacity);
+        }
+    }
+
+    // 键的哈希乘法打散后取中间的位选段，与段内哈希表选桶所用的低位错开
+    private Segment segmentFor(final Key key) {
+        return segments[((key.hashCode * 0x9E3779B9) >>> 16) & segmentMask];
+    }
+
+    /**
+     * 获取缓存的类结构
+     *
+     * @param kind          构造方式
+     * @param loader        ClassLoader
+     * @param javaClassName 类名
+     * @return 类结构，未缓存时返回null
+     */
+    public ClassStructure get(final Kind kind,
+                              final ClassLoader loader,
+                              final String javaClassName) {
+        if (capacity == 0) {
+            return null;
+        }
+        expunge();
+        final Key key = new Key(kind, loader, javaClassName, null);
+        final Segment segment = segmentFor(key);
+        final ClassStructure classStructure;
+        synchronized (segment) {
+            classStructure = segment.get(key);
+        }
+        if (null == classStructure) {
+            missCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        return classStructure;
+    }
+
+    /**
+     * 缓存类结构
+     *
+     * @param kind           构造方式
+     * @param loader         ClassLoader
+     * @param javaClassName  类名
+     * @param classStructure 类结构
+     */
+    public void put(final Kind kind,
+                    final ClassLoader loader,
+                    final String javaClassName,
+                    final ClassStructure classStructure) {
+        if (capacity == 0) {
+            return;
+        }
+        expunge();
+        final Key key = new Key(kind, loader, javaClassName, queue);
+        final Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, classStructure);
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        for (final Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        while (null != queue.poll()) {
+            // drain
+        }
+    }
+
+    // 清理ClassLoader已被回收的缓存项
+    private void expunge() {
+        Reference<? extends ClassLoader> reference;
+        while (null != (reference = queue.poll())) {
+            final Key key = (Key) reference;
+            final Segment segment = segmentFor(key);
+            synchronized (segment) {
+                segment.remove(key);
+            }
+        }
+    }
+
+    /**
+     * 获取缓存容量
+     *
+     * @return 缓存容量，为0表示不缓存
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 获取当前缓存的类结构数量
+     *
+     * @return 当前缓存的类结构数量
+     */
+    public int getSize() {
+        expunge();
+        int size = 0;
+        for (final Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 获取命中次数
+     *
+     * @return 命中次数
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * 获取未命中次数
+     *
+     * @return 未命中次数
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * 获取因超过容量而被淘汰的次数
+     *
+     * @return 淘汰次数
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * 缓存段，按访问顺序排列，超过段容量时淘汰段内最久未使用的缓存项
+     */
+    private class Segment extends LinkedHashMap<Key, ClassStructure> {
+
+        private final int segmentCapacity;
+
+        Segment(final int segmentCapacity) {
+            super(16, 0.75f, true);
+            this.segmentCapacity = segmentCapacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Key, ClassStructure> eldest) {
+            if (size() > segmentCapacity) {
+                evictionCount.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+    }
+
+    /**
+     * 缓存键
+     * 对ClassLoader持有弱引用，BootstrapClassLoader用null表示
+     */
+    private static class Key extends WeakReference<ClassLoader> {
+
+        private final Kind kind;
+        private final boolean isBootstrap;
+        private final String javaClassName;
+        private final int hashCode;
+
+        Key(final Kind kind,
+            final ClassLoader loader,
+            final String javaClassName,
+            final ReferenceQueue<ClassLoader> queue) {
+            super(loader, null == loader ? null : queue);
+            this.kind = kind;
+            this.isBootstrap = null == loader;
+            this.javaClassName = javaClassName;
+            this.hashCode = 31 * (31 * kind.hashCode() + System.identityHashCode(loader)) + javaClassName.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) obj;
+            if (hashCode != key.hashCode
+                    || kind != key.kind
+                    || isBootstrap != key.isBootstrap
+                    || !javaClassName.equals(key.javaClassName)) {
+                return false;
+            }
+            if (isBootstrap) {
+                return true;
+            }
+            // ClassLoader已被回收的键只和自己相等
+            final ClassLoader loader = get();
+            return null != loader
+                    && loader == key.get();
+        }
+
+    }
+
+}
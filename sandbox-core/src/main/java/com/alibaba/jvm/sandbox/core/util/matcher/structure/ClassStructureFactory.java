@@ -1,5 +1,7 @@
 package com.alibaba.jvm.sandbox.core.util.matcher.structure;
 
+import com.alibaba.jvm.sandbox.core.CoreConfigure;
+import com.alibaba.jvm.sandbox.core.util.matcher.structure.ClassStructureCache.Kind;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,6 +13,10 @@ import java.io.InputStream;
  * <p>
  * 根据构造方式的不同，返回的实现方式也不一样。但无论哪一种实现方式都尽可能符合接口约定。
  * </p>
+ * <p>
+ * 构造出来的类结构以及类结构所引用到的父类、接口、注解、参数等类型的类结构都会放入{@link ClassStructureCache}，
+ * 类形变和已加载类的检索共用这一份缓存
+ * </p>
  *
  * @author luanjia@taobao.com
  */
@@ -18,6 +24,24 @@ public class ClassStructureFactory {
 
     private static final Logger logger = LoggerFactory.getLogger(ClassStructureFactory.class);
 
+    private static final ClassStructureCache classStructureCache = new ClassStructureCache(getClassStructureCacheSize());
+
+    private static int getClassStructureCacheSize() {
+        final CoreConfigure cfg = CoreConfigure.getInstance();
+        return null == cfg
+                ? CoreConfigure.DEFAULT_VAL_CLASS_STRUCTURE_CACHE_SIZE
+                : cfg.getClassStructureCacheSize();
+    }
+
+    /**
+     * 获取类结构缓存
+     *
+     * @return 类结构缓存
+     */
+    public static ClassStructureCache getClassStructureCache() {
+        return classStructureCache;
+    }
+
     /**
      * 通过Class类来构造类结构
      *
@@ -25,7 +49,39 @@ public class ClassStructureFactory {
      * @return JDK实现的类结构
      */
     public static ClassStructure createClassStructure(final Class<?> clazz) {
-        return new ClassStructureImplByJDK(clazz);
+        return createClassStructure(clazz, true);
+    }
+
+    /**
+     * 通过Class类来构造类结构，检索已加载类时使用
+     * <p>
+     * 一次检索的类数量超过缓存容量时，逐个缓存被检索的类只会把缓存中原有的类结构全部淘汰，
+     * 而这些类结构在检索结束后很少再被用到，此时被检索类自身的类结构不放入缓存；
+     * 它们所引用到的父类、接口、注解等类结构被大量共用，仍然放入缓存
+     * </p>
+     *
+     * @param clazz    目标Class类
+     * @param scanSize 本次检索的类数量
+     * @return JDK实现的类结构
+     */
+    public static ClassStructure createClassStructure(final Class<?> clazz,
+                                                      final int scanSize) {
+        return createClassStructure(clazz, scanSize <= classStructureCache.getCapacity());
+    }
+
+    private static ClassStructure createClassStructure(final Class<?> clazz,
+                                                       final boolean isCacheable) {
+        final ClassLoader loader = clazz.getClassLoader();
+        final String javaClassName = clazz.getName();
+        final ClassStructure cached = classStructureCache.get(Kind.JDK, loader, javaClassName);
+        if (null != cached) {
+            return cached;
+        }
+        final ClassStructure classStructure = new ClassStructureImplByJDK(clazz);
+        if (isCacheable) {
+            classStructureCache.put(Kind.JDK, loader, javaClassName, classStructure);
+        }
+        return classStructure;
     }
 
     /**
@@ -38,7 +94,7 @@ public class ClassStructureFactory {
     public static ClassStructure createClassStructure(final InputStream classInputStream,
                                                       final ClassLoader loader) {
         try {
-            return new ClassStructureImplByAsm(classInputStream, loader);
+            return cache(loader, new ClassStructureImplByAsm(classInputStream, loader));
         } catch (IOException cause) {
             logger.warn("create class structure failed by using ASM, return null. loader={};", loader, cause);
             return null;
@@ -47,6 +103,9 @@ public class ClassStructureFactory {
 
     /**
      * 通过Class类字节数组来构造类结构
+     * <p>
+     * 字节数组是类即将被定义的内容，总是重新解析，解析结果覆盖缓存中已有的类结构
+     * </p>
      *
      * @param classByteArray Class类字节数组
      * @param loader         即将装载Class的ClassLoader
@@ -54,7 +113,25 @@ public class ClassStructureFactory {
      */
     public static ClassStructure createClassStructure(final byte[] classByteArray,
                                                       final ClassLoader loader) {
-        return new ClassStructureImplByAsm(classByteArray, loader);
+        return cache(loader, new ClassStructureImplByAsm(classByteArray, loader));
+    }
+
+    private static ClassStructure cache(final ClassLoader loader,
+                                        final ClassStructure classStructure) {
+        classStructureCache.put(Kind.ASM, loader, classStructure.getJavaClassName(), classStructure);
+        return classStructure;
+    }
+
+    /**
+     * 从缓存中获取ASM实现的类结构
+     *
+     * @param loader        ClassLoader
+     * @param javaClassName 类名
+     * @return 类结构，未缓存时返回null
+     */
+    static ClassStructure getCachedAsmClassStructure(final ClassLoader loader,
+                                                     final String javaClassName) {
+        return classStructureCache.get(Kind.ASM, loader, javaClassName);
     }
 
 }
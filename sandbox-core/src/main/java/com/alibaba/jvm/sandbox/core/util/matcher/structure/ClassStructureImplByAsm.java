@@ -1,6 +1,7 @@
 package com.alibaba.jvm.sandbox.core.util.matcher.structure;
 
 import com.alibaba.jvm.sandbox.core.util.BitUtils;
+import com.alibaba.jvm.sandbox.core.util.LazyGet;
 import com.alibaba.jvm.sandbox.core.util.matcher.structure.PrimitiveClassStructure.Primitive;
 import org.apache.commons.io.IOUtils;
 import org.objectweb.asm.*;
@@ -9,10 +10,12 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.WeakReference;
 import java.util.*;
 
 import static com.alibaba.jvm.sandbox.core.util.SandboxStringUtils.toInternalClassName;
 import static com.alibaba.jvm.sandbox.core.util.SandboxStringUtils.toJavaClassName;
+import static com.alibaba.jvm.sandbox.core.util.SandboxStringUtils.toJavaClassNameArray;
 import static com.alibaba.jvm.sandbox.core.util.matcher.structure.PrimitiveClassStructure.mappingPrimitiveByJavaClassName;
 import static org.objectweb.asm.ClassReader.*;
 import static org.objectweb.asm.Opcodes.*;
@@ -214,16 +217,39 @@ class ArrayClassStructure extends EmptyClassStructure {
 
 /**
  * 用ASM实现的类结构
+ * <p>
+ * 构造时只遍历一次字节码，把访问标志、父类、接口、注解和方法描述记录成紧凑的数组后就丢弃字节码；
+ * 父类、接口、注解和行为的类结构在第一次获取时才构造，构造后不再重复构造
+ * </p>
  *
  * @author luanjia@taobao.com
  */
 public class ClassStructureImplByAsm extends FamilyClassStructure {
 
+    private static final String[] EMPTY_STRING_ARRAY = new String[0];
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
-    private final ClassReader classReader;
-    private final ClassLoader loader;
+
+    // 类结构会被缓存，只能弱引用ClassLoader
+    private final WeakReference<ClassLoader> loaderRef;
+    private final boolean isBootstrapClassLoader;
+
+    private final String javaClassName;
+    private final String superJavaClassName;
+    private final String[] interfaceJavaClassNames;
     private final Access access;
 
+    // 类上可见的注解描述
+    private final String[] annotationDescs;
+
+    // 方法描述，下标一一对应
+    private final int[] methodAccesses;
+    private final String[] methodNames;
+    private final String[] methodDescs;
+    // 方法声明抛出的异常类名，和类名一样在解析时就转换为Java类名，与类结构缓存的键保持一致
+    private final String[][] methodExceptions;
+    private final String[][] methodAnnotationDescs;
+
     public ClassStructureImplByAsm(final InputStream classInputStream,
                                    final ClassLoader loader) throws IOException {
         this(IOUtils.toByteArray(classInputStream), loader);
@@ -231,20 +257,81 @@ public class ClassStructureImplByAsm extends FamilyClassStructure {
 
     public ClassStructureImplByAsm(final byte[] classByteArray,
                                    final ClassLoader loader) {
-        this.classReader = new ClassReader(classByteArray);
-        this.loader = loader;
-        this.access = new AccessImplByAsm(this.classReader.getAccess());
-    }
+        this.loaderRef = new WeakReference<ClassLoader>(loader);
+        this.isBootstrapClassLoader = null == loader;
+
+        final ClassReader classReader = new ClassReader(classByteArray);
+        this.javaClassName = toJavaClassName(classReader.getClassName());
+        this.superJavaClassName = toJavaClassName(classReader.getSuperName());
+        this.interfaceJavaClassNames = toJavaClassNameArray(classReader.getInterfaces());
+        this.access = new AccessImplByAsm(classReader.getAccess());
+
+        // 只遍历一次类结构
+        final List<String> annotationDescs = new ArrayList<String>();
+        final List<Integer> methodAccesses = new ArrayList<Integer>();
+        final List<String> methodNames = new ArrayList<String>();
+        final List<String> methodDescs = new ArrayList<String>();
+        final List<String[]> methodExceptions = new ArrayList<String[]>();
+        final List<String[]> methodAnnotationDescs = new ArrayList<String[]>();
+        classReader.accept(new ClassVisitor(ASM6) {
+
+            @Override
+            public AnnotationVisitor visitAnnotation(final String desc, final boolean visible) {
+                if (visible) {
+                    annotationDescs.add(desc);
+                }
+                return super.visitAnnotation(desc, visible);
+            }
 
-    private boolean isBootstrapClassLoader() {
-        return null == loader;
+            @Override
+            public MethodVisitor visitMethod(final int access,
+                                             final String name,
+                                             final String desc,
+                                             final String signature,
+                                             final String[] exceptions) {
+                final List<String> annotationDescsOfMethod = new ArrayList<String>();
+                methodAccesses.add(access);
+                methodNames.add(name);
+                methodDescs.add(desc);
+                methodExceptions.add(null == exceptions ? EMPTY_STRING_ARRAY : toJavaClassNameArray(exceptions));
+                return new MethodVisitor(ASM6, super.visitMethod(access, name, desc, signature, exceptions)) {
+
+                    @Override
+                    public AnnotationVisitor visitAnnotation(final String desc, final boolean visible) {
+                        if (visible) {
+                            annotationDescsOfMethod.add(desc);
+                        }
+                        return super.visitAnnotation(desc, visible);
+                    }
+
+                    @Override
+                    public void visitEnd() {
+                        super.visitEnd();
+                        methodAnnotationDescs.add(annotationDescsOfMethod.toArray(EMPTY_STRING_ARRAY));
+                    }
+
+                };
+            }
+
+        }, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
+
+        this.annotationDescs = annotationDescs.toArray(EMPTY_STRING_ARRAY);
+        this.methodAccesses = new int[methodAccesses.size()];
+        for (int index = 0; index < this.methodAccesses.length; index++) {
+            this.methodAccesses[index] = methodAccesses.get(index);
+        }
+        this.methodNames = methodNames.toArray(EMPTY_STRING_ARRAY);
+        this.methodDescs = methodDescs.toArray(EMPTY_STRING_ARRAY);
+        this.methodExceptions = methodExceptions.toArray(new String[0][]);
+        this.methodAnnotationDescs = methodAnnotationDescs.toArray(new String[0][]);
     }
 
     // 获取资源数据流
     // 一般而言可以从loader直接获取，如果获取不到那么这个类也会能加载成功
     // 但如果遇到来自BootstrapClassLoader的类就必须从java.lang.Object来获取
-    private InputStream getResourceAsStream(final String resourceName) {
-        return isBootstrapClassLoader()
+    private InputStream getResourceAsStream(final ClassLoader loader,
+                                            final String resourceName) {
+        return isBootstrapClassLoader
                 ? Object.class.getResourceAsStream("/" + resourceName)
                 : loader.getResourceAsStream(resourceName);
     }
@@ -274,11 +361,22 @@ public class ClassStructureImplByAsm extends FamilyClassStructure {
             return new PrimitiveClassStructure(primitive);
         }
 
-        // 是个普通Java类型
-        final InputStream is = getResourceAsStream(internalClassNameToResourceName(toInternalClassName(javaClassName)));
+        // 是个普通Java类型，先从缓存中获取
+        final ClassLoader loader = getClassLoader();
+        if (null == loader
+                && !isBootstrapClassLoader) {
+            // ClassLoader已经被回收
+            return null;
+        }
+        final ClassStructure cached = ClassStructureFactory.getCachedAsmClassStructure(loader, javaClassName);
+        if (null != cached) {
+            return cached;
+        }
+
+        final InputStream is = getResourceAsStream(loader, internalClassNameToResourceName(toInternalClassName(javaClassName)));
         if (null != is) {
             try {
-                return new ClassStructureImplByAsm(is, loader);
+                return ClassStructureFactory.createClassStructure(is, loader);
             } catch (Throwable cause) {
                 // ignore
                 logger.warn("new instance class structure by using ASM failed, will return null. class={};loader={};",
@@ -306,121 +404,103 @@ public class ClassStructureImplByAsm extends FamilyClassStructure {
         return classStructures;
     }
 
-    // 遍历一个类结构
-    private void accept(final ClassVisitor cv) {
-        classReader.accept(cv, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
+    // 注解描述转换为类名
+    private static String[] descArrayToJavaClassNameArray(final String[] descArray) {
+        final String[] javaClassNames = new String[descArray.length];
+        for (int index = 0; index < descArray.length; index++) {
+            javaClassNames[index] = Type.getType(descArray[index]).getClassName();
+        }
+        return javaClassNames;
+    }
+
+    private static String[] typeArrayToJavaClassNameArray(final Type[] typeArray) {
+        final String[] javaClassNames = new String[typeArray.length];
+        for (int index = 0; index < typeArray.length; index++) {
+            javaClassNames[index] = typeArray[index].getClassName();
+        }
+        return javaClassNames;
     }
 
     @Override
     public String getJavaClassName() {
-        return toJavaClassName(classReader.getClassName());
+        return javaClassName;
     }
 
     @Override
     public ClassLoader getClassLoader() {
-        return loader;
+        return loaderRef.get();
     }
 
+    private final LazyGet<ClassStructure> superClassStructureLazyGet
+            = new LazyGet<ClassStructure>() {
+        @Override
+        protected ClassStructure initialValue() {
+            return newInstance(superJavaClassName);
+        }
+    };
+
     @Override
     public ClassStructure getSuperClassStructure() {
-        return newInstance(toJavaClassName(classReader.getSuperName()));
+        return superClassStructureLazyGet.get();
     }
 
+    private final LazyGet<List<ClassStructure>> interfaceClassStructuresLazyGet
+            = new LazyGet<List<ClassStructure>>() {
+        @Override
+        protected List<ClassStructure> initialValue() {
+            return Collections.unmodifiableList(newInstances(interfaceJavaClassNames));
+        }
+    };
+
     @Override
     public List<ClassStructure> getInterfaceClassStructures() {
-        return newInstances(classReader.getInterfaces());
+        return interfaceClassStructuresLazyGet.get();
     }
 
+    private final LazyGet<List<ClassStructure>> annotationTypeClassStructuresLazyGet
+            = new LazyGet<List<ClassStructure>>() {
+        @Override
+        protected List<ClassStructure> initialValue() {
+            return Collections.unmodifiableList(newInstances(descArrayToJavaClassNameArray(annotationDescs)));
+        }
+    };
+
     @Override
     public List<ClassStructure> getAnnotationTypeClassStructures() {
-        final List<ClassStructure> annotationTypeClassStructures = new ArrayList<ClassStructure>();
-        accept(new ClassVisitor(ASM6) {
-
-            @Override
-            public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-                if (visible) {
-                    final ClassStructure annotationTypeClassStructure = newInstance(Type.getType(desc).getClassName());
-                    if (null != annotationTypeClassStructure) {
-                        annotationTypeClassStructures.add(annotationTypeClassStructure);
-                    }
-                }
-                return super.visitAnnotation(desc, visible);
+        return annotationTypeClassStructuresLazyGet.get();
+    }
+
+    private BehaviorStructure newBehaviorStructure(final int index) {
+        final String name = methodNames[index];
+        final Type methodType = Type.getMethodType(methodDescs[index]);
+        return new BehaviorStructure(
+                new AccessImplByAsm(methodAccesses[index]),
+                name,
+                this,
+                "<init>".equals(name)
+                        ? this
+                        : newInstance(methodType.getReturnType().getClassName()),
+                newInstances(typeArrayToJavaClassNameArray(methodType.getArgumentTypes())),
+                newInstances(methodExceptions[index]),
+                newInstances(descArrayToJavaClassNameArray(methodAnnotationDescs[index]))
+        );
+    }
+
+    private final LazyGet<List<BehaviorStructure>> behaviorStructuresLazyGet
+            = new LazyGet<List<BehaviorStructure>>() {
+        @Override
+        protected List<BehaviorStructure> initialValue() {
+            final List<BehaviorStructure> behaviorStructures = new ArrayList<BehaviorStructure>();
+            for (int index = 0; index < methodNames.length; index++) {
+                behaviorStructures.add(newBehaviorStructure(index));
             }
-
-        });
-        return annotationTypeClassStructures;
-    }
+            return Collections.unmodifiableList(behaviorStructures);
+        }
+    };
 
     @Override
     public List<BehaviorStructure> getBehaviorStructures() {
-        final List<BehaviorStructure> behaviorStructures = new ArrayList<BehaviorStructure>();
-        accept(new ClassVisitor(ASM6) {
-
-            @Override
-            public MethodVisitor visitMethod(final int access,
-                                             final String name,
-                                             final String desc,
-                                             final String signature,
-                                             final String[] exceptions) {
-                return new MethodVisitor(ASM6, super.visitMethod(access, name, desc, signature, exceptions)) {
-
-                    private final Type methodType = Type.getMethodType(desc);
-                    private final List<ClassStructure> annotationTypeClassStructures = new ArrayList<ClassStructure>();
-
-                    private String[] typeArrayToJavaClassNameArray(final Type[] typeArray) {
-                        final List<String> javaClassNames = new ArrayList<String>();
-                        if (null != typeArray) {
-                            for (Type type : typeArray) {
-                                javaClassNames.add(type.getClassName());
-                            }
-                        }
-                        return javaClassNames.toArray(new String[0]);
-                    }
-
-                    private List<ClassStructure> getParameterTypeClassStructures() {
-                        return newInstances(
-                                typeArrayToJavaClassNameArray(methodType.getArgumentTypes())
-                        );
-                    }
-
-                    private ClassStructure getReturnTypeClassStructure() {
-                        if ("<init>".equals(name)) {
-                            return ClassStructureImplByAsm.this;
-                        } else {
-                            final Type returnType = methodType.getReturnType();
-                            return newInstance(returnType.getClassName());
-                        }
-                    }
-
-                    @Override
-                    public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-                        if (visible) {
-                            final ClassStructure annotationTypeClassStructure = newInstance(Type.getType(desc).getClassName());
-                            if (null != annotationTypeClassStructure) {
-                                annotationTypeClassStructures.add(annotationTypeClassStructure);
-                            }
-                        }
-                        return super.visitAnnotation(desc, visible);
-                    }
-
-                    @Override
-                    public void visitEnd() {
-                        super.visitEnd();
-                        final BehaviorStructure behaviorStructure = new BehaviorStructure(
-                                new AccessImplByAsm(access),
-                                name,
-                                ClassStructureImplByAsm.this,
-                                getReturnTypeClassStructure(),
-                                getParameterTypeClassStructures(),
-                                newInstances(exceptions),
-                                annotationTypeClassStructures
-                        );
-                        behaviorStructures.add(behaviorStructure);
-                    }
-                };
-            }
-        });
-        return behaviorStructures;
+        return behaviorStructuresLazyGet.get();
     }
 
 
@@ -4,6 +4,7 @@ import com.alibaba.jvm.sandbox.core.util.LazyGet;
 import org.apache.commons.lang3.StringUtils;
 
 import java.lang.annotation.Annotation;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -108,18 +109,31 @@ class AccessImplByJDKBehavior extends ModifierAccess {
  */
 public class ClassStructureImplByJDK extends FamilyClassStructure {
 
-    private final Class<?> clazz;
-    private String javaClassName;
+    // 类结构会被缓存，只能弱引用Class，否则会阻止ClassLoader被回收
+    private final WeakReference<Class<?>> clazzRef;
+    private final String javaClassName;
 
     public ClassStructureImplByJDK(final Class<?> clazz) {
-        this.clazz = clazz;
+        this.clazzRef = new WeakReference<Class<?>>(clazz);
+        this.javaClassName = clazz.isArray()
+                ? clazz.getCanonicalName()
+                : clazz.getName();
+    }
+
+    // 获取Class，类已经被卸载时无法再获取任何结构信息
+    private Class<?> getTargetClass() {
+        final Class<?> clazz = clazzRef.get();
+        if (null == clazz) {
+            throw new IllegalStateException(String.format("class:%s was unloaded.", javaClassName));
+        }
+        return clazz;
     }
 
     private ClassStructure newInstance(final Class<?> clazz) {
         if (null == clazz) {
             return null;
         }
-        return new ClassStructureImplByJDK(clazz);
+        return ClassStructureFactory.createClassStructure(clazz);
     }
 
     private List<ClassStructure> newInstances(final Class[] classArray) {
@@ -137,13 +151,7 @@ public class ClassStructureImplByJDK extends FamilyClassStructure {
 
     @Override
     public String getJavaClassName() {
-        if (null != javaClassName) {
-            return javaClassName;
-        }
-
-        return javaClassName = clazz.isArray()
-                ? clazz.getCanonicalName()
-                : clazz.getName();
+        return javaClassName;
 
 //        final String canonicalName = clazz.getCanonicalName();
 //        return javaClassName = StringUtils.isEmpty(canonicalName)
@@ -153,17 +161,20 @@ public class ClassStructureImplByJDK extends FamilyClassStructure {
 
     @Override
     public ClassLoader getClassLoader() {
-        return clazz.getClassLoader();
+        final Class<?> clazz = clazzRef.get();
+        return null == clazz
+                ? null
+                : clazz.getClassLoader();
     }
 
     @Override
     public ClassStructure getSuperClassStructure() {
-        return newInstance(clazz.getSuperclass());
+        return newInstance(getTargetClass().getSuperclass());
     }
 
     @Override
     public List<ClassStructure> getInterfaceClassStructures() {
-        return newInstances(clazz.getInterfaces());
+        return newInstances(getTargetClass().getInterfaces());
     }
 
     private Class[] getAnnotationTypeArray(final Annotation[] annotationArray) {
@@ -185,7 +196,7 @@ public class ClassStructureImplByJDK extends FamilyClassStructure {
             = new LazyGet<List<ClassStructure>>() {
         @Override
         protected List<ClassStructure> initialValue() throws Throwable {
-            return newInstances(getAnnotationTypeArray(clazz.getDeclaredAnnotations()));
+            return newInstances(getAnnotationTypeArray(getTargetClass().getDeclaredAnnotations()));
         }
     };
 
@@ -223,6 +234,7 @@ public class ClassStructureImplByJDK extends FamilyClassStructure {
         @Override
         protected List<BehaviorStructure> initialValue() {
             final List<BehaviorStructure> behaviorStructures = new ArrayList<BehaviorStructure>();
+            final Class<?> clazz = getTargetClass();
             for (final Constructor<?> constructor : clazz.getDeclaredConstructors()) {
                 behaviorStructures.add(newBehaviorStructure(constructor));
             }
@@ -240,7 +252,7 @@ public class ClassStructureImplByJDK extends FamilyClassStructure {
 
     @Override
     public Access getAccess() {
-        return new AccessImplByJDKClass(clazz);
+        return new AccessImplByJDKClass(getTargetClass());
     }
 
 
@@ -0,0 +1,304 @@
+package test.com.alibaba.jvm.sandbox.core.enhance;
+
+import com.alibaba.jvm.sandbox.api.ProcessControlException;
+import com.alibaba.jvm.sandbox.api.annotation.Asynchronous;
+import com.alibaba.jvm.sandbox.api.event.BeforeEvent;
+import com.alibaba.jvm.sandbox.api.event.Event;
+import com.alibaba.jvm.sandbox.api.event.InvokeEvent;
+import com.alibaba.jvm.sandbox.api.listener.EventListener;
+import com.alibaba.jvm.sandbox.api.listener.ext.Advice;
+import com.alibaba.jvm.sandbox.api.listener.ext.AdviceListener;
+import com.alibaba.jvm.sandbox.api.listener.ext.EventWatchBuilder;
+import com.alibaba.jvm.sandbox.api.resource.ModuleEventWatcher;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.EventListenerHandlers;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.JoinPoint;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.unCaughtGetClassDeclaredJavaMethod;
+
+/**
+ * 异步监听器的测试用例
+ * 事件在派发线程上回调；缓冲区为空时派发线程一直休眠到应用线程写入事件；
+ * 按调用过程整体派发时，一次调用过程中的事件由同一个派发线程按触发顺序回调
+ */
+public class AsynchronousListenerTestCase extends BaseTestCase {
+
+    private static final String DISPATCHER_THREAD_NAME_PREFIX = "sandbox-async-event-dispatcher-";
+
+    private static final Event.Type[] EVENT_TYPES = new Event.Type[]{
+            Event.Type.BEFORE,
+            Event.Type.RETURN,
+            Event.Type.THROWS
+    };
+
+    /**
+     * 记录回调线程和事件轨迹的监听器
+     */
+    public static class RecordEventListener implements EventListener {
+
+        final Set<String> threadNames = Collections.synchronizedSet(new HashSet<String>());
+        final List<String> traces = Collections.synchronizedList(new ArrayList<String>());
+        final List<Integer> processIds = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch latch;
+
+        RecordEventListener(final int expectEventCount) {
+            this.latch = new CountDownLatch(expectEventCount);
+        }
+
+        @Override
+        public void onEvent(final Event event) throws Throwable {
+            threadNames.add(Thread.currentThread().getName());
+            traces.add(event instanceof BeforeEvent
+                    ? event.type + ":" + ((BeforeEvent) event).javaMethodName
+                    : event.type.name()
+            );
+            processIds.add(((InvokeEvent) event).processId);
+            latch.countDown();
+        }
+
+        void await() throws InterruptedException {
+            Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        }
+
+    }
+
+    /**
+     * 逐个事件派发，并试图立即返回
+     */
+    @Asynchronous
+    public static class AsyncEventListener extends RecordEventListener {
+
+        AsyncEventListener(final int expectEventCount) {
+            super(expectEventCount);
+        }
+
+        @Override
+        public void onEvent(final Event event) throws Throwable {
+            super.onEvent(event);
+            if (event.type == Event.Type.BEFORE) {
+                ProcessControlException.throwReturnImmediately(-1);
+            }
+        }
+
+    }
+
+    /**
+     * 按调用过程整体派发
+     */
+    @Asynchronous(byProcess = true)
+    public static class ProcessEventListener extends RecordEventListener {
+
+        ProcessEventListener(final int expectEventCount) {
+            super(expectEventCount);
+        }
+
+    }
+
+    /**
+     * 异步通知监听器
+     */
+    @Asynchronous
+    public static class AsyncAdviceListener extends AdviceListener {
+
+        final Set<String> threadNames = Collections.synchronizedSet(new HashSet<String>());
+        final List<String> traces = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch latch = new CountDownLatch(4);
+
+        @Override
+        protected void before(final Advice advice) {
+            threadNames.add(Thread.currentThread().getName());
+            traces.add("before:" + advice.getBehavior().getName()
+                    + (advice.isProcessTop() ? "" : "<" + advice.getProcessTop().getBehavior().getName()));
+            latch.countDown();
+        }
+
+        @Override
+        protected void afterReturning(final Advice advice) {
+            threadNames.add(Thread.currentThread().getName());
+            traces.add("return:" + advice.getBehavior().getName() + "=" + advice.getReturnObj());
+            latch.countDown();
+        }
+
+    }
+
+    /*
+     * 把监听器织入到Computer#sum(int[])和Computer#isEmptyArray(Object[])上，以{1,2}调用sum()指定的次数
+     */
+    private void weavingAndSum(final int listenerId,
+                               final int times) throws Exception {
+        weavingAndSum(listenerId, EVENT_TYPES, times);
+    }
+
+    private void weavingAndSum(final int listenerId,
+                               final Event.Type[] eventTypes,
+                               final int times) throws Exception {
+        final Map<String, JoinPoint> joinPointMapping = new HashMap<String, JoinPoint>();
+        joinPointMapping.put(Computer.class.getName() + "#sum(int[])", new JoinPoint(listenerId, eventTypes));
+        joinPointMapping.put(Computer.class.getName() + "#isEmptyArray(java.lang.Object[])", new JoinPoint(listenerId, eventTypes));
+        final Class<?> computerClass = weaving(Computer.class, joinPointMapping);
+        final Method sum = unCaughtGetClassDeclaredJavaMethod(computerClass, "sum", int[].class);
+        for (int index = 0; index < times; index++) {
+            Assert.assertEquals(3, sum.invoke(computerClass.newInstance(), new int[]{1, 2}));
+        }
+    }
+
+    private void assertOnDispatcherThread(final Set<String> threadNames) {
+        Assert.assertFalse(threadNames.isEmpty());
+        for (final String threadName : threadNames) {
+            Assert.assertTrue(threadName, threadName.startsWith(DISPATCHER_THREAD_NAME_PREFIX));
+        }
+    }
+
+    private List<Thread> listDispatcherThreads() {
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith(DISPATCHER_THREAD_NAME_PREFIX)
+                    && thread.isAlive()) {
+                threads.add(thread);
+            }
+        }
+        return threads;
+    }
+
+    // 等待所有派发线程进入无超时的休眠，按固定间隔轮询的派发线程永远不会进入WAITING
+    private boolean awaitDispatcherWaiting() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            final List<Thread> threads = listDispatcherThreads();
+            boolean isAllWaiting = !threads.isEmpty();
+            for (final Thread thread : threads) {
+                isAllWaiting &= thread.getState() == Thread.State.WAITING;
+            }
+            if (isAllWaiting) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    @Test
+    public void test_deliver_on_dispatcher_thread_and_ignore_process_control() throws Exception {
+        final AsyncEventListener listener = new AsyncEventListener(6);
+        final int listenerId = active(listener, EVENT_TYPES);
+        try {
+            final Class<?> computerClass = weaving(
+                    Computer.class,
+                    Collections.singletonMap(Computer.class.getName() + "#sum(int[])", new JoinPoint(listenerId, EVENT_TYPES))
+            );
+            final Method sum = unCaughtGetClassDeclaredJavaMethod(computerClass, "sum", int[].class);
+            for (int index = 0; index < 3; index++) {
+                Assert.assertEquals(3, sum.invoke(computerClass.newInstance(), new int[]{1, 2}));
+            }
+            listener.await();
+            assertOnDispatcherThread(listener.threadNames);
+            Assert.assertEquals(
+                    "[BEFORE:sum, RETURN, BEFORE:sum, RETURN, BEFORE:sum, RETURN]",
+                    listener.traces.toString()
+            );
+        } finally {
+            EventListenerHandlers.getSingleton().frozen(listenerId);
+        }
+    }
+
+    @Test
+    public void test_dispatcher_parks_until_event_offered() throws Exception {
+        final RecordEventListener listener = new ProcessEventListener(4);
+        final int listenerId = active(listener, EVENT_TYPES);
+        try {
+            Assert.assertTrue(awaitDispatcherWaiting());
+            weavingAndSum(listenerId, 1);
+            listener.await();
+            Assert.assertTrue(awaitDispatcherWaiting());
+        } finally {
+            EventListenerHandlers.getSingleton().frozen(listenerId);
+        }
+    }
+
+    @Test
+    public void test_by_process_deliver_whole_process_in_order() throws Exception {
+        final ProcessEventListener listener = new ProcessEventListener(8);
+        final int listenerId = active(listener, EVENT_TYPES);
+        try {
+            weavingAndSum(listenerId, 2);
+            listener.await();
+            assertOnDispatcherThread(listener.threadNames);
+            Assert.assertEquals(
+                    "[BEFORE:sum, BEFORE:isEmptyArray, RETURN, RETURN, BEFORE:sum, BEFORE:isEmptyArray, RETURN, RETURN]",
+                    listener.traces.toString()
+            );
+            Assert.assertEquals(1, new HashSet<Integer>(listener.processIds.subList(0, 4)).size());
+            Assert.assertEquals(1, new HashSet<Integer>(listener.processIds.subList(4, 8)).size());
+        } finally {
+            EventListenerHandlers.getSingleton().frozen(listenerId);
+        }
+    }
+
+    @Test
+    public void test_by_process_without_return_and_throws_deliver_one_by_one() throws Exception {
+
+        // 只订阅BEFORE时调用过程永远不会结束，事件不能一直积压在应用线程上
+        final Event.Type[] beforeOnly = new Event.Type[]{Event.Type.BEFORE};
+        final ProcessEventListener listener = new ProcessEventListener(4);
+        final int listenerId = active(listener, beforeOnly);
+        try {
+            weavingAndSum(listenerId, beforeOnly, 2);
+            listener.await();
+            assertOnDispatcherThread(listener.threadNames);
+            Assert.assertEquals(
+                    "[BEFORE:sum, BEFORE:isEmptyArray, BEFORE:sum, BEFORE:isEmptyArray]",
+                    listener.traces.toString()
+            );
+        } finally {
+            EventListenerHandlers.getSingleton().frozen(listenerId);
+        }
+    }
+
+    @Test
+    public void test_async_advice_listener() throws Exception {
+
+        // 截获EventWatchBuilder交给容器的事件监听器
+        final List<EventListener> watched = new ArrayList<EventListener>();
+        final ModuleEventWatcher moduleEventWatcher = (ModuleEventWatcher) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[]{ModuleEventWatcher.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("watch".equals(method.getName())) {
+                            watched.add((EventListener) args[1]);
+                        }
+                        return 0;
+                    }
+                }
+        );
+        final AsyncAdviceListener adviceListener = new AsyncAdviceListener();
+        new EventWatchBuilder(moduleEventWatcher)
+                .onClass(Computer.class)
+                .onBehavior("*")
+                .onWatch(adviceListener);
+        Assert.assertEquals(1, watched.size());
+
+        final int listenerId = active(watched.get(0), EVENT_TYPES);
+        try {
+            weavingAndSum(listenerId, 1);
+            Assert.assertTrue(adviceListener.latch.await(5, TimeUnit.SECONDS));
+            assertOnDispatcherThread(adviceListener.threadNames);
+            Assert.assertEquals(
+                    "[before:sum, before:isEmptyArray<sum, return:isEmptyArray=false, return:sum=3]",
+                    adviceListener.traces.toString()
+            );
+        } finally {
+            EventListenerHandlers.getSingleton().frozen(listenerId);
+        }
+    }
+
+}
@@ -9,6 +9,7 @@ import com.alibaba.jvm.sandbox.core.CoreConfigure;
 import com.alibaba.jvm.sandbox.core.enhance.Enhancer;
 import com.alibaba.jvm.sandbox.core.enhance.EventEnhancer;
 import com.alibaba.jvm.sandbox.core.enhance.weaver.EventListenerHandlers;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.JoinPoint;
 import com.alibaba.jvm.sandbox.core.util.SandboxStringUtils;
 import com.alibaba.jvm.sandbox.core.util.matcher.ExtFilterMatcher;
 import com.alibaba.jvm.sandbox.core.util.matcher.structure.ClassStructureImplByJDK;
@@ -22,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.*;
@@ -92,6 +94,51 @@ public class BaseTestCase {
         );
     }
 
+    /**
+     * 激活一个监听器
+     *
+     * @param listener  事件监听器
+     * @param eventType 订阅的事件类型
+     * @return 监听器ID
+     */
+    protected int active(final EventListener listener,
+                         final Event.Type... eventType) {
+        final int listenerId = EventListenerHandlers.getSingleton().allocateListenerId();
+        EventListenerHandlers.getSingleton().active(listenerId, listener, eventType);
+        return listenerId;
+    }
+
+    /**
+     * 按调用点织入目标类，并在一个新的类加载器中定义
+     *
+     * @param targetClass      目标类
+     * @param joinPointMapping 行为签名与调用点的映射
+     * @return 织入后的类
+     */
+    protected Class<?> weaving(final Class<?> targetClass,
+                               final Map<String, JoinPoint> joinPointMapping) throws IOException, InvocationTargetException, IllegalAccessException {
+        final ClassLoader loader = newTestClassLoader();
+        return defineClass(
+                loader,
+                targetClass.getName(),
+                weaving(loader, targetClass, joinPointMapping)
+        );
+    }
+
+    /**
+     * 按调用点织入目标类
+     *
+     * @param loader           织入时所用的目标类加载器
+     * @param targetClass      目标类
+     * @param joinPointMapping 行为签名与调用点的映射
+     * @return 织入后的字节码
+     */
+    protected byte[] weaving(final ClassLoader loader,
+                             final Class<?> targetClass,
+                             final Map<String, JoinPoint> joinPointMapping) throws IOException {
+        return new EventEnhancer().toByteCodeArray(loader, toByteArray(targetClass), joinPointMapping);
+    }
+
     @BeforeClass
     public static void testBeforeClass() {
         CoreConfigure.toConfigure("", "");
@@ -0,0 +1,156 @@
+package test.com.alibaba.jvm.sandbox.core.enhance;
+
+import com.alibaba.jvm.sandbox.api.ProcessControlException;
+import com.alibaba.jvm.sandbox.api.event.BeforeEvent;
+import com.alibaba.jvm.sandbox.api.event.Event;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.EventListenerHandlers;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.JoinPoint;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.defineClass;
+import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.unCaughtGetClassDeclaredJavaMethod;
+
+/**
+ * 只订阅BEFORE时的织入测试用例
+ * 只订阅BEFORE时不织入RETURN/THROWS回调和包裹整个方法的异常处理块，方法自身的异常原样抛出
+ */
+public class BeforeOnlyWeavingTestCase extends BaseTestCase {
+
+    private static final Event.Type[] BEFORE_ONLY = new Event.Type[]{
+            Event.Type.BEFORE,
+            Event.Type.IMMEDIATELY_RETURN
+    };
+
+    private static final Event.Type[] BEFORE_AND_END = new Event.Type[]{
+            Event.Type.BEFORE,
+            Event.Type.RETURN,
+            Event.Type.THROWS
+    };
+
+    private final List<String> traces = new ArrayList<String>();
+
+    private WovenMethod wovenSum;
+
+    private Method weavingSum(final Event.Type[] eventTypes,
+                              final TraceEventListener... listeners) throws Exception {
+        final int[] listenerIds = new int[listeners.length];
+        for (int index = 0; index < listeners.length; index++) {
+            listenerIds[index] = active(listeners[index], eventTypes);
+        }
+        final Map<String, JoinPoint> joinPointMapping = Collections.singletonMap(
+                Computer.class.getName() + "#sum(int[])",
+                new JoinPoint(EventListenerHandlers.getSingleton().joinPoint(listenerIds, eventTypes), eventTypes)
+        );
+        final ClassLoader loader = newTestClassLoader();
+        final byte[] byteCodeArray = weaving(loader, Computer.class, joinPointMapping);
+        wovenSum = new WovenMethod(byteCodeArray, "sum", "([I)I");
+        final Class<?> computerClass = defineClass(loader, Computer.class.getName(), byteCodeArray);
+        return unCaughtGetClassDeclaredJavaMethod(computerClass, "sum", int[].class);
+    }
+
+    private static Object sum(final Method sum) throws Exception {
+        try {
+            return sum.invoke(sum.getDeclaringClass().newInstance(), new int[]{1, 2});
+        } catch (InvocationTargetException cause) {
+            return cause.getTargetException();
+        }
+    }
+
+    @Test
+    public void test_before_only_omit_return_and_throws() throws Exception {
+        final Method sum = weavingSum(BEFORE_ONLY, new TraceEventListener("a", traces));
+        Assert.assertEquals(3, sum(sum));
+        Assert.assertEquals("[a:BEFORE]", traces.toString());
+
+        Assert.assertEquals(0, wovenSum.countTryCatchBlocks());
+        Assert.assertEquals(1, wovenSum.countSpyInvoke("spyMethodOnBefore"));
+        Assert.assertEquals(0, wovenSum.countSpyInvoke("spyMethodOnReturn"));
+        Assert.assertEquals(0, wovenSum.countSpyInvoke("spyMethodOnThrows"));
+    }
+
+    @Test
+    public void test_before_and_end_weave_return_and_throws() throws Exception {
+        final Method sum = weavingSum(BEFORE_AND_END, new TraceEventListener("a", traces));
+        Assert.assertEquals(3, sum(sum));
+        Assert.assertEquals("[a:BEFORE, a:RETURN=3]", traces.toString());
+
+        // 织入的回调代码会把异常处理块的范围切分成多段
+        Assert.assertTrue(wovenSum.countTryCatchBlocks() > 0);
+        Assert.assertEquals(1, wovenSum.countSpyInvoke("spyMethodOnBefore"));
+        Assert.assertEquals(2, wovenSum.countSpyInvoke("spyMethodOnReturn"));
+        Assert.assertEquals(1, wovenSum.countSpyInvoke("spyMethodOnThrows"));
+    }
+
+    @Test
+    public void test_before_only_propagate_method_exception() throws Exception {
+        final Method sum = weavingSum(BEFORE_ONLY, new TraceEventListener("a", traces) {
+            @Override
+            protected void onTrace(Event event) {
+                // 换成错误类型的参数，让方法在进入时抛出异常
+                ((BeforeEvent) event).changeParameter(0, "not an int array");
+            }
+        });
+        Assert.assertTrue(sum(sum) instanceof ClassCastException);
+        Assert.assertEquals("[a:BEFORE]", traces.toString());
+    }
+
+    @Test
+    public void test_before_only_return_immediately() throws Exception {
+        final Method sum = weavingSum(BEFORE_ONLY, new TraceEventListener("a", traces) {
+            @Override
+            protected void onTrace(Event event) throws Throwable {
+                if (event.type == Event.Type.BEFORE) {
+                    ProcessControlException.throwReturnImmediately(9);
+                }
+            }
+        });
+        Assert.assertEquals(9, sum(sum));
+        Assert.assertEquals("[a:BEFORE, a:IMMEDIATELY_RETURN=9]", traces.toString());
+    }
+
+    @Test
+    public void test_before_only_not_leak_process() throws Exception {
+        final List<long[]> processes = new ArrayList<long[]>();
+        final Method sum = weavingSum(BEFORE_ONLY, new TraceEventListener("a", traces) {
+            @Override
+            protected void onTrace(Event event) {
+                final BeforeEvent beforeEvent = (BeforeEvent) event;
+                processes.add(new long[]{beforeEvent.longProcessId, beforeEvent.longInvokeId});
+            }
+        });
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(3, sum(sum));
+        }
+        Assert.assertEquals(3, processes.size());
+        for (final long[] process : processes) {
+            Assert.assertEquals(process[1], process[0]);
+        }
+    }
+
+    @Test
+    public void test_fused_before_only_throws_immediately() throws Exception {
+        final RuntimeException expect = new RuntimeException("throws immediately on before");
+        final Method sum = weavingSum(BEFORE_ONLY, new TraceEventListener("a", traces) {
+            @Override
+            protected void onTrace(Event event) throws Throwable {
+                ProcessControlException.throwThrowsImmediately(expect);
+            }
+        }, new TraceEventListener("b", traces));
+        Assert.assertEquals(0, wovenSum.countTryCatchBlocks());
+        Assert.assertSame(expect, sum(sum));
+        Assert.assertEquals("[a:BEFORE]", traces.toString());
+
+        // 融合调用点没有残留的进入标记
+        Assert.assertSame(expect, sum(sum));
+        Assert.assertEquals("[a:BEFORE, a:BEFORE]", traces.toString());
+    }
+
+}
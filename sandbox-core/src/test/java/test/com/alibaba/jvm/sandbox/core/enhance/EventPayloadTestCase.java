@@ -0,0 +1,117 @@
+package test.com.alibaba.jvm.sandbox.core.enhance;
+
+import com.alibaba.jvm.sandbox.api.event.BeforeEvent;
+import com.alibaba.jvm.sandbox.api.event.Event;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.JoinPoint;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.defineClass;
+import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.unCaughtGetClassDeclaredJavaMethod;
+
+/**
+ * 事件负载的测试用例
+ * 监听器不需要的事件负载不应该在织入代码中构造
+ */
+public class EventPayloadTestCase extends BaseTestCase {
+
+    private static final Event.Type[] EVENT_TYPES = new Event.Type[]{
+            Event.Type.BEFORE,
+            Event.Type.RETURN,
+            Event.Type.THROWS
+    };
+
+    private final List<String> traces = new ArrayList<String>();
+
+    private byte[] byteCodeArray;
+
+    /*
+     * 按指定的事件负载织入Computer#sum(int[])，并以{1,2}调用一次
+     */
+    private Object weavingAndSum(final int payloads, final TraceEventListener listener) throws Exception {
+        final int listenerId = active(listener, EVENT_TYPES);
+        final Map<String, JoinPoint> joinPointMapping = Collections.singletonMap(
+                Computer.class.getName() + "#sum(int[])",
+                new JoinPoint(listenerId, EVENT_TYPES, payloads)
+        );
+        final ClassLoader loader = newTestClassLoader();
+        byteCodeArray = weaving(loader, Computer.class, joinPointMapping);
+        final Class<?> computerClass = defineClass(loader, Computer.class.getName(), byteCodeArray);
+        final Method sum = unCaughtGetClassDeclaredJavaMethod(computerClass, "sum", int[].class);
+        return sum.invoke(computerClass.newInstance(), new int[]{1, 2});
+    }
+
+    private WovenMethod wovenSum() {
+        return new WovenMethod(byteCodeArray, "sum", "([I)I");
+    }
+
+    @Test
+    public void test_all_payloads() throws Exception {
+        final List<Object> payloads = new ArrayList<Object>();
+        Assert.assertEquals(3, weavingAndSum(JoinPoint.PAYLOAD_ALL, new TraceEventListener("a", traces) {
+            @Override
+            protected void onTrace(Event event) {
+                if (event instanceof BeforeEvent) {
+                    payloads.add(((BeforeEvent) event).argumentArray.length);
+                    payloads.add(null != ((BeforeEvent) event).target);
+                }
+            }
+        }));
+        Assert.assertEquals("[a:BEFORE, a:RETURN=3]", traces.toString());
+        Assert.assertEquals("[1, true]", payloads.toString());
+        Assert.assertEquals(1, wovenSum().countNewArray("java/lang/Object"));
+        // Computer#sum(int[])有两个返回点，每个返回点装箱一次
+        Assert.assertEquals(2, wovenSum().countNew("java/lang/Integer"));
+    }
+
+    @Test
+    public void test_no_payloads() throws Exception {
+        final List<Object> payloads = new ArrayList<Object>();
+        Assert.assertEquals(3, weavingAndSum(0, new TraceEventListener("a", traces) {
+            @Override
+            protected void onTrace(Event event) {
+                if (event instanceof BeforeEvent) {
+                    payloads.add(((BeforeEvent) event).argumentArray);
+                    payloads.add(((BeforeEvent) event).target);
+                }
+            }
+        }));
+        Assert.assertEquals("[a:BEFORE, a:RETURN=null]", traces.toString());
+        Assert.assertEquals("[null, null]", payloads.toString());
+
+        // 没有分配参数数组，也没有对返回值装箱
+        Assert.assertEquals(0, wovenSum().countNewArray("java/lang/Object"));
+        Assert.assertEquals(0, wovenSum().countNew("java/lang/Integer"));
+    }
+
+    @Test
+    public void test_argument_payload_only() throws Exception {
+        Assert.assertEquals(10, weavingAndSum(JoinPoint.PAYLOAD_ARGUMENT, new TraceEventListener("a", traces) {
+            @Override
+            protected void onTrace(Event event) {
+                if (event instanceof BeforeEvent) {
+                    ((BeforeEvent) event).changeParameter(0, new int[]{5, 5});
+                }
+            }
+        }));
+        Assert.assertEquals("[a:BEFORE, a:RETURN=null]", traces.toString());
+        Assert.assertEquals(1, wovenSum().countNewArray("java/lang/Object"));
+        Assert.assertEquals(0, wovenSum().countNew("java/lang/Integer"));
+    }
+
+    @Test
+    public void test_return_value_payload_only() throws Exception {
+        Assert.assertEquals(3, weavingAndSum(JoinPoint.PAYLOAD_RETURN_VALUE, new TraceEventListener("a", traces)));
+        Assert.assertEquals("[a:BEFORE, a:RETURN=3]", traces.toString());
+        Assert.assertEquals(0, wovenSum().countNewArray("java/lang/Object"));
+        // Computer#sum(int[])有两个返回点，每个返回点装箱一次
+        Assert.assertEquals(2, wovenSum().countNew("java/lang/Integer"));
+    }
+
+}
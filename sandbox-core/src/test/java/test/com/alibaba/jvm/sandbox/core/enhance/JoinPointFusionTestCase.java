@@ -0,0 +1,162 @@
+package test.com.alibaba.jvm.sandbox.core.enhance;
+
+import com.alibaba.jvm.sandbox.api.ProcessControlException;
+import com.alibaba.jvm.sandbox.api.event.BeforeEvent;
+import com.alibaba.jvm.sandbox.api.event.Event;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.EventListenerHandlers;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.JoinPoint;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.unCaughtGetClassDeclaredJavaMethod;
+
+/**
+ * 融合调用点的测试用例
+ * 多个监听器融合到同一个调用点之后，事件派发的语义必须和按注册顺序逐层嵌套织入时保持一致
+ */
+public class JoinPointFusionTestCase extends BaseTestCase {
+
+    private static final Event.Type[] EVENT_TYPES = new Event.Type[]{
+            Event.Type.BEFORE,
+            Event.Type.RETURN,
+            Event.Type.THROWS,
+            Event.Type.IMMEDIATELY_RETURN,
+            Event.Type.IMMEDIATELY_THROWS
+    };
+
+    private final List<String> traces = new ArrayList<String>();
+
+    /*
+     * 把监听器按顺序融合到Computer#sum(int[])上，并以{1,2}调用一次
+     * 返回方法的返回值，方法抛出异常时返回该异常
+     */
+    private Object fusingAndSum(final TraceEventListener... listeners) throws Exception {
+        final int[] listenerIds = new int[listeners.length];
+        for (int index = 0; index < listeners.length; index++) {
+            listenerIds[index] = active(listeners[index], EVENT_TYPES);
+        }
+        final int joinPointId = EventListenerHandlers.getSingleton().joinPoint(listenerIds, EVENT_TYPES);
+        final Class<?> computerClass = weaving(
+                Computer.class,
+                Collections.singletonMap(
+                        Computer.class.getName() + "#sum(int[])",
+                        new JoinPoint(joinPointId, EVENT_TYPES)
+                )
+        );
+        final Method sum = unCaughtGetClassDeclaredJavaMethod(computerClass, "sum", int[].class);
+        try {
+            return sum.invoke(computerClass.newInstance(), new int[]{1, 2});
+        } catch (InvocationTargetException cause) {
+            return cause.getTargetException();
+        }
+    }
+
+    private TraceEventListener trace(final String name) {
+        return new TraceEventListener(name, traces);
+    }
+
+    @Test
+    public void test_before_in_order_and_return_in_reverse_order() throws Exception {
+        Assert.assertEquals(3, fusingAndSum(trace("a"), trace("b"), trace("c")));
+        Assert.assertEquals(
+                "[a:BEFORE, b:BEFORE, c:BEFORE, c:RETURN=3, b:RETURN=3, a:RETURN=3]",
+                traces.toString()
+        );
+    }
+
+    @Test
+    public void test_throws_in_reverse_order() throws Exception {
+        final Object result = fusingAndSum(trace("a"), trace("b"), new TraceEventListener("c", traces) {
+            @Override
+            protected void onTrace(Event event) throws Throwable {
+                // 换成错误类型的参数，让方法在进入时抛出异常
+                if (event.type == Event.Type.BEFORE) {
+                    ((BeforeEvent) event).changeParameter(0, "not an int array");
+                }
+            }
+        });
+        Assert.assertTrue(String.valueOf(result), result instanceof ClassCastException);
+        Assert.assertEquals(
+                "[a:BEFORE, b:BEFORE, c:BEFORE, c:THROWS, b:THROWS, a:THROWS]",
+                traces.toString()
+        );
+    }
+
+    @Test
+    public void test_return_immediately_on_before_only_reach_entered_listeners() throws Exception {
+        Assert.assertEquals(7, fusingAndSum(trace("a"), new TraceEventListener("b", traces) {
+            @Override
+            protected void onTrace(Event event) throws Throwable {
+                if (event.type == Event.Type.BEFORE) {
+                    ProcessControlException.throwReturnImmediately(7);
+                }
+            }
+        }, trace("c")));
+        Assert.assertEquals(
+                "[a:BEFORE, b:BEFORE, b:IMMEDIATELY_RETURN=7, a:RETURN=7]",
+                traces.toString()
+        );
+    }
+
+    @Test
+    public void test_throws_immediately_on_before_only_reach_entered_listeners() throws Exception {
+        final RuntimeException expect = new RuntimeException("throws immediately on before");
+        Assert.assertSame(expect, fusingAndSum(trace("a"), new TraceEventListener("b", traces) {
+            @Override
+            protected void onTrace(Event event) throws Throwable {
+                if (event.type == Event.Type.BEFORE) {
+                    ProcessControlException.throwThrowsImmediately(expect);
+                }
+            }
+        }, trace("c")));
+        Assert.assertEquals(
+                "[a:BEFORE, b:BEFORE, b:IMMEDIATELY_THROWS, a:THROWS]",
+                traces.toString()
+        );
+    }
+
+    @Test
+    public void test_return_immediately_on_return_pass_to_outer_listeners() throws Exception {
+        Assert.assertEquals(9, fusingAndSum(trace("a"), trace("b"), new TraceEventListener("c", traces) {
+            @Override
+            protected void onTrace(Event event) throws Throwable {
+                if (event.type == Event.Type.RETURN) {
+                    ProcessControlException.throwReturnImmediately(9);
+                }
+            }
+        }));
+        Assert.assertEquals(
+                "[a:BEFORE, b:BEFORE, c:BEFORE, c:RETURN=3, c:IMMEDIATELY_RETURN=9, b:RETURN=9, a:RETURN=9]",
+                traces.toString()
+        );
+    }
+
+    @Test
+    public void test_throws_immediately_on_return_pass_to_outer_listeners() throws Exception {
+        final RuntimeException expect = new RuntimeException("throws immediately on return");
+        Assert.assertSame(expect, fusingAndSum(trace("a"), new TraceEventListener("b", traces) {
+            @Override
+            protected void onTrace(Event event) throws Throwable {
+                if (event.type == Event.Type.RETURN) {
+                    ProcessControlException.throwThrowsImmediately(expect);
+                }
+            }
+        }, trace("c")));
+        Assert.assertEquals(
+                "[a:BEFORE, b:BEFORE, c:BEFORE, c:RETURN=3, b:RETURN=3, b:IMMEDIATELY_THROWS, a:THROWS]",
+                traces.toString()
+        );
+
+        // 融合调用点的进入标记必须已经全部出栈，不影响后续的调用
+        traces.clear();
+        Assert.assertEquals(3, fusingAndSum(trace("x"), trace("y")));
+        Assert.assertEquals("[x:BEFORE, y:BEFORE, y:RETURN=3, x:RETURN=3]", traces.toString());
+    }
+
+}
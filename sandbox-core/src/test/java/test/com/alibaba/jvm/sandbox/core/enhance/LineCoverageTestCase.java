@@ -0,0 +1,142 @@
+package test.com.alibaba.jvm.sandbox.core.enhance;
+
+import com.alibaba.jvm.sandbox.api.resource.ModuleEventWatcher.LineCoverage;
+import com.alibaba.jvm.sandbox.core.enhance.EventEnhancer;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.EventListenerHandlers;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.LineCoverages;
+import com.alibaba.jvm.sandbox.core.util.matcher.structure.BehaviorStructure;
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Test;
+
+import java.com.alibaba.jvm.sandbox.spy.Spy;
+import java.lang.reflect.Method;
+import java.util.*;
+
+import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.defineClass;
+import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.unCaughtGetClassDeclaredJavaMethod;
+import static com.alibaba.jvm.sandbox.core.util.matcher.structure.ClassStructureFactory.createClassStructure;
+
+/**
+ * 行覆盖织入的测试用例
+ * 每执行一行只对计数数组自增；构造函数中super()所在的行同样计数，重新织入时计数被保留，删除观察后计数数组被释放
+ */
+public class LineCoverageTestCase extends BaseTestCase {
+
+    /**
+     * 被统计行覆盖的类
+     */
+    public static class Target {
+
+        private final int base;
+
+        public Target(final int base) {
+            super();
+            this.base = base;
+        }
+
+        public int abs(final int value) {
+            if (value < 0) {
+                return base - value;
+            }
+            return base + value;
+        }
+
+    }
+
+    private final int listenerId = EventListenerHandlers.getSingleton().allocateListenerId();
+
+    @After
+    public void remove() {
+        LineCoverages.instance.remove(listenerId);
+    }
+
+    // 统计Target中所有行为的行覆盖
+    private byte[] weavingLineCoverage(final ClassLoader loader) throws Exception {
+        final Set<String> signCodes = new HashSet<String>();
+        for (final BehaviorStructure behaviorStructure : createClassStructure(Target.class).getBehaviorStructures()) {
+            signCodes.add(behaviorStructure.getSignCode());
+        }
+        return new EventEnhancer().toLineCoverageByteCodeArray(loader, toByteArray(Target.class), signCodes, listenerId);
+    }
+
+    private Class<?> defineLineCoverage() throws Exception {
+        final ClassLoader loader = newTestClassLoader();
+        return defineClass(loader, Target.class.getName(), weavingLineCoverage(loader));
+    }
+
+    // 构造一次，再各调用一次abs(-1)、abs(2)、abs(3)
+    private static void abs(final Class<?> targetClass) throws Exception {
+        final Object target = targetClass.getConstructor(int.class).newInstance(10);
+        final Method abs = unCaughtGetClassDeclaredJavaMethod(targetClass, "abs", int.class);
+        Assert.assertEquals(11, abs.invoke(target, -1));
+        Assert.assertEquals(12, abs.invoke(target, 2));
+        Assert.assertEquals(13, abs.invoke(target, 3));
+    }
+
+    // 方法名:按行号排列的命中次数
+    private Map<String, List<Integer>> listLineHits() {
+        final Map<String, List<Integer>> lineHits = new HashMap<String, List<Integer>>();
+        for (final LineCoverage lineCoverage : LineCoverages.instance.list(listenerId)) {
+            Assert.assertEquals(Target.class.getName(), lineCoverage.javaClassName);
+            Assert.assertNull(lineHits.put(
+                    lineCoverage.javaMethodName,
+                    new ArrayList<Integer>(lineCoverage.lineHits.values())
+            ));
+        }
+        return lineHits;
+    }
+
+    @Test
+    public void test_count_hits_per_line() throws Exception {
+        final Class<?> targetClass = defineLineCoverage();
+
+        // 织入完成后所有行都已登记，没有执行过的行计数为0
+        Assert.assertEquals(Arrays.asList(0, 0, 0), listLineHits().get("abs"));
+
+        abs(targetClass);
+        Assert.assertEquals(Arrays.asList(3, 1, 2), listLineHits().get("abs"));
+        Assert.assertEquals(2, listLineHits().size());
+    }
+
+    @Test
+    public void test_count_constructor_line_before_super() throws Exception {
+        final Class<?> targetClass = defineLineCoverage();
+        for (int index = 0; index < 3; index++) {
+            targetClass.getConstructor(int.class).newInstance(index);
+        }
+
+        // super()所在的行在进入方法之前，进入方法后补上计数
+        Assert.assertEquals(Arrays.asList(3, 3, 3), listLineHits().get("<init>"));
+    }
+
+    @Test
+    public void test_keep_hits_on_re_weaving() throws Exception {
+        final ClassLoader loader = newTestClassLoader();
+        abs(defineClass(loader, Target.class.getName(), weavingLineCoverage(loader)));
+        Assert.assertEquals(Arrays.asList(3, 1, 2), listLineHits().get("abs"));
+
+        // 同一个ClassLoader中重新织入得到相同的行覆盖ID，新定义的类代替重新形变后的类接着计数
+        abs(defineClass(newTestClassLoader(), Target.class.getName(), weavingLineCoverage(loader)));
+        Assert.assertEquals(Arrays.asList(6, 2, 4), listLineHits().get("abs"));
+        Assert.assertEquals(Arrays.asList(2, 2, 2), listLineHits().get("<init>"));
+        Assert.assertEquals(2, listLineHits().size());
+    }
+
+    @Test
+    public void test_release_hits_on_remove() throws Exception {
+        final ClassLoader loader = newTestClassLoader();
+        final Class<?> targetClass = defineClass(loader, Target.class.getName(), weavingLineCoverage(loader));
+        abs(targetClass);
+        final int lineCoverageId = LineCoverages.instance.register(listenerId, loader, Target.class.getName(), "abs", "(I)I");
+        Assert.assertNotNull(Spy.getLineHits(lineCoverageId));
+
+        // 删除观察后计数数组被释放，残留的织入代码跳过计数，方法照常执行
+        LineCoverages.instance.remove(listenerId);
+        Assert.assertNull(Spy.getLineHits(lineCoverageId));
+        Assert.assertTrue(LineCoverages.instance.list(listenerId).isEmpty());
+        abs(targetClass);
+        Assert.assertTrue(LineCoverages.instance.list(listenerId).isEmpty());
+    }
+
+}
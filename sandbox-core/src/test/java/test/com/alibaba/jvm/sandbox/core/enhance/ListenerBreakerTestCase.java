@@ -0,0 +1,223 @@
+package test.com.alibaba.jvm.sandbox.core.enhance;
+
+import com.alibaba.jvm.sandbox.api.event.Event;
+import com.alibaba.jvm.sandbox.api.listener.EventListener;
+import com.alibaba.jvm.sandbox.core.CoreConfigure;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.EventListenerHandlers;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.JoinPoint;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.ListenerBreaker;
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Test;
+
+import java.com.alibaba.jvm.sandbox.spy.Spy;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.unCaughtGetClassDeclaredJavaMethod;
+
+/**
+ * 监听器熔断的测试用例
+ * 异常次数或平均耗时超标时关闭监听器开关，监听器仍然激活；到达探测时间后恢复，连续熔断时探测间隔加倍
+ */
+public class ListenerBreakerTestCase extends BaseTestCase {
+
+    private static final Event.Type[] EVENT_TYPES = new Event.Type[]{
+            Event.Type.BEFORE
+    };
+
+    private final EventListenerHandlers handlers = EventListenerHandlers.getSingleton();
+
+    private final List<Integer> listenerIds = new ArrayList<Integer>();
+
+    @After
+    public void frozen() {
+        for (final int listenerId : listenerIds) {
+            handlers.frozen(listenerId);
+        }
+        CoreConfigure.toConfigure("", "");
+    }
+
+    /**
+     * 处理事件的监听器，按需抛出异常或者放慢处理
+     */
+    private static class BreakingEventListener implements EventListener {
+
+        private final AtomicInteger eventCount = new AtomicInteger();
+        private final boolean isError;
+        private final long sleepMs;
+
+        BreakingEventListener(final boolean isError,
+                              final long sleepMs) {
+            this.isError = isError;
+            this.sleepMs = sleepMs;
+        }
+
+        @Override
+        public void onEvent(final Event event) throws Throwable {
+            eventCount.incrementAndGet();
+            if (sleepMs > 0) {
+                Thread.sleep(sleepMs);
+            }
+            if (isError) {
+                throw new RuntimeException("breaking");
+            }
+        }
+
+    }
+
+    // 熔断配置在监听器激活时读取
+    private int active(final String featureString,
+                       final EventListener listener) {
+        CoreConfigure.toConfigure(";listener.breaker.enable=true;" + featureString, "");
+        final int listenerId = active(listener, EVENT_TYPES);
+        listenerIds.add(listenerId);
+        return listenerId;
+    }
+
+    private Method weavingSum(final int listenerId) throws Exception {
+        return unCaughtGetClassDeclaredJavaMethod(
+                weaving(
+                        Computer.class,
+                        Collections.singletonMap(
+                                Computer.class.getName() + "#sum(int[])",
+                                new JoinPoint(listenerId, EVENT_TYPES)
+                        )
+                ),
+                "sum",
+                int[].class
+        );
+    }
+
+    private static void sum(final Method sum, final int times) throws Exception {
+        final Object computer = sum.getDeclaringClass().newInstance();
+        for (int index = 0; index < times; index++) {
+            Assert.assertEquals(3, sum.invoke(computer, new int[]{1, 2}));
+        }
+    }
+
+    // 等待监听器开关打开，返回等待的毫秒数
+    private static long awaitEnable(final int listenerId,
+                                    final long beginMillis) throws InterruptedException {
+        for (int times = 0; times < 500 && !Spy.isListenerEnable(listenerId); times++) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(Spy.isListenerEnable(listenerId));
+        return System.currentTimeMillis() - beginMillis;
+    }
+
+    @Test
+    public void test_trip_on_errors() throws Exception {
+        final BreakingEventListener listener = new BreakingEventListener(true, 0);
+        final int listenerId = active(
+                "listener.breaker.error.threshold=3;listener.breaker.window.ms=60000;listener.breaker.probe.ms=0;",
+                listener
+        );
+        final ListenerBreaker breaker = handlers.getListenerBreaker(listenerId);
+        final Method sum = weavingSum(listenerId);
+
+        // 异常被吞掉，方法照常返回；异常次数达到阈值时熔断
+        sum(sum, 2);
+        Assert.assertFalse(breaker.isTripped());
+        Assert.assertTrue(Spy.isListenerEnable(listenerId));
+        sum(sum, 1);
+        Assert.assertTrue(breaker.isTripped());
+        Assert.assertEquals(1, breaker.getTripCount());
+        Assert.assertTrue(breaker.getTripReason(), breaker.getTripReason().contains("3 errors"));
+
+        // 熔断后开关关闭，织入代码不再穿越到监听器中，监听器仍然激活
+        Assert.assertFalse(Spy.isListenerEnable(listenerId));
+        sum(sum, 5);
+        Assert.assertEquals(3, listener.eventCount.get());
+        Assert.assertSame(breaker, handlers.getListenerBreaker(listenerId));
+    }
+
+    @Test
+    public void test_trip_on_slow_events() throws Exception {
+        final BreakingEventListener listener = new BreakingEventListener(false, 2);
+        final int listenerId = active(
+                "listener.breaker.error.threshold=0;listener.breaker.slow.threshold.us=1000;listener.breaker.window.ms=300;listener.breaker.probe.ms=0;",
+                listener
+        );
+        final ListenerBreaker breaker = handlers.getListenerBreaker(listenerId);
+        final Method sum = weavingSum(listenerId);
+
+        // 一个窗口内处理了足够多的事件且平均耗时超标，在下一个窗口的第一个事件上熔断
+        for (int times = 0; times < 1000 && !breaker.isTripped(); times++) {
+            sum(sum, 1);
+        }
+        Assert.assertTrue(breaker.isTripped());
+        Assert.assertTrue(breaker.getTripReason(), breaker.getTripReason().startsWith("average cost"));
+        Assert.assertFalse(Spy.isListenerEnable(listenerId));
+        final int eventCount = listener.eventCount.get();
+        sum(sum, 5);
+        Assert.assertEquals(eventCount, listener.eventCount.get());
+    }
+
+    @Test
+    public void test_tripped_listener_leave_join_point_to_others() throws Exception {
+        final BreakingEventListener aListener = new BreakingEventListener(true, 0);
+        final BreakingEventListener bListener = new BreakingEventListener(false, 0);
+        final String featureString = "listener.breaker.error.threshold=1;listener.breaker.probe.ms=0;";
+        final int aListenerId = active(featureString, aListener);
+        final int bListenerId = active(featureString, bListener);
+        final int joinPointId = handlers.joinPoint(new int[]{aListenerId, bListenerId}, EVENT_TYPES);
+        final Method sum = weavingSum(joinPointId);
+
+        // 融合调用点中的a熔断后，调用点仍然为b打开
+        sum(sum, 1);
+        Assert.assertTrue(handlers.getListenerBreaker(aListenerId).isTripped());
+        Assert.assertFalse(Spy.isListenerEnable(aListenerId));
+        Assert.assertTrue(Spy.isListenerEnable(joinPointId));
+        sum(sum, 2);
+        Assert.assertEquals(1, aListener.eventCount.get());
+        Assert.assertEquals(3, bListener.eventCount.get());
+    }
+
+    @Test
+    public void test_probe_with_backoff() throws Exception {
+        final BreakingEventListener listener = new BreakingEventListener(true, 0);
+        final int listenerId = active(
+                "listener.breaker.error.threshold=1;listener.breaker.probe.ms=50;",
+                listener
+        );
+        final ListenerBreaker breaker = handlers.getListenerBreaker(listenerId);
+        final Method sum = weavingSum(listenerId);
+
+        // 第一次熔断后按探测间隔恢复，恢复后重新开始统计
+        long beginMillis = System.currentTimeMillis();
+        sum(sum, 1);
+        Assert.assertFalse(Spy.isListenerEnable(listenerId));
+        Assert.assertTrue(awaitEnable(listenerId, beginMillis) >= 50);
+        Assert.assertFalse(breaker.isTripped());
+
+        // 再次熔断时探测间隔加倍
+        beginMillis = System.currentTimeMillis();
+        sum(sum, 1);
+        Assert.assertEquals(2, breaker.getTripCount());
+        Assert.assertFalse(Spy.isListenerEnable(listenerId));
+        Assert.assertTrue(awaitEnable(listenerId, beginMillis) >= 100);
+        Assert.assertEquals(2, listener.eventCount.get());
+    }
+
+    @Test
+    public void test_reset_on_re_active() throws Exception {
+        final BreakingEventListener listener = new BreakingEventListener(true, 0);
+        final String featureString = "listener.breaker.error.threshold=1;listener.breaker.probe.ms=0;";
+        final int listenerId = active(featureString, listener);
+        final Method sum = weavingSum(listenerId);
+        sum(sum, 1);
+        Assert.assertFalse(Spy.isListenerEnable(listenerId));
+
+        // 不自动恢复，重新激活监听器后换上新的熔断器
+        handlers.active(listenerId, listener, EVENT_TYPES);
+        Assert.assertTrue(Spy.isListenerEnable(listenerId));
+        Assert.assertFalse(handlers.getListenerBreaker(listenerId).isTripped());
+        sum(sum, 1);
+        Assert.assertEquals(2, listener.eventCount.get());
+    }
+
+}
@@ -0,0 +1,99 @@
+package test.com.alibaba.jvm.sandbox.core.enhance;
+
+import com.alibaba.jvm.sandbox.api.event.Event;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.EventListenerHandlers;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.JoinPoint;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.com.alibaba.jvm.sandbox.spy.Spy;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.defineClass;
+import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.unCaughtGetClassDeclaredJavaMethod;
+
+/**
+ * 监听器开关的测试用例
+ * 织入代码在进入方法时读取一次监听器开关，开关关闭时跳过所有的回调
+ */
+public class ListenerGuardTestCase extends BaseTestCase {
+
+    private static final Event.Type[] EVENT_TYPES = new Event.Type[]{
+            Event.Type.BEFORE,
+            Event.Type.RETURN,
+            Event.Type.THROWS
+    };
+
+    private final List<String> traces = new ArrayList<String>();
+
+    @Test
+    public void test_guard_follow_active_and_frozen() throws Exception {
+        final EventListenerHandlers handlers = EventListenerHandlers.getSingleton();
+        final int listenerId = handlers.allocateListenerId();
+        final Map<String, JoinPoint> joinPointMapping = Collections.singletonMap(
+                Computer.class.getName() + "#sum(int[])",
+                new JoinPoint(listenerId, EVENT_TYPES)
+        );
+        final ClassLoader loader = newTestClassLoader();
+        final byte[] byteCodeArray = weaving(loader, Computer.class, joinPointMapping);
+        final Class<?> computerClass = defineClass(loader, Computer.class.getName(), byteCodeArray);
+        final Method sum = unCaughtGetClassDeclaredJavaMethod(computerClass, "sum", int[].class);
+        final Object computer = computerClass.newInstance();
+
+        // 尚未激活
+        Assert.assertFalse(Spy.isListenerEnable(listenerId));
+        Assert.assertEquals(3, sum.invoke(computer, new int[]{1, 2}));
+        Assert.assertEquals("[]", traces.toString());
+
+        // 激活之后开关打开
+        handlers.active(listenerId, new TraceEventListener("a", traces), EVENT_TYPES);
+        Assert.assertTrue(Spy.isListenerEnable(listenerId));
+        Assert.assertEquals(3, sum.invoke(computer, new int[]{1, 2}));
+        Assert.assertEquals("[a:BEFORE, a:RETURN=3]", traces.toString());
+
+        // 冻结之后开关关闭
+        handlers.frozen(listenerId);
+        Assert.assertFalse(Spy.isListenerEnable(listenerId));
+        Assert.assertEquals(3, sum.invoke(computer, new int[]{1, 2}));
+        Assert.assertEquals("[a:BEFORE, a:RETURN=3]", traces.toString());
+
+        // 开关只在进入方法时读取一次，保存在局部变量中供所有回调使用
+        final WovenMethod wovenSum = new WovenMethod(byteCodeArray, "sum", "([I)I");
+        Assert.assertEquals(1, wovenSum.countSpyInvoke("isListenerEnable"));
+        Assert.assertEquals(0, wovenSum.countSpyInvoke("isListenerSampled"));
+    }
+
+    @Test
+    public void test_join_point_guard_follow_any_listener() throws Exception {
+        final EventListenerHandlers handlers = EventListenerHandlers.getSingleton();
+        final int aListenerId = active(new TraceEventListener("a", traces), EVENT_TYPES);
+        final int bListenerId = active(new TraceEventListener("b", traces), EVENT_TYPES);
+        final int joinPointId = handlers.joinPoint(new int[]{aListenerId, bListenerId}, EVENT_TYPES);
+        final Class<?> computerClass = weaving(
+                Computer.class,
+                Collections.singletonMap(
+                        Computer.class.getName() + "#sum(int[])",
+                        new JoinPoint(joinPointId, EVENT_TYPES)
+                )
+        );
+        final Method sum = unCaughtGetClassDeclaredJavaMethod(computerClass, "sum", int[].class);
+        final Object computer = computerClass.newInstance();
+
+        // 融合调用点的开关：任一监听器处于激活状态即打开
+        Assert.assertTrue(Spy.isListenerEnable(joinPointId));
+        handlers.frozen(aListenerId);
+        Assert.assertTrue(Spy.isListenerEnable(joinPointId));
+        Assert.assertEquals(3, sum.invoke(computer, new int[]{1, 2}));
+        Assert.assertEquals("[b:BEFORE, b:RETURN=3]", traces.toString());
+
+        handlers.frozen(bListenerId);
+        Assert.assertFalse(Spy.isListenerEnable(joinPointId));
+        Assert.assertEquals(3, sum.invoke(computer, new int[]{1, 2}));
+        Assert.assertEquals("[b:BEFORE, b:RETURN=3]", traces.toString());
+    }
+
+}
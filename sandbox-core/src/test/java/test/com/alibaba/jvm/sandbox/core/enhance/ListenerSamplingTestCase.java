@@ -0,0 +1,107 @@
+package test.com.alibaba.jvm.sandbox.core.enhance;
+
+import com.alibaba.jvm.sandbox.api.event.Event;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.JoinPoint;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.defineClass;
+import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.unCaughtGetClassDeclaredJavaMethod;
+
+/**
+ * 采样的测试用例
+ * 没有被采中的调用跳过所有回调，被采中的调用BEFORE/RETURN成对出现
+ */
+public class ListenerSamplingTestCase extends BaseTestCase {
+
+    private static final Event.Type[] EVENT_TYPES = new Event.Type[]{
+            Event.Type.BEFORE,
+            Event.Type.RETURN,
+            Event.Type.THROWS
+    };
+
+    private final List<String> traces = new ArrayList<String>();
+
+    private WovenMethod wovenSum;
+
+    private Method weavingSum(final int sampling) throws Exception {
+        final int listenerId = active(new TraceEventListener("a", traces), EVENT_TYPES);
+        final Map<String, JoinPoint> joinPointMapping = Collections.singletonMap(
+                Computer.class.getName() + "#sum(int[])",
+                new JoinPoint(listenerId, EVENT_TYPES, JoinPoint.PAYLOAD_ALL, sampling)
+        );
+        final ClassLoader loader = newTestClassLoader();
+        final byte[] byteCodeArray = weaving(loader, Computer.class, joinPointMapping);
+        wovenSum = new WovenMethod(byteCodeArray, "sum", "([I)I");
+        final Class<?> computerClass = defineClass(loader, Computer.class.getName(), byteCodeArray);
+        return unCaughtGetClassDeclaredJavaMethod(computerClass, "sum", int[].class);
+    }
+
+    private static void sum(final Method sum, final int times) throws Exception {
+        final Object computer = sum.getDeclaringClass().newInstance();
+        for (int i = 0; i < times; i++) {
+            Assert.assertEquals(3, sum.invoke(computer, new int[]{1, 2}));
+        }
+    }
+
+    @Test
+    public void test_sampling_one_in_three() throws Exception {
+        final Method sum = weavingSum(3);
+        sum(sum, 2);
+        Assert.assertEquals("[]", traces.toString());
+        sum(sum, 1);
+        Assert.assertEquals("[a:BEFORE, a:RETURN=3]", traces.toString());
+        sum(sum, 6);
+        Assert.assertEquals(
+                "[a:BEFORE, a:RETURN=3, a:BEFORE, a:RETURN=3, a:BEFORE, a:RETURN=3]",
+                traces.toString()
+        );
+
+        // 采样判断和监听器开关合并为一次调用
+        Assert.assertEquals(1, wovenSum.countSpyInvoke("isListenerSampled"));
+        Assert.assertEquals(0, wovenSum.countSpyInvoke("isListenerEnable"));
+    }
+
+    @Test
+    public void test_sampling_per_thread() throws Exception {
+        final Method sum = weavingSum(2);
+        sum(sum, 1);
+        Assert.assertEquals("[]", traces.toString());
+
+        // 采样计数器按线程隔离，其他线程的调用不影响当前线程
+        final Throwable[] causes = new Throwable[1];
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    sum(sum, 1);
+                } catch (Throwable cause) {
+                    causes[0] = cause;
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        Assert.assertNull(causes[0]);
+        Assert.assertEquals("[]", traces.toString());
+
+        sum(sum, 1);
+        Assert.assertEquals("[a:BEFORE, a:RETURN=3]", traces.toString());
+    }
+
+    @Test
+    public void test_no_sampling() throws Exception {
+        final Method sum = weavingSum(1);
+        sum(sum, 2);
+        Assert.assertEquals("[a:BEFORE, a:RETURN=3, a:BEFORE, a:RETURN=3]", traces.toString());
+        Assert.assertEquals(0, wovenSum.countSpyInvoke("isListenerSampled"));
+        Assert.assertEquals(1, wovenSum.countSpyInvoke("isListenerEnable"));
+    }
+
+}
@@ -0,0 +1,222 @@
+package test.com.alibaba.jvm.sandbox.core.enhance;
+
+import com.alibaba.jvm.sandbox.api.ProcessControlException;
+import com.alibaba.jvm.sandbox.api.event.Event;
+import com.alibaba.jvm.sandbox.core.CoreConfigure;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.EventListenerHandlers;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.JoinPoint;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.ListenerStatistic;
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.unCaughtGetClassDeclaredJavaMethod;
+
+/**
+ * 监听器开销统计的测试用例
+ * 织入的方法被调用后按事件类型计数，累计和最大处理耗时、异常次数以及立即返回/立即抛出的次数都记在监听器名下
+ */
+public class ListenerStatisticTestCase extends BaseTestCase {
+
+    private static final Event.Type[] EVENT_TYPES = new Event.Type[]{
+            Event.Type.BEFORE,
+            Event.Type.RETURN,
+            Event.Type.THROWS
+    };
+
+    private final EventListenerHandlers handlers = EventListenerHandlers.getSingleton();
+
+    private final List<Integer> listenerIds = new ArrayList<Integer>();
+
+    private final List<String> traces = new ArrayList<String>();
+
+    @After
+    public void frozen() {
+        for (final int listenerId : listenerIds) {
+            handlers.frozen(listenerId);
+        }
+        CoreConfigure.toConfigure("", "");
+    }
+
+    // 统计配置在监听器激活时读取
+    private int active(final String featureString,
+                       final TraceEventListener listener) {
+        CoreConfigure.toConfigure(featureString, "");
+        final int listenerId = active(listener, EVENT_TYPES);
+        listenerIds.add(listenerId);
+        return listenerId;
+    }
+
+    private Method weavingSum(final int listenerId) throws Exception {
+        return unCaughtGetClassDeclaredJavaMethod(
+                weaving(
+                        Computer.class,
+                        Collections.singletonMap(
+                                Computer.class.getName() + "#sum(int[])",
+                                new JoinPoint(listenerId, EVENT_TYPES)
+                        )
+                ),
+                "sum",
+                int[].class
+        );
+    }
+
+    private static Object sum(final Method sum) throws Exception {
+        try {
+            return sum.invoke(sum.getDeclaringClass().newInstance(), new int[]{1, 2});
+        } catch (InvocationTargetException cause) {
+            return cause.getTargetException();
+        }
+    }
+
+    private ListenerStatistic.Snapshot snapshot(final int listenerId) {
+        return handlers.getListenerStatistic(listenerId).snapshot();
+    }
+
+    @Test
+    public void test_count_events_and_cost() throws Exception {
+        final int listenerId = active(";listener.statistic.enable=true;", new TraceEventListener("a", traces) {
+            @Override
+            protected void onTrace(final Event event) throws Throwable {
+                if (event.type == Event.Type.BEFORE) {
+                    Thread.sleep(2);
+                }
+            }
+        });
+        final Method sum = weavingSum(listenerId);
+        for (int index = 0; index < 5; index++) {
+            Assert.assertEquals(3, sum(sum));
+        }
+
+        final ListenerStatistic.Snapshot snapshot = snapshot(listenerId);
+        Assert.assertEquals(5, snapshot.getEventCount(Event.Type.BEFORE));
+        Assert.assertEquals(5, snapshot.getEventCount(Event.Type.RETURN));
+        Assert.assertEquals(0, snapshot.getEventCount(Event.Type.THROWS));
+        Assert.assertEquals(10, snapshot.getEventCount());
+
+        // 最大耗时不少于一次BEFORE的处理时间，累计耗时不少于所有BEFORE的处理时间
+        Assert.assertTrue(snapshot.getMaxCostNanos() >= TimeUnit.MILLISECONDS.toNanos(2));
+        Assert.assertTrue(snapshot.getCostNanos() >= TimeUnit.MILLISECONDS.toNanos(10));
+        Assert.assertTrue(snapshot.getCostNanos() >= snapshot.getMaxCostNanos());
+        Assert.assertEquals(0, snapshot.getErrorCount());
+        Assert.assertEquals(0, snapshot.getReturnImmediatelyCount());
+        Assert.assertEquals(0, snapshot.getThrowsImmediatelyCount());
+    }
+
+    @Test
+    public void test_count_errors() throws Exception {
+        final int listenerId = active(";listener.statistic.enable=true;", new TraceEventListener("a", traces) {
+            @Override
+            protected void onTrace(final Event event) throws Throwable {
+                if (event.type == Event.Type.RETURN) {
+                    throw new RuntimeException("error on return");
+                }
+            }
+        });
+        final Method sum = weavingSum(listenerId);
+
+        // 普通监听器的异常被吞掉，方法照常返回
+        for (int index = 0; index < 3; index++) {
+            Assert.assertEquals(3, sum(sum));
+        }
+        final ListenerStatistic.Snapshot snapshot = snapshot(listenerId);
+        Assert.assertEquals(3, snapshot.getErrorCount());
+        Assert.assertEquals(3, snapshot.getEventCount(Event.Type.RETURN));
+        Assert.assertEquals(6, snapshot.getEventCount());
+    }
+
+    @Test
+    public void test_count_return_immediately() throws Exception {
+        final int listenerId = active(";listener.statistic.enable=true;", new TraceEventListener("a", traces) {
+            @Override
+            protected void onTrace(final Event event) throws Throwable {
+                if (event.type == Event.Type.BEFORE) {
+                    ProcessControlException.throwReturnImmediately(9);
+                }
+            }
+        });
+        final Method sum = weavingSum(listenerId);
+        Assert.assertEquals(9, sum(sum));
+
+        // 替换的RETURN事件转成IMMEDIATELY_RETURN派发，监听器没有订阅也同样计入统计
+        Assert.assertEquals("[a:BEFORE]", traces.toString());
+        final ListenerStatistic.Snapshot snapshot = snapshot(listenerId);
+        Assert.assertEquals(1, snapshot.getReturnImmediatelyCount());
+        Assert.assertEquals(0, snapshot.getThrowsImmediatelyCount());
+        Assert.assertEquals(1, snapshot.getEventCount(Event.Type.BEFORE));
+        Assert.assertEquals(1, snapshot.getEventCount(Event.Type.RETURN));
+        Assert.assertEquals(0, snapshot.getErrorCount());
+    }
+
+    @Test
+    public void test_count_throws_immediately() throws Exception {
+        final RuntimeException expect = new RuntimeException("throws immediately");
+        final int listenerId = active(";listener.statistic.enable=true;", new TraceEventListener("a", traces) {
+            @Override
+            protected void onTrace(final Event event) throws Throwable {
+                if (event.type == Event.Type.BEFORE
+                        || event.type == Event.Type.RETURN) {
+                    ProcessControlException.throwThrowsImmediately(expect);
+                }
+            }
+        });
+        final Method sum = weavingSum(listenerId);
+
+        // BEFORE中立即抛出的异常由织入的THROWS回调派发，转成IMMEDIATELY_THROWS后同样计入统计
+        Assert.assertSame(expect, sum(sum));
+        Assert.assertEquals("[a:BEFORE]", traces.toString());
+        final ListenerStatistic.Snapshot snapshot = snapshot(listenerId);
+        Assert.assertEquals(1, snapshot.getThrowsImmediatelyCount());
+        Assert.assertEquals(1, snapshot.getEventCount(Event.Type.BEFORE));
+        Assert.assertEquals(0, snapshot.getEventCount(Event.Type.RETURN));
+        Assert.assertEquals(1, snapshot.getEventCount(Event.Type.THROWS));
+
+        // 流程变更不算作异常
+        Assert.assertEquals(0, snapshot.getErrorCount());
+        Assert.assertEquals(0, snapshot.getReturnImmediatelyCount());
+    }
+
+    @Test
+    public void test_count_throws_immediately_on_return() throws Exception {
+        final RuntimeException expect = new RuntimeException("throws immediately on return");
+        final int listenerId = active(";listener.statistic.enable=true;", new TraceEventListener("a", traces) {
+            @Override
+            protected void onTrace(final Event event) throws Throwable {
+                if (event.type == Event.Type.RETURN) {
+                    ProcessControlException.throwThrowsImmediately(expect);
+                }
+            }
+        });
+        final Method sum = weavingSum(listenerId);
+
+        // RETURN中立即抛出后替换的THROWS事件同样计入统计
+        Assert.assertSame(expect, sum(sum));
+        Assert.assertEquals("[a:BEFORE, a:RETURN=3]", traces.toString());
+        final ListenerStatistic.Snapshot snapshot = snapshot(listenerId);
+        Assert.assertEquals(1, snapshot.getThrowsImmediatelyCount());
+        Assert.assertEquals(1, snapshot.getEventCount(Event.Type.BEFORE));
+        Assert.assertEquals(1, snapshot.getEventCount(Event.Type.RETURN));
+        Assert.assertEquals(1, snapshot.getEventCount(Event.Type.THROWS));
+        Assert.assertEquals(0, snapshot.getErrorCount());
+    }
+
+    @Test
+    public void test_disable_on_active() throws Exception {
+        final int disabledListenerId = active(";listener.statistic.enable=false;", new TraceEventListener("a", traces));
+        Assert.assertNull(handlers.getListenerStatistic(disabledListenerId));
+        Assert.assertEquals(3, sum(weavingSum(disabledListenerId)));
+
+        // 开关在激活时读取，之后激活的监听器按新的配置统计
+        final int enabledListenerId = active(";listener.statistic.enable=true;", new TraceEventListener("b", traces));
+        Assert.assertNotNull(handlers.getListenerStatistic(enabledListenerId));
+        Assert.assertNull(handlers.getListenerStatistic(disabledListenerId));
+    }
+
+}
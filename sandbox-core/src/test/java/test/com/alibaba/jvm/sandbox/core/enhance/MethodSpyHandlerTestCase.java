@@ -0,0 +1,72 @@
+package test.com.alibaba.jvm.sandbox.core.enhance;
+
+import com.alibaba.jvm.sandbox.api.event.Event;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.DirectSpyHandler;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.EventListenerHandlers;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.JoinPoint;
+import com.alibaba.jvm.sandbox.core.util.SpyUtils;
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Test;
+
+import java.com.alibaba.jvm.sandbox.spy.Spy;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.unCaughtGetClassDeclaredJavaMethod;
+
+/**
+ * 反射方式初始化Spy的测试用例
+ * 织入代码只传递方法ID和调用点ID时，反射方式的间谍处理器需要把ID交还给容器解析
+ */
+public class MethodSpyHandlerTestCase extends BaseTestCase {
+
+    private static final Event.Type[] EVENT_TYPES = new Event.Type[]{
+            Event.Type.BEFORE,
+            Event.Type.RETURN,
+            Event.Type.CALL_BEFORE,
+            Event.Type.CALL_RETURN
+    };
+
+    private final List<String> traces = new ArrayList<String>();
+
+    private static Method getOnMethod(final String name, final Class<?>... parameterTypes) {
+        return unCaughtGetClassDeclaredJavaMethod(EventListenerHandlers.class, name, parameterTypes);
+    }
+
+    @After
+    public void restoreSpyHandler() {
+        Spy.init(new DirectSpyHandler());
+    }
+
+    @Test
+    public void test_site_id_by_reflect_method() throws Exception {
+        final Class<?> computerClass = weaving(
+                Computer.class,
+                Collections.singletonMap(
+                        Computer.class.getName() + "#sum(int[])",
+                        new JoinPoint(active(new TraceEventListener("a", traces), EVENT_TYPES), EVENT_TYPES)
+                )
+        );
+        Assert.assertTrue(SpyUtils.isSiteIdSupported());
+
+        Spy.init(
+                getOnMethod("onBefore", int.class, int.class, Class.class, String.class, String.class, String.class, Object.class, Object[].class),
+                getOnMethod("onBefore", int.class, int.class, Class.class, Object.class, Object[].class),
+                getOnMethod("onReturn", int.class, Class.class, Object.class),
+                getOnMethod("onThrows", int.class, Class.class, Throwable.class),
+                getOnMethod("onLine", int.class, int.class),
+                getOnMethod("onCallBefore", int.class, int.class, String.class, String.class, String.class),
+                getOnMethod("onCallBefore", int.class, int.class),
+                getOnMethod("onCallReturn", int.class),
+                getOnMethod("onCallThrows", int.class, String.class)
+        );
+
+        final Method sum = unCaughtGetClassDeclaredJavaMethod(computerClass, "sum", int[].class);
+        Assert.assertEquals(3, sum.invoke(computerClass.newInstance(), new int[]{1, 2}));
+        Assert.assertEquals("[a:BEFORE, a:CALL_BEFORE, a:CALL_RETURN, a:RETURN=3]", traces.toString());
+    }
+
+}
@@ -0,0 +1,111 @@
+package test.com.alibaba.jvm.sandbox.core.enhance;
+
+import com.alibaba.jvm.sandbox.api.ProcessControlException;
+import com.alibaba.jvm.sandbox.api.event.BeforeEvent;
+import com.alibaba.jvm.sandbox.api.event.Event;
+import com.alibaba.jvm.sandbox.api.listener.EventListener;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.JoinPoint;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.unCaughtGetClassDeclaredJavaMethod;
+
+/**
+ * 调用过程堆栈的测试用例
+ * BEFORE中改变了流程之后，调用过程必须出栈，否则同一线程后续的调用会被误认为处于同一个调用过程之中
+ */
+public class ProcessStackTestCase extends BaseTestCase {
+
+    private static final Event.Type[] EVENT_TYPES = new Event.Type[]{
+            Event.Type.BEFORE,
+            Event.Type.RETURN,
+            Event.Type.THROWS,
+            Event.Type.IMMEDIATELY_RETURN,
+            Event.Type.IMMEDIATELY_THROWS
+    };
+
+    private Method weavingSum(final EventListener listener) throws Exception {
+        final int listenerId = active(listener, EVENT_TYPES);
+        final Class<?> computerClass = weaving(
+                Computer.class,
+                Collections.singletonMap(
+                        Computer.class.getName() + "#sum(int[])",
+                        new JoinPoint(listenerId, EVENT_TYPES)
+                )
+        );
+        return unCaughtGetClassDeclaredJavaMethod(computerClass, "sum", int[].class);
+    }
+
+    private static Object invoke(final Method sum) throws Exception {
+        try {
+            return sum.invoke(sum.getDeclaringClass().newInstance(), new int[]{1, 2});
+        } catch (InvocationTargetException cause) {
+            return cause.getTargetException();
+        }
+    }
+
+    /*
+     * 每次调用都是一个新的调用过程：调用过程ID必须等于调用ID
+     * 事件对象会被回收复用，所以只记录ID
+     */
+    private static void record(final List<long[]> processes, final BeforeEvent event) {
+        processes.add(new long[]{event.longProcessId, event.longInvokeId});
+    }
+
+    private static void assertNewProcess(final List<long[]> processes) {
+        for (final long[] process : processes) {
+            Assert.assertEquals(process[1], process[0]);
+        }
+    }
+
+    @Test
+    public void test_pop_process_when_return_immediately_on_before() throws Exception {
+        final List<long[]> processes = new ArrayList<long[]>();
+        final Method sum = weavingSum(new EventListener() {
+            @Override
+            public void onEvent(Event event) throws Throwable {
+                if (event instanceof BeforeEvent) {
+                    record(processes, (BeforeEvent) event);
+                    if (processes.size() == 1) {
+                        ProcessControlException.throwReturnImmediately(7);
+                    }
+                }
+            }
+        });
+
+        Assert.assertEquals(7, invoke(sum));
+        Assert.assertEquals(3, invoke(sum));
+        Assert.assertEquals(3, invoke(sum));
+        Assert.assertEquals(3, processes.size());
+        assertNewProcess(processes);
+    }
+
+    @Test
+    public void test_pop_process_when_throws_immediately_on_before() throws Exception {
+        final RuntimeException expect = new RuntimeException("throws immediately on before");
+        final List<long[]> processes = new ArrayList<long[]>();
+        final Method sum = weavingSum(new EventListener() {
+            @Override
+            public void onEvent(Event event) throws Throwable {
+                if (event instanceof BeforeEvent) {
+                    record(processes, (BeforeEvent) event);
+                    if (processes.size() == 1) {
+                        ProcessControlException.throwThrowsImmediately(expect);
+                    }
+                }
+            }
+        });
+
+        Assert.assertSame(expect, invoke(sum));
+        Assert.assertEquals(3, invoke(sum));
+        Assert.assertEquals(2, processes.size());
+        assertNewProcess(processes);
+    }
+
+}
@@ -0,0 +1,174 @@
+package test.com.alibaba.jvm.sandbox.core.enhance;
+
+import com.alibaba.jvm.sandbox.api.event.Event;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.CallSites;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.EventListenerHandlers;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.JoinPoint;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.MethodSites;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.com.alibaba.jvm.sandbox.spy.Spy;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.unCaughtGetClassDeclaredJavaMethod;
+
+/**
+ * 调用点和被观察方法登记表的释放测试用例
+ * 登记表按织入的监听器分组，观察删除后整组释放，残留的织入代码不再派发事件
+ */
+public class SiteReleaseTestCase extends BaseTestCase {
+
+    private static final Event.Type[] EVENT_TYPES = new Event.Type[]{
+            Event.Type.BEFORE,
+            Event.Type.CALL_BEFORE
+    };
+
+    private final List<String> traces = new ArrayList<String>();
+
+    @Test
+    public void test_register_and_release_call_site() {
+        final EventListenerHandlers handlers = EventListenerHandlers.getSingleton();
+        final int listenerId = handlers.allocateListenerId();
+        final int otherListenerId = handlers.allocateListenerId();
+
+        final int callSiteId = CallSites.instance.register(listenerId, 10, "a.B", "c", "()V");
+        Assert.assertEquals(callSiteId, CallSites.instance.register(listenerId, 10, "a.B", "c", "()V"));
+        final int otherCallSiteId = CallSites.instance.register(otherListenerId, 10, "a.B", "c", "()V");
+        Assert.assertTrue(callSiteId != otherCallSiteId);
+        Assert.assertEquals("a.B", CallSites.instance.get(callSiteId).owner);
+
+        handlers.release(listenerId);
+        Assert.assertNull(CallSites.instance.get(callSiteId));
+        Assert.assertNotNull(CallSites.instance.get(otherCallSiteId));
+
+        // 释放后的ID不再分配
+        final int reRegisterCallSiteId = CallSites.instance.register(listenerId, 10, "a.B", "c", "()V");
+        Assert.assertTrue(reRegisterCallSiteId > callSiteId);
+        Assert.assertTrue(reRegisterCallSiteId > otherCallSiteId);
+
+        handlers.release(listenerId);
+        handlers.release(otherListenerId);
+        Assert.assertNull(CallSites.instance.get(reRegisterCallSiteId));
+        Assert.assertNull(CallSites.instance.get(otherCallSiteId));
+    }
+
+    @Test
+    public void test_release_sites_of_watched_method() throws Exception {
+        final int methodSiteCount = MethodSites.instance.size();
+        final int callSiteCount = CallSites.instance.size();
+        final int listenerId = active(new TraceEventListener("a", traces), EVENT_TYPES);
+        final Class<?> computerClass = weaving(
+                Computer.class,
+                Collections.singletonMap(
+                        Computer.class.getName() + "#sum(int[])",
+                        new JoinPoint(listenerId, EVENT_TYPES)
+                )
+        );
+        final Method sum = unCaughtGetClassDeclaredJavaMethod(computerClass, "sum", int[].class);
+        final Object computer = computerClass.newInstance();
+
+        // sum(int[])内只调用了isEmptyArray(Object[])
+        Assert.assertEquals(methodSiteCount + 1, MethodSites.instance.size());
+        Assert.assertEquals(callSiteCount + 1, CallSites.instance.size());
+        Assert.assertEquals(3, sum.invoke(computer, new int[]{1, 2}));
+        Assert.assertEquals("[a:BEFORE, a:CALL_BEFORE]", traces.toString());
+
+        // 释放之后残留的织入代码取不到登记项，不再派发事件
+        EventListenerHandlers.getSingleton().release(listenerId);
+        Assert.assertEquals(methodSiteCount, MethodSites.instance.size());
+        Assert.assertEquals(callSiteCount, CallSites.instance.size());
+        Assert.assertEquals(3, sum.invoke(computer, new int[]{1, 2}));
+        Assert.assertEquals("[a:BEFORE, a:CALL_BEFORE]", traces.toString());
+    }
+
+    @Test
+    public void test_release_sites_of_join_point() throws Exception {
+        final int methodSiteCount = MethodSites.instance.size();
+        final int aListenerId = active(new TraceEventListener("a", traces), EVENT_TYPES);
+        final int bListenerId = active(new TraceEventListener("b", traces), EVENT_TYPES);
+        final int joinPointId = EventListenerHandlers.getSingleton().joinPoint(new int[]{aListenerId, bListenerId}, EVENT_TYPES);
+        weaving(
+                Computer.class,
+                Collections.singletonMap(
+                        Computer.class.getName() + "#sum(int[])",
+                        new JoinPoint(joinPointId, EVENT_TYPES)
+                )
+        );
+        Assert.assertEquals(methodSiteCount + 1, MethodSites.instance.size());
+
+        // 融合调用点随任一监听器的删除一并释放
+        EventListenerHandlers.getSingleton().release(bListenerId);
+        Assert.assertEquals(methodSiteCount, MethodSites.instance.size());
+    }
+
+    @Test
+    public void test_release_join_point_group() throws Exception {
+        final EventListenerHandlers handlers = EventListenerHandlers.getSingleton();
+        final int aListenerId = active(new TraceEventListener("a", traces), EVENT_TYPES);
+        final int bListenerId = active(new TraceEventListener("b", traces), EVENT_TYPES);
+        final int joinPointId = handlers.joinPoint(new int[]{aListenerId, bListenerId}, EVENT_TYPES);
+        final Class<?> computerClass = weaving(
+                Computer.class,
+                Collections.singletonMap(
+                        Computer.class.getName() + "#sum(int[])",
+                        new JoinPoint(joinPointId, EVENT_TYPES)
+                )
+        );
+        final Method sum = unCaughtGetClassDeclaredJavaMethod(computerClass, "sum", int[].class);
+        final Object computer = computerClass.newInstance();
+        Assert.assertEquals(3, sum.invoke(computer, new int[]{1, 2}));
+        Assert.assertEquals(4, traces.size());
+
+        // 删除b之后融合调用点被移除，即使a仍然激活，残留的织入代码也不再派发事件
+        handlers.frozen(bListenerId);
+        handlers.release(bListenerId);
+        Assert.assertFalse(Spy.isListenerEnable(joinPointId));
+        Assert.assertFalse(Spy.isListenerEnable(bListenerId));
+        Assert.assertTrue(Spy.isListenerEnable(aListenerId));
+        Assert.assertEquals(3, sum.invoke(computer, new int[]{1, 2}));
+        Assert.assertEquals(4, traces.size());
+
+        // ID映射也被移除，相同的组合重新创建融合调用点，开关按现有监听器刷新
+        final int reJoinPointId = handlers.joinPoint(new int[]{aListenerId, bListenerId}, EVENT_TYPES);
+        Assert.assertTrue(Spy.isListenerEnable(reJoinPointId));
+
+        handlers.frozen(aListenerId);
+        handlers.release(aListenerId);
+        Assert.assertFalse(Spy.isListenerEnable(reJoinPointId));
+    }
+
+    @Test
+    public void test_recycle_released_ids() {
+        final EventListenerHandlers handlers = EventListenerHandlers.getSingleton();
+        final int aListenerId = active(new TraceEventListener("a", traces), EVENT_TYPES);
+        final int bListenerId = active(new TraceEventListener("b", traces), EVENT_TYPES);
+        final int cListenerId = active(new TraceEventListener("c", traces), EVENT_TYPES);
+        final int joinPointId = handlers.joinPoint(new int[]{aListenerId, cListenerId}, EVENT_TYPES);
+
+        // 织入代码可能有残留、或者监听器仍然激活时不回收ID
+        handlers.frozen(bListenerId);
+        handlers.release(bListenerId, false);
+        handlers.release(cListenerId);
+
+        // 回收的ID按先后顺序优先复用，在它们之前释放却没有回收的ID不会被分配
+        handlers.frozen(aListenerId);
+        handlers.release(aListenerId);
+        final List<Integer> allocatedIds = new ArrayList<Integer>();
+        while (!allocatedIds.contains(aListenerId)
+                && allocatedIds.size() < 10000) {
+            allocatedIds.add(handlers.allocateListenerId());
+        }
+        Assert.assertTrue(allocatedIds.contains(aListenerId));
+        Assert.assertTrue(allocatedIds.contains(joinPointId));
+        Assert.assertTrue(allocatedIds.indexOf(joinPointId) < allocatedIds.indexOf(aListenerId));
+        Assert.assertFalse(allocatedIds.contains(bListenerId));
+        Assert.assertFalse(allocatedIds.contains(cListenerId));
+
+        handlers.frozen(cListenerId);
+    }
+
+}
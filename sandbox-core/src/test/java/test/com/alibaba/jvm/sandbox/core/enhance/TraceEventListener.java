@@ -0,0 +1,44 @@
+package test.com.alibaba.jvm.sandbox.core.enhance;
+
+import com.alibaba.jvm.sandbox.api.event.Event;
+import com.alibaba.jvm.sandbox.api.event.ReturnEvent;
+import com.alibaba.jvm.sandbox.api.listener.EventListener;
+
+import java.util.List;
+
+/**
+ * 轨迹记录监听器
+ * 把收到的事件按{@code 名称:事件类型[=返回值]}的格式记录到轨迹中，多个监听器可以共用一份轨迹来观察派发顺序
+ */
+public class TraceEventListener implements EventListener {
+
+    private final String name;
+    private final List<String> traces;
+
+    public TraceEventListener(final String name,
+                              final List<String> traces) {
+        this.name = name;
+        this.traces = traces;
+    }
+
+    @Override
+    public final void onEvent(final Event event) throws Throwable {
+        if (event instanceof ReturnEvent) {
+            traces.add(name + ":" + event.type + "=" + ((ReturnEvent) event).object);
+        } else {
+            traces.add(name + ":" + event.type);
+        }
+        onTrace(event);
+    }
+
+    /**
+     * 记录轨迹之后的处理，可以在这里改变流程
+     *
+     * @param event 事件
+     * @throws Throwable 处理出错或改变流程
+     */
+    protected void onTrace(final Event event) throws Throwable {
+
+    }
+
+}
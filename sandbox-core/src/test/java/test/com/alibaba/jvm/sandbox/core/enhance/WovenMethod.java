@@ -0,0 +1,110 @@
+package test.com.alibaba.jvm.sandbox.core.enhance;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+
+import java.util.NoSuchElementException;
+
+/**
+ * 织入后的方法
+ * 用于检查织入代码中实际生成了哪些指令
+ */
+public class WovenMethod {
+
+    /**
+     * Spy类的内部名称
+     */
+    public static final String SPY_INTERNAL_NAME = "java/com/alibaba/jvm/sandbox/spy/Spy";
+
+    private final MethodNode methodNode;
+
+    public WovenMethod(final byte[] byteCodeArray,
+                       final String name,
+                       final String desc) {
+        final ClassNode classNode = new ClassNode();
+        new ClassReader(byteCodeArray).accept(classNode, 0);
+        for (final MethodNode methodNode : classNode.methods) {
+            if (methodNode.name.equals(name)
+                    && methodNode.desc.equals(desc)) {
+                this.methodNode = methodNode;
+                return;
+            }
+        }
+        throw new NoSuchElementException(name + desc);
+    }
+
+    /**
+     * 统计调用指定方法的指令数量
+     *
+     * @param owner 方法所属类的内部名称
+     * @param name  方法名称
+     * @return 调用次数
+     */
+    public int countInvoke(final String owner, final String name) {
+        int count = 0;
+        for (final AbstractInsnNode insnNode : methodNode.instructions.toArray()) {
+            if (insnNode instanceof MethodInsnNode
+                    && ((MethodInsnNode) insnNode).owner.equals(owner)
+                    && ((MethodInsnNode) insnNode).name.equals(name)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 统计调用Spy方法的指令数量
+     *
+     * @param name Spy方法名称
+     * @return 调用次数
+     */
+    public int countSpyInvoke(final String name) {
+        return countInvoke(SPY_INTERNAL_NAME, name);
+    }
+
+    /**
+     * 统计创建指定类型对象的指令数量
+     *
+     * @param internalName 对象类型的内部名称
+     * @return 指令数量
+     */
+    public int countNew(final String internalName) {
+        return countTypeInsn(Opcodes.NEW, internalName);
+    }
+
+    /**
+     * 统计创建指定类型对象数组的指令数量
+     *
+     * @param internalName 数组元素类型的内部名称
+     * @return 指令数量
+     */
+    public int countNewArray(final String internalName) {
+        return countTypeInsn(Opcodes.ANEWARRAY, internalName);
+    }
+
+    private int countTypeInsn(final int opcode, final String internalName) {
+        int count = 0;
+        for (final AbstractInsnNode insnNode : methodNode.instructions.toArray()) {
+            if (insnNode.getOpcode() == opcode
+                    && ((TypeInsnNode) insnNode).desc.equals(internalName)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 获取异常处理块的数量
+     *
+     * @return 异常处理块的数量
+     */
+    public int countTryCatchBlocks() {
+        return methodNode.tryCatchBlocks.size();
+    }
+
+}
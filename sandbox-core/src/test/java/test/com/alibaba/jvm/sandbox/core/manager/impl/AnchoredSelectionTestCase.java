@@ -0,0 +1,233 @@
+package test.com.alibaba.jvm.sandbox.core.manager.impl;
+
+import com.alibaba.jvm.sandbox.api.event.Event;
+import com.alibaba.jvm.sandbox.api.filter.Filter;
+import com.alibaba.jvm.sandbox.api.listener.ext.EventWatchBuilder;
+import com.alibaba.jvm.sandbox.api.listener.ext.EventWatchCondition;
+import com.alibaba.jvm.sandbox.api.resource.ModuleEventWatcher;
+import com.alibaba.jvm.sandbox.core.CoreConfigure;
+import com.alibaba.jvm.sandbox.core.manager.impl.DefaultLoadedClassDataSource;
+import com.alibaba.jvm.sandbox.core.util.matcher.Matcher;
+import junit.framework.Assert;
+import org.apache.commons.lang3.ArrayUtils;
+import org.junit.After;
+import org.junit.Test;
+import test.com.alibaba.jvm.sandbox.core.enhance.Computer;
+import test.com.alibaba.jvm.sandbox.core.enhance.TraceEventListener;
+
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.alibaba.jvm.sandbox.core.util.matcher.ExtFilterMatcher.toOrGroupMatcher;
+
+/**
+ * 按锚点挑选已加载类的测试用例
+ * 从已加载类索引中按类名、父类型、类注解和行为注解挑选候选类，检索结果必须和遍历所有已加载类完全一致
+ */
+public class AnchoredSelectionTestCase {
+
+    public interface AnchorInterface {
+
+    }
+
+    public interface SubAnchorInterface extends AnchorInterface {
+
+    }
+
+    @Inherited
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface InheritedMark {
+
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface BehaviorMark {
+
+    }
+
+    @InheritedMark
+    public static class Base implements SubAnchorInterface {
+
+    }
+
+    public static class Child extends Base {
+
+    }
+
+    public static class GrandChild extends Child {
+
+        @BehaviorMark
+        public void mark() {
+
+        }
+
+    }
+
+    public static class DirectImpl implements AnchorInterface {
+
+    }
+
+    public static class Other {
+
+        public void mark() {
+
+        }
+
+    }
+
+    private final StubInstrumentation stub = new StubInstrumentation();
+
+    private final DefaultLoadedClassDataSource indexedDataSource = new DefaultLoadedClassDataSource(
+            stub.getInstrumentation(),
+            CoreConfigure.toConfigure(";loaded.class.index.enable=true;loaded.class.match.parallelism=1;", "")
+    );
+
+    private final DefaultLoadedClassDataSource scanningDataSource = new DefaultLoadedClassDataSource(
+            stub.getInstrumentation(),
+            CoreConfigure.toConfigure(";loaded.class.index.enable=false;loaded.class.match.parallelism=1;", "")
+    );
+
+    // 观察时生成的观察条件
+    private EventWatchCondition condition;
+
+    private final ModuleEventWatcher moduleEventWatcher = (ModuleEventWatcher) Proxy.newProxyInstance(
+            AnchoredSelectionTestCase.class.getClassLoader(),
+            new Class<?>[]{ModuleEventWatcher.class},
+            new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if ("watch".equals(method.getName())
+                            && args[0] instanceof EventWatchCondition) {
+                        condition = (EventWatchCondition) args[0];
+                    }
+                    return method.getReturnType() == int.class ? 0 : null;
+                }
+            }
+    );
+
+    {
+        stub.add(
+                AnchorInterface.class, SubAnchorInterface.class, InheritedMark.class, BehaviorMark.class,
+                Base.class, Child.class, GrandChild.class, DirectImpl.class, Other.class,
+                Computer.class, TraceEventListener.class
+        );
+    }
+
+    @After
+    public void destroy() {
+        indexedDataSource.destroy();
+        scanningDataSource.destroy();
+        CoreConfigure.toConfigure("", "");
+    }
+
+    // 每次观察都用一个新的构建器，之前声明的类匹配器不会混进来
+    private EventWatchBuilder newBuilder() {
+        return new EventWatchBuilder(moduleEventWatcher);
+    }
+
+    // 观察并取得和容器中一样的Or关系匹配器
+    private Matcher watching(final EventWatchBuilder.IBuildingForBehavior building) {
+        building.onWatch(new TraceEventListener("a", new ArrayList<String>()), Event.Type.BEFORE);
+        return toOrGroupMatcher(condition.getOrFilterArray());
+    }
+
+    // 挑选候选类的检索结果与遍历所有已加载类的检索结果一致，并且就是期望的类
+    private void assertSameAsFullScan(final Matcher matcher,
+                                      final Class<?>... expects) {
+        final Set<Class<?>> scanned = new HashSet<Class<?>>(scanningDataSource.findForReTransform(matcher));
+        final Set<Class<?>> selected = new HashSet<Class<?>>(indexedDataSource.findForReTransform(matcher));
+        Assert.assertEquals(scanned, selected);
+        Assert.assertEquals(new HashSet<Class<?>>(Arrays.asList(expects)), selected);
+    }
+
+    @Test
+    public void test_select_sub_classes() {
+        assertSameAsFullScan(
+                watching(newBuilder().onClass(Base.class).includeSubClasses().onAnyBehavior()),
+                Base.class, Child.class, GrandChild.class
+        );
+    }
+
+    @Test
+    public void test_select_by_interface_types() {
+        // 接口只算类自身声明的接口及其父接口，子类不随父类一起匹配
+        assertSameAsFullScan(
+                watching(newBuilder().onAnyClass().hasInterfaceTypes(AnchorInterface.class).onAnyBehavior()),
+                Base.class, DirectImpl.class
+        );
+        assertSameAsFullScan(
+                watching(newBuilder().onAnyClass().hasInterfaceTypes("*$SubAnchor*").onAnyBehavior()),
+                Base.class
+        );
+
+        // 匹配子类时父类实现的接口对子类同样有效
+        assertSameAsFullScan(
+                watching(newBuilder().onAnyClass().includeSubClasses().hasInterfaceTypes(AnchorInterface.class).onAnyBehavior()),
+                Base.class, Child.class, GrandChild.class, DirectImpl.class
+        );
+    }
+
+    @Test
+    public void test_select_by_inherited_class_annotation() {
+        assertSameAsFullScan(
+                watching(newBuilder().onAnyClass().hasAnnotationTypes(InheritedMark.class).onAnyBehavior()),
+                Base.class, Child.class, GrandChild.class
+        );
+    }
+
+    @Test
+    public void test_select_by_behavior_annotation() {
+        assertSameAsFullScan(
+                watching(newBuilder().onAnyClass().onBehavior("mark").hasAnnotationTypes(BehaviorMark.class)),
+                GrandChild.class
+        );
+
+        // 有一个行为匹配器不要求注解时不能按行为注解挑选
+        assertSameAsFullScan(
+                watching(newBuilder().onAnyClass()
+                        .onBehavior("mark").hasAnnotationTypes(BehaviorMark.class)
+                        .onBehavior("mark")),
+                GrandChild.class, Other.class
+        );
+    }
+
+    @Test
+    public void test_or_group_with_unselectable_matcher() {
+        newBuilder().onClass(Base.class).includeSubClasses().onAnyBehavior()
+                .onWatch(new TraceEventListener("a", new ArrayList<String>()), Event.Type.BEFORE);
+
+        // 普通过滤器只能逐个匹配，整个Or组退化为遍历所有已加载类
+        final Filter otherFilter = new Filter() {
+            @Override
+            public boolean doClassFilter(final int access,
+                                         final String javaClassName,
+                                         final String superClassTypeJavaClassName,
+                                         final String[] interfaceTypeJavaClassNameArray,
+                                         final String[] annotationTypeJavaClassNameArray) {
+                return Other.class.getName().equals(javaClassName);
+            }
+
+            @Override
+            public boolean doMethodFilter(final int access,
+                                          final String javaMethodName,
+                                          final String[] parameterTypeJavaClassNameArray,
+                                          final String[] throwsTypeJavaClassNameArray,
+                                          final String[] annotationTypeJavaClassNameArray) {
+                return true;
+            }
+        };
+        assertSameAsFullScan(
+                toOrGroupMatcher((Filter[]) ArrayUtils.add(condition.getOrFilterArray(), otherFilter)),
+                Base.class, Child.class, GrandChild.class, Other.class
+        );
+    }
+
+}
@@ -0,0 +1,186 @@
+package test.com.alibaba.jvm.sandbox.core.manager.impl;
+
+import com.alibaba.jvm.sandbox.api.filter.Filter;
+import com.alibaba.jvm.sandbox.core.CoreConfigure;
+import com.alibaba.jvm.sandbox.core.manager.impl.DefaultLoadedClassDataSource;
+import com.alibaba.jvm.sandbox.core.util.matcher.ExtFilterMatcher;
+import com.alibaba.jvm.sandbox.core.util.matcher.Matcher;
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Test;
+import test.com.alibaba.jvm.sandbox.core.enhance.BaseTestCase;
+import test.com.alibaba.jvm.sandbox.core.enhance.Computer;
+import test.com.alibaba.jvm.sandbox.core.enhance.TraceEventListener;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.alibaba.jvm.sandbox.api.filter.ExtFilter.ExtFilterFactory.make;
+
+/**
+ * 已加载类数据源的测试用例
+ * 检索结果必须同时满足观察的匹配器和容器的不支持类过滤；并行检索被中断时结果仍然完整
+ */
+public class DefaultLoadedClassDataSourceTestCase {
+
+    private DefaultLoadedClassDataSource loadedClassDataSource;
+
+    // JVM中"已加载"的类只有指定的这些，所有类都可以被修改
+    private static Instrumentation mockInstrumentation(final Class<?>... loaded) {
+        return (Instrumentation) Proxy.newProxyInstance(
+                DefaultLoadedClassDataSourceTestCase.class.getClassLoader(),
+                new Class<?>[]{Instrumentation.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getAllLoadedClasses".equals(method.getName())) {
+                            return loaded.clone();
+                        }
+                        if ("isModifiableClass".equals(method.getName())) {
+                            return true;
+                        }
+                        return method.getReturnType() == boolean.class ? false : null;
+                    }
+                }
+        );
+    }
+
+    // 只匹配指定类名的类
+    private static Matcher matchingClassName(final String targetJavaClassName) {
+        return new ExtFilterMatcher(make(new Filter() {
+            @Override
+            public boolean doClassFilter(final int access,
+                                         final String javaClassName,
+                                         final String superClassTypeJavaClassName,
+                                         final String[] interfaceTypeJavaClassNameArray,
+                                         final String[] annotationTypeJavaClassNameArray) {
+                return targetJavaClassName.equals(javaClassName);
+            }
+
+            @Override
+            public boolean doMethodFilter(final int access,
+                                          final String javaMethodName,
+                                          final String[] parameterTypeJavaClassNameArray,
+                                          final String[] throwsTypeJavaClassNameArray,
+                                          final String[] annotationTypeJavaClassNameArray) {
+                return true;
+            }
+        }));
+    }
+
+    @After
+    public void destroy() {
+        if (null != loadedClassDataSource) {
+            loadedClassDataSource.destroy();
+        }
+        CoreConfigure.toConfigure("", "");
+    }
+
+    @Test
+    public void test_find_for_re_transform_apply_matcher() {
+        loadedClassDataSource = new DefaultLoadedClassDataSource(
+                mockInstrumentation(Computer.class, TraceEventListener.class, BaseTestCase.class),
+                CoreConfigure.toConfigure(";loaded.class.index.enable=false;loaded.class.match.parallelism=1;", "")
+        );
+
+        // 不支持类过滤必须和观察的匹配器同时生效，不能返回所有受支持的类
+        final List<Class<?>> classes = loadedClassDataSource.findForReTransform(matchingClassName(Computer.class.getName()));
+        Assert.assertEquals(Collections.<Class<?>>singletonList(Computer.class), classes);
+        Assert.assertTrue(loadedClassDataSource.findForReTransform(matchingClassName("not.exist.Class")).isEmpty());
+    }
+
+    @Test
+    public void test_find_for_re_transform_remove_unsupported() {
+        loadedClassDataSource = new DefaultLoadedClassDataSource(
+                mockInstrumentation(Computer.class, DefaultLoadedClassDataSource.class),
+                CoreConfigure.toConfigure(";loaded.class.index.enable=false;loaded.class.match.parallelism=1;", "")
+        );
+
+        // 沙箱自身的类即使被匹配上也不能被形变
+        Assert.assertTrue(loadedClassDataSource.findForReTransform(
+                matchingClassName(DefaultLoadedClassDataSource.class.getName())).isEmpty());
+        Assert.assertEquals(
+                Arrays.<Class<?>>asList(Computer.class),
+                loadedClassDataSource.findForReTransform(matchingClassName(Computer.class.getName()))
+        );
+    }
+
+    @Test
+    public void test_interrupted_cancel_unfinished_segments() throws Exception {
+        final int parallelism = 2;
+        final Class<?>[] loaded = new Class<?>[4 * 2048 * parallelism];
+        for (int index = 0; index < loaded.length; index++) {
+            loaded[index] = index % 2 == 0 ? Computer.class : TraceEventListener.class;
+        }
+        loadedClassDataSource = new DefaultLoadedClassDataSource(
+                mockInstrumentation(loaded),
+                CoreConfigure.toConfigure(";loaded.class.index.enable=false;loaded.class.match.parallelism=" + parallelism + ";", "")
+        );
+
+        // 检索线程在匹配时被挡住，直到测试结束才放行；当前线程中的匹配不受影响
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+        final AtomicInteger matchingCountInPool = new AtomicInteger();
+        final Matcher matcher = new ExtFilterMatcher(make(new Filter() {
+            @Override
+            public boolean doClassFilter(final int access,
+                                         final String javaClassName,
+                                         final String superClassTypeJavaClassName,
+                                         final String[] interfaceTypeJavaClassNameArray,
+                                         final String[] annotationTypeJavaClassNameArray) {
+                if (Thread.currentThread().getName().startsWith("sandbox-loaded-class-matcher-")) {
+                    matchingCountInPool.incrementAndGet();
+                    try {
+                        releaseLatch.await();
+                    } catch (InterruptedException cause) {
+                        // 被取消的检索任务，继续往下走完
+                    }
+                }
+                return Computer.class.getName().equals(javaClassName);
+            }
+
+            @Override
+            public boolean doMethodFilter(final int access,
+                                          final String javaMethodName,
+                                          final String[] parameterTypeJavaClassNameArray,
+                                          final String[] throwsTypeJavaClassNameArray,
+                                          final String[] annotationTypeJavaClassNameArray) {
+                return true;
+            }
+        }));
+
+        final List<Class<?>> classes;
+        try {
+            Thread.currentThread().interrupt();
+            classes = loadedClassDataSource.findForReTransform(matcher);
+
+            // 检索结果仍然完整，中断标记被保留
+            Assert.assertTrue(Thread.interrupted());
+            final List<Class<?>> expect = new ArrayList<Class<?>>();
+            for (int index = 0; index < loaded.length; index += 2) {
+                expect.add(Computer.class);
+            }
+            Assert.assertEquals(expect, classes);
+        } finally {
+            Thread.interrupted();
+            releaseLatch.countDown();
+        }
+
+        // 被取消的段不会再在检索线程中执行，最多只有已经开始的段会走完
+        final int maxMatchingCountInPool = parallelism * loaded.length / (4 * parallelism);
+        int matchingCount;
+        do {
+            matchingCount = matchingCountInPool.get();
+            Thread.sleep(200);
+        } while (matchingCount != matchingCountInPool.get());
+        Assert.assertTrue(String.valueOf(matchingCount), matchingCount <= maxMatchingCountInPool);
+    }
+
+}
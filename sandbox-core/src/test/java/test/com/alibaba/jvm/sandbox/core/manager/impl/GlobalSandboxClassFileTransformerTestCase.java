@@ -0,0 +1,179 @@
+package test.com.alibaba.jvm.sandbox.core.manager.impl;
+
+import com.alibaba.jvm.sandbox.api.event.Event;
+import com.alibaba.jvm.sandbox.api.filter.ExtFilter;
+import com.alibaba.jvm.sandbox.api.filter.Filter;
+import com.alibaba.jvm.sandbox.core.enhance.weaver.EventListenerHandlers;
+import com.alibaba.jvm.sandbox.core.manager.impl.SandboxClassFileTransformer;
+import com.alibaba.jvm.sandbox.core.util.matcher.ExtFilterMatcher;
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Test;
+import test.com.alibaba.jvm.sandbox.core.enhance.BaseTestCase;
+import test.com.alibaba.jvm.sandbox.core.enhance.Computer;
+import test.com.alibaba.jvm.sandbox.core.enhance.TraceEventListener;
+import test.com.alibaba.jvm.sandbox.core.enhance.WovenMethod;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.defineClass;
+import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.unCaughtGetClassDeclaredJavaMethod;
+
+/**
+ * 全局类形变器的测试用例
+ * 同一个行为上的监听器按注册顺序融合到一层调用点中，超过融合上限或采样间隔不同时在前一层的产物上嵌套织入一层
+ */
+public class GlobalSandboxClassFileTransformerTestCase extends BaseTestCase {
+
+    private static final Event.Type[] EVENT_TYPES = new Event.Type[]{
+            Event.Type.BEFORE,
+            Event.Type.RETURN,
+            Event.Type.THROWS
+    };
+
+    private static final String COMPUTER_INTERNAL_CLASS_NAME = Computer.class.getName().replace('.', '/');
+
+    private final List<String> traces = Collections.synchronizedList(new ArrayList<String>());
+
+    private final List<SandboxClassFileTransformer> sandboxClassFileTransformers = new ArrayList<SandboxClassFileTransformer>();
+
+    private WovenMethod wovenSum;
+
+    // 观察Computer#sum(int[])，监听器以观察的序号命名
+    private void watchingSum(final int sampling) {
+        final TraceEventListener listener = new TraceEventListener(String.valueOf(sandboxClassFileTransformers.size()), traces);
+        final SandboxClassFileTransformer sandboxClassFileTransformer = new SandboxClassFileTransformer(
+                sandboxClassFileTransformers.size(),
+                "test",
+                new ExtFilterMatcher(ExtFilter.ExtFilterFactory.make(new Filter() {
+                    @Override
+                    public boolean doClassFilter(final int access,
+                                                 final String javaClassName,
+                                                 final String superClassTypeJavaClassName,
+                                                 final String[] interfaceTypeJavaClassNameArray,
+                                                 final String[] annotationTypeJavaClassNameArray) {
+                        return true;
+                    }
+
+                    @Override
+                    public boolean doMethodFilter(final int access,
+                                                  final String javaMethodName,
+                                                  final String[] parameterTypeJavaClassNameArray,
+                                                  final String[] throwsTypeJavaClassNameArray,
+                                                  final String[] annotationTypeJavaClassNameArray) {
+                        return "sum".equals(javaMethodName);
+                    }
+                })),
+                listener,
+                false,
+                sampling,
+                false,
+                EVENT_TYPES
+        );
+        EventListenerHandlers.getSingleton().active(
+                sandboxClassFileTransformer.getListenerId(),
+                listener,
+                EVENT_TYPES
+        );
+        sandboxClassFileTransformers.add(sandboxClassFileTransformer);
+    }
+
+    @After
+    public void frozen() {
+        for (final SandboxClassFileTransformer sandboxClassFileTransformer : sandboxClassFileTransformers) {
+            EventListenerHandlers.getSingleton().frozen(sandboxClassFileTransformer.getListenerId());
+        }
+    }
+
+    // 用所有观察一次形变Computer，返回形变后的sum()
+    private Method transformSum() throws Exception {
+        final ClassLoader loader = newTestClassLoader();
+        final byte[] byteCodeArray = SandboxClassFileTransformer.transform(
+                loader,
+                COMPUTER_INTERNAL_CLASS_NAME,
+                null,
+                toByteArray(Computer.class),
+                sandboxClassFileTransformers.toArray(new SandboxClassFileTransformer[0])
+        );
+        Assert.assertNotNull(byteCodeArray);
+        wovenSum = new WovenMethod(byteCodeArray, "sum", "([I)I");
+        final Class<?> computerClass = defineClass(loader, Computer.class.getName(), byteCodeArray);
+        return unCaughtGetClassDeclaredJavaMethod(computerClass, "sum", int[].class);
+    }
+
+    private static void sum(final Method sum, final int times) throws Exception {
+        final Object computer = sum.getDeclaringClass().newInstance();
+        for (int i = 0; i < times; i++) {
+            Assert.assertEquals(3, sum.invoke(computer, new int[]{1, 2}));
+        }
+    }
+
+    private int countTraces(final String trace) {
+        int count = 0;
+        for (final String each : traces) {
+            if (each.equals(trace)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void test_fuse_up_to_max_listeners_in_one_layer() throws Exception {
+        for (int index = 0; index < EventListenerHandlers.MAX_JOIN_POINT_LISTENERS; index++) {
+            watchingSum(1);
+        }
+        sum(transformSum(), 1);
+        Assert.assertEquals(1, wovenSum.countSpyInvoke("isListenerEnable"));
+        Assert.assertEquals(2 * EventListenerHandlers.MAX_JOIN_POINT_LISTENERS, traces.size());
+        Assert.assertEquals("0:BEFORE", traces.get(0));
+        Assert.assertEquals("0:RETURN=3", traces.get(traces.size() - 1));
+    }
+
+    @Test
+    public void test_nest_a_layer_over_max_listeners() throws Exception {
+        final int last = EventListenerHandlers.MAX_JOIN_POINT_LISTENERS;
+        for (int index = 0; index <= last; index++) {
+            watchingSum(1);
+        }
+        sum(transformSum(), 1);
+        Assert.assertEquals(2, wovenSum.countSpyInvoke("isListenerEnable"));
+
+        // 每个监听器都只收到一对事件，嵌套在外层的最后一个观察最先进入、最后返回
+        Assert.assertEquals(2 * (last + 1), traces.size());
+        for (int index = 0; index <= last; index++) {
+            Assert.assertEquals(1, countTraces(index + ":BEFORE"));
+            Assert.assertEquals(1, countTraces(index + ":RETURN=3"));
+        }
+        Assert.assertEquals(last + ":BEFORE", traces.get(0));
+        Assert.assertEquals("0:BEFORE", traces.get(1));
+        Assert.assertEquals(last + ":RETURN=3", traces.get(traces.size() - 1));
+    }
+
+    @Test
+    public void test_nest_a_layer_on_sampling_mismatch() throws Exception {
+        watchingSum(1);
+        watchingSum(1);
+        watchingSum(3);
+        final Method sum = transformSum();
+        Assert.assertEquals(1, wovenSum.countSpyInvoke("isListenerEnable"));
+        Assert.assertEquals(1, wovenSum.countSpyInvoke("isListenerSampled"));
+
+        // 前两个观察融合在内层，每次调用都派发；第三个观察在外层，每3次调用采中1次
+        sum(sum, 2);
+        Assert.assertEquals(
+                "[0:BEFORE, 1:BEFORE, 1:RETURN=3, 0:RETURN=3, 0:BEFORE, 1:BEFORE, 1:RETURN=3, 0:RETURN=3]",
+                traces.toString()
+        );
+        traces.clear();
+        sum(sum, 1);
+        Assert.assertEquals(
+                "[2:BEFORE, 0:BEFORE, 1:BEFORE, 1:RETURN=3, 0:RETURN=3, 2:RETURN=3]",
+                traces.toString()
+        );
+    }
+
+}
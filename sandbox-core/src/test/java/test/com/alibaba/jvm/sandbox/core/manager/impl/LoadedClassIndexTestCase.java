@@ -0,0 +1,184 @@
+package test.com.alibaba.jvm.sandbox.core.manager.impl;
+
+import com.alibaba.jvm.sandbox.api.filter.ClassNamePatternFilter;
+import com.alibaba.jvm.sandbox.core.CoreConfigure;
+import com.alibaba.jvm.sandbox.core.manager.impl.DefaultLoadedClassDataSource;
+import com.alibaba.jvm.sandbox.core.util.matcher.ExtFilterMatcher;
+import com.alibaba.jvm.sandbox.core.util.matcher.Matcher;
+import junit.framework.Assert;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Test;
+import test.com.alibaba.jvm.sandbox.core.enhance.Computer;
+import test.com.alibaba.jvm.sandbox.core.enhance.TestClassLoader;
+import test.com.alibaba.jvm.sandbox.core.enhance.TraceEventListener;
+
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.alibaba.jvm.sandbox.api.filter.ExtFilter.ExtFilterFactory.make;
+import static com.alibaba.jvm.sandbox.core.util.SandboxReflectUtils.defineClass;
+
+/**
+ * 已加载类索引的测试用例
+ * 索引建立之后只补进新加载的类，不再遍历JVM中所有已加载的类；待补进的类溢出时重建索引，类被卸载后从索引中清除
+ */
+public class LoadedClassIndexTestCase {
+
+    // 待补进索引的类超过这个数量时溢出，同LoadedClassIndex
+    private static final int MAX_PENDING_COUNT = 65536;
+
+    private final StubInstrumentation stub = new StubInstrumentation();
+
+    private final DefaultLoadedClassDataSource loadedClassDataSource = new DefaultLoadedClassDataSource(
+            stub.getInstrumentation(),
+            CoreConfigure.toConfigure(";loaded.class.index.enable=true;loaded.class.match.parallelism=1;", "")
+    );
+
+    @After
+    public void destroy() {
+        loadedClassDataSource.destroy();
+        CoreConfigure.toConfigure("", "");
+    }
+
+    // 只凭类名挑选，挑选出来的候选类全部匹配
+    private static Matcher selectingClassNames(final String... classNamePatterns) {
+        return new ExtFilterMatcher(make(new ClassNamePatternFilter() {
+            @Override
+            public String[] getClassNamePatterns() {
+                return classNamePatterns;
+            }
+
+            @Override
+            public boolean doClassFilter(final int access,
+                                         final String javaClassName,
+                                         final String superClassTypeJavaClassName,
+                                         final String[] interfaceTypeJavaClassNameArray,
+                                         final String[] annotationTypeJavaClassNameArray) {
+                return true;
+            }
+
+            @Override
+            public boolean doMethodFilter(final int access,
+                                          final String javaMethodName,
+                                          final String[] parameterTypeJavaClassNameArray,
+                                          final String[] throwsTypeJavaClassNameArray,
+                                          final String[] annotationTypeJavaClassNameArray) {
+                return true;
+            }
+        }));
+    }
+
+    private Set<Class<?>> find(final String... classNamePatterns) {
+        return new HashSet<Class<?>>(loadedClassDataSource.findForReTransform(selectingClassNames(classNamePatterns)));
+    }
+
+    private static Set<Class<?>> asSet(final Class<?>... classes) {
+        return new HashSet<Class<?>>(Arrays.asList(classes));
+    }
+
+    // 在一个新的ClassLoader中定义Computer，沙箱所在ClassLoader加载的类不会被类形变器记录
+    private static Class<?> defineComputer() throws Exception {
+        final InputStream is = Computer.class.getResourceAsStream("/" + Computer.class.getName().replace('.', '/') + ".class");
+        try {
+            return defineClass(
+                    new TestClassLoader(LoadedClassIndexTestCase.class.getClassLoader()),
+                    Computer.class.getName(),
+                    IOUtils.toByteArray(is)
+            );
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    @Test
+    public void test_select_by_exact_and_prefix_class_name() {
+        stub.add(Computer.class, TraceEventListener.class, LoadedClassIndexTestCase.class);
+
+        Assert.assertEquals(asSet(Computer.class), find(Computer.class.getName()));
+        Assert.assertEquals(
+                asSet(Computer.class, TraceEventListener.class),
+                find("test.com.alibaba.jvm.sandbox.core.enhance.*")
+        );
+        Assert.assertEquals(
+                asSet(Computer.class, LoadedClassIndexTestCase.class),
+                find(Computer.class.getName(), "test.com.alibaba.jvm.sandbox.core.manager.*")
+        );
+
+        // 不是前缀的通配符逐个匹配类名
+        Assert.assertEquals(asSet(TraceEventListener.class), find("*Trace*Listener"));
+        Assert.assertTrue(find("test.com.alibaba.jvm.sandbox.core.enhance.Computer*Not*").isEmpty());
+        Assert.assertTrue(find("not.exist.Class").isEmpty());
+
+        // 索引只建立了一次
+        Assert.assertEquals(1, stub.getAllLoadedClassesTimes());
+    }
+
+    @Test
+    public void test_merge_classes_loaded_after_build() throws Exception {
+        stub.add(Computer.class);
+        Assert.assertEquals(asSet(Computer.class), find(Computer.class.getName()));
+        Assert.assertEquals(1, stub.getTransformers().size());
+
+        // 索引建立之后新加载的类在下一次检索时补进索引
+        final Class<?> loadedComputer = defineComputer();
+        stub.load(loadedComputer);
+        Assert.assertEquals(asSet(Computer.class, loadedComputer), find(Computer.class.getName()));
+
+        // 没有经过类形变器的类不会被补进索引，说明检索没有再遍历所有已加载的类
+        final Class<?> silentComputer = defineComputer();
+        stub.add(silentComputer);
+        Assert.assertEquals(asSet(Computer.class, loadedComputer), find(Computer.class.getName()));
+        Assert.assertEquals(1, stub.getAllLoadedClassesTimes());
+
+        // 销毁后类形变器被移除
+        loadedClassDataSource.destroy();
+        Assert.assertTrue(stub.getTransformers().isEmpty());
+    }
+
+    @Test
+    public void test_rebuild_on_pending_overflow() throws Exception {
+        stub.add(Computer.class);
+        Assert.assertEquals(asSet(Computer.class), find(Computer.class.getName()));
+
+        // 待补进的类超过上限后不再记录，下一次检索时重建索引
+        final Class<?> silentComputer = defineComputer();
+        for (int index = 0; index <= MAX_PENDING_COUNT; index++) {
+            stub.notifyLoading(silentComputer.getClassLoader(), "not/exist/Class" + index);
+        }
+        stub.add(silentComputer);
+        Assert.assertEquals(asSet(Computer.class, silentComputer), find(Computer.class.getName()));
+        Assert.assertEquals(2, stub.getAllLoadedClassesTimes());
+
+        // 重建之后恢复按ClassLoader补进新加载的类
+        final Class<?> loadedComputer = defineComputer();
+        stub.load(loadedComputer);
+        Assert.assertEquals(asSet(Computer.class, silentComputer, loadedComputer), find(Computer.class.getName()));
+        Assert.assertEquals(2, stub.getAllLoadedClassesTimes());
+    }
+
+    @Test
+    public void test_remove_class_after_loader_collected() throws Exception {
+        Class<?> unloadedComputer = defineComputer();
+        stub.add(Computer.class, unloadedComputer);
+        Assert.assertEquals(asSet(Computer.class, unloadedComputer), find(Computer.class.getName()));
+
+        // 类和ClassLoader被回收之后，同名的类只剩下仍然存活的那个
+        final WeakReference<Class<?>> unloadedComputerRef = new WeakReference<Class<?>>(unloadedComputer);
+        stub.remove(unloadedComputer);
+        unloadedComputer = null;
+        for (int times = 0; times < 100 && null != unloadedComputerRef.get(); times++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertNull(unloadedComputerRef.get());
+        final List<Class<?>> classes = loadedClassDataSource.findForReTransform(selectingClassNames(Computer.class.getName()));
+        Assert.assertEquals(Arrays.<Class<?>>asList(Computer.class), classes);
+        Assert.assertEquals(1, stub.getAllLoadedClassesTimes());
+    }
+
+}
@@ -0,0 +1,125 @@
+package test.com.alibaba.jvm.sandbox.core.manager.impl;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 模拟的Instrumentation
+ * JVM中"已加载"的类只有加进来的这些，所有类都可以被修改；
+ * 类加载时依次通知注册进来的类形变器，记录全量取已加载类的次数
+ */
+public class StubInstrumentation implements InvocationHandler {
+
+    private final List<Class<?>> loaded = new ArrayList<Class<?>>();
+    private final List<ClassFileTransformer> transformers = new ArrayList<ClassFileTransformer>();
+    private int getAllLoadedClassesTimes;
+
+    private final Instrumentation inst = (Instrumentation) Proxy.newProxyInstance(
+            StubInstrumentation.class.getClassLoader(),
+            new Class<?>[]{Instrumentation.class},
+            this
+    );
+
+    public Instrumentation getInstrumentation() {
+        return inst;
+    }
+
+    /**
+     * 加入已加载的类，不通知类形变器
+     *
+     * @param classes 已加载的类
+     */
+    public synchronized void add(final Class<?>... classes) {
+        for (final Class<?> clazz : classes) {
+            loaded.add(clazz);
+        }
+    }
+
+    /**
+     * 加载类：加入已加载的类，并把首次加载通知给类形变器
+     *
+     * @param classes 新加载的类
+     */
+    public void load(final Class<?>... classes) throws Exception {
+        for (final Class<?> clazz : classes) {
+            notifyLoading(clazz.getClassLoader(), clazz.getName().replace('.', '/'));
+            add(clazz);
+        }
+    }
+
+    /**
+     * 只把首次加载通知给类形变器，类并没有真正加载
+     *
+     * @param loader            ClassLoader
+     * @param internalClassName 类名
+     */
+    public void notifyLoading(final ClassLoader loader,
+                              final String internalClassName) throws Exception {
+        for (final ClassFileTransformer transformer : getTransformers()) {
+            transformer.transform(loader, internalClassName, null, null, null);
+        }
+    }
+
+    /**
+     * 移除已加载的类
+     *
+     * @param clazz 被卸载的类
+     */
+    public synchronized void remove(final Class<?> clazz) {
+        loaded.remove(clazz);
+    }
+
+    public synchronized List<ClassFileTransformer> getTransformers() {
+        return new ArrayList<ClassFileTransformer>(transformers);
+    }
+
+    public synchronized int getAllLoadedClassesTimes() {
+        return getAllLoadedClassesTimes;
+    }
+
+    @Override
+    public synchronized Object invoke(final Object proxy,
+                                      final Method method,
+                                      final Object[] args) {
+        final String name = method.getName();
+        if ("getAllLoadedClasses".equals(name)) {
+            getAllLoadedClassesTimes++;
+            return loaded.toArray(new Class<?>[0]);
+        }
+        if ("getInitiatedClasses".equals(name)) {
+            final List<Class<?>> initiated = new ArrayList<Class<?>>();
+            for (final Class<?> clazz : loaded) {
+                if (clazz.getClassLoader() == args[0]) {
+                    initiated.add(clazz);
+                }
+            }
+            return initiated.toArray(new Class<?>[0]);
+        }
+        if ("isModifiableClass".equals(name)) {
+            return true;
+        }
+        if ("addTransformer".equals(name)) {
+            transformers.add((ClassFileTransformer) args[0]);
+            return null;
+        }
+        if ("removeTransformer".equals(name)) {
+            return transformers.remove(args[0]);
+        }
+        if ("hashCode".equals(name)) {
+            return System.identityHashCode(proxy);
+        }
+        if ("equals".equals(name)) {
+            return proxy == args[0];
+        }
+        if ("toString".equals(name)) {
+            return "StubInstrumentation@" + Integer.toHexString(System.identityHashCode(proxy));
+        }
+        return method.getReturnType() == boolean.class ? false : null;
+    }
+
+}
@@ -0,0 +1,87 @@
+package test.com.alibaba.jvm.sandbox.core.util.collection;
+
+import com.alibaba.jvm.sandbox.core.util.collection.GaLongStack;
+import com.alibaba.jvm.sandbox.core.util.collection.GaStack;
+import com.alibaba.jvm.sandbox.core.util.collection.ThreadUnsafeGaLongStack;
+import com.alibaba.jvm.sandbox.core.util.collection.ThreadUnsafeGaStack;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * {@link ThreadUnsafeGaLongStack}必须和{@link ThreadUnsafeGaStack}保持相同的语义
+ */
+public class ThreadUnsafeGaLongStackTestCase {
+
+    private static void assertSameView(final GaStack<Long> expect, final GaLongStack actual) {
+        Assert.assertEquals(expect.isEmpty(), actual.isEmpty());
+        if (!expect.isEmpty()) {
+            Assert.assertEquals(expect.isLast(), actual.isLast());
+            Assert.assertEquals(expect.peek().longValue(), actual.peek());
+            Assert.assertEquals(expect.peekLast().longValue(), actual.peekLast());
+        }
+    }
+
+    @Test
+    public void test_random_operations_same_as_GaStack() {
+        final Random random = new Random(20171017L);
+        final GaStack<Long> expect = new ThreadUnsafeGaStack<Long>(1);
+        final GaLongStack actual = new ThreadUnsafeGaLongStack(1);
+        for (int i = 0; i < 100000; i++) {
+            // 压栈概率略高，保证堆栈深度能越过多次扩容
+            if (expect.isEmpty() || random.nextInt(10) < 6) {
+                final long e = random.nextLong();
+                expect.push(e);
+                actual.push(e);
+            } else {
+                Assert.assertEquals(expect.pop().longValue(), actual.pop());
+            }
+            assertSameView(expect, actual);
+        }
+        while (!expect.isEmpty()) {
+            Assert.assertEquals(expect.pop().longValue(), actual.pop());
+            assertSameView(expect, actual);
+        }
+    }
+
+    @Test
+    public void test_int_and_long_invoke_id() {
+        final GaLongStack stack = new ThreadUnsafeGaLongStack();
+        final long[] invokeIds = new long[]{
+                0L,
+                Integer.MAX_VALUE,
+                Integer.MAX_VALUE + 1L,
+                Long.MAX_VALUE,
+                Integer.MIN_VALUE,
+                Long.MIN_VALUE
+        };
+        for (final long invokeId : invokeIds) {
+            stack.push(invokeId);
+            Assert.assertEquals(invokeId, stack.peek());
+            Assert.assertEquals(invokeIds[0], stack.peekLast());
+        }
+        for (int index = invokeIds.length - 1; index >= 0; index--) {
+            Assert.assertEquals(index == 0, stack.isLast());
+            Assert.assertEquals(invokeIds[index], stack.pop());
+        }
+        Assert.assertTrue(stack.isEmpty());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void test_pop_empty() {
+        new ThreadUnsafeGaLongStack().pop();
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void test_peek_empty() {
+        new ThreadUnsafeGaLongStack().peek();
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void test_peek_last_empty() {
+        new ThreadUnsafeGaLongStack().peekLast();
+    }
+
+}
@@ -0,0 +1,179 @@
+package test.com.alibaba.jvm.sandbox.core.util.matcher.structure;
+
+import com.alibaba.jvm.sandbox.core.util.matcher.structure.ClassStructure;
+import com.alibaba.jvm.sandbox.core.util.matcher.structure.ClassStructureCache;
+import com.alibaba.jvm.sandbox.core.util.matcher.structure.ClassStructureCache.Kind;
+import com.alibaba.jvm.sandbox.core.util.matcher.structure.ClassStructureFactory;
+import com.alibaba.jvm.sandbox.core.util.matcher.structure.ClassStructureImplByJDK;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.apache.commons.io.IOUtils.toByteArray;
+
+/**
+ * 类结构缓存的测试用例
+ * 缓存分段加锁、段内按最久未使用淘汰，总数不超过容量；检索的类数量超过容量时被检索类自身不进入缓存
+ */
+public class ClassStructureCacheTestCase {
+
+    private final ClassStructure classStructure = new ClassStructureImplByJDK(Object.class);
+
+    @Test
+    public void test_size_never_exceed_capacity() {
+        final int capacity = 1024;
+        final ClassStructureCache cache = new ClassStructureCache(capacity);
+        final int total = 4 * capacity;
+        for (int index = 0; index < total; index++) {
+            cache.put(Kind.JDK, null, "class" + index, classStructure);
+        }
+        final int size = cache.getSize();
+        Assert.assertTrue(String.valueOf(size), size <= capacity);
+
+        // 段内淘汰是近似的LRU，但各段都应当接近装满
+        Assert.assertTrue(String.valueOf(size), size > capacity / 2);
+        Assert.assertEquals(total - size, cache.getEvictionCount());
+    }
+
+    @Test
+    public void test_evict_least_recently_used() {
+        // 容量不足以分段时只有一个段，淘汰是严格的LRU
+        final int capacity = 64;
+        final ClassStructureCache cache = new ClassStructureCache(capacity);
+        for (int index = 0; index < capacity; index++) {
+            cache.put(Kind.ASM, null, "class" + index, classStructure);
+        }
+        Assert.assertNotNull(cache.get(Kind.ASM, null, "class0"));
+        cache.put(Kind.ASM, null, "class" + capacity, classStructure);
+        Assert.assertNotNull(cache.get(Kind.ASM, null, "class0"));
+        Assert.assertNull(cache.get(Kind.ASM, null, "class1"));
+        Assert.assertNull(cache.get(Kind.JDK, null, "class0"));
+        Assert.assertEquals(1, cache.getEvictionCount());
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void test_zero_capacity_never_cache() {
+        final ClassStructureCache cache = new ClassStructureCache(0);
+        cache.put(Kind.JDK, null, "class0", classStructure);
+        Assert.assertNull(cache.get(Kind.JDK, null, "class0"));
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void test_concurrent_access() throws Exception {
+        final int capacity = 1024;
+        final int threadNum = 8;
+        final int times = 20000;
+        final ClassStructureCache cache = new ClassStructureCache(capacity);
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final AtomicReference<Throwable> causeRef = new AtomicReference<Throwable>();
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int index = 0; index < threadNum; index++) {
+            final int seed = index;
+            final Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                        for (int time = 0; time < times; time++) {
+                            final String javaClassName = "class" + ((time * 31 + seed) % (2 * capacity));
+                            if (null == cache.get(Kind.JDK, null, javaClassName)) {
+                                cache.put(Kind.JDK, null, javaClassName, classStructure);
+                            }
+                        }
+                    } catch (Throwable cause) {
+                        causeRef.set(cause);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        startLatch.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertNull(causeRef.get());
+        Assert.assertTrue(cache.getSize() <= capacity);
+        Assert.assertEquals((long) threadNum * times, cache.getHitCount() + cache.getMissCount());
+    }
+
+    /**
+     * 只被检索用到的类
+     */
+    static class ScannedClass extends ScannedParentClass {
+
+    }
+
+    static class ScannedParentClass {
+
+    }
+
+    @Test
+    public void test_large_scan_not_cache_scanned_class() {
+        final ClassStructureCache cache = ClassStructureFactory.getClassStructureCache();
+        final ClassLoader loader = ScannedClass.class.getClassLoader();
+
+        // 检索的类数量超过缓存容量：被检索类自身不进入缓存，父类仍然进入缓存
+        final ClassStructure scanned = ClassStructureFactory.createClassStructure(ScannedClass.class, cache.getCapacity() + 1);
+        Assert.assertNull(cache.get(Kind.JDK, loader, ScannedClass.class.getName()));
+        Assert.assertEquals(ScannedParentClass.class.getName(), scanned.getSuperClassStructure().getJavaClassName());
+        Assert.assertNotNull(cache.get(Kind.JDK, loader, ScannedParentClass.class.getName()));
+
+        // 检索的类数量不超过缓存容量时正常缓存
+        final ClassStructure cached = ClassStructureFactory.createClassStructure(ScannedClass.class, 1);
+        Assert.assertSame(cached, cache.get(Kind.JDK, loader, ScannedClass.class.getName()));
+    }
+
+    /**
+     * 被多个实现类共用的接口
+     */
+    interface SharedInterface {
+
+    }
+
+    static class FirstImplementor implements SharedInterface {
+
+    }
+
+    static class SecondImplementor implements SharedInterface {
+
+    }
+
+    private static ClassStructure createAsmClassStructure(final Class<?> clazz) throws IOException {
+        final InputStream is = clazz.getResourceAsStream("/" + clazz.getName().replace('.', '/') + ".class");
+        try {
+            return ClassStructureFactory.createClassStructure(toByteArray(is), clazz.getClassLoader());
+        } finally {
+            is.close();
+        }
+    }
+
+    @Test
+    public void test_shared_interface_hit_cache() throws IOException {
+        final ClassStructureCache cache = ClassStructureFactory.getClassStructureCache();
+        final ClassLoader loader = SharedInterface.class.getClassLoader();
+
+        // 第一个实现类解析出接口的类结构并放入缓存
+        final ClassStructure first = createAsmClassStructure(FirstImplementor.class);
+        Assert.assertEquals(1, first.getInterfaceClassStructures().size());
+        final ClassStructure sharedInterface = first.getInterfaceClassStructures().get(0);
+        Assert.assertEquals(SharedInterface.class.getName(), sharedInterface.getJavaClassName());
+        Assert.assertSame(sharedInterface, cache.get(Kind.ASM, loader, SharedInterface.class.getName()));
+
+        // 第二个实现类经由缓存拿到同一个接口类结构，不再重复解析
+        final long hitCount = cache.getHitCount();
+        final ClassStructure second = createAsmClassStructure(SecondImplementor.class);
+        Assert.assertSame(sharedInterface, second.getInterfaceClassStructures().get(0));
+        Assert.assertEquals(hitCount + 1, cache.getHitCount());
+    }
+
+}
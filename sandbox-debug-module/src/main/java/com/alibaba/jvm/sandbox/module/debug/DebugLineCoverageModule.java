@@ -0,0 +1,119 @@
+package com.alibaba.jvm.sandbox.module.debug;
+
+import com.alibaba.jvm.sandbox.api.Information;
+import com.alibaba.jvm.sandbox.api.Module;
+import com.alibaba.jvm.sandbox.api.http.Http;
+import com.alibaba.jvm.sandbox.api.http.printer.ConcurrentLinkedQueuePrinter;
+import com.alibaba.jvm.sandbox.api.http.printer.Printer;
+import com.alibaba.jvm.sandbox.api.listener.ext.EventWatchBuilder;
+import com.alibaba.jvm.sandbox.api.listener.ext.EventWatcher;
+import com.alibaba.jvm.sandbox.api.resource.ModuleEventWatcher;
+import org.kohsuke.MetaInfServices;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
+
+/**
+ * 行覆盖统计
+ * <p>
+ * 在生产流量上统计方法中每个代码行的命中次数，用于发现从未被执行过的代码和热点代码行：
+ * <ul>
+ * <li>开始统计：watch</li>
+ * <li>查看统计：dump</li>
+ * <li>结束统计：delete</li>
+ * </ul>
+ */
+@MetaInfServices(Module.class)
+@Information(id = "debug-line-coverage", version = "0.0.1", author = "luanjia@taobao.com")
+public class DebugLineCoverageModule extends HttpSupported implements Module {
+
+    @Resource
+    private ModuleEventWatcher moduleEventWatcher;
+
+    private final Map<Integer, EventWatcher> watchers = new ConcurrentHashMap<Integer, EventWatcher>();
+
+    /*
+     * 开始统计
+     * -d 'debug-line-coverage/watch?class=<CLASS>&method=<METHOD>'
+     */
+    @Http("/watch")
+    public void watch(final HttpServletRequest req,
+                      final HttpServletResponse resp) throws IOException {
+        final Printer printer = new ConcurrentLinkedQueuePrinter(resp.getWriter());
+        try {
+            final String cnPattern = getParameter(req, "class");
+            final String mnPattern = getParameter(req, "method");
+            final EventWatcher watcher = new EventWatchBuilder(moduleEventWatcher)
+                    .onClass(cnPattern).includeSubClasses()
+                    .onBehavior(mnPattern)
+                    .onWatching().withProgress(new ProgressPrinter(printer))
+                    .onWatchLineCoverage();
+            watchers.put(watcher.getWatchId(), watcher);
+            printer.println(String.format(
+                    "line-coverage on [%s#%s], id:%s.",
+                    cnPattern,
+                    mnPattern,
+                    watcher.getWatchId()
+            ));
+            printer.flush();
+        } catch (HttpErrorCodeException hece) {
+            resp.sendError(hece.getCode(), hece.getMessage());
+        }
+    }
+
+    /*
+     * 查看统计
+     * -d 'debug-line-coverage/dump?id=<ID>'
+     */
+    @Http("/dump")
+    public void dump(final HttpServletRequest req,
+                     final HttpServletResponse resp) throws IOException {
+        try {
+            final int id = getParameter(req, "id", int.class);
+            if (!watchers.containsKey(id)) {
+                throw new HttpErrorCodeException(SC_NOT_FOUND, String.format("line-coverage id:%s not existed.", id));
+            }
+            final PrintWriter writer = resp.getWriter();
+            for (final ModuleEventWatcher.LineCoverage lineCoverage : moduleEventWatcher.getLineCoverages(id)) {
+                writer.println(String.format("%s#%s%s",
+                        lineCoverage.javaClassName,
+                        lineCoverage.javaMethodName,
+                        lineCoverage.javaMethodDesc
+                ));
+                for (final Map.Entry<Integer, Integer> entry : lineCoverage.lineHits.entrySet()) {
+                    writer.println(String.format("    L%-6s %s", entry.getKey(), entry.getValue()));
+                }
+            }
+        } catch (HttpErrorCodeException hece) {
+            resp.sendError(hece.getCode(), hece.getMessage());
+        }
+    }
+
+    /*
+     * 结束统计
+     * -d 'debug-line-coverage/delete?id=<ID>'
+     */
+    @Http("/delete")
+    public void delete(final HttpServletRequest req,
+                       final HttpServletResponse resp) throws IOException {
+        try {
+            final int id = getParameter(req, "id", int.class);
+            final EventWatcher watcher = watchers.remove(id);
+            if (null == watcher) {
+                throw new HttpErrorCodeException(SC_NOT_FOUND, String.format("line-coverage id:%s not existed.", id));
+            }
+            watcher.onUnWatched();
+            resp.getWriter().println(String.format("line-coverage id:%s deleted.", id));
+        } catch (HttpErrorCodeException hece) {
+            resp.sendError(hece.getCode(), hece.getMessage());
+        }
+    }
+
+}
@@ -82,7 +82,7 @@ public class DebugRalphModule extends HttpSupported implements Module {
 
                         // 是否一次拦截调用链的入口
                         private boolean isProcessTop(InvokeEvent event) {
-                            return event.processId == event.invokeId;
+                            return event.longProcessId == event.longInvokeId;
                         }
 
                         @Override
@@ -180,7 +180,7 @@ public class DebugRalphModule extends HttpSupported implements Module {
 
                         // 是否一次拦截调用链的入口
                         private boolean isProcessTop(InvokeEvent event) {
-                            return event.processId == event.invokeId;
+                            return event.longProcessId == event.longInvokeId;
                         }
 
                         @Override
@@ -70,4 +70,33 @@ public class InfoModule implements Module {
 
     }
 
+    @Http("/async-event")
+    public void asyncEvent(final HttpServletResponse resp) throws IOException {
+
+        final EventMonitor.AsyncEventInfo asyncEventInfo = eventMonitor.getAsyncEventInfo();
+        resp.getWriter().println(new StringBuilder()
+                .append("  CAPACITY : ").append(asyncEventInfo.getCapacity()).append("\n")
+                .append("   PENDING : ").append(asyncEventInfo.getNumPending()).append("\n")
+                .append(" DELIVERED : ").append(asyncEventInfo.getNumDelivered()).append("\n")
+                .append("   DROPPED : ").append(asyncEventInfo.getNumDropped())
+                .toString()
+        );
+
+    }
+
+    @Http("/class-structure-cache")
+    public void classStructureCache(final HttpServletResponse resp) throws IOException {
+
+        final EventMonitor.ClassStructureCacheInfo classStructureCacheInfo = eventMonitor.getClassStructureCacheInfo();
+        resp.getWriter().println(new StringBuilder()
+                .append(" CAPACITY : ").append(classStructureCacheInfo.getCapacity()).append("\n")
+                .append("     SIZE : ").append(classStructureCacheInfo.getSize()).append("\n")
+                .append("      HIT : ").append(classStructureCacheInfo.getHitCount()).append("\n")
+                .append("     MISS : ").append(classStructureCacheInfo.getMissCount()).append("\n")
+                .append("  EVICTED : ").append(classStructureCacheInfo.getEvictionCount())
+                .toString()
+        );
+
+    }
+
 }
@@ -3,7 +3,9 @@ package com.albaba.jvm.sandbox.module.mgr;
 import com.alibaba.jvm.sandbox.api.Information;
 import com.alibaba.jvm.sandbox.api.Module;
 import com.alibaba.jvm.sandbox.api.ModuleException;
+import com.alibaba.jvm.sandbox.api.event.Event;
 import com.alibaba.jvm.sandbox.api.http.Http;
+import com.alibaba.jvm.sandbox.api.resource.EventMonitor;
 import com.alibaba.jvm.sandbox.api.resource.ModuleManager;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.BooleanUtils;
@@ -38,6 +40,9 @@ public class ModuleMgrModule implements Module {
     @Resource
     private ModuleManager moduleManager;
 
+    @Resource
+    private EventMonitor eventMonitor;
+
     // 获取参数值
     private String getParamWithDefault(final HttpServletRequest req, final String name, final String defaultValue) {
         final String valueFromReq = req.getParameter(name);
@@ -218,4 +223,71 @@ public class ModuleMgrModule implements Module {
 
     }
 
+    @Http("/listener")
+    public void listener(final HttpServletRequest req,
+                         final HttpServletResponse resp) throws IOException {
+        final String idsStringPattern = getParamWithDefault(req, "ids", "*");
+        final PrintWriter writer = resp.getWriter();
+        int total = 0;
+        for (final EventMonitor.ListenerInfo listenerInfo : eventMonitor.listListenerInfo()) {
+            if (!matching(listenerInfo.getModuleId(), idsStringPattern)) {
+                continue;
+            }
+            total++;
+
+            //|moduleId|watchId|listenerId|state|tripCount|listener|tripReason|
+            output(writer, "%-20s\t%-8s\t%-8s\t%-8s\t%-5s\t%s\t%s",
+                    listenerInfo.getModuleId(),
+                    listenerInfo.getWatchId(),
+                    listenerInfo.getListenerId(),
+                    listenerInfo.isTripped() ? "TRIPPED" : "NORMAL",
+                    listenerInfo.getTripCount(),
+                    listenerInfo.getListenerClassName(),
+                    StringUtils.defaultString(listenerInfo.getTripReason())
+            );
+        }
+        output(writer, "total=%s", total);
+    }
+
+    @Http("/listener-stat")
+    public void listenerStat(final HttpServletRequest req,
+                             final HttpServletResponse resp) throws IOException {
+        final String idsStringPattern = getParamWithDefault(req, "ids", "*");
+        final PrintWriter writer = resp.getWriter();
+        int total = 0;
+        for (final EventMonitor.ListenerInfo listenerInfo : eventMonitor.listListenerInfo()) {
+            if (!matching(listenerInfo.getModuleId(), idsStringPattern)) {
+                continue;
+            }
+            total++;
+
+            // 只输出出现过的事件类型
+            final StringBuilder eventCountSB = new StringBuilder();
+            for (final Event.Type type : Event.Type.values()) {
+                final long eventCount = listenerInfo.getEventCount(type);
+                if (eventCount > 0) {
+                    eventCountSB.append(eventCountSB.length() > 0 ? "," : "").append(type).append("=").append(eventCount);
+                }
+            }
+
+            final long eventCount = listenerInfo.getEventCount();
+
+            //|moduleId|watchId|listenerId|events|cost(ms)|avg(us)|max(us)|errors|returnImmediately|throwsImmediately|eventsByType|
+            output(writer, "%-20s\t%-8s\t%-8s\t%-10s\t%-10s\t%-8s\t%-8s\t%-8s\t%-8s\t%-8s\t%s",
+                    listenerInfo.getModuleId(),
+                    listenerInfo.getWatchId(),
+                    listenerInfo.getListenerId(),
+                    eventCount,
+                    listenerInfo.getCostNanos() / 1000000,
+                    eventCount > 0 ? listenerInfo.getCostNanos() / eventCount / 1000 : 0,
+                    listenerInfo.getMaxCostNanos() / 1000,
+                    listenerInfo.getErrorCount(),
+                    listenerInfo.getReturnImmediatelyCount(),
+                    listenerInfo.getThrowsImmediatelyCount(),
+                    eventCountSB
+            );
+        }
+        output(writer, "total=%s", total);
+    }
+
 }
@@ -1,5 +1,6 @@
 package java.com.alibaba.jvm.sandbox.spy;
 
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
 /**
@@ -13,20 +14,81 @@ import java.lang.reflect.Method;
  */
 public class Spy {
 
-    /*** 方法事件 ***/
-    private static volatile Method ON_BEFORE_METHOD;
-    private static volatile Method ON_RETURN_METHOD;
-    private static volatile Method ON_THROWS_METHOD;
-    private static volatile Method ON_LINE_METHOD;
-    private static volatile Method ON_CALL_BEFORE_METHOD;
-    private static volatile Method ON_CALL_RETURN_METHOD;
-    private static volatile Method ON_CALL_THROWS_METHOD;
+    /**
+     * 间谍处理器
+     * <p>
+     * 由sandbox-core提供实现，Spy通过接口直接回调到事件处理中，
+     * 不再经过{@link Method#invoke(Object, Object...)}的反射调用，避免参数装箱和可变参数数组的分配，也便于JIT内联
+     * </p>
+     */
+    public interface SpyHandler {
+
+        Object handleOnBefore(int listenerId,
+                              int targetClassLoaderObjectID,
+                              Class<?> spyRetClassInTargetClassLoader,
+                              String javaClassName,
+                              String javaMethodName,
+                              String javaMethodDesc,
+                              Object target,
+                              Object[] argumentArray) throws Throwable;
+
+        Object handleOnBefore(int listenerId,
+                              int methodSiteId,
+                              Class<?> spyRetClassInTargetClassLoader,
+                              Object target,
+                              Object[] argumentArray) throws Throwable;
+
+        Object handleOnReturn(int listenerId,
+                              Class<?> spyRetClassInTargetClassLoader,
+                              Object object) throws Throwable;
+
+        Object handleOnThrows(int listenerId,
+                              Class<?> spyRetClassInTargetClassLoader,
+                              Throwable throwable) throws Throwable;
+
+        void handleOnLine(int listenerId,
+                          int lineNumber) throws Throwable;
+
+        void handleOnCallBefore(int listenerId,
+                                int lineNumber,
+                                String owner,
+                                String name,
+                                String desc) throws Throwable;
+
+        void handleOnCallReturn(int listenerId) throws Throwable;
+
+        void handleOnCallThrows(int listenerId,
+                                String throwException) throws Throwable;
+
+        void handleOnCallBefore(int listenerId,
+                                int callSiteId) throws Throwable;
+
+        void handleOnCallThrows(int listenerId,
+                                Throwable throwable) throws Throwable;
+
+    }
+
+    /*** 间谍处理器 ***/
+    private static volatile SpyHandler spyHandler;
 
     private static final Class<Spy.Ret> SPY_RET_CLASS = Spy.Ret.class;
 
     /**
      * 初始化间谍
      *
+     * @param spyHandler 间谍处理器
+     */
+    public static void init(final SpyHandler spyHandler) {
+        Spy.spyHandler = spyHandler;
+    }
+
+    /**
+     * 初始化间谍(反射方式)
+     * <p>
+     * 保留给无法提供{@link SpyHandler}的场景使用，每次回调都会经过一次反射调用，性能较差；
+     * 此方式没有方法ID和调用点ID的回调入口，织入代码只能传递方法和调用点的完整描述
+     * </p>
+     *
      * @param ON_BEFORE_METHOD      ON_BEFORE 回调
      * @param ON_RETURN_METHOD      ON_RETURN 回调
      * @param ON_THROWS_METHOD      ON_THROWS 回调
@@ -42,19 +104,199 @@ public class Spy {
                             final Method ON_CALL_BEFORE_METHOD,
                             final Method ON_CALL_RETURN_METHOD,
                             final Method ON_CALL_THROWS_METHOD) {
-        Spy.ON_BEFORE_METHOD = ON_BEFORE_METHOD;
-        Spy.ON_RETURN_METHOD = ON_RETURN_METHOD;
-        Spy.ON_THROWS_METHOD = ON_THROWS_METHOD;
-        Spy.ON_LINE_METHOD = ON_LINE_METHOD;
-        Spy.ON_CALL_BEFORE_METHOD = ON_CALL_BEFORE_METHOD;
-        Spy.ON_CALL_RETURN_METHOD = ON_CALL_RETURN_METHOD;
-        Spy.ON_CALL_THROWS_METHOD = ON_CALL_THROWS_METHOD;
+        init(
+                ON_BEFORE_METHOD,
+                null,
+                ON_RETURN_METHOD,
+                ON_THROWS_METHOD,
+                ON_LINE_METHOD,
+                ON_CALL_BEFORE_METHOD,
+                null,
+                ON_CALL_RETURN_METHOD,
+                ON_CALL_THROWS_METHOD
+        );
+    }
+
+    /**
+     * 初始化间谍(反射方式，支持方法ID和调用点ID)
+     * <p>
+     * 方法ID和调用点ID只有容器才能解析，所以需要容器提供对应的回调入口，由容器解析之后再按完整描述处理
+     * </p>
+     *
+     * @param ON_BEFORE_METHOD                      ON_BEFORE 回调
+     * @param ON_BEFORE_WITH_METHOD_SITE_METHOD     ON_BEFORE 回调(方法ID)
+     * @param ON_RETURN_METHOD                      ON_RETURN 回调
+     * @param ON_THROWS_METHOD                      ON_THROWS 回调
+     * @param ON_LINE_METHOD                        ON_LINE 回调
+     * @param ON_CALL_BEFORE_METHOD                 ON_CALL_BEFORE 回调
+     * @param ON_CALL_BEFORE_WITH_CALL_SITE_METHOD  ON_CALL_BEFORE 回调(调用点ID)
+     * @param ON_CALL_RETURN_METHOD                 ON_CALL_RETURN 回调
+     * @param ON_CALL_THROWS_METHOD                 ON_CALL_THROWS 回调
+     */
+    public static void init(final Method ON_BEFORE_METHOD,
+                            final Method ON_BEFORE_WITH_METHOD_SITE_METHOD,
+                            final Method ON_RETURN_METHOD,
+                            final Method ON_THROWS_METHOD,
+                            final Method ON_LINE_METHOD,
+                            final Method ON_CALL_BEFORE_METHOD,
+                            final Method ON_CALL_BEFORE_WITH_CALL_SITE_METHOD,
+                            final Method ON_CALL_RETURN_METHOD,
+                            final Method ON_CALL_THROWS_METHOD) {
+        init(new MethodSpyHandler(
+                ON_BEFORE_METHOD,
+                ON_BEFORE_WITH_METHOD_SITE_METHOD,
+                ON_RETURN_METHOD,
+                ON_THROWS_METHOD,
+                ON_LINE_METHOD,
+                ON_CALL_BEFORE_METHOD,
+                ON_CALL_BEFORE_WITH_CALL_SITE_METHOD,
+                ON_CALL_RETURN_METHOD,
+                ON_CALL_THROWS_METHOD
+        ));
+    }
+
+    /**
+     * 自调用屏障(默认为加锁实现)
+     */
+    private static volatile SelfCallBarrier selfCallBarrier = new SynchronizedSelfCallBarrier();
+
+    /**
+     * 初始化自调用屏障
+     *
+     * @param selfCallBarrier 自调用屏障
+     */
+    public static void initSelfCallBarrier(final SelfCallBarrier selfCallBarrier) {
+        Spy.selfCallBarrier = selfCallBarrier;
     }
 
     /**
-     * 本地线程装载类
+     * 监听器开关，以监听器ID(或融合调用点ID)为下标
+     * <p>
+     * 织入代码在进入方法时先检查开关，关闭时不构造参数、不穿越Spy，冻结或尚未激活的监听器每次调用只需要一次数组读取。
+     * 采用写时复制，读取时没有锁
+     * </p>
+     * <p>
+     * 监听器ID在织入代码被清除后会被回收复用，数组长度只随同时存活的监听器数量增长
+     * </p>
      */
-    private static final SelfCallBarrier selfCallBarrier = new SelfCallBarrier();
+    private static volatile boolean[] listenerEnables = new boolean[0];
+
+    /**
+     * 判断监听器是否开启
+     *
+     * @param listenerId 监听器ID(或融合调用点ID)
+     * @return TRUE:开启；FALSE：关闭
+     */
+    public static boolean isListenerEnable(final int listenerId) {
+        final boolean[] enables = listenerEnables;
+        return listenerId >= 0
+                && listenerId < enables.length
+                && enables[listenerId];
+    }
+
+    /**
+     * 采样计数器：每个线程、每个监听器一个计数器，以监听器ID为下标
+     * <p>
+     * 监听器ID回收复用时不清零计数器，残留的计数只影响复用后的第一轮采样
+     * </p>
+     */
+    private static final ThreadLocal<int[]> samplingCountersRef = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[0];
+        }
+    };
+
+    /**
+     * 判断监听器是否开启，并且当前调用被采中
+     * <p>
+     * 每个线程在每个监听器上每{@code interval}次调用采中一次
+     * </p>
+     *
+     * @param listenerId 监听器ID(或融合调用点ID)
+     * @param interval   采样间隔
+     * @return TRUE:开启且被采中；FALSE：关闭或没有被采中
+     */
+    public static boolean isListenerSampled(final int listenerId,
+                                            final int interval) {
+        if (!isListenerEnable(listenerId)) {
+            return false;
+        }
+        int[] counters = samplingCountersRef.get();
+        if (listenerId >= counters.length) {
+            final int[] expanded = new int[listenerId + 1];
+            System.arraycopy(counters, 0, expanded, 0, counters.length);
+            samplingCountersRef.set(counters = expanded);
+        }
+        if (++counters[listenerId] < interval) {
+            return false;
+        }
+        counters[listenerId] = 0;
+        return true;
+    }
+
+    /**
+     * 设置监听器开关
+     *
+     * @param listenerId 监听器ID(或融合调用点ID)
+     * @param isEnable   TRUE:开启；FALSE：关闭
+     */
+    public static synchronized void setListenerEnable(final int listenerId,
+                                                      final boolean isEnable) {
+        final boolean[] current = listenerEnables;
+        if (listenerId < 0
+                || (listenerId >= current.length && !isEnable)) {
+            return;
+        }
+        final boolean[] snapshot = new boolean[Math.max(current.length, listenerId + 1)];
+        System.arraycopy(current, 0, snapshot, 0, current.length);
+        snapshot[listenerId] = isEnable;
+        listenerEnables = snapshot;
+    }
+
+    /**
+     * 行号命中计数，以行覆盖ID为下标
+     * <p>
+     * 行覆盖模式下织入代码在进入方法时取出一次该方法的计数数组，之后每执行一行只做一次数组自增，不再穿越Spy。
+     * 只追加不删除，下标被释放时置为null
+     * </p>
+     */
+    private static volatile int[][] lineHits = new int[16][];
+
+    /**
+     * 获取行号命中计数
+     *
+     * @param lineCoverageId 行覆盖ID
+     * @return 行号命中计数，不存在则返回null
+     */
+    public static int[] getLineHits(final int lineCoverageId) {
+        final int[][] current = lineHits;
+        return lineCoverageId >= 0 && lineCoverageId < current.length
+                ? current[lineCoverageId]
+                : null;
+    }
+
+    /**
+     * 设置行号命中计数
+     *
+     * @param lineCoverageId 行覆盖ID
+     * @param hits           行号命中计数，为null时释放
+     */
+    public static synchronized void setLineHits(final int lineCoverageId,
+                                                final int[] hits) {
+        int[][] current = lineHits;
+        if (lineCoverageId < 0
+                || (lineCoverageId >= current.length && null == hits)) {
+            return;
+        }
+        if (lineCoverageId >= current.length) {
+            final int[][] expanded = new int[Math.max(current.length << 1, lineCoverageId + 1)][];
+            System.arraycopy(current, 0, expanded, 0, current.length);
+            current = expanded;
+        }
+        current[lineCoverageId] = hits;
+        lineHits = current;
+    }
 
 
     /**
@@ -71,7 +313,22 @@ public class Spy {
                                              final String name,
                                              final String desc,
                                              final int listenerId) throws Throwable {
-        ON_CALL_BEFORE_METHOD.invoke(null, listenerId, lineNumber, owner, name, desc);
+        spyHandler.handleOnCallBefore(listenerId, lineNumber, owner, name, desc);
+    }
+
+    /**
+     * 间谍类- on call before
+     * <p>
+     * 调用点在织入时已经登记，这里只需要传递调用点ID
+     * </p>
+     *
+     * @param callSiteId 调用点ID
+     * @param listenerId 监听器ID
+     * @throws Throwable
+     */
+    public static void spyMethodOnCallBefore(final int callSiteId,
+                                             final int listenerId) throws Throwable {
+        spyHandler.handleOnCallBefore(listenerId, callSiteId);
     }
 
     /**
@@ -80,7 +337,7 @@ public class Spy {
      * @throws Throwable
      */
     public static void spyMethodOnCallReturn(final int listenerId) throws Throwable {
-        ON_CALL_RETURN_METHOD.invoke(null, listenerId);
+        spyHandler.handleOnCallReturn(listenerId);
     }
 
     /**
@@ -91,7 +348,22 @@ public class Spy {
      */
     public static void spyMethodOnCallThrows(final String throwException,
                                              final int listenerId) throws Throwable {
-        ON_CALL_THROWS_METHOD.invoke(null, listenerId, throwException);
+        spyHandler.handleOnCallThrows(listenerId, throwException);
+    }
+
+    /**
+     * 间谍类- on call throws
+     * <p>
+     * 直接传递异常对象，异常类名只在真正需要派发事件时才获取
+     * </p>
+     *
+     * @param throwable  调用抛出的异常
+     * @param listenerId 监听器ID
+     * @throws Throwable
+     */
+    public static void spyMethodOnCallThrows(final Throwable throwable,
+                                             final int listenerId) throws Throwable {
+        spyHandler.handleOnCallThrows(listenerId, throwable);
     }
 
     /**
@@ -102,7 +374,7 @@ public class Spy {
      */
     public static void spyMethodOnLine(final int lineNumber,
                                        final int listenerId) throws Throwable {
-        ON_LINE_METHOD.invoke(null, listenerId, lineNumber);
+        spyHandler.handleOnLine(listenerId, lineNumber);
     }
 
     /**
@@ -125,19 +397,49 @@ public class Spy {
                                         final String javaMethodDesc,
                                         final Object target) throws Throwable {
         final Thread thread = Thread.currentThread();
+        final SelfCallBarrier barrier = selfCallBarrier;
 
         // 当前线程已经装载进去，则直接返回 Ret.RET_NONE
-        if (selfCallBarrier.isEnter(thread)) {
+        final Object token = barrier.enter(thread);
+        if (null == token) {
             return Ret.RET_NONE;
         }
 
-        //
-        final SelfCallBarrier.Node node = selfCallBarrier.enter(thread);
         try {
-            return (Ret) ON_BEFORE_METHOD.invoke(null,
+            return (Ret) spyHandler.handleOnBefore(
                     listenerId, targetClassLoaderObjectID, SPY_RET_CLASS, javaClassName, javaMethodName, javaMethodDesc, target, argumentArray);
         } finally {
-            selfCallBarrier.exit(thread, node);
+            barrier.exit(thread, token);
+        }
+    }
+
+    /**
+     * 间谍类- on before
+     * <p>
+     * 被观察方法在织入时已经登记，这里只需要传递方法ID
+     * </p>
+     *
+     * @param argumentArray 方法参数
+     * @param listenerId    监听器ID
+     * @param methodSiteId  方法ID
+     * @param target        调用对象
+     * @return 返回结果
+     * @throws Throwable
+     */
+    public static Ret spyMethodOnBefore(final Object[] argumentArray,
+                                        final int listenerId,
+                                        final int methodSiteId,
+                                        final Object target) throws Throwable {
+        final Thread thread = Thread.currentThread();
+        final SelfCallBarrier barrier = selfCallBarrier;
+        final Object token = barrier.enter(thread);
+        if (null == token) {
+            return Ret.RET_NONE;
+        }
+        try {
+            return (Ret) spyHandler.handleOnBefore(listenerId, methodSiteId, SPY_RET_CLASS, target, argumentArray);
+        } finally {
+            barrier.exit(thread, token);
         }
     }
 
@@ -151,14 +453,15 @@ public class Spy {
     public static Ret spyMethodOnReturn(final Object object,
                                         final int listenerId) throws Throwable {
         final Thread thread = Thread.currentThread();
-        if (selfCallBarrier.isEnter(thread)) {
+        final SelfCallBarrier barrier = selfCallBarrier;
+        final Object token = barrier.enter(thread);
+        if (null == token) {
             return Ret.RET_NONE;
         }
-        final SelfCallBarrier.Node node = selfCallBarrier.enter(thread);
         try {
-            return (Ret) ON_RETURN_METHOD.invoke(null, listenerId, SPY_RET_CLASS, object);
+            return (Ret) spyHandler.handleOnReturn(listenerId, SPY_RET_CLASS, object);
         } finally {
-            selfCallBarrier.exit(thread, node);
+            barrier.exit(thread, token);
         }
     }
 
@@ -172,17 +475,149 @@ public class Spy {
     public static Ret spyMethodOnThrows(final Throwable throwable,
                                         final int listenerId) throws Throwable {
         final Thread thread = Thread.currentThread();
-        if (selfCallBarrier.isEnter(thread)) {
+        final SelfCallBarrier barrier = selfCallBarrier;
+        final Object token = barrier.enter(thread);
+        if (null == token) {
             return Ret.RET_NONE;
         }
-        final SelfCallBarrier.Node node = selfCallBarrier.enter(thread);
         try {
-            return (Ret) ON_THROWS_METHOD.invoke(null, listenerId, SPY_RET_CLASS, throwable);
+            return (Ret) spyHandler.handleOnThrows(listenerId, SPY_RET_CLASS, throwable);
         } finally {
-            selfCallBarrier.exit(thread, node);
+            barrier.exit(thread, token);
         }
     }
 
+    /**
+     * 反射方式实现的间谍处理器
+     */
+    private static class MethodSpyHandler implements SpyHandler {
+
+        private final Method ON_BEFORE_METHOD;
+        private final Method ON_BEFORE_WITH_METHOD_SITE_METHOD;
+        private final Method ON_RETURN_METHOD;
+        private final Method ON_THROWS_METHOD;
+        private final Method ON_LINE_METHOD;
+        private final Method ON_CALL_BEFORE_METHOD;
+        private final Method ON_CALL_BEFORE_WITH_CALL_SITE_METHOD;
+        private final Method ON_CALL_RETURN_METHOD;
+        private final Method ON_CALL_THROWS_METHOD;
+
+        MethodSpyHandler(final Method ON_BEFORE_METHOD,
+                         final Method ON_BEFORE_WITH_METHOD_SITE_METHOD,
+                         final Method ON_RETURN_METHOD,
+                         final Method ON_THROWS_METHOD,
+                         final Method ON_LINE_METHOD,
+                         final Method ON_CALL_BEFORE_METHOD,
+                         final Method ON_CALL_BEFORE_WITH_CALL_SITE_METHOD,
+                         final Method ON_CALL_RETURN_METHOD,
+                         final Method ON_CALL_THROWS_METHOD) {
+            this.ON_BEFORE_METHOD = ON_BEFORE_METHOD;
+            this.ON_BEFORE_WITH_METHOD_SITE_METHOD = ON_BEFORE_WITH_METHOD_SITE_METHOD;
+            this.ON_RETURN_METHOD = ON_RETURN_METHOD;
+            this.ON_THROWS_METHOD = ON_THROWS_METHOD;
+            this.ON_LINE_METHOD = ON_LINE_METHOD;
+            this.ON_CALL_BEFORE_METHOD = ON_CALL_BEFORE_METHOD;
+            this.ON_CALL_BEFORE_WITH_CALL_SITE_METHOD = ON_CALL_BEFORE_WITH_CALL_SITE_METHOD;
+            this.ON_CALL_RETURN_METHOD = ON_CALL_RETURN_METHOD;
+            this.ON_CALL_THROWS_METHOD = ON_CALL_THROWS_METHOD;
+        }
+
+        // 容器没有提供方法ID和调用点ID的回调入口时，容器不会织入传递ID的代码
+        private static Method checkSiteMethod(final Method method) {
+            if (null == method) {
+                throw new IllegalStateException("site-id callback was not provided by Spy.init().");
+            }
+            return method;
+        }
+
+        // 反射调用，并还原被反射包装掉的原始异常，保持和直接调用一致的异常语义
+        private static Object invoke(final Method method,
+                                     final Object... argumentArray) throws Throwable {
+            try {
+                return method.invoke(null, argumentArray);
+            } catch (InvocationTargetException cause) {
+                throw cause.getTargetException();
+            }
+        }
+
+        @Override
+        public Object handleOnBefore(final int listenerId,
+                                     final int targetClassLoaderObjectID,
+                                     final Class<?> spyRetClassInTargetClassLoader,
+                                     final String javaClassName,
+                                     final String javaMethodName,
+                                     final String javaMethodDesc,
+                                     final Object target,
+                                     final Object[] argumentArray) throws Throwable {
+            return invoke(ON_BEFORE_METHOD,
+                    listenerId, targetClassLoaderObjectID, spyRetClassInTargetClassLoader,
+                    javaClassName, javaMethodName, javaMethodDesc, target, argumentArray);
+        }
+
+        @Override
+        public Object handleOnBefore(final int listenerId,
+                                     final int methodSiteId,
+                                     final Class<?> spyRetClassInTargetClassLoader,
+                                     final Object target,
+                                     final Object[] argumentArray) throws Throwable {
+            return invoke(checkSiteMethod(ON_BEFORE_WITH_METHOD_SITE_METHOD),
+                    listenerId, methodSiteId, spyRetClassInTargetClassLoader, target, argumentArray);
+        }
+
+        @Override
+        public Object handleOnReturn(final int listenerId,
+                                     final Class<?> spyRetClassInTargetClassLoader,
+                                     final Object object) throws Throwable {
+            return invoke(ON_RETURN_METHOD, listenerId, spyRetClassInTargetClassLoader, object);
+        }
+
+        @Override
+        public Object handleOnThrows(final int listenerId,
+                                     final Class<?> spyRetClassInTargetClassLoader,
+                                     final Throwable throwable) throws Throwable {
+            return invoke(ON_THROWS_METHOD, listenerId, spyRetClassInTargetClassLoader, throwable);
+        }
+
+        @Override
+        public void handleOnLine(final int listenerId,
+                                 final int lineNumber) throws Throwable {
+            invoke(ON_LINE_METHOD, listenerId, lineNumber);
+        }
+
+        @Override
+        public void handleOnCallBefore(final int listenerId,
+                                       final int lineNumber,
+                                       final String owner,
+                                       final String name,
+                                       final String desc) throws Throwable {
+            invoke(ON_CALL_BEFORE_METHOD, listenerId, lineNumber, owner, name, desc);
+        }
+
+        @Override
+        public void handleOnCallReturn(final int listenerId) throws Throwable {
+            invoke(ON_CALL_RETURN_METHOD, listenerId);
+        }
+
+        @Override
+        public void handleOnCallThrows(final int listenerId,
+                                       final String throwException) throws Throwable {
+            invoke(ON_CALL_THROWS_METHOD, listenerId, throwException);
+        }
+
+        @Override
+        public void handleOnCallBefore(final int listenerId,
+                                       final int callSiteId) throws Throwable {
+            invoke(checkSiteMethod(ON_CALL_BEFORE_WITH_CALL_SITE_METHOD), listenerId, callSiteId);
+        }
+
+        @Override
+        public void handleOnCallThrows(final int listenerId,
+                                       final Throwable throwable) throws Throwable {
+            handleOnCallThrows(listenerId, throwable.getClass().getName());
+        }
+
+    }
+
     /**
      * 返回结果
      */
@@ -229,9 +664,67 @@ public class Spy {
 
 
     /**
-     * 本地线程装载类（数据结构和HashMap类似）
+     * 自调用屏障
+     * <p>
+     * 防止sandbox自身代码(事件处理器、模块代码)执行过程中触发的事件被再次观察
+     * </p>
      */
-    public static class SelfCallBarrier {
+    public interface SelfCallBarrier {
+
+        /**
+         * 当前线程进入屏障
+         *
+         * @param thread 当前线程
+         * @return 进入凭证，离开屏障时需要原样交还；如果当前线程已经在屏障中则返回null
+         */
+        Object enter(Thread thread);
+
+        /**
+         * 当前线程离开屏障
+         *
+         * @param thread 当前线程
+         * @param token  进入屏障时获得的凭证
+         */
+        void exit(Thread thread, Object token);
+
+    }
+
+    /**
+     * 线程独占标记实现的自调用屏障
+     * <p>
+     * 每个线程持有一个只有自己会读写的重入标记，没有共享锁，除每个线程首次进入外也不会分配对象
+     * </p>
+     */
+    public static class ThreadLocalSelfCallBarrier implements SelfCallBarrier {
+
+        private final ThreadLocal<boolean[]> isEnterRef = new ThreadLocal<boolean[]>() {
+            @Override
+            protected boolean[] initialValue() {
+                return new boolean[1];
+            }
+        };
+
+        @Override
+        public Object enter(final Thread thread) {
+            final boolean[] isEnter = isEnterRef.get();
+            if (isEnter[0]) {
+                return null;
+            }
+            isEnter[0] = true;
+            return isEnter;
+        }
+
+        @Override
+        public void exit(final Thread thread, final Object token) {
+            ((boolean[]) token)[0] = false;
+        }
+
+    }
+
+    /**
+     * 加锁实现的自调用屏障（数据结构和HashMap类似）
+     */
+    public static class SynchronizedSelfCallBarrier implements SelfCallBarrier {
         /**
          * node数组的最大装载长度
          */
@@ -243,7 +736,7 @@ public class Spy {
         final Node[] nodeArray = new Node[THREAD_LOCAL_ARRAY_LENGTH];
 
 
-        SelfCallBarrier() {
+        public SynchronizedSelfCallBarrier() {
             // init root node
             for (int i = 0; i < THREAD_LOCAL_ARRAY_LENGTH; i++) {
                 nodeArray[i] = new Node();
@@ -296,46 +789,49 @@ public class Spy {
 
         /**
          * 当前node数组中是否已经装载了当前thread
+         * @param top
          * @param thread
          * @return
          */
-        boolean isEnter(Thread thread) {
-            final Node top = nodeArray[thread.hashCode() % THREAD_LOCAL_ARRAY_LENGTH];
+        boolean isEnter(final Node top, final Thread thread) {
             Node node = top;
-            synchronized (top) {
-                while (null != node.next) {
-                    node = node.next;
-                    if (thread == node.thread) {
-                        return true;
-                    }
+            while (null != node.next) {
+                node = node.next;
+                if (thread == node.thread) {
+                    return true;
                 }
-                return false;
-            }//sync
+            }
+            return false;
         }
 
         /**
          * 当前thread入node 链表
          * @param thread
-         * @return
+         * @return 当前thread的node节点，如果已经装载则返回null
          */
-        Node enter(Thread thread) {
+        @Override
+        public Object enter(final Thread thread) {
             final Node top = nodeArray[thread.hashCode() % THREAD_LOCAL_ARRAY_LENGTH];
-            final Node node = new Node(thread);
             synchronized (top) {
+                if (isEnter(top, thread)) {
+                    return null;
+                }
+                final Node node = new Node(thread);
                 insert(top, node);
+                return node;
             }
-            return node;
         }
 
         /**
          * 删除node节点
          * @param thread
-         * @param node
+         * @param token
          */
-        void exit(Thread thread, Node node) {
+        @Override
+        public void exit(final Thread thread, final Object token) {
             final Node top = nodeArray[thread.hashCode() % THREAD_LOCAL_ARRAY_LENGTH];
             synchronized (top) {
-                delete(node);
+                delete((Node) token);
             }
         }
 